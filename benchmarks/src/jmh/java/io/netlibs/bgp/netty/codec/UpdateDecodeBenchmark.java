@@ -0,0 +1,78 @@
+package io.netlibs.bgp.netty.codec;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.netlibs.bgp.netty.protocol.update.SyntheticUpdates;
+import io.netlibs.bgp.netty.protocol.update.UpdatePacket;
+import io.netlibs.bgp.protocol.BGPv4Constants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Measures {@link BGPv4PacketDecoder#decodePacket(ByteBuf)} on a batch of {@link SyntheticUpdates} packets, with the path attributes
+ * decoded eagerly or lazily.
+ *
+ * The packets are kept in direct buffers without the BGP header, i.e. the way the reframer hands them to the decoder.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UpdateDecodeBenchmark
+{
+
+  private static final int PACKETS = 1000;
+
+  @Param({ "false", "true" })
+  private boolean lazyPathAttributes;
+
+  private ByteBuf[] frames;
+  private BGPv4PacketDecoder decoder;
+
+  @Setup(Level.Trial)
+  public void setupFrames()
+  {
+    final List<UpdatePacket> packets = SyntheticUpdates.mix(PACKETS, 4271);
+
+    this.frames = new ByteBuf[packets.size()];
+    this.decoder = this.lazyPathAttributes ? BGPv4PacketDecoder.getLazyInstance() : BGPv4PacketDecoder.getInstance();
+
+    for (int i = 0; i < this.frames.length; i++)
+    {
+      final ByteBuf encoded = packets.get(i).encodePacket();
+
+      // skip the marker and the length, the frame starts with the type octet
+      encoded.skipBytes(BGPv4Constants.BGP_PACKET_HEADER_LENGTH - 1);
+
+      this.frames[i] = Unpooled.directBuffer(encoded.readableBytes()).writeBytes(encoded);
+    }
+  }
+
+  @Benchmark
+  public void decodePacket(final Blackhole blackhole)
+  {
+    for (final ByteBuf frame : this.frames)
+    {
+      blackhole.consume(this.decoder.decodePacket(frame.duplicate()));
+    }
+  }
+
+}
@@ -0,0 +1,141 @@
+package io.netlibs.bgp.netty.fsm;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.netty.protocol.update.UpdatePacket;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.BGPv4Constants;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NLRICodec;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.Route;
+import io.netlibs.bgp.rib.RoutingInformationBaseVisitor;
+
+/**
+ * Measures building the UPDATE packets for a full IPv4 table dump to a newly established peer.
+ *
+ * {@link #buildUpdates()} runs the queue as is, {@link #legacyPacking()} packs the same NLRIs the way buildUpdates() did before the
+ * packets tracked their size, i.e. by recalculating the packet size for every NLRI added.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutboundUpdateBenchmark
+{
+
+  private static final int ATTRIBUTE_SETS = 64;
+
+  @Param({ "100000", "600000" })
+  private int tableSize;
+
+  private Route[] routes;
+  private List<List<NetworkLayerReachabilityInformation>> nlrisBySet;
+  private List<List<PathAttribute>> attributeSets;
+  private OutboundRoutingUpdateQueue queue;
+
+  @Setup(Level.Trial)
+  public void setupTable()
+  {
+    final Random random = new Random(4271);
+    final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final List<List<PathAttribute>> sets = new ArrayList<List<PathAttribute>>(ATTRIBUTE_SETS);
+
+    this.nlrisBySet = new ArrayList<List<NetworkLayerReachabilityInformation>>(ATTRIBUTE_SETS);
+    this.attributeSets = new ArrayList<List<PathAttribute>>(ATTRIBUTE_SETS);
+
+    for (int i = 0; i < ATTRIBUTE_SETS; i++)
+    {
+      sets.add(Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100 + i)));
+      this.nlrisBySet.add(new ArrayList<NetworkLayerReachabilityInformation>());
+      this.attributeSets.add(Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100 + i), new NextHopPathAttribute(nextHop)));
+    }
+
+    this.routes = new Route[this.tableSize];
+
+    for (int i = 0; i < this.tableSize; i++)
+    {
+      final int set = random.nextInt(ATTRIBUTE_SETS);
+      final NetworkLayerReachabilityInformation nlri = new NetworkLayerReachabilityInformation(24, new byte[] { (byte) (random.nextInt(223) + 1),
+          (byte) random.nextInt(256), (byte) random.nextInt(256) });
+
+      this.routes[i] = new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri, sets.get(set), nextHop);
+      this.nlrisBySet.get(set).add(nlri);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void fillQueue()
+  {
+    this.queue = new OutboundRoutingUpdateQueue(null, null);
+
+    final RoutingInformationBaseVisitor visitor = this.queue.getImportVisitor();
+
+    for (final Route route : this.routes)
+    {
+      visitor.visitRouteNode("peer", RIBSide.Local, route);
+    }
+  }
+
+  @Benchmark
+  public List<UpdatePacket> buildUpdates()
+  {
+    return this.queue.buildUpdates();
+  }
+
+  @Benchmark
+  public List<UpdatePacket> legacyPacking()
+  {
+    final List<UpdatePacket> updates = new LinkedList<UpdatePacket>();
+
+    for (int i = 0; i < ATTRIBUTE_SETS; i++)
+    {
+      UpdatePacket current = null;
+
+      for (final NetworkLayerReachabilityInformation nlri : this.nlrisBySet.get(i))
+      {
+        if ((current == null)
+            || ((current.calculatePacketSize() + NLRICodec.calculateEncodedNLRILength(nlri)) > (BGPv4Constants.BGP_PACKET_MAX_LENGTH - BGPv4Constants.BGP_PACKET_HEADER_LENGTH)))
+        {
+          current = new UpdatePacket();
+          current.getPathAttributes().addAll(this.attributeSets.get(i));
+          updates.add(current);
+        }
+
+        current.getNlris().add(nlri);
+      }
+    }
+
+    return updates;
+  }
+
+}
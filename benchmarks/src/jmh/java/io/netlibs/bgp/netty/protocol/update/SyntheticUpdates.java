@@ -0,0 +1,190 @@
+package io.netlibs.bgp.netty.protocol.update;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamily;
+import io.netlibs.bgp.protocol.BinaryNextHop;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.SubsequentAddressFamily;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.CommunityMember;
+import io.netlibs.bgp.protocol.attributes.CommunityPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiExitDiscPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolUnreachableNLRI;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+
+/**
+ * Builds the UPDATE packets the codec benchmarks work on.
+ *
+ * The mix roughly follows what a full table feed looks like on the wire: most packets announce a batch of IPv4 prefixes sharing one set
+ * of attributes with an AS_PATH of a few hops and some communities, the rest are IPv6 announcements in MP_REACH_NLRI and withdrawals of
+ * either family. A fixed seed keeps runs comparable.
+ */
+
+public final class SyntheticUpdates
+{
+
+  private static final InetAddressNextHop<Inet4Address> V4_NEXT_HOP = new InetAddressNextHop<Inet4Address>(
+      (Inet4Address) InetAddresses.forString("192.0.2.1"));
+  private static final BinaryNextHop V6_NEXT_HOP = new BinaryNextHop(InetAddresses.forString("2001:db8::1").getAddress());
+
+  private SyntheticUpdates()
+  {
+  }
+
+  /**
+   * @return the given number of UPDATE packets, 70% IPv4 announcements, 20% IPv6 announcements and 10% withdrawals
+   */
+
+  public static List<UpdatePacket> mix(final int count, final long seed)
+  {
+    final Random random = new Random(seed);
+    final List<UpdatePacket> packets = new ArrayList<UpdatePacket>(count);
+
+    for (int i = 0; i < count; i++)
+    {
+      final int roll = random.nextInt(10);
+
+      if (roll < 7)
+      {
+        packets.add(ipv4Announcement(random));
+      }
+      else if (roll < 9)
+      {
+        packets.add(ipv6Announcement(random));
+      }
+      else
+      {
+        packets.add(withdrawal(random));
+      }
+    }
+
+    return packets;
+  }
+
+  private static UpdatePacket ipv4Announcement(final Random random)
+  {
+    final UpdatePacket packet = new UpdatePacket();
+
+    packet.getPathAttributes().addAll(commonAttributes(random));
+    packet.getPathAttributes().add(new NextHopPathAttribute(V4_NEXT_HOP));
+
+    for (int i = random.nextInt(40) + 1; i > 0; i--)
+    {
+      packet.getNlris().add(ipv4Prefix(random));
+    }
+
+    return packet;
+  }
+
+  private static UpdatePacket ipv6Announcement(final Random random)
+  {
+    final UpdatePacket packet = new UpdatePacket();
+    final MultiProtocolReachableNLRI mpNLRI = new MultiProtocolReachableNLRI(AddressFamily.IPv6, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING,
+        V6_NEXT_HOP);
+
+    for (int i = random.nextInt(20) + 1; i > 0; i--)
+    {
+      mpNLRI.getNlris().add(ipv6Prefix(random));
+    }
+
+    packet.getPathAttributes().addAll(commonAttributes(random));
+    packet.getPathAttributes().add(mpNLRI);
+
+    return packet;
+  }
+
+  private static UpdatePacket withdrawal(final Random random)
+  {
+    final UpdatePacket packet = new UpdatePacket();
+
+    if (random.nextBoolean())
+    {
+      for (int i = random.nextInt(100) + 1; i > 0; i--)
+      {
+        packet.getWithdrawnRoutes().add(ipv4Prefix(random));
+      }
+    }
+    else
+    {
+      final MultiProtocolUnreachableNLRI mpUnreach = new MultiProtocolUnreachableNLRI(AddressFamily.IPv6,
+          SubsequentAddressFamily.NLRI_UNICAST_FORWARDING);
+
+      for (int i = random.nextInt(50) + 1; i > 0; i--)
+      {
+        mpUnreach.getNlris().add(ipv6Prefix(random));
+      }
+
+      packet.getPathAttributes().add(mpUnreach);
+    }
+
+    return packet;
+  }
+
+  private static List<PathAttribute> commonAttributes(final Random random)
+  {
+    final List<PathAttribute> attributes = new ArrayList<PathAttribute>();
+    final int[] path = new int[random.nextInt(5) + 2];
+    final CommunityPathAttribute communities = new CommunityPathAttribute();
+
+    for (int i = 0; i < path.length; i++)
+    {
+      path[i] = random.nextInt(64000) + 1;
+    }
+
+    for (int i = random.nextInt(4); i > 0; i--)
+    {
+      communities.addMember(new CommunityMember(path[0], random.nextInt(1000)));
+    }
+
+    attributes.add(new OriginPathAttribute());
+    attributes.add(new ASPathAttribute(ASType.AS_NUMBER_2OCTETS, new PathSegment[] { new PathSegment(ASType.AS_NUMBER_2OCTETS,
+        PathSegmentType.AS_SEQUENCE, path) }));
+    attributes.add(new MultiExitDiscPathAttribute(random.nextInt(200)));
+    attributes.add(new LocalPrefPathAttribute(100));
+
+    if (!communities.getMembers().isEmpty())
+    {
+      attributes.add(communities);
+    }
+
+    return attributes;
+  }
+
+  private static NetworkLayerReachabilityInformation ipv4Prefix(final Random random)
+  {
+    final int prefixLength = (random.nextInt(10) < 6) ? 24 : (random.nextInt(16) + 8);
+    final byte[] prefix = new byte[NetworkLayerReachabilityInformation.calculateOctetsForPrefixLength(prefixLength)];
+
+    random.nextBytes(prefix);
+    prefix[0] = (byte) (random.nextInt(223) + 1);
+
+    return new NetworkLayerReachabilityInformation(prefixLength, prefix);
+  }
+
+  private static NetworkLayerReachabilityInformation ipv6Prefix(final Random random)
+  {
+    final int prefixLength = (random.nextInt(10) < 5) ? 48 : (random.nextInt(17) + 32);
+    final byte[] prefix = new byte[NetworkLayerReachabilityInformation.calculateOctetsForPrefixLength(prefixLength)];
+
+    random.nextBytes(prefix);
+    prefix[0] = 0x20;
+    prefix[1] = 0x01;
+
+    return new NetworkLayerReachabilityInformation(prefixLength, prefix);
+  }
+
+}
@@ -0,0 +1,79 @@
+package io.netlibs.bgp.netty.protocol.update;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * Measures encoding a batch of {@link SyntheticUpdates} packets.
+ *
+ * {@link #encodePacket(Blackhole)} allocates a buffer per packet as {@link UpdatePacket#encodePacket()} does, {@link #encodeIntoBuffer()}
+ * writes all packets into one pooled buffer the way the channel codec does.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UpdateEncodeBenchmark
+{
+
+  private static final int PACKETS = 1000;
+
+  private List<UpdatePacket> packets;
+  private ByteBuf buffer;
+
+  @Setup(Level.Trial)
+  public void setupPackets()
+  {
+    this.packets = SyntheticUpdates.mix(PACKETS, 4271);
+    this.buffer = PooledByteBufAllocator.DEFAULT.directBuffer();
+  }
+
+  @TearDown(Level.Trial)
+  public void releaseBuffer()
+  {
+    this.buffer.release();
+  }
+
+  @Benchmark
+  public void encodePacket(final Blackhole blackhole)
+  {
+    for (final UpdatePacket packet : this.packets)
+    {
+      blackhole.consume(packet.encodePacket());
+    }
+  }
+
+  @Benchmark
+  public int encodeIntoBuffer()
+  {
+    this.buffer.clear();
+
+    for (final UpdatePacket packet : this.packets)
+    {
+      packet.encodePacket(this.buffer);
+    }
+
+    return this.buffer.readableBytes();
+  }
+
+}
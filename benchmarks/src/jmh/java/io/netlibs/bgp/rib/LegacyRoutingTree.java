@@ -0,0 +1,102 @@
+package io.netlibs.bgp.rib;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+
+/**
+ * The TreeSet based routing tree which was replaced by the Patricia trie in {@link RoutingTree}. Only kept as baseline for the
+ * benchmarks.
+ */
+
+class LegacyRoutingTree
+{
+
+  private static class Node implements Comparable<Node>
+  {
+    private Route route;
+    private final NavigableSet<Node> childNodes = new TreeSet<Node>();
+
+    Node(final Route route)
+    {
+      this.route = route;
+    }
+
+    @Override
+    public int compareTo(final Node o)
+    {
+      return this.route.getNlri().compareTo(o.route.getNlri());
+    }
+  }
+
+  private final Node rootNode = new Node(null);
+
+  synchronized boolean addRoute(final Route route)
+  {
+    return this.addRoute(this.rootNode, new Node(route));
+  }
+
+  private boolean addRoute(final Node parent, final Node newNode)
+  {
+    final NavigableSet<Node> reparentedNodes = new TreeSet<Node>();
+
+    for (final Node child : parent.childNodes)
+    {
+      if (child.route.getNlri().equals(newNode.route.getNlri()))
+      {
+        child.route = newNode.route;
+        return true;
+      }
+      else if (NlriComparator.isPrefixOf(child.route, newNode.route))
+      {
+        return this.addRoute(child, newNode);
+      }
+      else if (NlriComparator.isPrefixOf(newNode.route, child.route))
+      {
+        reparentedNodes.add(child);
+      }
+    }
+
+    parent.childNodes.add(newNode);
+
+    if (reparentedNodes.size() > 0)
+    {
+      newNode.childNodes.addAll(reparentedNodes);
+      parent.childNodes.removeAll(reparentedNodes);
+    }
+
+    return true;
+  }
+
+  synchronized LookupResult lookupRoute(final NetworkLayerReachabilityInformation nlri)
+  {
+    return this.lookupRoute(this.rootNode, nlri);
+  }
+
+  private LookupResult lookupRoute(final Node parent, final NetworkLayerReachabilityInformation nlri)
+  {
+    LookupResult result = null;
+
+    for (final Node child : parent.childNodes)
+    {
+      if (NlriComparator.equals(child.route, nlri))
+      {
+        result = new LookupResult(child.route);
+        break;
+      }
+      else if (NlriComparator.isPrefixOf(child.route, nlri))
+      {
+        result = this.lookupRoute(child, nlri);
+
+        if (result == null)
+        {
+          result = new LookupResult(child.route);
+        }
+      }
+    }
+
+    return result;
+  }
+
+}
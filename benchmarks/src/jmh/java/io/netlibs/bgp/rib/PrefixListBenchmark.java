@@ -0,0 +1,101 @@
+package io.netlibs.bgp.rib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.ConfigurationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration;
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration.Action;
+import io.netlibs.bgp.config.nodes.impl.PrefixListEntryConfigurationImpl;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.rib.filter.PrefixList;
+
+/**
+ * Compares evaluating a route against a {@link PrefixList} with the linear scan over the filter prefixes which the prefix routing filter
+ * used before.
+ *
+ * The entries are taken from the synthetic table, every entry covers its prefix and all more specific ones. The routes are drawn from a
+ * second synthetic table, so most of them match no entry and the linear scan has to look at all of them.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrefixListBenchmark
+{
+
+  @Param({ "100000" })
+  private int entryCount;
+
+  private NetworkLayerReachabilityInformation[] filterPrefixes;
+  private Route[] routes;
+  private PrefixList prefixList;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setupList() throws ConfigurationException
+  {
+    final Route[] table = RoutingTreeBenchmark.syntheticTable(this.entryCount, 4271);
+    final List<PrefixListEntryConfiguration> entries = new ArrayList<PrefixListEntryConfiguration>(table.length);
+
+    this.filterPrefixes = new NetworkLayerReachabilityInformation[table.length];
+
+    for (int i = 0; i < table.length; i++)
+    {
+      this.filterPrefixes[i] = table[i].getNlri();
+      entries.add(new PrefixListEntryConfigurationImpl((i % 2) == 0 ? Action.DENY : Action.PERMIT, table[i].getNlri(), table[i].getNlri().getPrefixLength(), 32));
+    }
+
+    this.prefixList = new PrefixList(entries);
+    this.routes = RoutingTreeBenchmark.syntheticTable(1 << 16, new Random(4724).nextLong());
+  }
+
+  private Route nextRoute()
+  {
+    return this.routes[this.next++ & (this.routes.length - 1)];
+  }
+
+  @Benchmark
+  public Action prefixList()
+  {
+    return this.prefixList.evaluate(this.nextRoute().getKey());
+  }
+
+  @Benchmark
+  public boolean linearScan()
+  {
+    final Route route = this.nextRoute();
+
+    for (final NetworkLayerReachabilityInformation filterPrefix : this.filterPrefixes)
+    {
+      if (NlriComparator.isPrefixOf(AddressFamilyKey.IPV4_UNICAST_FORWARDING, filterPrefix, route.getNlri())
+          || NlriComparator.equals(AddressFamilyKey.IPV4_UNICAST_FORWARDING, filterPrefix, route.getNlri()))
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
@@ -0,0 +1,162 @@
+package io.netlibs.bgp.rib;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+
+/**
+ * Measures loading, withdrawing and looking up a full table through the {@link RoutingInformationBase} API.
+ *
+ * The table is fed the way received UPDATE packets feed it, i.e. in batches of prefixes sharing a set of path attributes. Each invocation
+ * of {@link #addRoutes()} and {@link #withdrawRoutes()} works on a freshly built RIB, so keep in mind that the setup of the larger tables
+ * takes a while.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutingInformationBaseBenchmark
+{
+
+  private static final int ATTRIBUTE_SETS = 64;
+  private static final int BATCH_SIZE = 20;
+
+  @Param({ "100000", "1000000" })
+  private int tableSize;
+
+  private final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+  private List<List<NetworkLayerReachabilityInformation>> batches;
+  private List<List<PathAttribute>> attributeSets;
+  private NetworkLayerReachabilityInformation[] probes;
+  private RoutingInformationBase rib;
+
+  @Setup(Level.Trial)
+  public void setupTable()
+  {
+    final Set<NetworkLayerReachabilityInformation> prefixes = new LinkedHashSet<NetworkLayerReachabilityInformation>();
+    final Random random = new Random(4724);
+
+    for (final Route route : RoutingTreeBenchmark.syntheticTable(this.tableSize, 4271))
+    {
+      prefixes.add(route.getNlri());
+    }
+
+    this.attributeSets = new ArrayList<List<PathAttribute>>(ATTRIBUTE_SETS);
+
+    for (int i = 0; i < ATTRIBUTE_SETS; i++)
+    {
+      this.attributeSets.add(Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100 + i)));
+    }
+
+    this.batches = new ArrayList<List<NetworkLayerReachabilityInformation>>();
+
+    List<NetworkLayerReachabilityInformation> batch = null;
+
+    for (final NetworkLayerReachabilityInformation prefix : prefixes)
+    {
+      if ((batch == null) || (batch.size() == BATCH_SIZE))
+      {
+        batch = new ArrayList<NetworkLayerReachabilityInformation>(BATCH_SIZE);
+        this.batches.add(batch);
+      }
+
+      batch.add(prefix);
+    }
+
+    this.probes = new NetworkLayerReachabilityInformation[this.tableSize];
+
+    for (int i = 0; i < this.probes.length; i++)
+    {
+      final byte[] host = new byte[4];
+
+      random.nextBytes(host);
+      this.probes[i] = new NetworkLayerReachabilityInformation(32, host);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void setupRib()
+  {
+    this.rib = new RoutingInformationBase();
+    this.rib.setPeerName("peer");
+    this.rib.setSide(RIBSide.Remote);
+    this.rib.setAddressFamilyKey(AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    this.load(this.rib);
+  }
+
+  private void load(final RoutingInformationBase rib)
+  {
+    for (int i = 0; i < this.batches.size(); i++)
+    {
+      rib.addRoutes(this.batches.get(i), this.attributeSets.get(i % ATTRIBUTE_SETS), this.nextHop);
+    }
+  }
+
+  @Benchmark
+  public RoutingInformationBase addRoutes()
+  {
+    final RoutingInformationBase rib = new RoutingInformationBase();
+
+    rib.setPeerName("peer");
+    rib.setSide(RIBSide.Remote);
+    rib.setAddressFamilyKey(AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    this.load(rib);
+
+    return rib;
+  }
+
+  @Benchmark
+  public RoutingInformationBase withdrawRoutes()
+  {
+    for (final List<NetworkLayerReachabilityInformation> batch : this.batches)
+    {
+      this.rib.withdrawRoutes(batch);
+    }
+
+    return this.rib;
+  }
+
+  @Benchmark
+  public void lookupRoute(final Blackhole blackhole)
+  {
+    for (final NetworkLayerReachabilityInformation probe : this.probes)
+    {
+      blackhole.consume(this.rib.lookupRoute(probe));
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+package io.netlibs.bgp.rib;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+
+/**
+ * Compares the Patricia trie based {@link RoutingTree} with the previous TreeSet based tree on a synthetic IPv4 table.
+ *
+ * The prefix length distribution roughly follows a current full table, i.e. the majority of prefixes are /24 and most of them have no
+ * covering prefix. The legacy tree is quadratic on such a table, so keep the table size moderate when running it.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutingTreeBenchmark
+{
+
+  @Param({ "10000", "100000" })
+  private int tableSize;
+
+  private Route[] routes;
+  private NetworkLayerReachabilityInformation[] probes;
+  private RoutingTree tree;
+  private LegacyRoutingTree legacyTree;
+
+  /**
+   * build a synthetic IPv4 unicast table. Uses a fixed seed so runs are comparable.
+   */
+
+  static Route[] syntheticTable(final int size, final long seed)
+  {
+    final Random random = new Random(seed);
+    final Route[] routes = new Route[size];
+
+    for (int i = 0; i < size; i++)
+    {
+      final int roll = random.nextInt(100);
+      final int prefixLength = (roll < 60) ? 24 : (roll < 90) ? (random.nextInt(7) + 17) : (random.nextInt(9) + 8);
+      final byte[] prefix = new byte[NetworkLayerReachabilityInformation.calculateOctetsForPrefixLength(prefixLength)];
+
+      random.nextBytes(prefix);
+      prefix[0] = (byte) (random.nextInt(223) + 1);
+
+      routes[i] = new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, new NetworkLayerReachabilityInformation(prefixLength, prefix), null, null);
+    }
+
+    return routes;
+  }
+
+  @Setup(Level.Trial)
+  public void setupTable()
+  {
+    this.routes = syntheticTable(this.tableSize, 4271);
+    this.probes = new NetworkLayerReachabilityInformation[this.tableSize];
+
+    final Random random = new Random(4724);
+
+    for (int i = 0; i < this.probes.length; i++)
+    {
+      final byte[] host = new byte[4];
+
+      random.nextBytes(host);
+      this.probes[i] = new NetworkLayerReachabilityInformation(32, host);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setupTrees()
+  {
+    this.tree = new RoutingTree();
+    this.legacyTree = new LegacyRoutingTree();
+
+    for (final Route route : this.routes)
+    {
+      this.tree.addRoute(route);
+      this.legacyTree.addRoute(route);
+    }
+  }
+
+  @Benchmark
+  public RoutingTree insertFullTable()
+  {
+    final RoutingTree tree = new RoutingTree();
+
+    for (final Route route : this.routes)
+    {
+      tree.addRoute(route);
+    }
+
+    return tree;
+  }
+
+  @Benchmark
+  public LegacyRoutingTree insertFullTableLegacy()
+  {
+    final LegacyRoutingTree tree = new LegacyRoutingTree();
+
+    for (final Route route : this.routes)
+    {
+      tree.addRoute(route);
+    }
+
+    return tree;
+  }
+
+  @Benchmark
+  public void longestPrefixMatch(final Blackhole blackhole)
+  {
+    for (final NetworkLayerReachabilityInformation probe : this.probes)
+    {
+      blackhole.consume(this.tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, probe));
+    }
+  }
+
+  @Benchmark
+  public void longestPrefixMatchLegacy(final Blackhole blackhole)
+  {
+    for (final NetworkLayerReachabilityInformation probe : this.probes)
+    {
+      blackhole.consume(this.legacyTree.lookupRoute(probe));
+    }
+  }
+
+}
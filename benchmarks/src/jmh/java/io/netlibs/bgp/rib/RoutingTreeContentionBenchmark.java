@@ -0,0 +1,150 @@
+package io.netlibs.bgp.rib;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+
+/**
+ * Measures lookups in a {@link RoutingInformationBase} while a writer keeps ingesting and withdrawing a full table.
+ *
+ * Three reader threads look up random host addresses, one writer thread feeds the table in UPDATE sized batches. Once the whole table is
+ * in, the writer withdraws it batch by batch and starts over, so the readers always run against a table which is being rewritten. JMH
+ * reports the throughput of both sides of the group separately.
+ */
+
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutingTreeContentionBenchmark
+{
+
+  private static final int BATCH_SIZE = 20;
+  private static final int PROBES = 1 << 16;
+
+  @Param({ "500000" })
+  private int tableSize;
+
+  private final List<PathAttribute> attributes = Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100));
+  private final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+  private List<List<NetworkLayerReachabilityInformation>> batches;
+  private NetworkLayerReachabilityInformation[] probes;
+  private RoutingInformationBase rib;
+
+  // only touched by the writer thread
+  private int nextBatch;
+  private boolean withdrawing;
+
+  @Setup(Level.Trial)
+  public void setupTable()
+  {
+    final Set<NetworkLayerReachabilityInformation> prefixes = new LinkedHashSet<NetworkLayerReachabilityInformation>();
+    final Random random = new Random(4724);
+
+    for (final Route route : RoutingTreeBenchmark.syntheticTable(this.tableSize, 4271))
+    {
+      prefixes.add(route.getNlri());
+    }
+
+    this.batches = new ArrayList<List<NetworkLayerReachabilityInformation>>();
+
+    List<NetworkLayerReachabilityInformation> batch = null;
+
+    for (final NetworkLayerReachabilityInformation prefix : prefixes)
+    {
+      if ((batch == null) || (batch.size() == BATCH_SIZE))
+      {
+        batch = new ArrayList<NetworkLayerReachabilityInformation>(BATCH_SIZE);
+        this.batches.add(batch);
+      }
+
+      batch.add(prefix);
+    }
+
+    this.probes = new NetworkLayerReachabilityInformation[PROBES];
+
+    for (int i = 0; i < this.probes.length; i++)
+    {
+      final byte[] host = new byte[4];
+
+      random.nextBytes(host);
+      this.probes[i] = new NetworkLayerReachabilityInformation(32, host);
+    }
+
+    this.rib = new RoutingInformationBase();
+    this.rib.setPeerName("peer");
+    this.rib.setSide(RIBSide.Remote);
+    this.rib.setAddressFamilyKey(AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    // start with half of the table in place
+    for (this.nextBatch = 0; this.nextBatch < (this.batches.size() / 2); this.nextBatch++)
+    {
+      this.rib.addRoutes(this.batches.get(this.nextBatch), this.attributes, this.nextHop);
+    }
+  }
+
+  @Benchmark
+  @Group("ingest")
+  @GroupThreads(3)
+  public LookupResult lookupRoute()
+  {
+    return this.rib.lookupRoute(this.probes[ThreadLocalRandom.current().nextInt(PROBES)]);
+  }
+
+  @Benchmark
+  @Group("ingest")
+  @GroupThreads(1)
+  public void writeBatch()
+  {
+    final List<NetworkLayerReachabilityInformation> batch = this.batches.get(this.nextBatch);
+
+    if (this.withdrawing)
+    {
+      this.rib.withdrawRoutes(batch);
+    }
+    else
+    {
+      this.rib.addRoutes(batch, this.attributes, this.nextHop);
+    }
+
+    if (++this.nextBatch == this.batches.size())
+    {
+      this.nextBatch = 0;
+      this.withdrawing = !this.withdrawing;
+    }
+  }
+
+}
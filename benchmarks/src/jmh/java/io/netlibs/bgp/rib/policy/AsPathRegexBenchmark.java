@@ -0,0 +1,106 @@
+package io.netlibs.bgp.rib.policy;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+
+/**
+ * Compares matching AS paths with an {@link AsPathRegex} against matching their text form with java.util.regex, which is how AS path
+ * expressions are commonly evaluated. The paths have 2 to 8 hops, a quarter of them is originated by the AS the expression looks for.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AsPathRegexBenchmark
+{
+
+  private static final int PATH_COUNT = 1 << 12;
+
+  private int[][] paths;
+  private String[] texts;
+  private ASPathAttribute[] attributes;
+  private AsPathRegex regex;
+  private Pattern pattern;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setupPaths()
+  {
+    final Random random = new Random(4271);
+
+    this.paths = new int[PATH_COUNT][];
+    this.texts = new String[PATH_COUNT];
+    this.attributes = new ASPathAttribute[PATH_COUNT];
+
+    for (int i = 0; i < PATH_COUNT; i++)
+    {
+      final int[] path = new int[random.nextInt(7) + 2];
+      final StringBuilder text = new StringBuilder();
+
+      for (int hop = 0; hop < path.length; hop++)
+      {
+        path[hop] = random.nextInt(65000) + 1;
+        text.append((hop > 0) ? " " : "").append(path[hop]);
+      }
+
+      if ((i % 4) == 0)
+      {
+        path[path.length - 1] = 65000;
+        text.replace(text.lastIndexOf(" ") + 1, text.length(), "65000");
+      }
+
+      this.paths[i] = path;
+      this.texts[i] = text.toString();
+      this.attributes[i] = new ASPathAttribute(ASType.AS_NUMBER_4OCTETS,
+          new PathSegment[] { new PathSegment(ASType.AS_NUMBER_4OCTETS, PathSegmentType.AS_SEQUENCE, path) });
+    }
+
+    this.regex = AsPathRegex.compile("_65000$");
+    this.pattern = Pattern.compile("(^| )65000$");
+  }
+
+  private int nextIndex()
+  {
+    return this.next++ & (PATH_COUNT - 1);
+  }
+
+  @Benchmark
+  public boolean dfa()
+  {
+    return this.regex.matches(this.paths[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public boolean cachedPerAttribute()
+  {
+    return this.regex.matches(this.attributes[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public boolean javaRegex()
+  {
+    return this.pattern.matcher(this.texts[this.nextIndex()]).find();
+  }
+
+}
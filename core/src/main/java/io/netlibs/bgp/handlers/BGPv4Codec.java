@@ -19,7 +19,6 @@ package io.netlibs.bgp.handlers;
 import java.util.List;
 
 import io.netlibs.bgp.netty.codec.BGPv4PacketDecoder;
-import io.netlibs.bgp.netty.codec.BGPv4PacketEncoder;
 import io.netlibs.bgp.netty.protocol.BGPv4Packet;
 import io.netlibs.bgp.netty.protocol.ProtocolPacketException;
 import io.netty.buffer.ByteBuf;
@@ -100,20 +99,24 @@ public class BGPv4Codec extends ByteToMessageCodec<BGPv4Packet>
   }
 
   /**
-   * Upstream requested transmission of the given BGPv4 packet. Encode and transmit.
+   * Upstream requested transmission of the given BGPv4 packet. Encode and transmit. The packet is written straight into the buffer
+   * provided by the channel allocator.
    */
 
   @Override
   protected void encode(final ChannelHandlerContext ctx, final BGPv4Packet msg, final ByteBuf out) throws Exception
   {
+    final int start = out.writerIndex();
+
     try
     {
-      final ByteBuf buffer = msg.apply(new BGPv4PacketEncoder());
+      msg.encodePacket(out);
       log.debug("Sending: {}", msg);
-      out.writeBytes(buffer);
     }
     catch (Exception ex)
     {
+      // drop whatever has been written of the packet
+      out.writerIndex(start);
       log.warn("Error encoding packet: {}", msg, ex);
     }
   }
@@ -97,7 +97,9 @@ public class BGPv4Reframer extends ByteToMessageDecoder
       return;
     }
 
-    out.add(buffer.readBytes(mustRead));
+    // hand out a slice of the receive buffer instead of a copy. The slice is retained on behalf of the next handler, which releases it once
+    // the packet has been decoded.
+    out.add(buffer.readSlice(mustRead).retain());
 
   }
 
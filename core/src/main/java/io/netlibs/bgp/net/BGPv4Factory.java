@@ -11,7 +11,6 @@ import io.netlibs.bgp.netty.simple.BGPv4SessionFactory;
 import io.netlibs.bgp.netty.simple.BGPv4SessionListener;
 import io.netlibs.bgp.netty.simple.LocalConfig;
 import io.netlibs.bgp.protocol.BGPv4Constants;
-import io.netty.channel.nio.NioEventLoopGroup;
 
 /**
  * Primary API exposed to consumers who wish to use the BGPv4 library as a client or server.
@@ -38,7 +37,21 @@ import io.netty.channel.nio.NioEventLoopGroup;
 public class BGPv4Factory
 {
 
-  private NioEventLoopGroup workerGroup = new NioEventLoopGroup(1);
+  private final BGPv4Transport transport;
+
+  /**
+   * Creates a factory whose sessions run on the shared {@link BGPv4Transport#getDefault() default} transport.
+   */
+
+  public BGPv4Factory()
+  {
+    this(BGPv4Transport.getDefault());
+  }
+
+  public BGPv4Factory(BGPv4Transport transport)
+  {
+    this.transport = transport;
+  }
 
   /**
    * Listen on the specified {@link InetSocketAddress}.
@@ -46,7 +59,7 @@ public class BGPv4Factory
 
   public BGPv4Server listen(InetSocketAddress listen, BGPv4SessionFactory factory)
   {
-    BGPv4Server server = new BGPv4Server(workerGroup, factory);
+    BGPv4Server server = new BGPv4Server(transport, factory);
     server.start(listen);
     return server;
   }
@@ -90,7 +103,7 @@ public class BGPv4Factory
 
     HostAndPort remoteTarget = HostAndPort.fromParts(target.getAddress().getHostAddress(), target.getPort()).withDefaultPort(BGPv4Constants.BGP_PORT);
 
-    BGPv4Client client = new BGPv4Client(workerGroup, remoteTarget, config);
+    BGPv4Client client = new BGPv4Client(transport, remoteTarget, config);
 
     client.setListener(listener);
     client.connect();
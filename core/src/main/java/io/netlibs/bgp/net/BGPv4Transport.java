@@ -0,0 +1,128 @@
+package io.netlibs.bgp.net;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The event loops and channel types the BGP sessions of a process run on.
+ *
+ * Uses the native epoll transport where it is available and NIO everywhere else. Listening sockets are served by a single boss loop,
+ * sessions by a worker group which by default has one loop per core. The worker group hands out its loops round robin as channels are
+ * registered, so sessions are spread evenly across them and all events of a session are handled by the same thread.
+ *
+ * Servers and clients which are not given a transport share the {@link #getDefault() default} one.
+ */
+
+@Slf4j
+public class BGPv4Transport
+{
+
+  private static final class DefaultHolder
+  {
+    private static final BGPv4Transport INSTANCE = create();
+  }
+
+  private final EventLoopGroup bossGroup;
+  private final EventLoopGroup workerGroup;
+  private final Class<? extends SocketChannel> channelClass;
+  private final Class<? extends ServerSocketChannel> serverChannelClass;
+
+  private BGPv4Transport(final EventLoopGroup bossGroup, final EventLoopGroup workerGroup, final Class<? extends SocketChannel> channelClass,
+      final Class<? extends ServerSocketChannel> serverChannelClass)
+  {
+    this.bossGroup = bossGroup;
+    this.workerGroup = workerGroup;
+    this.channelClass = channelClass;
+    this.serverChannelClass = serverChannelClass;
+  }
+
+  /**
+   * @return the transport shared by all servers and clients which are not given one
+   */
+
+  public static BGPv4Transport getDefault()
+  {
+    return DefaultHolder.INSTANCE;
+  }
+
+  /**
+   * create a transport with one worker loop per available core.
+   */
+
+  public static BGPv4Transport create()
+  {
+    return create(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * create a transport with the given number of worker loops.
+   */
+
+  public static BGPv4Transport create(final int workerThreads)
+  {
+    if (Epoll.isAvailable())
+    {
+      log.debug("using native epoll transport with {} worker threads", workerThreads);
+      return new BGPv4Transport(new EpollEventLoopGroup(1), new EpollEventLoopGroup(workerThreads), EpollSocketChannel.class,
+          EpollServerSocketChannel.class);
+    }
+
+    log.debug("using NIO transport with {} worker threads", workerThreads);
+    return new BGPv4Transport(new NioEventLoopGroup(1), new NioEventLoopGroup(workerThreads), NioSocketChannel.class, NioServerSocketChannel.class);
+  }
+
+  /**
+   * @return a bootstrap for an outbound session
+   */
+
+  public Bootstrap bootstrap()
+  {
+    return new Bootstrap().group(this.workerGroup).channel(this.channelClass);
+  }
+
+  /**
+   * @return a bootstrap for a listening socket, the accepted sessions run on the worker loops
+   */
+
+  public ServerBootstrap serverBootstrap()
+  {
+    return new ServerBootstrap().group(this.bossGroup, this.workerGroup).channel(this.serverChannelClass);
+  }
+
+  public EventLoopGroup getWorkerGroup()
+  {
+    return this.workerGroup;
+  }
+
+  /**
+   * @return <code>true</code> if the native epoll transport is used
+   */
+
+  public boolean isNative()
+  {
+    return this.channelClass == EpollSocketChannel.class;
+  }
+
+  /**
+   * shut down the event loops, which closes all sessions still running on them.
+   */
+
+  public Future<?> shutdownGracefully()
+  {
+    this.bossGroup.shutdownGracefully();
+    return this.workerGroup.shutdownGracefully();
+  }
+
+}
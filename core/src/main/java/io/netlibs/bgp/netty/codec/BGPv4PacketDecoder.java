@@ -21,6 +21,19 @@ public class BGPv4PacketDecoder
   static final KeepalivePacketDecoder keepalivePacketDecoder = new KeepalivePacketDecoder();
 
   private static final BGPv4PacketDecoder INSTANCE = new BGPv4PacketDecoder();
+  private static final BGPv4PacketDecoder LAZY_INSTANCE = new BGPv4PacketDecoder(new UpdatePacketDecoder(true));
+
+  private final UpdatePacketDecoder updateDecoder;
+
+  public BGPv4PacketDecoder()
+  {
+    this(updatePacketDecoder);
+  }
+
+  public BGPv4PacketDecoder(final UpdatePacketDecoder updateDecoder)
+  {
+    this.updateDecoder = updateDecoder;
+  }
 
   public BGPv4Packet decodePacket(final ByteBuf buffer)
   {
@@ -37,7 +50,7 @@ public class BGPv4PacketDecoder
         break;
 
       case BGPv4Constants.BGP_PACKET_TYPE_UPDATE:
-        packet = updatePacketDecoder.decodeUpdatePacket(buffer);
+        packet = this.updateDecoder.decodeUpdatePacket(buffer);
         break;
 
       case BGPv4Constants.BGP_PACKET_TYPE_NOTIFICATION:
@@ -66,4 +79,13 @@ public class BGPv4PacketDecoder
     return INSTANCE;
   }
 
+  /**
+   * @return a decoder which keeps the optional path attributes of UPDATE packets encoded until they are accessed
+   */
+
+  public static BGPv4PacketDecoder getLazyInstance()
+  {
+    return LAZY_INSTANCE;
+  }
+
 }
@@ -20,6 +20,8 @@ package io.netlibs.bgp.netty.codec;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -31,6 +33,7 @@ import io.netlibs.bgp.netty.protocol.update.AttributeException;
 import io.netlibs.bgp.netty.protocol.update.AttributeFlagsNotificationPacket;
 import io.netlibs.bgp.netty.protocol.update.AttributeLengthException;
 import io.netlibs.bgp.netty.protocol.update.AttributeLengthNotificationPacket;
+import io.netlibs.bgp.netty.protocol.update.EncodedPathAttributes;
 import io.netlibs.bgp.netty.protocol.update.InvalidNetworkFieldException;
 import io.netlibs.bgp.netty.protocol.update.InvalidNetworkFieldNotificationPacket;
 import io.netlibs.bgp.netty.protocol.update.InvalidNextHopException;
@@ -57,6 +60,7 @@ import io.netlibs.bgp.protocol.NLRICodec;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
 import io.netlibs.bgp.protocol.NonTransitiveExtendedCommunityType;
 import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
 import io.netlibs.bgp.protocol.SubsequentAddressFamily;
 import io.netlibs.bgp.protocol.TransitiveExtendedCommunityType;
 import io.netlibs.bgp.protocol.TransitiveIPv4AddressSpecificExtCommSubTypes;
@@ -95,9 +99,30 @@ import io.netty.buffer.Unpooled;
 public class UpdatePacketDecoder
 {
 
+  private final boolean lazyPathAttributes;
+
+  public UpdatePacketDecoder()
+  {
+    this(false);
+  }
+
+  /**
+   * @param lazyPathAttributes
+   *          if <code>true</code> only the attributes which carry the routes of the packet (AS_PATH, AS4_PATH, NEXT_HOP, MP_REACH_NLRI and
+   *          MP_UNREACH_NLRI) are decoded right away. The lengths of all other attributes are verified but they are only decoded on
+   *          access, see {@link EncodedPathAttributes}.
+   */
+  public UpdatePacketDecoder(final boolean lazyPathAttributes)
+  {
+    this.lazyPathAttributes = lazyPathAttributes;
+  }
+
   /**
    * decode the UPDATE network packet. The passed channel buffer MUST point to the first packet octet AFTER the type octet.
    *
+   * The withdrawn routes, path attributes and attribute values are decoded from slices of the passed buffer, so no part of the packet is
+   * copied. The decoded packet does not keep references into the buffer.
+   *
    * @param buffer
    *          the buffer containing the data.
    * @return
@@ -128,9 +153,7 @@ public class UpdatePacketDecoder
 
     if (withdrawnOctets > 0)
     {
-      withdrawnBuffer = Unpooled.buffer(withdrawnOctets);
-
-      buffer.readBytes(withdrawnBuffer);
+      withdrawnBuffer = buffer.readSlice(withdrawnOctets);
     }
 
     // sanity checking
@@ -152,9 +175,7 @@ public class UpdatePacketDecoder
 
     if (pathAttributeOctets > 0)
     {
-      pathAttributesBuffer = Unpooled.buffer(pathAttributeOctets);
-
-      buffer.readBytes(pathAttributesBuffer);
+      pathAttributesBuffer = buffer.readSlice(pathAttributeOctets);
     }
 
     if (withdrawnBuffer != null)
@@ -173,8 +194,20 @@ public class UpdatePacketDecoder
     {
       try
       {
-        List<PathAttribute> attrs = this.decodePathAttributes(pathAttributesBuffer);
-        packet.getPathAttributes().addAll(attrs);
+        if (this.lazyPathAttributes)
+        {
+          final EncodedPathAttributes encoded = this.scanPathAttributes(pathAttributesBuffer, packet.getPathAttributes());
+
+          if (encoded.size() > 0)
+          {
+            packet.setEncodedPathAttributes(encoded);
+          }
+        }
+        else
+        {
+          List<PathAttribute> attrs = this.decodePathAttributes(pathAttributesBuffer);
+          packet.getPathAttributes().addAll(attrs);
+        }
       }
       catch (AttributeLengthException ex)
       {
@@ -266,9 +299,14 @@ public class UpdatePacketDecoder
     return packet;
   }
 
+  /**
+   * decode the segments straight into packed arrays which the segments and the attribute take over without copying, the attribute
+   * interns the path
+   */
+
   private ASPathAttribute decodeASPathAttribute(final ByteBuf buffer, final ASType asType)
   {
-    final ASPathAttribute attr = new ASPathAttribute(asType);
+    final List<PathSegment> segments = new ArrayList<PathSegment>(2);
 
     while (buffer.isReadable())
     {
@@ -286,33 +324,28 @@ public class UpdatePacketDecoder
         throw new MalformedASPathAttributeException();
       }
 
-      final PathSegment segment = new PathSegment(asType);
+      final PathSegmentType type;
 
       try
       {
-        segment.setPathSegmentType(PathSegmentTypeCodec.fromCode(segmentType));
+        type = PathSegmentTypeCodec.fromCode(segmentType);
       }
       catch (final IllegalArgumentException e)
       {
         throw new MalformedASPathAttributeException();
       }
 
+      final int[] ases = new int[pathLength];
+
       for (int i = 0; i < pathLength; i++)
       {
-        if (asType == ASType.AS_NUMBER_4OCTETS)
-        {
-          segment.getAses().add((int) buffer.readUnsignedInt());
-        }
-        else
-        {
-          segment.getAses().add(buffer.readUnsignedShort());
-        }
+        ases[i] = (asType == ASType.AS_NUMBER_4OCTETS) ? buffer.readInt() : buffer.readUnsignedShort();
       }
 
-      attr.getPathSegments().add(segment);
+      segments.add(PathSegment.wrap(asType, type, ases));
     }
 
-    return attr;
+    return ASPathAttribute.wrap(asType, segments.toArray(new PathSegment[segments.size()]));
   }
 
   private OriginPathAttribute decodeOriginPathAttribute(final ByteBuf buffer)
@@ -490,7 +523,7 @@ public class UpdatePacketDecoder
                 break;
               default:
                 // all non-RT types are currently unimplemented
-                extcomm = new UnknownTransitiveTwoByteASNSpecificExtendedCommunity(transCommType, twoOctASNLowerType, buffer.readBytes(6).array());
+                extcomm = new UnknownTransitiveTwoByteASNSpecificExtendedCommunity(transCommType, twoOctASNLowerType, readOctets(buffer, 6));
             }
             break;
             
@@ -501,24 +534,29 @@ public class UpdatePacketDecoder
             switch (ipv4LowerType)
             {
               case ROUTE_TARGET:
+                final byte[] value = readOctets(buffer, 6);
+
                 try
                 {
-                  extcomm = new TransitiveIPv4AddressTwoByteAdministratorRT((Inet4Address) InetAddresses.fromLittleEndianByteArray(buffer.readBytes(4).array()),
-                      (int) buffer.readShort());
+                  extcomm = new TransitiveIPv4AddressTwoByteAdministratorRT(
+                      (Inet4Address) InetAddresses.fromLittleEndianByteArray(Arrays.copyOfRange(value, 0, 4)),
+                      (int) (short) (((value[4] & 0xff) << 8) | (value[5] & 0xff)));
                 }
                 catch (UnknownHostException e)
                 {
-                  ByteBuf data = Unpooled.buffer();
-                  data.getByte(ipv4LowerType.toCode());
-                  data.readBytes(buffer.readBytes(6));
-                  extcomm = new UnknownTransitiveExtendedCommunity(transCommType, data.array());
+                  // keep the sub type and the six value octets as received
+                  final byte[] unknown = new byte[7];
+
+                  unknown[0] = ipv4LowerType.toCode();
+                  System.arraycopy(value, 0, unknown, 1, 6);
+                  extcomm = new UnknownTransitiveExtendedCommunity(transCommType, unknown);
                 }
                 break;
                 
               default:
                 
                 // all non-RT types are currently unimplemented
-                extcomm = new UnknownTransitiveIPv4AddressSpecificExtendedCommunity(transCommType, ipv4LowerType, buffer.readBytes(6).array());
+                extcomm = new UnknownTransitiveIPv4AddressSpecificExtendedCommunity(transCommType, ipv4LowerType, readOctets(buffer, 6));
                 break;
                 
             }
@@ -527,7 +565,7 @@ public class UpdatePacketDecoder
           default:
             // by default, just create an unknown type, reading the subsequent
             // 7 bytes (we have already read byte 1)
-            extcomm = new UnknownTransitiveExtendedCommunity(transCommType, buffer.readBytes(7).array());
+            extcomm = new UnknownTransitiveExtendedCommunity(transCommType, readOctets(buffer, 7));
         }
       }
       else
@@ -535,7 +573,7 @@ public class UpdatePacketDecoder
         // bit 7 is set, these are non-transitive
         NonTransitiveExtendedCommunityType nonTransCommType = NonTransitiveExtendedCommunityType.fromCode((byte) (higherType & (~(3 << 6))));
         // all non-transitive types are currently unimplemented
-        extcomm = new UnknownNonTransitiveExtendedCommunity(nonTransCommType, buffer.readBytes(7).array());
+        extcomm = new UnknownNonTransitiveExtendedCommunity(nonTransCommType, readOctets(buffer, 7));
       }
       attr.getMembers().add(extcomm);
     }
@@ -646,130 +684,304 @@ public class UpdatePacketDecoder
       {
 
         final int flagsType = buffer.readUnsignedShort();
+        final ByteBuf valueBuffer = buffer.readSlice(this.readValueLength(buffer, flagsType));
 
-        final boolean optional = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_OPTIONAL_BIT) != 0);
-        final boolean transitive = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_TRANSITIVE_BIT) != 0);
-        final boolean partial = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_PARTIAL_BIT) != 0);
-        final int typeCode = (flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK);
+        attributes.add(this.decodePathAttribute(flagsType, valueBuffer));
 
-        int valueLength = 0;
+      }
+      catch (final AttributeException ex)
+      {
+        ex.setOffendingAttribute(this.readOffendingAttribute(buffer));
 
-        if ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_EXTENDED_LENGTH_BIT) != 0)
-        {
-          valueLength = buffer.readUnsignedShort();
-        }
-        else
-        {
-          valueLength = buffer.readUnsignedByte();
-        }
+        throw ex;
+      }
+      catch (final IndexOutOfBoundsException ex)
+      {
+        // this is almost certinally an internal error with parsing ....
+        throw new AttributeLengthException(ex, this.readOffendingAttribute(buffer));
+      }
 
-        // final ByteBuf valueBuffer = Unpooled.buffer(valueLength);
-        // buffer.readBytes(valueBuffer);
-        
-        final ByteBuf valueBuffer = buffer.readBytes(valueLength);
+    }
 
-        PathAttribute attr = null;
+    return attributes;
+  }
+
+  /**
+   * frame the path attributes, decode the ones which carry the routes into the given list and keep all others encoded. The lengths of
+   * the attributes kept encoded are checked, their values are only checked when they are decoded.
+   */
+
+  private EncodedPathAttributes scanPathAttributes(final ByteBuf buffer, final List<PathAttribute> decoded)
+  {
+    final ByteBuf block = Unpooled.buffer(buffer.readableBytes());
+
+    int size = 0;
+    int[] flagsTypes = new int[8];
+    int[] valueOffsets = new int[8];
+    int[] valueLengths = new int[8];
+
+    while (buffer.isReadable())
+    {
+
+      buffer.markReaderIndex();
+
+      try
+      {
+
+        final int start = buffer.readerIndex();
+        final int flagsType = buffer.readUnsignedShort();
+        final int valueLength = this.readValueLength(buffer, flagsType);
+        final int headerLength = buffer.readerIndex() - start;
+        final ByteBuf valueBuffer = buffer.readSlice(valueLength);
+        final int typeCode = (flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK);
 
         switch (typeCode)
         {
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AGGREGATOR:
-            attr = this.decodeAggregatorPathAttribute(valueBuffer, ASType.AS_NUMBER_2OCTETS);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_AGGREGATOR:
-            attr = this.decodeAggregatorPathAttribute(valueBuffer, ASType.AS_NUMBER_4OCTETS);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_PATH:
-            attr = this.decodeASPathAttribute(valueBuffer, ASType.AS_NUMBER_4OCTETS);
-            break;
           case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS_PATH:
-            attr = this.decodeASPathAttribute(valueBuffer, ASType.AS_NUMBER_2OCTETS);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ATOMIC_AGGREGATE:
-            attr = this.decodeAtomicAggregatePathAttribute(valueBuffer);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_COMMUNITIES:
-            attr = this.decodeCommunityPathAttribute(valueBuffer);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_LOCAL_PREF:
-            attr = this.decodeLocalPrefPathAttribute(valueBuffer);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MULTI_EXIT_DISC:
-            attr = this.decodeMultiExitDiscPathAttribute(valueBuffer);
-            break;
+          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_PATH:
           case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_NEXT_HOP:
-            attr = this.decodeNextHopPathAttribute(valueBuffer);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGIN:
-            attr = this.decodeOriginPathAttribute(valueBuffer);
-            break;
           case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_REACH_NLRI:
-            attr = this.decodeMpReachNlriPathAttribute(valueBuffer);
-            break;
           case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_UNREACH_NLRI:
-            attr = this.decodeMpUnreachNlriPathAttribute(valueBuffer);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGINATOR_ID:
-            attr = this.decodeOriginatorIDPathAttribute(valueBuffer);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_CLUSTER_LIST:
-            attr = this.decodeClusterListPathAttribute(valueBuffer);
-            break;
-          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_EXTENDED_COMMUNITIES:
-            attr = this.decodeExtendedCommunityPathAttribute(valueBuffer);
+            decoded.add(this.decodePathAttribute(flagsType, valueBuffer));
             break;
           default:
-          {
-            final byte[] value = new byte[valueBuffer.readableBytes()];
+            this.verifyValueLength(typeCode, valueLength);
 
-            valueBuffer.readBytes(value);
-            attr = new UnknownPathAttribute(typeCode, value);
-          }
+            if (size == flagsTypes.length)
+            {
+              flagsTypes = Arrays.copyOf(flagsTypes, size * 2);
+              valueOffsets = Arrays.copyOf(valueOffsets, size * 2);
+              valueLengths = Arrays.copyOf(valueLengths, size * 2);
+            }
+
+            flagsTypes[size] = flagsType;
+            valueOffsets[size] = block.writerIndex() + headerLength;
+            valueLengths[size] = valueLength;
+            size++;
+
+            block.writeBytes(buffer, start, headerLength + valueLength);
             break;
         }
-        attr.setOptional(optional);
-        attr.setTransitive(transitive);
-        attr.setPartial(partial);
-
-        attributes.add(attr);
 
       }
       catch (final AttributeException ex)
       {
+        ex.setOffendingAttribute(this.readOffendingAttribute(buffer));
 
-        final int endReadIndex = buffer.readerIndex();
+        throw ex;
+      }
+      catch (final IndexOutOfBoundsException ex)
+      {
+        throw new AttributeLengthException(ex, this.readOffendingAttribute(buffer));
+      }
 
-        buffer.resetReaderIndex();
+    }
 
-        final int attributeLength = endReadIndex - buffer.readerIndex();
-        final byte[] packet = new byte[attributeLength];
+    return new EncodedPathAttributes(readOctets(block, block.readableBytes()), size, flagsTypes, valueOffsets, valueLengths,
+        this::decodePathAttribute);
+  }
 
-        buffer.readBytes(packet);
-        ex.setOffendingAttribute(packet);
+  /**
+   * the value length checks the attribute decoders would apply, for attributes which are decoded on access only
+   */
 
-        throw ex;
+  private void verifyValueLength(final int typeCode, final int valueLength)
+  {
+    switch (typeCode)
+    {
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGIN:
+        if (valueLength != 1)
+        {
+          throw new AttributeLengthException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MULTI_EXIT_DISC:
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_LOCAL_PREF:
+        if (valueLength != 4)
+        {
+          throw new AttributeLengthException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ATOMIC_AGGREGATE:
+        if (valueLength != 0)
+        {
+          throw new AttributeLengthException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AGGREGATOR:
+        if (valueLength != 6)
+        {
+          throw new AttributeLengthException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_AGGREGATOR:
+        if (valueLength != 8)
+        {
+          throw new AttributeLengthException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_COMMUNITIES:
+        if ((valueLength < 4) || ((valueLength % 4) != 0))
+        {
+          throw new OptionalAttributeErrorException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_EXTENDED_COMMUNITIES:
+        if ((valueLength < 8) || ((valueLength % 8) != 0))
+        {
+          throw new OptionalAttributeErrorException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGINATOR_ID:
+        if (valueLength < 4)
+        {
+          throw new OptionalAttributeErrorException();
+        }
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_CLUSTER_LIST:
+        if ((valueLength % 4) != 0)
+        {
+          throw new OptionalAttributeErrorException();
+        }
+        break;
+      default:
+        break;
+    }
+  }
 
-      }
-      catch (final IndexOutOfBoundsException ex)
-      {
+  private int readValueLength(final ByteBuf buffer, final int flagsType)
+  {
+    if ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_EXTENDED_LENGTH_BIT) != 0)
+    {
+      return buffer.readUnsignedShort();
+    }
 
-        // this is almost certinally an internal error with parsing ....
-        
-        final int endReadIndex = buffer.readerIndex();
+    return buffer.readUnsignedByte();
+  }
+
+  /**
+   * copy the attribute which has been read since the reader index was marked
+   */
+
+  private byte[] readOffendingAttribute(final ByteBuf buffer)
+  {
+    final int endReadIndex = buffer.readerIndex();
 
-        buffer.resetReaderIndex();
+    buffer.resetReaderIndex();
 
-        final int attributeLength = endReadIndex - buffer.readerIndex();
-        final byte[] packet = new byte[attributeLength];
+    return readOctets(buffer, endReadIndex - buffer.readerIndex());
+  }
 
-        buffer.readBytes(packet);
+  /**
+   * decode a single path attribute
+   *
+   * @param flagsType
+   *          the attribute flags and type code
+   * @param valueBuffer
+   *          the attribute value
+   */
 
-        throw new AttributeLengthException(ex, packet);
+  private PathAttribute decodePathAttribute(final int flagsType, final ByteBuf valueBuffer)
+  {
+    return this.decodePathAttribute(flagsType, valueBuffer, ASType.AS_NUMBER_2OCTETS);
+  }
 
-      }
+  /**
+   * decode a single path attribute which has not been received in an UPDATE packet, e.g. one read from a table dump.
+   *
+   * @param flagsType
+   *          the attribute flags and type code
+   * @param valueBuffer
+   *          the attribute value
+   * @param asPathType
+   *          the size of the AS numbers in the AS_PATH attribute
+   */
+
+  public PathAttribute decodePathAttribute(final int flagsType, final ByteBuf valueBuffer, final ASType asPathType)
+  {
+    final boolean optional = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_OPTIONAL_BIT) != 0);
+    final boolean transitive = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_TRANSITIVE_BIT) != 0);
+    final boolean partial = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_PARTIAL_BIT) != 0);
+    final int typeCode = (flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK);
 
+    PathAttribute attr = null;
+
+    switch (typeCode)
+    {
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AGGREGATOR:
+        attr = this.decodeAggregatorPathAttribute(valueBuffer, ASType.AS_NUMBER_2OCTETS);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_AGGREGATOR:
+        attr = this.decodeAggregatorPathAttribute(valueBuffer, ASType.AS_NUMBER_4OCTETS);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_PATH:
+        attr = this.decodeASPathAttribute(valueBuffer, ASType.AS_NUMBER_4OCTETS);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS_PATH:
+        attr = this.decodeASPathAttribute(valueBuffer, asPathType);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ATOMIC_AGGREGATE:
+        attr = this.decodeAtomicAggregatePathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_COMMUNITIES:
+        attr = this.decodeCommunityPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_LOCAL_PREF:
+        attr = this.decodeLocalPrefPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MULTI_EXIT_DISC:
+        attr = this.decodeMultiExitDiscPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_NEXT_HOP:
+        attr = this.decodeNextHopPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGIN:
+        attr = this.decodeOriginPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_REACH_NLRI:
+        attr = this.decodeMpReachNlriPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_UNREACH_NLRI:
+        attr = this.decodeMpUnreachNlriPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGINATOR_ID:
+        attr = this.decodeOriginatorIDPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_CLUSTER_LIST:
+        attr = this.decodeClusterListPathAttribute(valueBuffer);
+        break;
+      case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_EXTENDED_COMMUNITIES:
+        attr = this.decodeExtendedCommunityPathAttribute(valueBuffer);
+        break;
+      default:
+      {
+        final byte[] value = new byte[valueBuffer.readableBytes()];
+
+        valueBuffer.readBytes(value);
+        attr = new UnknownPathAttribute(typeCode, value);
+      }
+        break;
     }
 
-    return attributes;
+    attr.setOptional(optional);
+    attr.setTransitive(transitive);
+    attr.setPartial(partial);
+
+    return attr;
+  }
+
+  /**
+   * read a number of octets into a new array. Unlike ByteBuf.readBytes(int).array() this neither allocates an intermediate buffer nor
+   * depends on the buffer being heap based.
+   */
+
+  private static byte[] readOctets(final ByteBuf buffer, final int length)
+  {
+    final byte[] octets = new byte[length];
+
+    buffer.readBytes(octets);
+
+    return octets;
   }
 
   private List<NetworkLayerReachabilityInformation> decodeWithdrawnRoutes(final ByteBuf buffer)
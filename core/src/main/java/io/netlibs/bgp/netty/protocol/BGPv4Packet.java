@@ -48,57 +48,69 @@ public abstract class BGPv4Packet
 
   public ByteBuf encodePacket()
   {
-    ByteBuf encodedPayload = this.encodePayload();
-    return this.wrapBufferHeader(this.encodePayload(), this.getType());
+    final ByteBuf buffer = Unpooled.buffer();
+
+    this.encodePacket(buffer);
+
+    return buffer;
   }
 
   /**
-   * encode the specific packet-type payload
+   * write the binary representation of the protocol packet into the given buffer. The header length field is filled in once the
+   * payload has been written.
    *
-   * @return the encoded packet payload
+   * @param buffer
+   *          the buffer to write to, usually obtained from the channel allocator
    */
-  protected abstract ByteBuf encodePayload();
+
+  public void encodePacket(final ByteBuf buffer)
+  {
+    final int start = buffer.writerIndex();
+
+    for (int i = 0; i < BGPv4Constants.BGP_PACKET_MARKER_LENGTH; i++)
+    {
+      buffer.writeByte(0xff);
+    }
+
+    buffer.writeShort(0);
+    buffer.writeByte(this.getType());
+
+    this.encodePayload(buffer);
+
+    buffer.setShort(start + BGPv4Constants.BGP_PACKET_MARKER_LENGTH, buffer.writerIndex() - start);
+  }
 
   /**
-   * obtain the BGP packet type code.
+   * encode the specific packet-type payload
    *
-   * @return
+   * @return the encoded packet payload
    */
-  public abstract int getType();
+  protected abstract ByteBuf encodePayload();
 
   /**
-   * wrap the BGP payload in a BGPv4 header field
+   * write the specific packet-type payload into the given buffer. Packet types which are sent in bulk override this to avoid the
+   * intermediate buffer.
    *
-   * @param wrapped
-   *          the packet payload
-   * @param type
-   *          the packet type code
-   * @return the completely assembled BGPv4 packet
+   * @param buffer
+   *          the buffer to write to
    */
-
-  private ByteBuf wrapBufferHeader(final ByteBuf wrapped, final int type)
+  protected void encodePayload(final ByteBuf buffer)
   {
-      
-    final int wrappedSize = (wrapped != null) ? wrapped.readableBytes() : 0;
-
-    final ByteBuf buffer = Unpooled.buffer(wrappedSize + BGPv4Constants.BGP_PACKET_HEADER_LENGTH);
-
-    for (int i = 0; i < BGPv4Constants.BGP_PACKET_MARKER_LENGTH; i++)
-    {
-      buffer.writeByte(0xff);
-    }
-    
-    buffer.writeShort(wrappedSize + BGPv4Constants.BGP_PACKET_HEADER_LENGTH);
-    buffer.writeByte(type);
+    final ByteBuf payload = this.encodePayload();
 
-    if (wrapped != null)
+    if (payload != null)
     {
-      buffer.writeBytes(wrapped);
+      buffer.writeBytes(payload);
     }
-
-    return buffer;
   }
 
+  /**
+   * obtain the BGP packet type code.
+   *
+   * @return
+   */
+  public abstract int getType();
+
   @Override
   public String toString()
   {
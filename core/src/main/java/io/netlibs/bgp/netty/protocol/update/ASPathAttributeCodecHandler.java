@@ -22,7 +22,6 @@ import io.netlibs.bgp.protocol.BGPv4Constants;
 import io.netlibs.bgp.protocol.PathSegment;
 import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -35,43 +34,25 @@ public class ASPathAttributeCodecHandler extends PathAttributeCodecHandler<ASPat
   {
     static int getValueLength(final PathSegment segment)
     {
-      int size = 2; // type + length field
-
-      if ((segment.getAses() != null) && (segment.getAses().size() > 0))
-      {
-        size += segment.getAses().size() * (segment.getAsType() == ASType.AS_NUMBER_4OCTETS ? 4 : 2);
-      }
-
-      return size;
+      return 2 + (segment.getLength() * (segment.getAsType() == ASType.AS_NUMBER_4OCTETS ? 4 : 2)); // type + length field
     }
 
-    static ByteBuf encodeValue(final PathSegment segment)
+    static void encodeValue(final PathSegment segment, final ByteBuf buffer)
     {
-      final ByteBuf buffer = Unpooled.buffer(getValueLength(segment));
-
       buffer.writeByte(PathSegmentTypeCodec.toCode(segment.getPathSegmentType()));
-      if ((segment.getAses() != null) && (segment.getAses().size() > 0))
-      {
-        buffer.writeByte(segment.getAses().size());
+      buffer.writeByte(segment.getLength());
 
-        for (final int as : segment.getAses())
+      for (int i = 0; i < segment.getLength(); i++)
+      {
+        if (segment.getAsType() == ASType.AS_NUMBER_4OCTETS)
         {
-          if (segment.getAsType() == ASType.AS_NUMBER_4OCTETS)
-          {
-            buffer.writeInt(as);
-          }
-          else
-          {
-            buffer.writeShort(as);
-          }
+          buffer.writeInt(segment.getAs(i));
+        }
+        else
+        {
+          buffer.writeShort(segment.getAs(i));
         }
-
-      }
-      else
-      {
-        buffer.writeByte(0);
       }
-      return buffer;
     }
 
   }
@@ -116,19 +97,15 @@ public class ASPathAttributeCodecHandler extends PathAttributeCodecHandler<ASPat
    * @see org.bgp4j.netty.protocol.update.PathAttributeCodecHandler#encodeValue(org.bgp4j.netty.protocol.update.PathAttribute)
    */
   @Override
-  public ByteBuf encodeValue(final ASPathAttribute attr)
+  public void encodeValue(final ASPathAttribute attr, final ByteBuf buffer)
   {
-    final ByteBuf buffer = Unpooled.buffer(this.valueLength(attr));
-
     if ((attr.getPathSegments() != null) && (attr.getPathSegments().size() > 0))
     {
       for (final PathSegment seg : attr.getPathSegments())
       {
-        buffer.writeBytes(PathSegmentCodec.encodeValue(seg));
+        PathSegmentCodec.encodeValue(seg, buffer);
       }
     }
-
-    return buffer;
   }
 
 }
@@ -57,9 +57,8 @@ PathAttributeCodecHandler<AtomicAggregatePathAttribute>
    * @see org.bgp4j.netty.protocol.update.PathAttributeCodecHandler#encodeValue(org.bgp4j.netty.protocol.update.PathAttribute)
    */
   @Override
-  public ByteBuf encodeValue(final AtomicAggregatePathAttribute attr)
+  public void encodeValue(final AtomicAggregatePathAttribute attr, final ByteBuf buffer)
   {
-    return null;
   }
 
 }
@@ -21,7 +21,6 @@ import io.netlibs.bgp.protocol.BGPv4Constants;
 import io.netlibs.bgp.protocol.attributes.CommunityMember;
 import io.netlibs.bgp.protocol.attributes.CommunityPathAttribute;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -66,10 +65,8 @@ PathAttributeCodecHandler<CommunityPathAttribute>
    * @see org.bgp4j.netty.protocol.update.PathAttributeCodecHandler#encodeValue(org.bgp4j.netty.protocol.update.PathAttribute)
    */
   @Override
-  public ByteBuf encodeValue(final CommunityPathAttribute attr)
+  public void encodeValue(final CommunityPathAttribute attr, final ByteBuf buffer)
   {
-    final ByteBuf buffer = Unpooled.buffer(this.valueLength(attr));
-
     if (attr.getMembers() != null)
     {
       for (final CommunityMember member : attr.getMembers())
@@ -78,8 +75,6 @@ PathAttributeCodecHandler<CommunityPathAttribute>
         buffer.writeShort(member.getValue());
       }
     }
-
-    return buffer;
   }
 
 }
@@ -0,0 +1,321 @@
+package io.netlibs.bgp.netty.protocol.update;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.netlibs.bgp.protocol.BGPv4Constants;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.AggregatorPathAttribute;
+import io.netlibs.bgp.protocol.attributes.AtomicAggregatePathAttribute;
+import io.netlibs.bgp.protocol.attributes.ClusterListPathAttribute;
+import io.netlibs.bgp.protocol.attributes.CommunityPathAttribute;
+import io.netlibs.bgp.protocol.attributes.ExtendedCommunityPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiExitDiscPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolUnreachableNLRI;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginatorIDPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.protocol.attributes.UnknownPathAttribute;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Path attributes which are kept in their encoded form next to the decoded ones.
+ *
+ * For a received UPDATE packet the block holds the attributes the decoder has not decoded yet. Their lengths have been verified when the
+ * packet was received, they are decoded by the {@link ValueDecoder} when looked up. An attribute which fails to decode at that time
+ * raises the {@link AttributeException} the decoder throws for it, RFC 7606 then requires the UPDATE to be treated as a withdraw.
+ *
+ * For outbound UPDATE packets {@link #encode(Collection)} builds the block once, so a set of attributes which is sent in many packets or
+ * to many peers is only encoded once and copied into each packet.
+ *
+ * Two instances are equal if their blocks are, so the attributes decoded from a block may be cached by it.
+ */
+
+public class EncodedPathAttributes
+{
+
+  /**
+   * decodes a single attribute value
+   */
+
+  @FunctionalInterface
+  public interface ValueDecoder
+  {
+    PathAttribute decodePathAttribute(int flagsType, ByteBuf value);
+  }
+
+  private static final Map<Integer, Class<? extends PathAttribute>> attributeClasses = new HashMap<Integer, Class<? extends PathAttribute>>();
+
+  static
+  {
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGIN, OriginPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS_PATH, ASPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_NEXT_HOP, NextHopPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MULTI_EXIT_DISC, MultiExitDiscPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_LOCAL_PREF, LocalPrefPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ATOMIC_AGGREGATE, AtomicAggregatePathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AGGREGATOR, AggregatorPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_COMMUNITIES, CommunityPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_ORIGINATOR_ID, OriginatorIDPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_CLUSTER_LIST, ClusterListPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_REACH_NLRI, MultiProtocolReachableNLRI.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_UNREACH_NLRI, MultiProtocolUnreachableNLRI.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_EXTENDED_COMMUNITIES, ExtendedCommunityPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_PATH, ASPathAttribute.class);
+    attributeClasses.put(BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_AS4_AGGREGATOR, AggregatorPathAttribute.class);
+  }
+
+  private final byte[] block;
+  private final int size;
+  private final int[] flagsTypes;
+  private final int[] valueOffsets;
+  private final int[] valueLengths;
+  // null for attributes which have not been decoded yet
+  private final PathAttribute[] attributes;
+  private final ValueDecoder decoder;
+  private final int hashCode;
+
+  /**
+   * @param block
+   *          the encoded attribute block
+   * @param size
+   *          the number of attributes in the block
+   * @param flagsTypes
+   *          the flags and type code of each attribute
+   * @param valueOffsets
+   *          the offset of each attribute value within the block
+   * @param valueLengths
+   *          the length of each attribute value
+   * @param decoder
+   *          the decoder for the attributes
+   */
+  public EncodedPathAttributes(final byte[] block, final int size, final int[] flagsTypes, final int[] valueOffsets, final int[] valueLengths,
+      final ValueDecoder decoder)
+  {
+    this(block, size, flagsTypes, valueOffsets, valueLengths, new PathAttribute[size], decoder);
+  }
+
+  private EncodedPathAttributes(final byte[] block, final int size, final int[] flagsTypes, final int[] valueOffsets, final int[] valueLengths,
+      final PathAttribute[] attributes, final ValueDecoder decoder)
+  {
+    this.block = block;
+    this.size = size;
+    this.flagsTypes = flagsTypes;
+    this.valueOffsets = valueOffsets;
+    this.valueLengths = valueLengths;
+    this.attributes = attributes;
+    this.decoder = decoder;
+    this.hashCode = Arrays.hashCode(block);
+  }
+
+  /**
+   * encode the given path attributes into a block which can be copied into UPDATE packets as is.
+   *
+   * @param pathAttributes
+   *          the attributes, in the order in which they are to be sent
+   */
+
+  public static EncodedPathAttributes encode(final Collection<? extends PathAttribute> pathAttributes)
+  {
+    final int size = pathAttributes.size();
+    final int[] flagsTypes = new int[size];
+    final int[] valueOffsets = new int[size];
+    final int[] valueLengths = new int[size];
+    final PathAttribute[] attributes = pathAttributes.toArray(new PathAttribute[size]);
+    final ByteBuf buffer = Unpooled.buffer();
+
+    for (int i = 0; i < size; i++)
+    {
+      final int start = buffer.writerIndex();
+
+      PathAttributeCodec.encodePathAttribute(attributes[i], buffer);
+
+      flagsTypes[i] = buffer.getUnsignedShort(start);
+      valueOffsets[i] = start + (((flagsTypes[i] & BGPv4Constants.BGP_PATH_ATTRIBUTE_EXTENDED_LENGTH_BIT) != 0) ? 4 : 3);
+      valueLengths[i] = buffer.writerIndex() - valueOffsets[i];
+    }
+
+    final byte[] block = new byte[buffer.readableBytes()];
+
+    buffer.readBytes(block);
+
+    return new EncodedPathAttributes(block, size, flagsTypes, valueOffsets, valueLengths, attributes, null);
+  }
+
+  /**
+   * @return the length of the encoded attribute block in octets
+   */
+  public int getLength()
+  {
+    return this.block.length;
+  }
+
+  /**
+   * copy the encoded attribute block into the given buffer
+   */
+  public void writeTo(final ByteBuf buffer)
+  {
+    buffer.writeBytes(this.block);
+  }
+
+  /**
+   * @return the number of attributes
+   */
+  public int size()
+  {
+    return this.size;
+  }
+
+  /**
+   * get the attribute at the given index, decoding it on first access.
+   *
+   * @throws AttributeException
+   *           if the attribute is malformed
+   */
+  private synchronized PathAttribute attribute(final int index)
+  {
+    PathAttribute attr = this.attributes[index];
+
+    if (attr == null)
+    {
+      try
+      {
+        attr = this.decoder.decodePathAttribute(this.flagsTypes[index],
+            Unpooled.wrappedBuffer(this.block, this.valueOffsets[index], this.valueLengths[index]));
+      }
+      catch (final AttributeException ex)
+      {
+        ex.setOffendingAttribute(this.offendingAttribute(index));
+
+        throw ex;
+      }
+      catch (final IndexOutOfBoundsException ex)
+      {
+        throw new AttributeLengthException(ex, this.offendingAttribute(index));
+      }
+
+      this.attributes[index] = attr;
+    }
+
+    return attr;
+  }
+
+  /**
+   * copy the attribute at the given index, header included
+   */
+  private byte[] offendingAttribute(final int index)
+  {
+    final int header = ((this.flagsTypes[index] & BGPv4Constants.BGP_PATH_ATTRIBUTE_EXTENDED_LENGTH_BIT) != 0) ? 4 : 3;
+
+    return Arrays.copyOfRange(this.block, this.valueOffsets[index] - header, this.valueOffsets[index] + this.valueLengths[index]);
+  }
+
+  /**
+   * look up the attributes of the given class, only decoding attributes with a matching type code.
+   *
+   * @throws AttributeException
+   *           if one of these attributes is malformed
+   */
+
+  @SuppressWarnings("unchecked")
+  public <T extends PathAttribute> List<T> lookup(final Class<T> paClass)
+  {
+    final List<T> result = new ArrayList<T>();
+
+    for (int i = 0; i < this.size; i++)
+    {
+      if (attributeClass(this.flagsTypes[i] & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK).equals(paClass))
+      {
+        final PathAttribute attr = this.attribute(i);
+
+        if (attr.getClass().equals(paClass))
+        {
+          result.add((T) attr);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * decode all attributes which have not been decoded yet.
+   *
+   * @return the attributes in the order they have been encoded
+   * @throws AttributeException
+   *           if an attribute is malformed
+   */
+
+  public List<PathAttribute> decodeAll()
+  {
+    final List<PathAttribute> result = new ArrayList<PathAttribute>(this.size);
+
+    for (int i = 0; i < this.size; i++)
+    {
+      result.add(this.attribute(i));
+    }
+
+    return result;
+  }
+
+  /**
+   * @return the class an attribute with the given type code is decoded to
+   */
+
+  public static Class<? extends PathAttribute> attributeClass(final int typeCode)
+  {
+    final Class<? extends PathAttribute> clazz = attributeClasses.get(typeCode);
+
+    return (clazz != null) ? clazz : UnknownPathAttribute.class;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return this.hashCode;
+  }
+
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (obj == this)
+    {
+      return true;
+    }
+    else if (!(obj instanceof EncodedPathAttributes))
+    {
+      return false;
+    }
+
+    final EncodedPathAttributes o = (EncodedPathAttributes) obj;
+
+    return (this.hashCode == o.hashCode) && Arrays.equals(this.block, o.block);
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    final StringBuilder builder = new StringBuilder("EncodedPathAttributes(");
+
+    for (int i = 0; i < this.size; i++)
+    {
+      if (i > 0)
+      {
+        builder.append(", ");
+      }
+      builder.append((this.attributes[i] != null) ? String.valueOf(this.attributes[i])
+          : ("type " + (this.flagsTypes[i] & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK)));
+    }
+
+    return builder.append(')').toString();
+  }
+
+}
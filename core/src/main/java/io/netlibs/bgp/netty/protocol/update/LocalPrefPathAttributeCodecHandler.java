@@ -20,7 +20,6 @@ package io.netlibs.bgp.netty.protocol.update;
 import io.netlibs.bgp.protocol.BGPv4Constants;
 import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -58,13 +57,9 @@ PathAttributeCodecHandler<LocalPrefPathAttribute>
    * @see org.bgp4j.netty.protocol.update.PathAttributeCodecHandler#encodeValue(org.bgp4j.netty.protocol.update.PathAttribute)
    */
   @Override
-  public ByteBuf encodeValue(final LocalPrefPathAttribute attr)
+  public void encodeValue(final LocalPrefPathAttribute attr, final ByteBuf buffer)
   {
-    final ByteBuf buffer = Unpooled.buffer(4);
-
     buffer.writeInt(attr.getLocalPreference());
-
-    return buffer;
   }
 
 }
@@ -22,7 +22,6 @@ import io.netlibs.bgp.protocol.NLRICodec;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
 import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -53,7 +52,7 @@ public class MultiProtocolReachableNLRICodecHandler extends PathAttributeCodecHa
       for (final NetworkLayerReachabilityInformation nlri : attr.getNlris())
       {
 
-        if ((nlri.getPrefix() != null) && (nlri.getPrefixLength() == nlri.getPrefix().length))
+        if (!nlri.isPacked() && (nlri.getPrefixLength() == nlri.getPrefix().length))
         {
           size += nlri.getPrefixLength();
         }
@@ -70,11 +69,9 @@ public class MultiProtocolReachableNLRICodecHandler extends PathAttributeCodecHa
   }
 
   @Override
-  public ByteBuf encodeValue(final MultiProtocolReachableNLRI attr)
+  public void encodeValue(final MultiProtocolReachableNLRI attr, final ByteBuf buffer)
   {
 
-    final ByteBuf buffer = Unpooled.buffer(this.valueLength(attr));
-
     buffer.writeShort(attr.getAddressFamily().toCode());
     buffer.writeByte(attr.getSubsequentAddressFamily().toCode());
     
@@ -95,18 +92,17 @@ public class MultiProtocolReachableNLRICodecHandler extends PathAttributeCodecHa
     {
       for (final NetworkLayerReachabilityInformation nlri : attr.getNlris())
       {
-        if ((nlri.getPrefix() != null) && (nlri.getPrefixLength() == nlri.getPrefix().length))
+        if (!nlri.isPacked() && (nlri.getPrefixLength() == nlri.getPrefix().length))
         {
           buffer.writeByte(nlri.getPrefixLength());
           buffer.writeBytes(nlri.getPrefix());
         }
         else
         {
-          buffer.writeBytes(NLRICodec.encodeNLRI(nlri));
+          NLRICodec.encodeNLRI(nlri, buffer);
         }
       }
     }
-    return buffer;
   }
 
 }
@@ -22,7 +22,6 @@ import io.netlibs.bgp.protocol.NLRICodec;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
 import io.netlibs.bgp.protocol.attributes.MultiProtocolUnreachableNLRI;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -70,10 +69,8 @@ PathAttributeCodecHandler<MultiProtocolUnreachableNLRI>
    * @see org.bgp4j.netty.protocol.update.PathAttributeCodecHandler#encodeValue(org.bgp4j.netty.protocol.update.PathAttribute)
    */
   @Override
-  public ByteBuf encodeValue(final MultiProtocolUnreachableNLRI attr)
+  public void encodeValue(final MultiProtocolUnreachableNLRI attr, final ByteBuf buffer)
   {
-    final ByteBuf buffer = Unpooled.buffer(this.valueLength(attr));
-
     buffer.writeShort(attr.getAddressFamily().toCode());
     buffer.writeByte(attr.getSubsequentAddressFamily().toCode());
 
@@ -81,11 +78,9 @@ PathAttributeCodecHandler<MultiProtocolUnreachableNLRI>
     {
       for (final NetworkLayerReachabilityInformation nlri : attr.getNlris())
       {
-        buffer.writeBytes(NLRICodec.encodeNLRI(nlri));
+        NLRICodec.encodeNLRI(nlri, buffer);
       }
     }
-
-    return buffer;
   }
 
 }
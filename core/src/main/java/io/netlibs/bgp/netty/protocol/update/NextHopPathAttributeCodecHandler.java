@@ -20,7 +20,6 @@ package io.netlibs.bgp.netty.protocol.update;
 import io.netlibs.bgp.protocol.BGPv4Constants;
 import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -58,11 +57,9 @@ public class NextHopPathAttributeCodecHandler extends PathAttributeCodecHandler<
    */
 
   @Override
-  public ByteBuf encodeValue(final NextHopPathAttribute attr)
+  public void encodeValue(final NextHopPathAttribute attr, final ByteBuf buffer)
   {
-    final ByteBuf buffer = Unpooled.buffer(4);
     buffer.writeBytes(attr.getNextHop().getAddress().getAddress());
-    return buffer;
   }
 
 }
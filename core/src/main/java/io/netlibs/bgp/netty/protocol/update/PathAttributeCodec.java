@@ -75,8 +75,20 @@ public class PathAttributeCodec
    */
   public static ByteBuf encodePathAttribute(final PathAttribute attr)
   {
-    final ByteBuf buffer = Unpooled.buffer(BGPv4Constants.BGP_PACKET_MAX_LENGTH);
-    final int valueLength = valueLength(attr);
+    final ByteBuf buffer = Unpooled.buffer(calculateEncodedPathAttributeLength(attr));
+
+    encodePathAttribute(attr, buffer);
+
+    return buffer;
+  }
+
+  /**
+   * write the path attribute for network transmission into the given buffer
+   */
+  public static void encodePathAttribute(final PathAttribute attr, final ByteBuf buffer)
+  {
+    final PathAttributeCodecHandler<PathAttribute> handler = handler(attr);
+    final int valueLength = handler.valueLength(attr);
     int attrFlagsCode = 0;
 
     if (attr.isOptional())
@@ -99,7 +111,7 @@ public class PathAttributeCodec
       attrFlagsCode |= BGPv4Constants.BGP_PATH_ATTRIBUTE_EXTENDED_LENGTH_BIT;
     }
 
-    attrFlagsCode |= (typeCode(attr) & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK);
+    attrFlagsCode |= (handler.typeCode(attr) & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK);
 
     buffer.writeShort(attrFlagsCode);
 
@@ -114,10 +126,8 @@ public class PathAttributeCodec
 
     if (valueLength > 0)
     {
-      buffer.writeBytes(encodeValue(attr));
+      handler.encodeValue(attr, buffer);
     }
-
-    return buffer;
   }
 
   public static int calculateEncodedPathAttributeLength(final PathAttribute attr)
@@ -136,17 +146,9 @@ public class PathAttributeCodec
    *
    * @return
    */
-  @SuppressWarnings("unchecked")
   public static int valueLength(final PathAttribute attr)
   {
-    if (codecs.containsKey(attr.getClass()))
-    {
-      return ((PathAttributeCodecHandler<PathAttribute>) codecs.get(attr.getClass())).valueLength(attr);
-    }
-    else
-    {
-      throw new IllegalArgumentException("cannot handle path attribute of type: " + attr.getClass().getName());
-    }
+    return handler(attr).valueLength(attr);
   }
 
   /**
@@ -154,33 +156,30 @@ public class PathAttributeCodec
    *
    * @return
    */
-  @SuppressWarnings("unchecked")
   public static int typeCode(final PathAttribute attr)
   {
-    if (codecs.containsKey(attr.getClass()))
-    {
-      return ((PathAttributeCodecHandler<PathAttribute>) codecs.get(attr.getClass())).typeCode(attr);
-    }
-    else
-    {
-      throw new IllegalArgumentException("cannot handle path attribute of type: " + attr.getClass().getName());
-    }
+    return handler(attr).typeCode(attr);
   }
 
   /**
    * get the encoded attribute value
    */
-  @SuppressWarnings("unchecked")
   public static ByteBuf encodeValue(final PathAttribute attr)
   {
-    if (codecs.containsKey(attr.getClass()))
-    {
-      return ((PathAttributeCodecHandler<PathAttribute>) codecs.get(attr.getClass())).encodeValue(attr);
-    }
-    else
+    return handler(attr).encodeValue(attr);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static PathAttributeCodecHandler<PathAttribute> handler(final PathAttribute attr)
+  {
+    final PathAttributeCodecHandler<? extends PathAttribute> handler = codecs.get(attr.getClass());
+
+    if (handler == null)
     {
       throw new IllegalArgumentException("cannot handle path attribute of type: " + attr.getClass().getName());
     }
+
+    return (PathAttributeCodecHandler<PathAttribute>) handler;
   }
 
 }
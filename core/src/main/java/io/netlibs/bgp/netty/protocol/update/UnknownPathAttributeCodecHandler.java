@@ -19,7 +19,6 @@ package io.netlibs.bgp.netty.protocol.update;
 
 import io.netlibs.bgp.protocol.attributes.UnknownPathAttribute;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -64,21 +63,11 @@ PathAttributeCodecHandler<UnknownPathAttribute>
    * @see org.bgp4j.netty.protocol.update.PathAttributeCodecHandler#encodeValue(org.bgp4j.netty.protocol.update.PathAttribute)
    */
   @Override
-  public ByteBuf encodeValue(final UnknownPathAttribute attr)
+  public void encodeValue(final UnknownPathAttribute attr, final ByteBuf buffer)
   {
     if (attr.getValue() != null)
     {
-      final byte[] value = attr.getValue();
-      final ByteBuf buffer = Unpooled.buffer(value.length);
-
-      buffer.writeBytes(value);
-
-      return buffer;
-
-    }
-    else
-    {
-      return null;
+      buffer.writeBytes(attr.getValue());
     }
   }
 
@@ -16,7 +16,9 @@
  */
 package io.netlibs.bgp.netty.protocol.update;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -46,96 +48,95 @@ public class UpdatePacket extends BGPv4Packet
   private List<NetworkLayerReachabilityInformation> withdrawnRoutes = new LinkedList<NetworkLayerReachabilityInformation>();
   private List<NetworkLayerReachabilityInformation> nlris = new LinkedList<NetworkLayerReachabilityInformation>();
   private List<PathAttribute> pathAttributes = new LinkedList<PathAttribute>();
+  // path attributes pre-encoded for sending or not yet decoded, see UpdatePacketDecoder lazy mode
+  private EncodedPathAttributes encodedPathAttributes;
 
   @Override
   protected ByteBuf encodePayload()
   {
+    final ByteBuf buffer = Unpooled.buffer(this.calculatePacketSize() - BGPv4Constants.BGP_PACKET_HEADER_LENGTH);
 
-    final ByteBuf buffer = Unpooled.buffer(BGPv4Constants.BGP_PACKET_MAX_LENGTH);
-    final ByteBuf withdrawnBuffer = this.encodeWithdrawnRoutes();
-    final ByteBuf pathAttributesBuffer = this.encodePathAttributes();
+    this.encodePayload(buffer);
 
-    buffer.writeShort(withdrawnBuffer.readableBytes());
-    buffer.writeBytes(withdrawnBuffer);
-    buffer.writeShort(pathAttributesBuffer.readableBytes());
-    buffer.writeBytes(pathAttributesBuffer);
-    buffer.writeBytes(this.encodeNlris());
     return buffer;
   }
 
-  public int calculatePacketSize()
-  {
-
-    int size = BGPv4Constants.BGP_PACKET_MIN_SIZE_UPDATE;
-
-    size += this.calculateSizeWithdrawnRoutes();
-    size += this.calculateSizePathAttributes();
-    size += this.calculateSizeNlris();
-
-    return size;
-
-  }
+  /**
+   * write the payload in a single pass, the withdrawn routes and path attributes length fields are filled in after the fact.
+   */
 
-  private ByteBuf encodeWithdrawnRoutes()
+  @Override
+  protected void encodePayload(final ByteBuf buffer)
   {
+    final int withdrawnStart = buffer.writerIndex();
 
-    final ByteBuf buffer = Unpooled.buffer(BGPv4Constants.BGP_PACKET_MAX_LENGTH);
+    buffer.writeShort(0);
 
     if (this.withdrawnRoutes != null)
     {
       for (final NetworkLayerReachabilityInformation route : this.withdrawnRoutes)
       {
-        buffer.writeBytes(NLRICodec.encodeNLRI(route));
+        NLRICodec.encodeNLRI(route, buffer);
       }
     }
 
-    return buffer;
-  }
+    buffer.setShort(withdrawnStart, buffer.writerIndex() - withdrawnStart - 2);
 
-  private ByteBuf encodePathAttributes()
-  {
+    final int pathAttributesStart = buffer.writerIndex();
 
-    final ByteBuf buffer = Unpooled.buffer(BGPv4Constants.BGP_PACKET_MAX_LENGTH);
+    buffer.writeShort(0);
 
     // RJS: Need to encode MP_REACH_NLRI first in the message according to the
     // recommendations in RFC 7606.
-    
+
     if (this.pathAttributes != null)
     {
-      for (PathAttribute pathAttr: this.pathAttributes)
-      {
+      this.encodePathAttributes(buffer, true);
+    }
 
-        if (pathAttr instanceof MultiProtocolReachableNLRI || pathAttr instanceof MultiProtocolUnreachableNLRI){
-          buffer.writeBytes(PathAttributeCodec.encodePathAttribute(pathAttr));
-        }
-      }
+    if (this.encodedPathAttributes != null)
+    {
+      this.encodedPathAttributes.writeTo(buffer);
+    }
+
+    if (this.pathAttributes != null)
+    {
+      this.encodePathAttributes(buffer, false);
+    }
+
+    buffer.setShort(pathAttributesStart, buffer.writerIndex() - pathAttributesStart - 2);
 
-      for (PathAttribute pathAttribute : this.pathAttributes)
+    if (this.nlris != null)
+    {
+      for (final NetworkLayerReachabilityInformation nlri : this.nlris)
       {
-        if (!(pathAttribute instanceof MultiProtocolReachableNLRI) && !(pathAttribute instanceof MultiProtocolUnreachableNLRI))
-        {
-          buffer.writeBytes(PathAttributeCodec.encodePathAttribute(pathAttribute));
-        }
+        NLRICodec.encodeNLRI(nlri, buffer);
       }
     }
-    
-    return buffer;
   }
 
-  private ByteBuf encodeNlris()
+  public int calculatePacketSize()
   {
 
-    final ByteBuf buffer = Unpooled.buffer(BGPv4Constants.BGP_PACKET_MAX_LENGTH);
+    int size = BGPv4Constants.BGP_PACKET_MIN_SIZE_UPDATE;
 
-    if (this.nlris != null)
+    size += this.calculateSizeWithdrawnRoutes();
+    size += this.calculateSizePathAttributes();
+    size += this.calculateSizeNlris();
+
+    return size;
+
+  }
+
+  private void encodePathAttributes(final ByteBuf buffer, final boolean multiProtocol)
+  {
+    for (final PathAttribute pathAttribute : this.pathAttributes)
     {
-      for (final NetworkLayerReachabilityInformation nlri : this.nlris)
+      if (((pathAttribute instanceof MultiProtocolReachableNLRI) || (pathAttribute instanceof MultiProtocolUnreachableNLRI)) == multiProtocol)
       {
-        buffer.writeBytes(NLRICodec.encodeNLRI(nlri));
+        PathAttributeCodec.encodePathAttribute(pathAttribute, buffer);
       }
     }
-
-    return buffer;
   }
 
   private int calculateSizeWithdrawnRoutes()
@@ -172,6 +173,11 @@ public class UpdatePacket extends BGPv4Packet
   {
     int size = 0;
 
+    if (this.encodedPathAttributes != null)
+    {
+      size += this.encodedPathAttributes.getLength();
+    }
+
     if (this.pathAttributes != null)
     {
       for (final PathAttribute attr : this.pathAttributes)
@@ -229,13 +235,42 @@ public class UpdatePacket extends BGPv4Packet
   }
 
   /**
-   * @return the pathAttributes
+   * @return the pathAttributes. If path attributes have been set in encoded form, a read only list of the attributes held in decoded form
+   *         followed by the encoded ones is returned and the encoded block is kept for encoding the packet.
+   * @throws AttributeException
+   *           if an attribute held in encoded form is malformed
    */
   public List<PathAttribute> getPathAttributes()
+  {
+    if (this.encodedPathAttributes == null)
+    {
+      return this.pathAttributes;
+    }
+
+    final List<PathAttribute> result = new ArrayList<PathAttribute>(this.pathAttributes);
+
+    result.addAll(this.encodedPathAttributes.decodeAll());
+
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * @return the path attributes held in decoded form. Unlike {@link #getPathAttributes()} this does not decode the ones held in encoded
+   *         form.
+   */
+  public List<PathAttribute> getDecodedPathAttributes()
   {
     return this.pathAttributes;
   }
 
+  /**
+   * @return the path attributes held in encoded form, <code>null</code> if there are none
+   */
+  public EncodedPathAttributes getEncodedPathAttributes()
+  {
+    return this.encodedPathAttributes;
+  }
+
   /**
    * @param pathAttributes
    *          the pathAttributes to set
@@ -243,10 +278,27 @@ public class UpdatePacket extends BGPv4Packet
   public void setPathAttributes(final List<PathAttribute> pathAttributes)
   {
     this.pathAttributes = pathAttributes;
+    this.encodedPathAttributes = null;
+  }
+
+  /**
+   * Set path attributes in encoded form, in addition to the ones already held in decoded form. They are decoded on access,
+   * {@link #lookupPathAttributes(Class)} only decodes the attributes of the requested type. When the packet is encoded the block is copied
+   * as is, after the multi protocol attributes held in decoded form.
+   *
+   * @param encodedPathAttributes
+   *          the encoded path attributes
+   */
+  public void setEncodedPathAttributes(final EncodedPathAttributes encodedPathAttributes)
+  {
+    this.encodedPathAttributes = encodedPathAttributes;
   }
 
   /**
    * look up path attributes of a given type passed in this update packet
+   *
+   * @throws AttributeException
+   *           if an attribute of this type held in encoded form is malformed
    */
 
   @SuppressWarnings("unchecked")
@@ -255,6 +307,11 @@ public class UpdatePacket extends BGPv4Packet
     
     final Set<T> result = new HashSet<T>();
 
+    if (this.encodedPathAttributes != null)
+    {
+      result.addAll(this.encodedPathAttributes.lookup(paClass));
+    }
+
     for (final PathAttribute pa : this.pathAttributes)
     {
       if (pa.getClass().equals(paClass))
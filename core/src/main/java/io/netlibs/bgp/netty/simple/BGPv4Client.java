@@ -8,15 +8,14 @@ import com.google.common.net.HostAndPort;
 import io.netlibs.bgp.handlers.BGPv4Codec;
 import io.netlibs.bgp.handlers.BGPv4Reframer;
 import io.netlibs.bgp.handlers.InboundOpenCapabilitiesProcessor;
+import io.netlibs.bgp.net.BGPv4Transport;
+import io.netlibs.bgp.netty.codec.BGPv4PacketDecoder;
 import io.netlibs.bgp.netty.simple.handlers.LocalOpenProcessor;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -37,13 +36,13 @@ public class BGPv4Client
 
   private final HostAndPort target;
   private BGPv4SessionListener listener;
-  private final EventLoopGroup workerGroup;
+  private final BGPv4Transport transport;
   private LocalConfig config;
 
-  public BGPv4Client(EventLoopGroup workerGroup, HostAndPort target, LocalConfig config)
+  public BGPv4Client(BGPv4Transport transport, HostAndPort target, LocalConfig config)
   {
     this.target = target;
-    this.workerGroup = workerGroup;
+    this.transport = transport;
     this.config = config;
   }
 
@@ -55,10 +54,7 @@ public class BGPv4Client
   public void connect()
   {
 
-    final Bootstrap b = new Bootstrap();
-
-    b.group(workerGroup);
-    b.channel(NioSocketChannel.class);
+    final Bootstrap b = transport.bootstrap();
 
     b.option(ChannelOption.TCP_NODELAY, true);
     b.option(ChannelOption.SO_KEEPALIVE, true);
@@ -69,7 +65,7 @@ public class BGPv4Client
       public void initChannel(final SocketChannel ch) throws Exception
       {
         ch.pipeline().addLast(BGPv4Reframer.HANDLER_NAME, new BGPv4Reframer());
-        ch.pipeline().addLast(BGPv4Codec.HANDLER_NAME, new BGPv4Codec());
+        ch.pipeline().addLast(BGPv4Codec.HANDLER_NAME, new BGPv4Codec(config.isLazyPathAttributes() ? BGPv4PacketDecoder.getLazyInstance() : BGPv4PacketDecoder.getInstance()));
         // ch.pipeline().addLast(InboundOpenCapabilitiesProcessor.HANDLER_NAME, new InboundOpenCapabilitiesProcessor());
         // ch.pipeline().addLast(ValidateServerIdentifier.HANDLER_NAME, new ValidateServerIdentifier());
 
@@ -4,14 +4,13 @@ import java.net.InetSocketAddress;
 
 import io.netlibs.bgp.handlers.BGPv4Codec;
 import io.netlibs.bgp.handlers.BGPv4Reframer;
+import io.netlibs.bgp.net.BGPv4Transport;
 import io.netlibs.bgp.netty.simple.handlers.RemoteOpenProcessor;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 /**
  * Service which listens for incoming BGP connections.
@@ -25,13 +24,13 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 public class BGPv4Server
 {
 
-  private final NioEventLoopGroup workers;
+  private final BGPv4Transport transport;
   private final BGPv4SessionFactory listener;
   private Channel channel;
 
-  public BGPv4Server(NioEventLoopGroup workers, BGPv4SessionFactory listener)
+  public BGPv4Server(BGPv4Transport transport, BGPv4SessionFactory listener)
   {
-    this.workers = workers;
+    this.transport = transport;
     this.listener = listener;
   }
 
@@ -44,11 +43,7 @@ public class BGPv4Server
   public InetSocketAddress start(InetSocketAddress listen)
   {
 
-    ServerBootstrap bootstrap = new ServerBootstrap();
-
-    bootstrap.group(workers);
-
-    bootstrap.channel(NioServerSocketChannel.class);
+    ServerBootstrap bootstrap = transport.serverBootstrap();
 
     bootstrap.option(ChannelOption.SO_BACKLOG, 1024);
     bootstrap.option(ChannelOption.SO_REUSEADDR, true);
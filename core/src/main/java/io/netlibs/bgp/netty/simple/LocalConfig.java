@@ -10,4 +10,5 @@ public class LocalConfig
   private int autonomousSystem;
   private long bgpIdentifier;
   private int holdTimeSeconds;
+  private boolean lazyPathAttributes;
 }
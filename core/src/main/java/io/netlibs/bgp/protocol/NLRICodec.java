@@ -35,19 +35,33 @@ public class NLRICodec
   public static NetworkLayerReachabilityInformation decodeNLRI(final ByteBuf buffer)
   {
 
-    final NetworkLayerReachabilityInformation nlri = new NetworkLayerReachabilityInformation();
     final int prefixLength = buffer.readUnsignedByte();
-    byte[] prefixBytes = null;
+    final int octets = NetworkLayerReachabilityInformation.calculateOctetsForPrefixLength(prefixLength);
 
-    if (prefixLength > 0)
+    if (prefixLength > NetworkLayerReachabilityInformation.PACKED_PREFIX_LENGTH)
     {
-      prefixBytes = new byte[NetworkLayerReachabilityInformation.calculateOctetsForPrefixLength(prefixLength)];
+      final byte[] prefixBytes = new byte[octets];
       buffer.readBytes(prefixBytes);
+      return new NetworkLayerReachabilityInformation(prefixLength, prefixBytes);
     }
 
-    nlri.setPrefix(prefixLength, prefixBytes);
+    // read the prefix straight into the packed form
+    long high = 0;
+    long low = 0;
 
-    return nlri;
+    for (int i = 0; i < octets; i++)
+    {
+      if (i < 8)
+      {
+        high |= ((long) buffer.readUnsignedByte()) << (56 - (8 * i));
+      }
+      else
+      {
+        low |= ((long) buffer.readUnsignedByte()) << (120 - (8 * i));
+      }
+    }
+
+    return new NetworkLayerReachabilityInformation(prefixLength, high, low);
 
   }
 
@@ -70,15 +84,28 @@ public class NLRICodec
 
     final ByteBuf buffer = Unpooled.buffer(calculateEncodedNLRILength(nlri));
 
+    encodeNLRI(nlri, buffer);
+
+    return buffer;
+
+  }
+
+  /**
+   * write the NLRI into the given buffer
+   */
+  public static void encodeNLRI(final NetworkLayerReachabilityInformation nlri, final ByteBuf buffer)
+  {
+
     buffer.writeByte(nlri.getPrefixLength());
 
     if (nlri.getPrefixLength() > 0)
     {
-      buffer.writeBytes(nlri.getPrefix());
+      for (int i = 0; i < nlri.getPrefixOctetCount(); i++)
+      {
+        buffer.writeByte(nlri.getPrefixOctet(i));
+      }
     }
 
-    return buffer;
-
   }
 
 }
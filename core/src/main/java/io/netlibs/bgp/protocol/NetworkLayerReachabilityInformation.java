@@ -18,10 +18,7 @@ package io.netlibs.bgp.protocol;
 
 import java.io.Serializable;
 import java.net.InetAddress;
-
-import org.apache.commons.lang3.builder.CompareToBuilder;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import java.util.Arrays;
 
 /**
  * This class models the generic network layer reachabibility information as defined in RFC 4271 and RFC 2858.
@@ -35,6 +32,10 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
  * Then number of octets need to carry the NLRI can be calculated from this formula: number of octets = (prefix length / 8) + (prefix length
  * % 8 > 0 ? 1 : 0)
  *
+ * Prefixes of up to {@link #PACKED_PREFIX_LENGTH} bits, which covers IPv4 and IPv6 unicast as well as the labelled IPv4 families, are held
+ * packed into two longs (most significant bit first) so that no octet array is allocated per prefix and equality, ordering and prefix tests
+ * work on whole words. Longer prefixes and NLRI created from raw octets are held as octet array.
+ *
  * NB: This class is also used to model the IPv4 withdrawn routes information in UPDATE (type 2) packets.
  *
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -49,7 +50,18 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
    */
   private static final long serialVersionUID = -8319262066302848737L;
 
+  /**
+   * The longest prefix which is held in packed form.
+   */
+  public static final int PACKED_PREFIX_LENGTH = 128;
+
   private int prefixLength;
+
+  // prefix bits 0-63 and 64-127 if the prefix is packed
+  private long high;
+  private long low;
+
+  // the prefix octets if the prefix is not packed, null otherwise
   private byte[] prefix;
 
   public NetworkLayerReachabilityInformation()
@@ -67,6 +79,28 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
     this.setPrefix(prefixLength, prefix);
   }
 
+  /**
+   * create a packed NLRI. The bits trailing the prefix length are masked out to 0.
+   *
+   * @param prefixLength
+   *          the prefix length, at most {@link #PACKED_PREFIX_LENGTH}
+   * @param high
+   *          the prefix bits 0 to 63
+   * @param low
+   *          the prefix bits 64 to 127
+   */
+  public NetworkLayerReachabilityInformation(final int prefixLength, final long high, final long low)
+  {
+    if ((prefixLength < 0) || (prefixLength > PACKED_PREFIX_LENGTH))
+    {
+      throw new IllegalArgumentException("cannot pack a prefix with " + prefixLength + " bits");
+    }
+
+    this.prefixLength = prefixLength;
+    this.high = high & mask(prefixLength);
+    this.low = low & mask(prefixLength - 64);
+  }
+
   public NetworkLayerReachabilityInformation(final InetAddress source)
   {
     final byte[] raw = source.getAddress();
@@ -82,11 +116,68 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
   }
 
   /**
+   * Get the prefix octets. For packed prefixes a new array is created on each invocation, so use {@link #getPrefixOctet(int)} on hot
+   * paths.
+   *
    * @return the prefix
    */
   public byte[] getPrefix()
   {
-    return this.prefix;
+    if (this.prefix != null)
+    {
+      return this.prefix;
+    }
+
+    // a zero length prefix has always been represented by a single zero octet
+    final byte[] data = new byte[Math.max(1, calculateOctetsForPrefixLength(this.prefixLength))];
+
+    for (int i = 0; i < data.length; i++)
+    {
+      data[i] = (byte) this.getPrefixOctet(i);
+    }
+
+    return data;
+  }
+
+  /**
+   * @return the number of prefix octets
+   */
+  public int getPrefixOctetCount()
+  {
+    return (this.prefix != null) ? this.prefix.length : calculateOctetsForPrefixLength(this.prefixLength);
+  }
+
+  /**
+   * get a single octet of the prefix without materializing the prefix octets.
+   *
+   * @param index
+   *          the octet index
+   * @return the unsigned octet value, 0 for octets beyond the packed prefix
+   */
+  public int getPrefixOctet(final int index)
+  {
+    if (this.prefix != null)
+    {
+      return this.prefix[index] & 0xff;
+    }
+    else if (index < 8)
+    {
+      return (int) (this.high >>> (56 - (8 * index))) & 0xff;
+    }
+    else if (index < 16)
+    {
+      return (int) (this.low >>> (120 - (8 * index))) & 0xff;
+    }
+
+    return 0;
+  }
+
+  /**
+   * @return <code>true</code> if the prefix is held in packed form
+   */
+  public boolean isPacked()
+  {
+    return (this.prefix == null);
   }
 
   /**
@@ -100,7 +191,9 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
   {
 
     this.prefixLength = prefixLength;
-    this.prefix = prefix;
+    this.high = 0;
+    this.low = 0;
+    this.prefix = null;
 
     if (prefix == null)
     {
@@ -108,13 +201,8 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
       {
         throw new IllegalArgumentException("cannot set null prefix if prefix length greater 0");
       }
-      this.prefix = new byte[] { 0 };
     }
-    else if (prefixLength == 0)
-    {
-      this.prefix = new byte[] { 0 };
-    }
-    else
+    else if (prefixLength > 0)
     {
       final int prefixSize = calculateOctetsForPrefixLength(this.prefixLength);
 
@@ -123,19 +211,17 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
         throw new IllegalArgumentException("expected a prefix with " + prefixSize + " octets but got " + prefix.length + " octets");
       }
 
-      // skip masking unless prefix length > 0
-      if (prefixLength > 0)
+      // mask out trailing bits
+      prefix[prefixSize - 1] &= (0xff << ((8 * prefixSize) - prefixLength));
+
+      if (prefixLength <= PACKED_PREFIX_LENGTH)
       {
-        // mask out trailing bits
-        final int trailingBits = ((8 * prefixSize) - prefixLength);
-       
-        if (trailingBits > 0)
-        {
-          for (int bit = 0; bit < trailingBits; bit++)
-          {
-            prefix[prefixSize - 1] &= ~(1 << bit);
-          }
-        }
+        this.high = pack(prefix, 0);
+        this.low = pack(prefix, 8);
+      }
+      else
+      {
+        this.prefix = prefix;
       }
     }
   }
@@ -153,60 +239,33 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
 
   public boolean isPrefixOf(final NetworkLayerReachabilityInformation other)
   {
+    if (this.prefixLength == 0)
+    {
+      return (other.prefixLength > 0);
+    }
+    else if (other.prefixLength <= this.prefixLength)
+    {
+      return false;
+    }
+    else if ((this.prefix == null) && (other.prefix == null))
+    {
+      return (((this.high ^ other.high) & mask(this.prefixLength)) == 0)
+          && (((this.low ^ other.low) & mask(this.prefixLength - 64)) == 0);
+    }
 
-    boolean isPrefix = false;
+    final int fullOctets = this.prefixLength / 8;
 
-    if (this.prefixLength > 0)
+    for (int i = 0; i < fullOctets; i++)
     {
-      if ((other.prefixLength > 0)
-          && (other.prefixLength > this.prefixLength))
+      if (this.getPrefixOctet(i) != other.getPrefixOctet(i))
       {
-        final int byteLength = calculateOctetsForPrefixLength(this.prefixLength);
-        boolean match = true;
-
-        // test the full prefix octets
-        for (int i = 0; i < (byteLength - 1); i++)
-        {
-          if (this.prefix[i] != other.prefix[i])
-          {
-            match = false;
-            break;
-          }
-        }
-
-        // prefix octets match, check remaining bits
-        if (match)
-        {
-          final int bitsToCheck = this.prefixLength % 8;
-
-          if (bitsToCheck == 0)
-          {
-            match = (this.prefix[byteLength - 1] == other.prefix[byteLength - 1]);
-          }
-          else
-          {
-            for (int i = 0; i < bitsToCheck; i++)
-            {
-              final int mask = 1 << (7 - i);
-
-              if ((this.prefix[byteLength - 1] & mask) != (other.prefix[byteLength - 1] & mask))
-              {
-                match = false;
-                break;
-              }
-            }
-          }
-        }
-
-        isPrefix = match;
+        return false;
       }
     }
-    else
-    {
-      isPrefix = (other.prefixLength > 0);
-    }
 
-    return isPrefix;
+    final int bitsToCheck = this.prefixLength % 8;
+
+    return (bitsToCheck == 0) || (((this.getPrefixOctet(fullOctets) ^ other.getPrefixOctet(fullOctets)) & (0xff << (8 - bitsToCheck)) & 0xff) == 0);
   }
 
   /*
@@ -217,10 +276,20 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
   @Override
   public int hashCode()
   {
-    return (new HashCodeBuilder())
-        .append(this.getPrefixLength())
-        .append(this.getPrefix())
-        .toHashCode();
+    if (this.prefix == null)
+    {
+      return hash(this.prefixLength, this.high, this.low);
+    }
+
+    // must match the packed form for octet arrays which would fit into it
+    int result = hash(this.prefixLength, pack(this.prefix, 0), pack(this.prefix, 8));
+
+    for (int offset = 16; offset < this.prefix.length; offset += 8)
+    {
+      result = (31 * result) + Long.hashCode(pack(this.prefix, offset));
+    }
+
+    return result;
   }
 
   /*
@@ -238,70 +307,102 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
 
     final NetworkLayerReachabilityInformation o = (NetworkLayerReachabilityInformation) obj;
 
-    return (new EqualsBuilder())
-        .append(this.getPrefixLength(), o.getPrefixLength())
-        .append(this.getPrefix(), o.getPrefix())
-        .isEquals();
+    if (this.prefixLength != o.prefixLength)
+    {
+      return false;
+    }
+    else if ((this.prefix == null) && (o.prefix == null))
+    {
+      return (this.high == o.high) && (this.low == o.low);
+    }
+
+    return Arrays.equals(this.getPrefix(), o.getPrefix());
   }
 
+  /**
+   * Order by prefix length first, then by the unsigned prefix value.
+   */
+
   @Override
   public int compareTo(final NetworkLayerReachabilityInformation other)
   {
-    final CompareToBuilder builder = new CompareToBuilder();
+    if (this.prefixLength != other.prefixLength)
+    {
+      return (this.prefixLength < other.prefixLength) ? -1 : 1;
+    }
+    else if ((this.prefix == null) && (other.prefix == null))
+    {
+      final int result = Long.compareUnsigned(this.high, other.high);
+
+      return (result != 0) ? result : Long.compareUnsigned(this.low, other.low);
+    }
 
-    builder.append(this.getPrefixLength(), other.getPrefixLength());
+    final int octets = this.getPrefixOctetCount();
+    final int otherOctets = other.getPrefixOctetCount();
 
-    if (builder.toComparison() == 0)
+    for (int i = 0; i < Math.min(octets, otherOctets); i++)
     {
-      final int byteLen = calculateOctetsForPrefixLength(this.prefixLength);
-      final int otherByteLen = calculateOctetsForPrefixLength(other.prefixLength);
-      final int commonByteLen = (byteLen > otherByteLen) ? otherByteLen : byteLen;
-      final int commonPrefixLen = (this.prefixLength > other.prefixLength) ? other.prefixLength : this.prefixLength;
+      final int result = this.getPrefixOctet(i) - other.getPrefixOctet(i);
 
-      for (int i = 0; i < (commonByteLen - 1); i++)
+      if (result != 0)
       {
-        builder.append(this.getPrefix()[i], other.getPrefix()[i]);
+        return (result < 0) ? -1 : 1;
       }
+    }
 
-      if (builder.toComparison() == 0)
-      {
-        final int bitsToCheck = commonPrefixLen % 8;
+    return Integer.compare(octets, otherOctets);
+  }
 
-        if (bitsToCheck == 0)
-        {
-          if (commonByteLen > 0)
-          {
-            builder.append(this.getPrefix()[commonByteLen - 1], other.getPrefix()[commonByteLen - 1]);
-          }
-        }
-        else
-        {
-          for (int i = 0; i < bitsToCheck; i++)
-          {
-            final int mask = 1 << (7 - i);
-
-            builder.append(this.getPrefix()[commonByteLen - 1] & mask, other.getPrefix()[commonByteLen - 1] & mask);
-            if (builder.toComparison() != 0)
-            {
-              break;
-            }
-          }
-        }
+  public static final int calculateOctetsForPrefixLength(final int prefixLength)
+  {
+    return (prefixLength / 8) + ((prefixLength % 8) > 0 ? 1 : 0);
+  }
 
-        if (builder.toComparison() == 0)
-        {
-          builder.append(this.getPrefixLength(), other.getPrefixLength());
-        }
-      }
+  /**
+   * the mask covering the first bits of a 64 bit word
+   *
+   * @param bits
+   *          number of leading bits, clamped to [0, 64]
+   */
 
+  private static long mask(final int bits)
+  {
+    if (bits <= 0)
+    {
+      return 0;
+    }
+    else if (bits >= 64)
+    {
+      return -1L;
     }
 
-    return builder.toComparison();
+    return -1L << (64 - bits);
   }
 
-  public static final int calculateOctetsForPrefixLength(final int prefixLength)
+  /**
+   * pack up to 8 octets starting at the given offset into a long, missing octets are 0.
+   */
+
+  private static long pack(final byte[] data, final int offset)
   {
-    return (prefixLength / 8) + ((prefixLength % 8) > 0 ? 1 : 0);
+    long value = 0;
+
+    for (int i = 0; i < 8; i++)
+    {
+      value <<= 8;
+
+      if ((offset + i) < data.length)
+      {
+        value |= data[offset + i] & 0xff;
+      }
+    }
+
+    return value;
+  }
+
+  private static int hash(final int prefixLength, final long high, final long low)
+  {
+    return (((31 * prefixLength) + Long.hashCode(high)) * 31) + Long.hashCode(low);
   }
 
   private static final char[] chars = new char[] { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
@@ -311,7 +412,7 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
   {
     final StringBuilder builder = new StringBuilder();
 
-    for (final byte element : this.prefix)
+    for (final byte element : this.getPrefix())
     {
       builder.append(chars[(element / 16) & 0x0f]);
       builder.append(chars[(element % 16) & 0x0f]);
@@ -322,17 +423,68 @@ public class NetworkLayerReachabilityInformation implements Serializable, Compar
     return builder.toString();
   }
 
+  /**
+   * get the prefix following the given number of leading octets, e.g. the prefix of a labelled NLRI without its label. The result is
+   * packed if it fits, the octets are copied otherwise.
+   *
+   * @param octets
+   *          the number of leading octets to skip
+   * @return the remaining prefix, this instance if no octets are skipped
+   */
+  public NetworkLayerReachabilityInformation withoutLeadingOctets(final int octets)
+  {
+    if (octets == 0)
+    {
+      return this;
+    }
+
+    final int length = Math.max(0, this.prefixLength - (8 * octets));
+    final int count = calculateOctetsForPrefixLength(length);
+
+    if (length <= PACKED_PREFIX_LENGTH)
+    {
+      long high = 0;
+      long low = 0;
+
+      for (int i = 0; i < 16; i++)
+      {
+        final long octet = (i < count) ? this.getPrefixOctet(octets + i) : 0;
+
+        if (i < 8)
+        {
+          high = (high << 8) | octet;
+        }
+        else
+        {
+          low = (low << 8) | octet;
+        }
+      }
+
+      return new NetworkLayerReachabilityInformation(length, high, low);
+    }
+
+    final byte[] data = new byte[count];
+
+    for (int i = 0; i < count; i++)
+    {
+      data[i] = (byte) this.getPrefixOctet(octets + i);
+    }
+
+    return new NetworkLayerReachabilityInformation(length, data);
+  }
+
   public NetworkLayerReachabilityInformation remove(final int i)
   {
-    final byte[] data = new byte[this.prefix.length - i];
-    System.arraycopy(this.prefix, i, data, 0, this.prefix.length - i);
+    final byte[] prefix = this.getPrefix();
+    final byte[] data = new byte[prefix.length - i];
+    System.arraycopy(prefix, i, data, 0, prefix.length - i);
     return new NetworkLayerReachabilityInformation(data);
   }
   
   public byte[] pop(final int i)
   {
     final byte[] data = new byte[i];
-    System.arraycopy(this.prefix, 0, data, i, i);
+    System.arraycopy(this.getPrefix(), 0, data, i, i);
     return data;
   }
 }
@@ -1,47 +1,69 @@
 package io.netlibs.bgp.protocol;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.lang3.builder.CompareToBuilder;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import com.google.common.base.Joiner;
+import com.google.common.primitives.Ints;
 
 import lombok.ToString;
 
+/**
+ * A segment of an AS_PATH. Segments are immutable, the AS numbers are held in a packed array and the hash code is computed once, as AS
+ * paths are compared and hashed whenever the path attribute sets they are part of are.
+ */
+
 @ToString
-public class PathSegment implements Comparable<PathSegment>
+public final class PathSegment implements Comparable<PathSegment>
 {
 
-  private ASType asType;
-  private List<Integer> ases = new LinkedList<Integer>();
-  private PathSegmentType pathSegmentType;
+  private static final int[] EMPTY = new int[0];
+
+  private final ASType asType;
+  private final PathSegmentType pathSegmentType;
+  private final int[] ases;
+  private final int hashCode;
 
-  public PathSegment()
+  public PathSegment(final ASType asType, final PathSegmentType pathSegmentType, final int[] asArray)
   {
+    this.asType = asType;
+    this.pathSegmentType = pathSegmentType;
+    this.ases = ((asArray != null) && (asArray.length > 0)) ? asArray.clone() : EMPTY;
+    this.hashCode = hash(asType, pathSegmentType, this.ases);
   }
 
-  public PathSegment(final ASType asType)
+  private PathSegment(final ASType asType, final PathSegmentType pathSegmentType, final int[] ases, final int hashCode)
   {
     this.asType = asType;
+    this.pathSegmentType = pathSegmentType;
+    this.ases = ases;
+    this.hashCode = hashCode;
   }
 
-  public PathSegment(final ASType asType, final PathSegmentType pathSegmentType, final int[] asArray)
+  private static int hash(final ASType asType, final PathSegmentType pathSegmentType, final int[] ases)
   {
-    this(asType);
-
-    this.pathSegmentType = pathSegmentType;
+    int hash = (31 * ((asType != null) ? asType.ordinal() : -1)) + ((pathSegmentType != null) ? pathSegmentType.ordinal() : -1);
 
-    if (asArray != null)
+    for (final int as : ases)
     {
-      for (final int as : asArray)
-      {
-        this.ases.add(as);
-      }
+      hash = (31 * hash) + as;
     }
+
+    return hash;
+  }
+
+  /**
+   * create a segment which takes over the given array instead of copying it, for decoders which build the array for the segment only.
+   * The array must not be modified afterwards.
+   */
+  public static PathSegment wrap(final ASType asType, final PathSegmentType pathSegmentType, final int[] ases)
+  {
+    final int[] owned = (ases.length > 0) ? ases : EMPTY;
+
+    return new PathSegment(asType, pathSegmentType, owned, hash(asType, pathSegmentType, owned));
   }
 
   /**
@@ -53,27 +75,35 @@ public class PathSegment implements Comparable<PathSegment>
   }
 
   /**
-   * @return the ases
+   * @return the AS numbers as an unmodifiable list
    */
   public List<Integer> getAses()
   {
-    return this.ases;
+    return Collections.unmodifiableList(Ints.asList(this.ases));
   }
 
   /**
-   * @param ases
-   *          the ases to set
+   * @return the number of AS numbers in the segment
    */
-  public void setAses(final List<Integer> ases)
+  public int getLength()
   {
-    if (ases != null)
-    {
-      this.ases = ases;
-    }
-    else
-    {
-      this.ases = new LinkedList<Integer>();
-    }
+    return this.ases.length;
+  }
+
+  /**
+   * @return the AS number at the given position
+   */
+  public int getAs(final int index)
+  {
+    return this.ases[index];
+  }
+
+  /**
+   * copy the AS numbers into an array
+   */
+  public void copyAses(final int[] target, final int offset)
+  {
+    System.arraycopy(this.ases, 0, target, offset, this.ases.length);
   }
 
   /**
@@ -85,12 +115,11 @@ public class PathSegment implements Comparable<PathSegment>
   }
 
   /**
-   * @param type
-   *          the type to set
+   * @return a segment with the same AS numbers held in the given size
    */
-  public void setPathSegmentType(final PathSegmentType type)
+  public PathSegment withAsType(final ASType asType)
   {
-    this.pathSegmentType = type;
+    return (asType == this.asType) ? this : wrap(asType, this.pathSegmentType, this.ases);
   }
 
   @Override
@@ -99,17 +128,11 @@ public class PathSegment implements Comparable<PathSegment>
     final CompareToBuilder builder = (new CompareToBuilder())
         .append(this.getAsType(), o.getAsType())
         .append(this.getPathSegmentType(), o.getPathSegmentType())
-        .append(this.getAses().size(), o.getAses().size());
+        .append(this.ases.length, o.ases.length);
 
-    if (builder.toComparison() == 0)
+    for (int i = 0; (i < this.ases.length) && (builder.toComparison() == 0); i++)
     {
-      final Iterator<Integer> lit = this.getAses().iterator();
-      final Iterator<Integer> rit = o.getAses().iterator();
-
-      while (lit.hasNext())
-      {
-        builder.append(lit.next(), rit.next());
-      }
+      builder.append(this.ases[i], o.ases[i]);
     }
 
     return builder.toComparison();
@@ -123,17 +146,7 @@ public class PathSegment implements Comparable<PathSegment>
   @Override
   public int hashCode()
   {
-    final HashCodeBuilder builder = (new HashCodeBuilder())
-        .append(this.getAsType())
-        .append(this.getPathSegmentType());
-    final Iterator<Integer> it = this.getAses().iterator();
-
-    while (it.hasNext())
-    {
-      builder.append(it.next());
-    }
-
-    return builder.toHashCode();
+    return this.hashCode;
   }
 
   /*
@@ -144,30 +157,19 @@ public class PathSegment implements Comparable<PathSegment>
   @Override
   public boolean equals(final Object obj)
   {
-    if (!(obj instanceof PathSegment))
+    if (obj == this)
+    {
+      return true;
+    }
+    else if (!(obj instanceof PathSegment))
     {
       return false;
     }
 
     final PathSegment o = (PathSegment) obj;
 
-    final EqualsBuilder builder = (new EqualsBuilder())
-        .append(this.getAsType(), o.getAsType())
-        .append(this.getPathSegmentType(), o.getPathSegmentType())
-        .append(this.getAses().size(), o.getAses().size());
-
-    if (builder.isEquals())
-    {
-      final Iterator<Integer> lit = this.getAses().iterator();
-      final Iterator<Integer> rit = o.getAses().iterator();
-
-      while (lit.hasNext())
-      {
-        builder.append(lit.next(), rit.next());
-      }
-    }
-
-    return builder.isEquals();
+    return (this.hashCode == o.hashCode) && (this.asType == o.asType) && (this.pathSegmentType == o.pathSegmentType)
+        && Arrays.equals(this.ases, o.ases);
   }
 
   @Override
@@ -191,7 +193,7 @@ public class PathSegment implements Comparable<PathSegment>
         break;
     }
 
-    sb.append(Joiner.on(' ').join(this.ases));
+    sb.append(Joiner.on(' ').join(Ints.asList(this.ases)));
 
     switch (this.pathSegmentType)
     {
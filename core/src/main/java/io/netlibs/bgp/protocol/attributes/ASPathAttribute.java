@@ -16,21 +16,25 @@
  */
 package io.netlibs.bgp.protocol.attributes;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.lang3.builder.CompareToBuilder;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import io.netlibs.bgp.protocol.ASType;
 import io.netlibs.bgp.protocol.ASTypeAware;
 import io.netlibs.bgp.protocol.PathSegment;
 import lombok.ToString;
 
 /**
+ * The path itself is immutable and interned: the attributes of all routes with equal paths share the segments, the packed AS numbers and
+ * the hash code, so they are compared by identity. The packed AS numbers are only handed out as copies.
+ *
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
  *
  */
@@ -39,35 +43,140 @@ import lombok.ToString;
 public class ASPathAttribute extends PathAttribute implements ASTypeAware
 {
 
-  private ASType asType;
-  private List<PathSegment> pathSegments = new LinkedList<PathSegment>();
+  /**
+   * the immutable part of the attribute, interned in a global pool
+   */
 
-  public ASPathAttribute(ASType asType)
+  private static final class Path implements Comparable<Path>
   {
-    super(Category.WELL_KNOWN_MANDATORY);
+    private static final Interner<Path> pool = Interners.newWeakInterner();
 
-    this.asType = asType;
-  }
+    private final ASType asType;
+    private final PathSegment[] segments;
+    private final int length;
+    private final int hashCode;
+    // the AS numbers of all segments, packed on first use so paths built for a lookup in the pool do not pack them
+    private volatile int[] asNumbers;
 
-  public ASPathAttribute(ASType asType, PathSegment[] segs)
-  {
-    this(asType);
+    private Path(ASType asType, PathSegment[] segments)
+    {
+      int length = 0;
+      int hash = (asType != null) ? asType.ordinal() : -1;
+
+      for (PathSegment segment : segments)
+      {
+        length += segment.getLength();
+        hash = (31 * hash) + segment.hashCode();
+      }
+
+      this.asType = asType;
+      this.segments = segments;
+      this.length = length;
+      this.hashCode = hash;
+    }
 
-    if (segs != null)
+    int[] asNumbers()
     {
-      for (PathSegment seg : segs)
+      int[] result = this.asNumbers;
+
+      if (result == null)
       {
-        this.pathSegments.add(seg);
+        result = new int[this.length];
+
+        int offset = 0;
+
+        for (PathSegment segment : this.segments)
+        {
+          segment.copyAses(result, offset);
+          offset += segment.getLength();
+        }
+
+        this.asNumbers = result;
       }
+
+      return result;
+    }
+
+    static Path intern(ASType asType, PathSegment[] segments)
+    {
+      return pool.intern(new Path(asType, segments));
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (obj == this)
+        return true;
+      else if (!(obj instanceof Path))
+        return false;
+
+      Path o = (Path) obj;
+
+      return (this.hashCode == o.hashCode) && (this.asType == o.asType) && Arrays.equals(this.segments, o.segments);
+    }
+
+    @Override
+    public int compareTo(Path o)
+    {
+      if (o == this)
+        return 0;
+
+      CompareToBuilder builder = (new CompareToBuilder())
+          .append(this.asType, o.asType)
+          .append(this.segments.length, o.segments.length);
+
+      for (int i = 0; (i < this.segments.length) && (builder.toComparison() == 0); i++)
+        builder.append(this.segments[i], o.segments[i]);
+
+      return builder.toComparison();
     }
+
+    @Override
+    public String toString()
+    {
+      return this.asType + " " + Arrays.toString(this.segments);
+    }
+  }
+
+  private static final PathSegment[] NO_SEGMENTS = new PathSegment[0];
+
+  private final Path path;
+
+  public ASPathAttribute(ASType asType)
+  {
+    this(Path.intern(asType, NO_SEGMENTS));
+  }
+
+  public ASPathAttribute(ASType asType, PathSegment[] segs)
+  {
+    this(Path.intern(asType, (segs != null) ? segs.clone() : NO_SEGMENTS));
   }
 
   public ASPathAttribute(ASType asType, List<PathSegment> pathSegments)
   {
-    this(asType);
+    this(Path.intern(asType, (pathSegments != null) ? pathSegments.toArray(new PathSegment[pathSegments.size()]) : NO_SEGMENTS));
+  }
+
+  private ASPathAttribute(Path path)
+  {
+    super(Category.WELL_KNOWN_MANDATORY);
+
+    this.path = path;
+  }
 
-    if (pathSegments != null)
-      this.pathSegments = new LinkedList<PathSegment>(pathSegments);
+  /**
+   * create an attribute which takes over the given array instead of copying it, for decoders which build the array for the attribute
+   * only. The array must not be modified afterwards.
+   */
+  public static ASPathAttribute wrap(ASType asType, PathSegment[] segs)
+  {
+    return new ASPathAttribute(Path.intern(asType, segs));
   }
 
   /**
@@ -75,27 +184,48 @@ public class ASPathAttribute extends PathAttribute implements ASTypeAware
    */
   public boolean isFourByteASNumber()
   {
-    return (this.asType == ASType.AS_NUMBER_4OCTETS);
+    return (this.path.asType == ASType.AS_NUMBER_4OCTETS);
   }
 
   /**
-   * @return the pathSegments
+   * @return the pathSegments as an unmodifiable list
    */
   public List<PathSegment> getPathSegments()
   {
-    return pathSegments;
+    return Collections.unmodifiableList(Arrays.asList(this.path.segments));
+  }
+
+  /**
+   * @return a copy of the AS numbers of all segments, the neighbor AS first and the members of AS_SETs in the order they have been
+   *         received
+   */
+  public int[] getAsNumbers()
+  {
+    return this.path.asNumbers().clone();
+  }
+
+  /**
+   * @return the number of AS numbers in all segments
+   */
+  public int getAsNumberCount()
+  {
+    return this.path.length;
   }
 
   /**
-   * @param pathSegments
-   *          the pathSegments to set
+   * @return the AS number at the given position in the sequence returned by {@link #getAsNumbers()}
    */
-  public void setPathSegments(List<PathSegment> pathSegments)
+  public int getAsNumber(int index)
   {
-    if (pathSegments != null)
-      this.pathSegments = pathSegments;
-    else
-      this.pathSegments = new LinkedList<PathSegment>();
+    return this.path.asNumbers()[index];
+  }
+
+  /**
+   * @return an object which is the same for all attributes with an equal path, to key caches with weak keys by
+   */
+  public Object getPathIdentity()
+  {
+    return this.path;
   }
 
   /*
@@ -106,7 +236,7 @@ public class ASPathAttribute extends PathAttribute implements ASTypeAware
   @Override
   public ASType getAsType()
   {
-    return asType;
+    return this.path.asType;
   }
 
   @Override
@@ -118,64 +248,27 @@ public class ASPathAttribute extends PathAttribute implements ASTypeAware
   @Override
   protected boolean subclassEquals(PathAttribute obj)
   {
-    ASPathAttribute o = (ASPathAttribute) obj;
-
-    EqualsBuilder builder = (new EqualsBuilder())
-        .append(getAsType(), o.getAsType())
-        .append(getPathSegments().size(), o.getPathSegments().size());
-
-    if (builder.isEquals())
-    {
-      Iterator<PathSegment> lit = getPathSegments().iterator();
-      Iterator<PathSegment> rit = o.getPathSegments().iterator();
-
-      while (lit.hasNext())
-        builder.append(lit.next(), rit.next());
-    }
-
-    return builder.isEquals();
+    return this.path == ((ASPathAttribute) obj).path;
   }
 
   @Override
   protected int subclassHashCode()
   {
-    HashCodeBuilder builder = (new HashCodeBuilder())
-        .append(getAsType());
-    Iterator<PathSegment> it = getPathSegments().iterator();
-
-    while (it.hasNext())
-      builder.append(it.next());
-
-    return builder.toHashCode();
+    return this.path.hashCode();
   }
 
   @Override
   protected int subclassCompareTo(PathAttribute obj)
   {
-    ASPathAttribute o = (ASPathAttribute) obj;
-
-    CompareToBuilder builder = (new CompareToBuilder())
-        .append(getAsType(), o.getAsType())
-        .append(getPathSegments().size(), o.getPathSegments().size());
-
-    if (builder.toComparison() == 0)
-    {
-      Iterator<PathSegment> lit = getPathSegments().iterator();
-      Iterator<PathSegment> rit = o.getPathSegments().iterator();
-
-      while (lit.hasNext())
-        builder.append(lit.next(), rit.next());
-    }
-
-    return builder.toComparison();
+    return this.path.compareTo(((ASPathAttribute) obj).path);
   }
 
   @Override
   protected ToStringBuilder subclassToString()
   {
-    ToStringBuilder builder = new ToStringBuilder(this).append("asType", asType);
+    ToStringBuilder builder = new ToStringBuilder(this).append("asType", this.path.asType);
 
-    for (PathSegment ps : this.pathSegments)
+    for (PathSegment ps : this.path.segments)
       builder.append("pathSegment", ps);
 
     return builder;
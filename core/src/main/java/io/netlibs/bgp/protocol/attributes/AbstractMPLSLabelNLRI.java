@@ -39,7 +39,8 @@ public class AbstractMPLSLabelNLRI
   }
   
   public NetworkLayerReachabilityInformation getEncodedNLRI(){
-    int finalLength = this.address.getPrefix().length + 3;
+    final byte[] prefix = this.address.getPrefix();
+    int finalLength = prefix.length + 3;
     byte[] finalNlri = new byte[finalLength];
     
     byte[] label = Ints.toByteArray(this.label << 12);
@@ -56,8 +57,8 @@ public class AbstractMPLSLabelNLRI
       finalNlri[i] = encodedLabel[i];
   
     // Copy the remaining length of the NLRI (prefix) into the encoded NLRI
-    for(int i=0;i<this.address.getPrefix().length; i++)
-      finalNlri[i+3] = this.address.getPrefix()[i];
+    for(int i=0;i<prefix.length; i++)
+      finalNlri[i+3] = prefix[i];
     
     // Return an encoded NLRI value which can be used in generating an UPDATE message
     return new NetworkLayerReachabilityInformation(this.address.getPrefixLength()+(3*8), finalNlri);
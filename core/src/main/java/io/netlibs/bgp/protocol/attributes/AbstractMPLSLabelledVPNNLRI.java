@@ -82,7 +82,8 @@ public class AbstractMPLSLabelledVPNNLRI
   
   public NetworkLayerReachabilityInformation getEncodedNLRI(){
     // prefixlength + 2 bytes RD type + 6 bytes RD + 3 bytes label
-    int finalLength = this.nlri.getPrefix().length + 2 + 6 + 3;
+    final byte[] prefix = this.nlri.getPrefix();
+    int finalLength = prefix.length + 2 + 6 + 3;
     byte[] finalNlri = new byte[finalLength];
     
     byte[] label = Ints.toByteArray(this.label << 12);
@@ -108,8 +109,8 @@ public class AbstractMPLSLabelledVPNNLRI
       finalNlri[i+5] = rd_content[i];
   
     // Copy the remaining length of the NLRI (prefix) into the encoded NLRI
-    for(int i=0;i<this.nlri.getPrefix().length; i++)
-      finalNlri[i+11] = this.nlri.getPrefix()[i];
+    for(int i=0;i<prefix.length; i++)
+      finalNlri[i+11] = prefix[i];
     
     // Return an encoded NLRI value which can be used in generating an UPDATE message
     return new NetworkLayerReachabilityInformation(this.nlri.getPrefixLength()+((3+2+6)*8), finalNlri);
@@ -0,0 +1,193 @@
+package io.netlibs.bgp.netty.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.netlibs.bgp.handlers.BGPv4Reframer;
+import io.netlibs.bgp.netty.protocol.update.InvalidOriginException;
+import io.netlibs.bgp.netty.protocol.update.OptionalAttributeErrorException;
+import io.netlibs.bgp.netty.protocol.update.UpdatePacket;
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.ExtendedCommunityPathAttribute;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class UpdatePacketDecoderTest
+{
+
+  // UPDATE payload after the type octet: withdraws 10/8, announces 192.168.1/24 with ORIGIN, AS_PATH, NEXT_HOP and two extended communities
+  private static final int[] UPDATE = new int[] {
+      0x00, 0x02, 0x08, 0x0a,
+      0x00, 0x25,
+      0x40, 0x01, 0x01, 0x00,
+      0x40, 0x02, 0x04, 0x02, 0x01, 0xfd, 0xe9,
+      0x40, 0x03, 0x04, 0xc0, 0x00, 0x02, 0x01,
+      0xc0, 0x10, 0x10, 0x00, 0x02, 0xfd, 0xe9, 0x00, 0x00, 0x00, 0x64, 0x00, 0x03, 0xfd, 0xe9, 0x00, 0x00, 0x00, 0x01,
+      0x18, 0xc0, 0xa8, 0x01 };
+
+  private static ByteBuf directBuffer(final int... octets)
+  {
+    final ByteBuf buffer = Unpooled.directBuffer(octets.length);
+
+    for (final int octet : octets)
+    {
+      buffer.writeByte(octet);
+    }
+
+    return buffer;
+  }
+
+  @Test
+  public void testDecodeFromDirectBuffer()
+  {
+    final ByteBuf buffer = directBuffer(UPDATE);
+    final UpdatePacket packet = (UpdatePacket) new UpdatePacketDecoder().decodeUpdatePacket(buffer);
+
+    assertFalse(buffer.isReadable());
+    assertEquals(1, packet.getWithdrawnRoutes().size());
+    assertEquals(new NetworkLayerReachabilityInformation(8, new byte[] { 10 }), packet.getWithdrawnRoutes().get(0));
+    assertEquals(1, packet.getNlris().size());
+    assertEquals(new NetworkLayerReachabilityInformation(24, new byte[] { (byte) 192, (byte) 168, 1 }), packet.getNlris().get(0));
+    assertEquals(4, packet.getPathAttributes().size());
+    assertEquals(2, packet.lookupPathAttributes(ExtendedCommunityPathAttribute.class).iterator().next().getMembers().size());
+
+    buffer.release();
+  }
+
+  @Test
+  public void testEncodeIntoPooledBuffer()
+  {
+    final UpdatePacket packet = (UpdatePacket) new UpdatePacketDecoder().decodeUpdatePacket(directBuffer(UPDATE));
+    final ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer();
+
+    buffer.writeByte(0x2a);
+    packet.encodePacket(buffer);
+
+    assertEquals(1 + 19 + UPDATE.length, buffer.readableBytes());
+    assertEquals(0x2a, buffer.readUnsignedByte());
+    assertEquals(0xffffffffffffffffL, buffer.readLong());
+    assertEquals(0xffffffffffffffffL, buffer.readLong());
+    assertEquals(19 + UPDATE.length, buffer.readUnsignedShort());
+    assertEquals(2, buffer.readUnsignedByte());
+
+    for (final int octet : UPDATE)
+    {
+      assertEquals(octet, buffer.readUnsignedByte());
+    }
+
+    assertEquals(packet.calculatePacketSize(), packet.encodePacket().readableBytes());
+
+    buffer.release();
+  }
+
+  @Test
+  public void testDecodeLazyPathAttributes()
+  {
+    final UpdatePacket packet = (UpdatePacket) new UpdatePacketDecoder(true).decodeUpdatePacket(directBuffer(UPDATE));
+
+    // AS_PATH and NEXT_HOP decoded, ORIGIN and the extended communities kept encoded
+    assertEquals(2, packet.getDecodedPathAttributes().size());
+    assertEquals(2, packet.getEncodedPathAttributes().size());
+    assertEquals(1, packet.getNlris().size());
+    assertEquals(2, packet.lookupPathAttributes(ExtendedCommunityPathAttribute.class).iterator().next().getMembers().size());
+    assertEquals(1, packet.lookupPathAttributes(NextHopPathAttribute.class).size());
+    assertEquals(4, packet.getPathAttributes().size());
+    assertEquals(packet.getEncodedPathAttributes(),
+        ((UpdatePacket) new UpdatePacketDecoder(true).decodeUpdatePacket(directBuffer(UPDATE))).getEncodedPathAttributes());
+  }
+
+  @Test(expected = InvalidOriginException.class)
+  public void testLazyDecodeFailsOnAccess()
+  {
+    final int[] update = UPDATE.clone();
+
+    // ORIGIN 3 is undefined
+    update[9] = 0x03;
+
+    final UpdatePacket packet = (UpdatePacket) new UpdatePacketDecoder(true).decodeUpdatePacket(directBuffer(update));
+
+    assertEquals(1, packet.lookupPathAttributes(ExtendedCommunityPathAttribute.class).size());
+
+    packet.getPathAttributes();
+  }
+
+  @Test(expected = OptionalAttributeErrorException.class)
+  public void testLazyDecodeVerifiesLengths()
+  {
+    final int[] update = UPDATE.clone();
+
+    // shorten the extended communities to 15 octets and drop the NLRI
+    update[5] = 0x24;
+    update[26] = 0x0f;
+
+    new UpdatePacketDecoder(true).decodeUpdatePacket(directBuffer(Arrays.copyOf(update, 42)));
+  }
+
+  @Test
+  public void testDecodedAsPathsAreInterned()
+  {
+    final ASPathAttribute first = ((UpdatePacket) new UpdatePacketDecoder().decodeUpdatePacket(directBuffer(UPDATE)))
+        .lookupPathAttributes(ASPathAttribute.class).iterator().next();
+    final ASPathAttribute second = ((UpdatePacket) new UpdatePacketDecoder().decodeUpdatePacket(directBuffer(UPDATE)))
+        .lookupPathAttributes(ASPathAttribute.class).iterator().next();
+    final ASPathAttribute built = new ASPathAttribute(ASType.AS_NUMBER_2OCTETS,
+        new PathSegment[] { new PathSegment(ASType.AS_NUMBER_2OCTETS, PathSegmentType.AS_SEQUENCE, new int[] { 65001 }) });
+
+    assertArrayEquals(new int[] { 65001 }, first.getAsNumbers());
+    assertNotSame(first, second);
+    assertSame(first.getPathIdentity(), second.getPathIdentity());
+    assertSame(first.getPathIdentity(), built.getPathIdentity());
+
+    // the packed AS numbers are shared, callers only get copies
+    first.getAsNumbers()[0] = 65002;
+
+    assertEquals(1, second.getAsNumberCount());
+    assertEquals(65001, second.getAsNumber(0));
+    assertEquals(first, built);
+    assertEquals(0, first.compareTo(built));
+  }
+
+  @Test
+  public void testReframerHandsOutRetainedSlice()
+  {
+    final EmbeddedChannel channel = new EmbeddedChannel(new BGPv4Reframer());
+    final ByteBuf input = Unpooled.directBuffer();
+
+    for (int i = 0; i < 16; i++)
+    {
+      input.writeByte(0xff);
+    }
+
+    input.writeShort(19 + UPDATE.length);
+    input.writeByte(2);
+    input.writeBytes(directBuffer(UPDATE));
+
+    channel.writeInbound(input);
+
+    final ByteBuf frame = (ByteBuf) channel.readInbound();
+
+    assertEquals(1 + UPDATE.length, frame.readableBytes());
+    assertEquals(2, frame.readUnsignedByte());
+    assertEquals(1, input.refCnt());
+
+    frame.release();
+
+    assertEquals(0, input.refCnt());
+    assertFalse(channel.finish());
+  }
+
+}
@@ -0,0 +1,77 @@
+package io.netlibs.bgp.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class NetworkLayerReachabilityInformationTest
+{
+
+  @Test
+  public void testPackedRoundTrip()
+  {
+    final byte[] encoded = new byte[] { 20, 10, 1, (byte) 0xff };
+    final NetworkLayerReachabilityInformation nlri = NLRICodec.decodeNLRI(Unpooled.wrappedBuffer(encoded));
+
+    assertTrue(nlri.isPacked());
+    assertEquals(20, nlri.getPrefixLength());
+    assertArrayEquals(new byte[] { 10, 1, (byte) 0xf0 }, nlri.getPrefix());
+    assertEquals(new NetworkLayerReachabilityInformation(20, new byte[] { 10, 1, (byte) 0xf0 }), nlri);
+
+    final ByteBuf buffer = NLRICodec.encodeNLRI(nlri);
+    final byte[] reencoded = new byte[buffer.readableBytes()];
+
+    buffer.readBytes(reencoded);
+    assertArrayEquals(new byte[] { 20, 10, 1, (byte) 0xf0 }, reencoded);
+  }
+
+  @Test
+  public void testIPv6PrefixOfAndOrdering()
+  {
+    final byte[] address = new byte[16];
+
+    address[0] = 0x20;
+    address[1] = 0x01;
+    address[8] = (byte) 0x80;
+
+    final NetworkLayerReachabilityInformation host = new NetworkLayerReachabilityInformation(128, address.clone());
+    final NetworkLayerReachabilityInformation slash64 = new NetworkLayerReachabilityInformation(64, new byte[] { 0x20, 0x01, 0, 0, 0, 0, 0, 0 });
+    final NetworkLayerReachabilityInformation slash65 = new NetworkLayerReachabilityInformation(65, new byte[] { 0x20, 0x01, 0, 0, 0, 0, 0, 0, 0 });
+
+    assertTrue(slash64.isPrefixOf(host));
+    assertFalse(slash65.isPrefixOf(host));
+    assertFalse(host.isPrefixOf(slash64));
+    assertTrue(new NetworkLayerReachabilityInformation().isPrefixOf(slash64));
+
+    assertTrue(slash64.compareTo(slash65) < 0);
+    assertTrue(new NetworkLayerReachabilityInformation(8, new byte[] { 0x7f }).compareTo(new NetworkLayerReachabilityInformation(8, new byte[] { (byte) 0x80 })) < 0);
+  }
+
+  @Test
+  public void testUnpackedMatchesPacked()
+  {
+    final byte[] raw = new byte[] { (byte) 0x80 };
+    final NetworkLayerReachabilityInformation unpacked = new NetworkLayerReachabilityInformation(raw);
+    final NetworkLayerReachabilityInformation packed = new NetworkLayerReachabilityInformation(1, new byte[] { (byte) 0x80 });
+
+    assertFalse(unpacked.isPacked());
+    assertEquals(packed, unpacked);
+    assertEquals(packed.hashCode(), unpacked.hashCode());
+
+    final byte[] vpnv6 = new byte[27];
+
+    vpnv6[26] = 1;
+
+    final NetworkLayerReachabilityInformation longPrefix = new NetworkLayerReachabilityInformation(216, vpnv6);
+
+    assertFalse(longPrefix.isPacked());
+    assertEquals(1, longPrefix.getPrefixOctet(26));
+  }
+
+}
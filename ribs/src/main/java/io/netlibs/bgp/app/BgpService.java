@@ -8,13 +8,11 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.naming.ConfigurationException;
 
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.impl.StdSchedulerFactory;
-
 import io.netlibs.bgp.config.global.ApplicationConfiguration;
 import io.netlibs.bgp.config.nodes.impl.CapabilitiesImpl;
 import io.netlibs.bgp.config.nodes.impl.ClientConfigurationImpl;
@@ -48,6 +46,9 @@ import io.netlibs.bgp.rib.RouteAdded;
 import io.netlibs.bgp.rib.RouteWithdrawn;
 import io.netlibs.bgp.rib.RoutingEventListener;
 import io.netlibs.bgp.rib.RoutingInformationBase;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -64,7 +65,9 @@ public class BgpService
 {
 
   public static AddressFamilyKey AF = AddressFamilyKey.IPV6_UNICAST_MPLS_FORWARDING;
-  private final Scheduler scheduler;
+  private final Timer timer = new HashedWheelTimer();
+  private final ExecutorService updateExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+      new DefaultThreadFactory("bgp-rib", true));
   private final PeerRoutingInformationBaseManager pribm = new PeerRoutingInformationBaseManager();
   private final FSMRegistry fsmRegistry;
   private final BGPv4Server serverInstance;
@@ -73,17 +76,8 @@ public class BgpService
   public BgpService()
   {
 
-    try
-    {
-      this.scheduler = new StdSchedulerFactory().getScheduler();
-    }
-    catch (final SchedulerException e)
-    {
-      throw new RuntimeException(e);
-    }
-
     this.app.setPeerRoutingInformationBaseManager(this.pribm);
-    this.fsmRegistry = new FSMRegistry(this.app, this.scheduler);
+    this.fsmRegistry = new FSMRegistry(this.app, this.timer, this.updateExecutor);
     this.serverInstance = new BGPv4Server(this.app, this.fsmRegistry);
 
   }
@@ -91,15 +85,6 @@ public class BgpService
   public void start() throws Exception
   {
 
-    try
-    {
-      this.scheduler.start();
-    }
-    catch (final SchedulerException e)
-    {
-      throw new RuntimeException(e);
-    }
-
     this.fsmRegistry.createRegistry();
 
     if (this.serverInstance != null)
@@ -128,6 +113,9 @@ public class BgpService
 
     this.fsmRegistry.destroyRegistry();
 
+    this.timer.stop();
+    this.updateExecutor.shutdown();
+
   }
 
 
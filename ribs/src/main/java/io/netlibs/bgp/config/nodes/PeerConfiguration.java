@@ -148,6 +148,14 @@ public interface PeerConfiguration {
 	 */
 	public boolean isHoldTimerDisabled();
 	
+	/**
+	 * get the time in seconds the routes learned from the peer are retained after the session went down. Routes which
+	 * the peer has not sent again until then are withdrawn. 0 withdraws all routes as soon as the session goes down.
+	 * 
+	 * @return
+	 */
+	public int getRestartTime();
+	
 	/**
 	 * 
 	 * @return
@@ -183,6 +183,7 @@ public class PeerConfigurationDecorator implements PeerConfiguration {
 				.append(isHoldTimerDisabled(), o.isHoldTimerDisabled())
 				.append(isPassiveTcpEstablishment(), o.isPassiveTcpEstablishment())
 				.append(getConnectRetryTime(), o.getConnectRetryTime())
+				.append(getRestartTime(), o.getRestartTime())
 				.isEquals();
 	}
 
@@ -211,6 +212,7 @@ public class PeerConfigurationDecorator implements PeerConfiguration {
 				.append(getPeerName())
 				.append(getRemoteAS())
 				.append(getRemoteBgpIdentifier())
+				.append(getRestartTime())
 				.toHashCode();
 	}
 
@@ -235,6 +237,14 @@ public class PeerConfigurationDecorator implements PeerConfiguration {
 		return decorated.isHoldTimerDisabled();
 	}
 
+	/**
+	 * @return
+	 * @see io.netlibs.bgp.config.nodes.PeerConfiguration#getRestartTime()
+	 */
+	public int getRestartTime() {
+		return decorated.getRestartTime();
+	}
+
 	@Override
 	public Capabilities getCapabilities() {
 		return decorated.getCapabilities();
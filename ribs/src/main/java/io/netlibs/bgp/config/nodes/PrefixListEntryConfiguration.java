@@ -0,0 +1,49 @@
+package io.netlibs.bgp.config.nodes;
+
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+
+/**
+ * A prefix list entry: matches the routes whose prefix is covered by the entry prefix and whose prefix length lies within the entry
+ * bounds.
+ */
+public interface PrefixListEntryConfiguration extends Comparable<PrefixListEntryConfiguration> {
+
+	/**
+	 * the longest prefix length a NLRI can carry, used as upper bound if an entry matches all more specific prefixes
+	 */
+	public static final int MAX_LENGTH = 255;
+
+	public enum Action {
+		PERMIT,
+		DENY
+	}
+
+	/**
+	 * get the action taken for a matching route
+	 *
+	 * @return
+	 */
+	public Action getAction();
+
+	/**
+	 * get the covering prefix. For the labelled families this is the prefix without label, for the VPN families the RD followed by the
+	 * prefix
+	 *
+	 * @return
+	 */
+	public NetworkLayerReachabilityInformation getPrefix();
+
+	/**
+	 * get the shortest matching prefix length (ge)
+	 *
+	 * @return
+	 */
+	public int getMinLength();
+
+	/**
+	 * get the longest matching prefix length (le)
+	 *
+	 * @return
+	 */
+	public int getMaxLength();
+}
@@ -3,6 +3,7 @@
  */
 package io.netlibs.bgp.config.nodes;
 
+import java.util.List;
 import java.util.Set;
 
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
@@ -19,4 +20,12 @@ public interface PrefixRoutingFilterConfiguration extends RoutingFilterConfigura
 	 * @return
 	 */
 	public Set<NetworkLayerReachabilityInformation> getFilterPrefixes();
+
+	/**
+	 * get the prefix list entries, in the order they have been configured. The longest matching entry decides, among entries with the
+	 * same prefix the first one configured. Routes denied by an entry are filtered out.
+	 *
+	 * @return
+	 */
+	public List<PrefixListEntryConfiguration> getPrefixListEntries();
 }
@@ -52,6 +52,7 @@ public class PeerConfigurationImpl implements PeerConfiguration
   private int delayOpenTime = 5;
   private int connectRetryTime = 5;
   private int automaticStartInterval = 5;
+  private int restartTime;
   private Capabilities capabilities = new CapabilitiesImpl();
 
   public PeerConfigurationImpl()
@@ -362,6 +363,7 @@ public class PeerConfigurationImpl implements PeerConfiguration
         .append(this.peerName)
         .append(this.remoteAS)
         .append(this.remoteBgpIdentifier)
+        .append(this.restartTime)
         .toHashCode();
 
   }
@@ -414,6 +416,7 @@ public class PeerConfigurationImpl implements PeerConfiguration
         .append(this.peerName, o.getPeerName())
         .append(this.remoteAS, o.getRemoteAS())
         .append(this.remoteBgpIdentifier, o.getRemoteBgpIdentifier())
+        .append(this.restartTime, o.getRestartTime())
         .isEquals();
   }
 
@@ -614,6 +617,29 @@ public class PeerConfigurationImpl implements PeerConfiguration
     this.holdTimerDisabled = holdTimerDisabled;
   }
 
+  /**
+   * @return the restartTime
+   */
+  @Override
+  public int getRestartTime()
+  {
+    return this.restartTime;
+  }
+
+  /**
+   * @param restartTime
+   *          the restartTime to set
+   */
+  public void setRestartTime(final int restartTime) throws ConfigurationException
+  {
+    if (restartTime < 0)
+    {
+      throw new ConfigurationException("Illegal restart time given: " + restartTime);
+    }
+
+    this.restartTime = restartTime;
+  }
+
   /**
    * @return the capabilities
    */
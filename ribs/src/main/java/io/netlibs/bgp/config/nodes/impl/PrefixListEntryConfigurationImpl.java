@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package io.netlibs.bgp.config.nodes.impl;
+
+import javax.naming.ConfigurationException;
+
+import org.apache.commons.lang3.builder.CompareToBuilder;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+
+public class PrefixListEntryConfigurationImpl implements PrefixListEntryConfiguration {
+
+	private Action action;
+	private NetworkLayerReachabilityInformation prefix;
+	private int minLength;
+	private int maxLength;
+
+	/**
+	 * an entry matching exactly the given prefix
+	 */
+	public PrefixListEntryConfigurationImpl(Action action, NetworkLayerReachabilityInformation prefix) throws ConfigurationException {
+		this(action, prefix, prefix.getPrefixLength(), prefix.getPrefixLength());
+	}
+
+	/**
+	 * an entry matching the prefixes covered by the given prefix with a length between minLength and maxLength
+	 */
+	public PrefixListEntryConfigurationImpl(Action action, NetworkLayerReachabilityInformation prefix, int minLength, int maxLength) throws ConfigurationException {
+		if(action == null || prefix == null)
+			throw new ConfigurationException("action and prefix are required");
+
+		if(minLength < prefix.getPrefixLength() || maxLength < minLength || maxLength > MAX_LENGTH)
+			throw new ConfigurationException("illegal prefix length range " + minLength + ".." + maxLength + " for " + prefix);
+
+		this.action = action;
+		this.prefix = prefix;
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+	}
+
+	@Override
+	public Action getAction() {
+		return action;
+	}
+
+	@Override
+	public NetworkLayerReachabilityInformation getPrefix() {
+		return prefix;
+	}
+
+	@Override
+	public int getMinLength() {
+		return minLength;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(PrefixListEntryConfiguration o) {
+		return (new CompareToBuilder())
+				.append(getPrefix(), o.getPrefix())
+				.append(getMinLength(), o.getMinLength())
+				.append(getMaxLength(), o.getMaxLength())
+				.append(getAction(), o.getAction())
+				.toComparison();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return (new HashCodeBuilder())
+				.append(getAction())
+				.append(getPrefix())
+				.append(getMinLength())
+				.append(getMaxLength())
+				.toHashCode();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof PrefixListEntryConfiguration))
+			return false;
+
+		PrefixListEntryConfiguration o = (PrefixListEntryConfiguration)obj;
+
+		return (new EqualsBuilder())
+				.append(getAction(), o.getAction())
+				.append(getPrefix(), o.getPrefix())
+				.append(getMinLength(), o.getMinLength())
+				.append(getMaxLength(), o.getMaxLength())
+				.isEquals();
+	}
+
+	@Override
+	public String toString() {
+		return action + " " + prefix + " ge " + minLength + " le " + maxLength;
+	}
+}
@@ -3,8 +3,10 @@
  */
 package io.netlibs.bgp.config.nodes.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -12,6 +14,7 @@ import org.apache.commons.lang3.builder.CompareToBuilder;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration;
 import io.netlibs.bgp.config.nodes.PrefixRoutingFilterConfiguration;
 import io.netlibs.bgp.config.nodes.RoutingFilterConfiguration;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
@@ -23,6 +26,7 @@ import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
 public class PrefixRoutingFilterConfigurationImpl extends RoutingFilterConfigurationImpl implements	PrefixRoutingFilterConfiguration {
 
 	private Set<NetworkLayerReachabilityInformation> filterPrefixes = new TreeSet<NetworkLayerReachabilityInformation>();
+	private List<PrefixListEntryConfiguration> prefixListEntries = new ArrayList<PrefixListEntryConfiguration>();
 	
 	public PrefixRoutingFilterConfigurationImpl() {}
 
@@ -31,6 +35,13 @@ public class PrefixRoutingFilterConfigurationImpl extends RoutingFilterConfigura
 		
 		this.filterPrefixes.addAll(filterPrefixes);
 	}
+
+	public PrefixRoutingFilterConfigurationImpl(String name, Collection<NetworkLayerReachabilityInformation> filterPrefixes,
+			Collection<PrefixListEntryConfiguration> prefixListEntries) {
+		this(name, filterPrefixes);
+
+		this.prefixListEntries.addAll(prefixListEntries);
+	}
 	
 	/* (non-Javadoc)
 	 * @see org.bgp4j.config.nodes.PrefixRoutingFilterConfiguration#getFilterPrefixes()
@@ -46,6 +57,21 @@ public class PrefixRoutingFilterConfigurationImpl extends RoutingFilterConfigura
 		if(filterPrefixes != null)
 			this.filterPrefixes.addAll(filterPrefixes);
 	}
+
+	/* (non-Javadoc)
+	 * @see io.netlibs.bgp.config.nodes.PrefixRoutingFilterConfiguration#getPrefixListEntries()
+	 */
+	@Override
+	public List<PrefixListEntryConfiguration> getPrefixListEntries() {
+		return prefixListEntries;
+	}
+
+	void setPrefixListEntries(List<PrefixListEntryConfiguration> prefixListEntries) {
+		this.prefixListEntries.clear();
+
+		if(prefixListEntries != null)
+			this.prefixListEntries.addAll(prefixListEntries);
+	}
 	
 	/* (non-Javadoc)
 	 * @see org.bgp4j.config.nodes.impl.RoutingFilterConfigurationImpl#getType()
@@ -71,6 +97,11 @@ public class PrefixRoutingFilterConfigurationImpl extends RoutingFilterConfigura
 			while(lit.hasNext())
 				builder.append(lit.next(), rit.next());
 		}
+
+		builder.append(getPrefixListEntries().size(), p.getPrefixListEntries().size());
+
+		for(int i=0; i<getPrefixListEntries().size() && i<p.getPrefixListEntries().size(); i++)
+			builder.append(getPrefixListEntries().get(i), p.getPrefixListEntries().get(i));
 	}
 
 	/* (non-Javadoc)
@@ -89,6 +120,11 @@ public class PrefixRoutingFilterConfigurationImpl extends RoutingFilterConfigura
 			while(lit.hasNext())
 				builder.append(lit.next(), rit.next());
 		}
+
+		builder.append(getPrefixListEntries().size(), p.getPrefixListEntries().size());
+
+		for(int i=0; i<getPrefixListEntries().size() && i<p.getPrefixListEntries().size(); i++)
+			builder.append(getPrefixListEntries().get(i), p.getPrefixListEntries().get(i));
 	}
 
 	/* (non-Javadoc)
@@ -98,6 +134,9 @@ public class PrefixRoutingFilterConfigurationImpl extends RoutingFilterConfigura
 	protected void subclassHashCode(HashCodeBuilder builder) {
 		for(NetworkLayerReachabilityInformation nlri : getFilterPrefixes())
 			builder.append(nlri);
+
+		for(PrefixListEntryConfiguration entry : getPrefixListEntries())
+			builder.append(entry);
 	}
 
 }
@@ -17,13 +17,12 @@
 package io.netlibs.bgp.netty.fsm;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
+import java.util.concurrent.Executor;
 
 import io.netlibs.bgp.config.nodes.PeerConfiguration;
 import io.netlibs.bgp.handlers.BgpEvent;
@@ -39,6 +38,7 @@ import io.netlibs.bgp.netty.protocol.UnspecifiedCeaseNotificationPacket;
 import io.netlibs.bgp.netty.protocol.open.OpenNotificationPacket;
 import io.netlibs.bgp.netty.protocol.open.OpenPacket;
 import io.netlibs.bgp.netty.protocol.open.UnsupportedVersionNumberNotificationPacket;
+import io.netlibs.bgp.netty.protocol.update.AttributeException;
 import io.netlibs.bgp.netty.protocol.update.InvalidNextHopException;
 import io.netlibs.bgp.netty.protocol.update.UpdateNotificationPacket;
 import io.netlibs.bgp.netty.protocol.update.UpdatePacket;
@@ -55,11 +55,15 @@ import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
 import io.netlibs.bgp.protocol.attributes.PathAttribute;
 import io.netlibs.bgp.protocol.capabilities.Capability;
 import io.netlibs.bgp.protocol.capabilities.MultiProtocolCapability;
+import io.netlibs.bgp.rib.PathAttributeSet;
 import io.netlibs.bgp.rib.PeerRoutingInformationBase;
 import io.netlibs.bgp.rib.PeerRoutingInformationBaseManager;
+import io.netlibs.bgp.rib.RoutingInformationBase;
+import io.netlibs.bgp.rib.policy.RoutePolicy;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Timer;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -278,21 +282,37 @@ public class BGPv4FSM
     public void fireReleaseBGPResources()
     {
 
-      if (BGPv4FSM.this.prib != null)
+      synchronized (BGPv4FSM.this.ribLock)
       {
-        BGPv4FSM.this.prib.destroyAllRoutingInformationBases();
-      }
-      BGPv4FSM.this.prib = null;
+        // UPDATEs of this session which are still queued are discarded
+        BGPv4FSM.this.session++;
 
-      try
-      {
-        BGPv4FSM.this.oruq.shutdown();
-      }
-      catch (final SchedulerException e)
-      {
-        BGPv4FSM.log.error("failed to shutdown UPDATE send trigger", e);
+        final PeerRoutingInformationBase prib = BGPv4FSM.this.prib;
+
+        if (prib != null)
+        {
+          final int restartTime = BGPv4FSM.this.peerConfig.getRestartTime();
+
+          synchronized (prib)
+          {
+            if (restartTime > 0)
+            {
+              // keep the routes of the peer until it has sent them again, only the ones it does not send again are withdrawn
+              prib.destroyAllRoutingInformationBases(RIBSide.Local);
+              prib.markStale(RIBSide.Remote);
+              BGPv4FSM.this.restartTimer.schedule(restartTime);
+            }
+            else
+            {
+              prib.destroyAllRoutingInformationBases();
+            }
+          }
+        }
+        BGPv4FSM.this.prib = null;
       }
 
+      BGPv4FSM.this.oruq.shutdown();
+
     }
 
     @Override
@@ -349,16 +369,7 @@ public class BGPv4FSM
 
       BGPv4FSM.this.prib.visitRoutingBases(RIBSide.Local, BGPv4FSM.this.oruq.getImportVisitor(), BGPv4FSM.this.outboundAddressFamilyMask);
 
-      try
-      {
-        BGPv4FSM.this.oruq.startSendingUpdates(BGPv4FSM.this.internalFsm.getNegotiatedHoldTime() / 3);
-      }
-      catch (final SchedulerException e)
-      {
-        BGPv4FSM.log.error("failed to start UPDATE send trigger", e);
-
-        BGPv4FSM.this.internalFsm.flagFSMError();
-      }
+      BGPv4FSM.this.oruq.startSendingUpdates(BGPv4FSM.this.internalFsm.getNegotiatedHoldTime() / 3);
     }
 
   }
@@ -423,24 +434,39 @@ public class BGPv4FSM
   private final OutboundRoutingUpdateQueue oruq;
 
   private final InternalFSM internalFsm;
+  private final InboundUpdateStage updateStage;
+  private final FSMTimer restartTimer;
+  // held while UPDATEs are applied and while the RIBs are released, which happen on different threads
+  private final Object ribLock = new Object();
+  private volatile int session;
 
   private PeerConfiguration peerConfig;
   private final ASType asTypeInUse = ASType.AS_NUMBER_2OCTETS;
   private final Set<FSMChannelImpl> managedChannels = new HashSet<FSMChannelImpl>();
-  private PeerRoutingInformationBase prib;
+  private volatile PeerRoutingInformationBase prib;
   private final Set<AddressFamilyKey> outboundAddressFamilyMask = new HashSet<AddressFamilyKey>();
 
-  public BGPv4FSM(final Scheduler scheduler, final BGPv4Client clientProvider, final CapabilitesNegotiator capabilitiesNegotiation,
-      final PeerRoutingInformationBaseManager pribManager, final OutboundRoutingUpdateQueue orug)
+  /**
+   * @param timerExecutor
+   *          the executor the timers of the peer run on, it must run them one at a time
+   * @param updateExecutor
+   *          the executor received UPDATEs are applied on
+   */
+
+  public BGPv4FSM(final Timer timer, final Executor timerExecutor, final Executor updateExecutor, final BGPv4Client clientProvider,
+      final CapabilitesNegotiator capabilitiesNegotiation, final PeerRoutingInformationBaseManager pribManager, final OutboundRoutingUpdateQueue orug)
   {
     this.clientProvider = clientProvider;
     this.capabilitiesNegotiator = capabilitiesNegotiation;
     this.pribManager = pribManager;
     this.oruq = orug;
-    this.internalFsm = new InternalFSM(scheduler);
+
+    this.internalFsm = new InternalFSM(timer, timerExecutor);
+    this.updateStage = new InboundUpdateStage(updateExecutor);
+    this.restartTimer = new FSMTimer(timer, timerExecutor, this::sweepStaleRoutes);
   }
 
-  public void configure(final PeerConfiguration peerConfig) throws SchedulerException
+  public void configure(final PeerConfiguration peerConfig)
   {
     this.peerConfig = peerConfig;
     this.internalFsm.setup(peerConfig, new InternalFSMCallbacksImpl());
@@ -459,6 +485,16 @@ public class BGPv4FSM
     return new PeerConnectionInformationImpl();
   }
 
+  /**
+   * @param exportPolicy
+   *          the policy applied to the routes announced to the peer, <code>null</code> to announce them unchanged. It applies to the routes
+   *          queued from now on, routes the policy rejects are withdrawn from the peer.
+   */
+  public void setExportPolicy(final RoutePolicy exportPolicy)
+  {
+    this.oruq.setExportPolicy(exportPolicy);
+  }
+
   public void startFSMAutomatic()
   {
     this.internalFsm.handleEvent(FSMEvent.automaticStart());
@@ -476,6 +512,9 @@ public class BGPv4FSM
 
   public void destroyFSM()
   {
+    // the peer will not come back to send the retained routes again
+    this.sweepStaleRoutes();
+    this.restartTimer.cancel();
     this.internalFsm.destroyFSM();
   }
 
@@ -512,15 +551,10 @@ public class BGPv4FSM
 
       this.internalFsm.handleEvent(FSMEvent.updateMessage());
 
-      try
-      {
-        this.processRemoteUpdate((UpdatePacket) message);
-      }
-      catch (final Exception e)
-      {
-        BGPv4FSM.log.error("error processing UPDATE packet from peer: {}", this.peerConfig.getPeerName(), e);
-        this.internalFsm.handleEvent(FSMEvent.updateMessageError());
-      }
+      final int session = this.session;
+
+      // the RIB work runs on the update stage, so the event loop can go on reading while the listeners run
+      this.updateStage.submit(channel, () -> this.applyRemoteUpdate(channel, session, (UpdatePacket) message));
     }
     else if (message instanceof UnsupportedVersionNumberNotificationPacket)
     {
@@ -632,40 +666,122 @@ public class BGPv4FSM
   }
 
   /**
-   * process the UPDATE packet received from the remote peer
+   * apply an UPDATE packet to the RIBs, unless the session it has been received on has been released meanwhile
+   */
+
+  private void applyRemoteUpdate(final Channel channel, final int session, final UpdatePacket message)
+  {
+    synchronized (this.ribLock)
+    {
+      if ((session != this.session) || (this.prib == null))
+      {
+        return;
+      }
+
+      try
+      {
+        // the sweep of a restored RIB snapshot takes the lock of the peer RIB only
+        synchronized (this.prib)
+        {
+          this.processRemoteUpdate(this.prib, message);
+        }
+        return;
+      }
+      catch (final Exception e)
+      {
+        BGPv4FSM.log.error("error processing UPDATE packet from peer: {}", this.peerConfig.getPeerName(), e);
+      }
+    }
+
+    // the error reaches the state machine from the event loop like the messages of the peer, releasing the session takes the RIB lock
+    channel.eventLoop().execute(() -> this.internalFsm.handleEvent(FSMEvent.updateMessageError()));
+  }
+
+  /**
+   * withdraw the routes retained from the previous session which the peer has not sent again before the restart timer expired
+   */
+
+  private void sweepStaleRoutes()
+  {
+    final PeerRoutingInformationBase prib = this.pribManager.peerRoutingInformationBase(this.peerConfig.getPeerName());
+
+    synchronized (this.ribLock)
+    {
+      final int swept;
+
+      synchronized (prib)
+      {
+        swept = prib.sweepStale(RIBSide.Remote);
+      }
+
+      if (swept > 0)
+      {
+        BGPv4FSM.log.info("restart time of peer {} expired, withdrew {} stale routes", this.peerConfig.getPeerName(), swept);
+      }
+    }
+  }
+
+  /**
+   * the peer has sent all routes of an address family, everything it has not sent again since the session restarted is withdrawn
+   */
+
+  private void processEndOfRib(final PeerRoutingInformationBase prib, final AddressFamilyKey afk)
+  {
+    final RoutingInformationBase rib = prib.routingBase(RIBSide.Remote, afk);
+
+    if (rib != null)
+    {
+      rib.sweepStale();
+    }
+  }
+
+  /**
+   * process the UPDATE packet received from the remote peer. Only the attributes which carry the routes are looked up, all others are
+   * handed to the RIB as they have been decoded. Attributes the decoder has kept encoded are only decoded if no route holds an equal set
+   * of attributes yet. If one of them is malformed the UPDATE is treated as a withdraw, as RFC 7606 requires.
    *
    * @param message
    */
 
-  @SuppressWarnings("unchecked")
-  private void processRemoteUpdate(final UpdatePacket message)
+  private void processRemoteUpdate(final PeerRoutingInformationBase prib, final UpdatePacket message)
   {
 
     final Set<MultiProtocolReachableNLRI> mpReachables = message.lookupPathAttributes(MultiProtocolReachableNLRI.class);
 
     final Set<MultiProtocolUnreachableNLRI> mpUnreachables = message.lookupPathAttributes(MultiProtocolUnreachableNLRI.class);
 
-    final Set<PathAttribute> otherAttributes = message.filterPathAttributes(
-        MultiProtocolReachableNLRI.class,
-        MultiProtocolUnreachableNLRI.class,
-        NextHopPathAttribute.class);
+    final boolean hasNlris = (message.getNlris() != null) && !message.getNlris().isEmpty();
+
+    PathAttributeSet routeAttributes = null;
+
+    if (hasNlris || (mpReachables.size() > 0))
+    {
+      try
+      {
+        routeAttributes = this.routePathAttributes(message);
+      }
+      catch (final AttributeException e)
+      {
+        BGPv4FSM.log.warn("malformed path attribute in UPDATE packet from peer {}, treating it as withdraw", this.peerConfig.getPeerName(), e);
+      }
+    }
 
     final AddressFamilyKey ipv4Unicast = new AddressFamilyKey(AddressFamily.IPv4, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING);
 
     if (mpReachables.size() > 0)
     {
-      this.processRemoteUpdateMultiProtocolReachables(mpReachables, otherAttributes);
+      this.processRemoteUpdateMultiProtocolReachables(prib, mpReachables, routeAttributes);
     }
 
     if (mpUnreachables.size() > 0)
     {
-      this.processRemoteUp(mpUnreachables, otherAttributes);
+      this.processRemoteUp(prib, mpUnreachables, routeAttributes);
     }
 
     if (!message.getWithdrawnRoutes().isEmpty())
     {
       // withdraw IPv4 prefixes
-      this.prib.routingBase(RIBSide.Remote, ipv4Unicast).withdrawRoutes(message.getWithdrawnRoutes());
+      prib.routingBase(RIBSide.Remote, ipv4Unicast).withdrawRoutes(message.getWithdrawnRoutes());
     }
 
     final Set<NextHopPathAttribute> nextHops = message.lookupPathAttributes(NextHopPathAttribute.class);
@@ -675,22 +791,52 @@ public class BGPv4FSM
       throw new InvalidNextHopException();
     }
 
-    if (!(message.getNlris() == null) && !(message.getNlris().isEmpty()))
-      this.prib.routingBase(RIBSide.Remote, ipv4Unicast).addRoutes(message.getNlris(), otherAttributes, (nextHops.isEmpty()) ? null : nextHops.iterator().next().getNextHop());
+    if (hasNlris && (routeAttributes == null))
+      prib.routingBase(RIBSide.Remote, ipv4Unicast).withdrawRoutes(message.getNlris());
+    else if (hasNlris)
+      prib.routingBase(RIBSide.Remote, ipv4Unicast).addRoutes(message.getNlris(), routeAttributes, (nextHops.isEmpty()) ? null : nextHops.iterator().next().getNextHop());
+    else if (message.getWithdrawnRoutes().isEmpty() && message.getDecodedPathAttributes().isEmpty() && (message.getEncodedPathAttributes() == null))
+      this.processEndOfRib(prib, ipv4Unicast);
 
   }
 
-  private void processRemoteUp(final Set<MultiProtocolUnreachableNLRI> mpUnreachables, final Set<PathAttribute> attrs)
+  /**
+   * @return the path attributes of the routes announced by the packet, all attributes but the ones which carry the routes
+   * @throws AttributeException
+   *           if an attribute which is still encoded is malformed
+   */
+
+  private PathAttributeSet routePathAttributes(final UpdatePacket message)
+  {
+    final List<PathAttribute> decoded = new ArrayList<PathAttribute>(message.getDecodedPathAttributes().size());
+
+    for (final PathAttribute attribute : message.getDecodedPathAttributes())
+    {
+      if (!(attribute instanceof MultiProtocolReachableNLRI) && !(attribute instanceof MultiProtocolUnreachableNLRI)
+          && !(attribute instanceof NextHopPathAttribute))
+      {
+        decoded.add(attribute);
+      }
+    }
+
+    return PathAttributeSet.intern(decoded, message.getEncodedPathAttributes());
+  }
+
+  private void processRemoteUp(final PeerRoutingInformationBase prib, final Set<MultiProtocolUnreachableNLRI> mpUnreachables, final PathAttributeSet attrs)
   {
     
     for (final MultiProtocolUnreachableNLRI mp : mpUnreachables)
     {
       // null NLRI MP_UNREACH is used to indicate VPNvX EOR
       if (!mp.getNlris().isEmpty()){
-        this.prib
+        prib
           .routingBase(RIBSide.Remote, new AddressFamilyKey(mp.getAddressFamily(), mp.getSubsequentAddressFamily()))
           .withdrawRoutes(mp.getNlris());
       }
+      else
+      {
+        this.processEndOfRib(prib, new AddressFamilyKey(mp.getAddressFamily(), mp.getSubsequentAddressFamily()));
+      }
     }
   }
 
@@ -700,14 +846,22 @@ public class BGPv4FSM
    * @param attrs
    */
 
-  private void processRemoteUpdateMultiProtocolReachables(final Set<MultiProtocolReachableNLRI> mpReachables, final Set<PathAttribute> attrs)
+  private void processRemoteUpdateMultiProtocolReachables(final PeerRoutingInformationBase prib, final Set<MultiProtocolReachableNLRI> mpReachables, final PathAttributeSet attrs)
   {
 
     for (final MultiProtocolReachableNLRI mp : mpReachables)
     {
-      this.prib
-          .routingBase(RIBSide.Remote, new AddressFamilyKey(mp.getAddressFamily(), mp.getSubsequentAddressFamily()))
-          .addRoutes(mp.getNlris(), attrs, mp.getNextHop());
+      final RoutingInformationBase rib = prib.routingBase(RIBSide.Remote, new AddressFamilyKey(mp.getAddressFamily(), mp.getSubsequentAddressFamily()));
+
+      if (attrs != null)
+      {
+        rib.addRoutes(mp.getNlris(), attrs, mp.getNextHop());
+      }
+      else
+      {
+        // malformed path attributes, treat as withdraw
+        rib.withdrawRoutes(mp.getNlris());
+      }
     }
 
   }
@@ -24,14 +24,17 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-
-import org.quartz.Scheduler;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import io.netlibs.bgp.config.global.ApplicationConfiguration;
 import io.netlibs.bgp.config.global.PeerConfigurationEvent;
 import io.netlibs.bgp.config.nodes.PeerConfiguration;
 import io.netlibs.bgp.netty.service.BGPv4Client;
 import io.netlibs.bgp.rib.PeerRoutingInformationBaseManager;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -45,12 +48,48 @@ public class FSMRegistry
 
   private final ApplicationConfiguration applicationConfiguration;
 
-  private Scheduler scheduler;
+  private final Timer timer;
+
+  private final Executor updateExecutor;
+
+  // the pool created by the registry itself, shut down with the registry
+  private final ExecutorService ownedExecutor;
+
+  // runs the timers of all peers, apart from the UPDATE pool so they are not queued behind the UPDATEs
+  private final ExecutorService timerExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+      new DefaultThreadFactory("bgp-fsm", true));
+
+  /**
+   * create a registry whose state machines apply received UPDATEs on a pool of daemon threads, one per core. The pool is shut down by
+   * {@link #destroyRegistry()}. The timers of the state machines always run on a pool of their own.
+   */
+
+  public FSMRegistry(ApplicationConfiguration config, Timer timer)
+  {
+    this(config, timer, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DefaultThreadFactory("bgp-rib", true)));
+  }
+
+  private FSMRegistry(ApplicationConfiguration config, Timer timer, ExecutorService ownedExecutor)
+  {
+    this(config, timer, ownedExecutor, ownedExecutor);
+  }
+
+  /**
+   * create a registry whose state machines apply received UPDATEs on the given executor, which is shared by all peers. The timers of the
+   * state machines run on a pool of their own, which is shut down by {@link #destroyRegistry()}.
+   */
+
+  public FSMRegistry(ApplicationConfiguration config, Timer timer, Executor updateExecutor)
+  {
+    this(config, timer, updateExecutor, null);
+  }
 
-  public FSMRegistry(ApplicationConfiguration config, Scheduler scheduler)
+  private FSMRegistry(ApplicationConfiguration config, Timer timer, Executor updateExecutor, ExecutorService ownedExecutor)
   {
     this.applicationConfiguration = config;
-    this.scheduler = scheduler;
+    this.timer = timer;
+    this.updateExecutor = updateExecutor;
+    this.ownedExecutor = ownedExecutor;
   }
 
   private final Map<InetSocketAddress, BGPv4FSM> fsmMap = new HashMap<InetSocketAddress, BGPv4FSM>();
@@ -77,7 +116,10 @@ public class FSMRegistry
 
   private BGPv4FSM createFsm()
   {
-    return new BGPv4FSM(scheduler, new BGPv4Client(this), new CapabilitesNegotiator(), applicationConfiguration.getPeerRoutingInformationBaseManager(), new OutboundRoutingUpdateQueue(scheduler));
+    // the FSM timers and the MRAI timer of a peer run one at a time and in order
+    final Executor peerTimerExecutor = new SerialExecutor(this.timerExecutor);
+
+    return new BGPv4FSM(timer, peerTimerExecutor, updateExecutor, new BGPv4Client(this), new CapabilitesNegotiator(), applicationConfiguration.getPeerRoutingInformationBaseManager(), new OutboundRoutingUpdateQueue(timer, peerTimerExecutor));
   }
 
   public void registerFSM(final BGPv4FSM fsm)
@@ -132,6 +174,13 @@ public class FSMRegistry
     }
 
     this.fsmMap.clear();
+
+    if (this.ownedExecutor != null)
+    {
+      this.ownedExecutor.shutdown();
+    }
+
+    this.timerExecutor.shutdown();
   }
 
   public void peerChanged(final PeerConfigurationEvent event)
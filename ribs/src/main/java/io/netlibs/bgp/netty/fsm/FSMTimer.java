@@ -0,0 +1,128 @@
+package io.netlibs.bgp.netty.fsm;
+
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * A single restartable timer of a peer, e.g. the hold or the keepalive timer.
+ *
+ * The timer is backed by a {@link Timer} which is shared by all peers, so (re)scheduling and cancelling is O(1). The single thread of the
+ * timer only hands the task of a firing timer to an executor, which runs it. A timeout which has been replaced by rescheduling the timer
+ * is ignored if it fires before it could be cancelled.
+ */
+
+class FSMTimer
+{
+
+  private final Timer timer;
+  private final Executor executor;
+  private final Runnable task;
+
+  private Timeout timeout;
+  private long dueWhen;
+  private int repeatInterval;
+
+  /**
+   * @param timer
+   *          the timer the timeouts are scheduled on
+   * @param executor
+   *          the executor the task runs on
+   * @param task
+   *          the task to run when the timer fires
+   */
+  FSMTimer(final Timer timer, final Executor executor, final Runnable task)
+  {
+    this.timer = timer;
+    this.executor = executor;
+    this.task = task;
+  }
+
+  /**
+   * a timer which hands the given event to the FSM when it fires.
+   */
+  static FSMTimer eventTimer(final Timer timer, final Executor executor, final InternalFSM fsm, final FSMEvent event)
+  {
+    return new FSMTimer(timer, executor, () -> fsm.handleEvent(event));
+  }
+
+  /**
+   * (re)start the timer to fire once after the given number of seconds.
+   */
+  synchronized void schedule(final int whenInSeconds)
+  {
+    this.start(whenInSeconds, 0);
+  }
+
+  /**
+   * (re)start the timer to fire every given number of seconds until it is cancelled.
+   */
+  synchronized void scheduleRepeatedly(final int repeatInterval)
+  {
+    this.start(repeatInterval, repeatInterval);
+  }
+
+  synchronized void cancel()
+  {
+    if (this.timeout != null)
+    {
+      this.timeout.cancel();
+      this.timeout = null;
+    }
+  }
+
+  synchronized boolean isScheduled()
+  {
+    return this.timeout != null;
+  }
+
+  /**
+   * @return the date the timer fires the next time, <code>null</code> if the timer is not running
+   */
+  synchronized Date getDueWhen()
+  {
+    return (this.timeout != null) ? new Date(this.dueWhen) : null;
+  }
+
+  private void start(final int delayInSeconds, final int repeatInterval)
+  {
+    this.cancel();
+
+    this.repeatInterval = repeatInterval;
+    this.dueWhen = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delayInSeconds);
+    this.timeout = this.timer.newTimeout(new Expiry(), delayInSeconds, TimeUnit.SECONDS);
+  }
+
+  private class Expiry implements TimerTask
+  {
+
+    @Override
+    public void run(final Timeout timeout)
+    {
+      synchronized (FSMTimer.this)
+      {
+        if (timeout != FSMTimer.this.timeout)
+        {
+          return;
+        }
+
+        if (FSMTimer.this.repeatInterval > 0)
+        {
+          FSMTimer.this.start(FSMTimer.this.repeatInterval, FSMTimer.this.repeatInterval);
+        }
+        else
+        {
+          FSMTimer.this.timeout = null;
+        }
+      }
+
+      FSMTimer.this.executor.execute(FSMTimer.this.task);
+    }
+
+  }
+
+}
@@ -1,7 +0,0 @@
-package io.netlibs.bgp.netty.fsm;
-
-public class FireAutomaticStart extends FireEventTimeJob {
-	public FireAutomaticStart() {
-		super(FSMEvent.automaticStart());
-	}
-}
\ No newline at end of file
@@ -1,7 +0,0 @@
-package io.netlibs.bgp.netty.fsm;
-
-public class FireConnectRetryTimerExpired extends FireEventTimeJob {
-	public FireConnectRetryTimerExpired() {
-		super(FSMEvent.connectRetryTimerExpires());
-	}
-}
\ No newline at end of file
@@ -1,7 +0,0 @@
-package io.netlibs.bgp.netty.fsm;
-
-public class FireDelayOpenTimerExpired extends FireEventTimeJob {
-	public FireDelayOpenTimerExpired() {
-		super(FSMEvent.delayOpenTimerExpires());
-	}
-}
\ No newline at end of file
@@ -1,7 +0,0 @@
-package io.netlibs.bgp.netty.fsm;
-
-public class FireSendKeepalive extends FireEventTimeJob {
-	public FireSendKeepalive() {
-		super(FSMEvent.keepaliveTimerExpires());
-	}
-}
\ No newline at end of file
@@ -0,0 +1,129 @@
+package io.netlibs.bgp.netty.fsm;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies the UPDATE packets received from one peer to its RIBs off the I/O thread.
+ *
+ * The tasks of a peer run on an executor shared by all peers, one at a time and in the order they have been submitted, so each peer has
+ * a single writer to its RIBs while the work of different peers spreads across the executor threads.
+ *
+ * Every queued task takes a credit. When the credits run out, reading from the peer's channel is suspended. It is resumed from the
+ * channel's event loop once half of the credits have been returned, so a slow listener throttles its own peer instead of stalling every
+ * session on the same event loop.
+ */
+
+@Slf4j
+class InboundUpdateStage
+{
+
+  // same as the initial read credits of the simple session handler
+  static final int DEFAULT_CREDITS = 2500;
+
+  // tasks run per turn before the stage yields the executor thread to other peers
+  private static final int BATCH_SIZE = 64;
+
+  private final Executor executor;
+  private final int capacity;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicInteger credits;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile Channel channel;
+
+  InboundUpdateStage(final Executor executor)
+  {
+    this(executor, DEFAULT_CREDITS);
+  }
+
+  InboundUpdateStage(final Executor executor, final int capacity)
+  {
+    this.executor = executor;
+    this.capacity = capacity;
+    this.credits = new AtomicInteger(capacity);
+  }
+
+  /**
+   * queue a task, called from the event loop of the channel the packet has been received on.
+   */
+
+  void submit(final Channel channel, final Runnable task)
+  {
+    this.channel = channel;
+    this.tasks.add(task);
+
+    if ((this.credits.decrementAndGet() <= 0) && channel.config().isAutoRead())
+    {
+      log.debug("suspending reads from {}, {} UPDATEs queued", channel.remoteAddress(), this.tasks.size());
+      channel.config().setAutoRead(false);
+    }
+
+    this.schedule();
+  }
+
+  /**
+   * @return the number of tasks which are queued or running
+   */
+
+  int getQueuedTasks()
+  {
+    return this.capacity - this.credits.get();
+  }
+
+  private void schedule()
+  {
+    if (this.scheduled.compareAndSet(false, true))
+    {
+      this.executor.execute(this::drain);
+    }
+  }
+
+  private void drain()
+  {
+    Runnable task;
+
+    for (int i = 0; (i < BATCH_SIZE) && ((task = this.tasks.poll()) != null); i++)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (final RuntimeException ex)
+      {
+        log.error("inbound UPDATE task failed", ex);
+      }
+
+      this.release();
+    }
+
+    this.scheduled.set(false);
+
+    if (!this.tasks.isEmpty())
+    {
+      this.schedule();
+    }
+  }
+
+  private void release()
+  {
+    final Channel channel = this.channel;
+
+    if ((this.credits.incrementAndGet() == (this.capacity / 2)) && (channel != null))
+    {
+      channel.eventLoop().execute(() -> {
+        if ((this.credits.get() > 0) && !channel.config().isAutoRead())
+        {
+          log.debug("resuming reads from {}", channel.remoteAddress());
+          channel.config().setAutoRead(true);
+        }
+      });
+    }
+  }
+
+}
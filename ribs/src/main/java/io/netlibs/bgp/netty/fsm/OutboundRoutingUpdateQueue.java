@@ -18,32 +18,22 @@
 package io.netlibs.bgp.netty.fsm;
 
 import java.net.Inet4Address;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.lang3.StringUtils;
-import org.quartz.Job;
-import org.quartz.JobBuilder;
-import org.quartz.JobDataMap;
-import org.quartz.JobDetail;
-import org.quartz.JobExecutionContext;
-import org.quartz.JobExecutionException;
-import org.quartz.JobKey;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.SimpleScheduleBuilder;
-import org.quartz.TriggerBuilder;
-import org.quartz.TriggerKey;
 
+import io.netlibs.bgp.netty.protocol.update.PathAttributeCodec;
 import io.netlibs.bgp.netty.protocol.update.UpdatePacket;
 import io.netlibs.bgp.protocol.AddressFamily;
 import io.netlibs.bgp.protocol.AddressFamilyKey;
@@ -52,18 +42,26 @@ import io.netlibs.bgp.protocol.BinaryNextHop;
 import io.netlibs.bgp.protocol.InetAddressNextHop;
 import io.netlibs.bgp.protocol.NLRICodec;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.NextHop;
 import io.netlibs.bgp.protocol.RIBSide;
 import io.netlibs.bgp.protocol.SubsequentAddressFamily;
 import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
 import io.netlibs.bgp.protocol.attributes.MultiProtocolUnreachableNLRI;
 import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
 import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.PathAttributeSet;
 import io.netlibs.bgp.rib.Route;
 import io.netlibs.bgp.rib.RouteAdded;
 import io.netlibs.bgp.rib.RouteWithdrawn;
+import io.netlibs.bgp.rib.RoutesAdded;
+import io.netlibs.bgp.rib.RoutesWithdrawn;
 import io.netlibs.bgp.rib.RoutingEventListener;
 import io.netlibs.bgp.rib.RoutingInformationBaseVisitor;
 import io.netlibs.bgp.rib.TopologicalTreeSortingKey;
+import io.netlibs.bgp.rib.policy.PolicyEvaluation;
+import io.netlibs.bgp.rib.policy.PolicyResult;
+import io.netlibs.bgp.rib.policy.RoutePolicy;
+import io.netty.util.Timer;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -73,46 +71,117 @@ import io.netlibs.bgp.rib.TopologicalTreeSortingKey;
 public class OutboundRoutingUpdateQueue implements RoutingEventListener
 {
 
-  public static class BatchJob implements Job
+  private class QueueingVisitor implements RoutingInformationBaseVisitor
   {
 
-    public static final String CALLBACK_KEY = "Callback";
-    public static final String QUEUE_KEY = "Queue";
-
     @Override
-    public void execute(final JobExecutionContext context) throws JobExecutionException
+    public void visitRouteNode(final String ribName, final RIBSide side, final Route route)
     {
-      ((OutboundRoutingUpdateCallback) context.getMergedJobDataMap().get(CALLBACK_KEY))
-      .sendUpdates(((OutboundRoutingUpdateQueue) context.getMergedJobDataMap().get(QUEUE_KEY)).buildUpdates());
+      OutboundRoutingUpdateQueue.this.addRoute(ribName, side, route);
     }
 
   }
 
-  private class QueueingVisitor implements RoutingInformationBaseVisitor
+  /**
+   * An UPDATE packet under construction which keeps track of its encoded size. The packet is sized once when it is created, so packing
+   * NLRIs into packets is linear in the number of NLRIs.
+   */
+
+  private static class UpdatePacketBuilder
   {
 
-    @Override
-    public void visitRouteNode(final String ribName, final RIBSide side, final Route route)
+    // the limit buildUpdates() has always packed to
+    private static final int MAX_PACKET_SIZE = BGPv4Constants.BGP_PACKET_MAX_LENGTH - BGPv4Constants.BGP_PACKET_HEADER_LENGTH;
+
+    private final List<NetworkLayerReachabilityInformation> nlris;
+    private final boolean multiProtocol;
+    private int attributeValueLength;
+    private int size;
+
+    /**
+     * @param packet
+     *          the packet, all attributes need to be in place
+     * @param nlris
+     *          the list the NLRIs are added to
+     * @param multiProtocol
+     *          the MP_REACH_NLRI or MP_UNREACH_NLRI attribute holding the list, <code>null</code> if the list is part of the packet itself
+     */
+    UpdatePacketBuilder(final UpdatePacket packet, final List<NetworkLayerReachabilityInformation> nlris, final PathAttribute multiProtocol)
     {
-      OutboundRoutingUpdateQueue.this.addRoute(ribName, side, route);
+      this.nlris = nlris;
+      this.multiProtocol = (multiProtocol != null);
+      this.attributeValueLength = (multiProtocol != null) ? PathAttributeCodec.valueLength(multiProtocol) : 0;
+      this.size = packet.calculatePacketSize();
+    }
+
+    /**
+     * add the NLRI if it still fits into the packet, the first NLRI is always added.
+     *
+     * @return <code>true</code> if the NLRI has been added
+     */
+    boolean add(final NetworkLayerReachabilityInformation nlri)
+    {
+      final int nlriLength = NLRICodec.calculateEncodedNLRILength(nlri);
+      int growth = nlriLength;
+
+      if (this.multiProtocol && (this.attributeValueLength <= 255) && ((this.attributeValueLength + nlriLength) > 255))
+      {
+        growth++; // the attribute switches to the extended length field
+      }
+
+      if (!this.nlris.isEmpty() && ((this.size + growth) > MAX_PACKET_SIZE))
+      {
+        return false;
+      }
+
+      this.nlris.add(nlri);
+      this.size += growth;
+      this.attributeValueLength += nlriLength;
+
+      return true;
     }
 
   }
 
+  /**
+   * the NLRI of a route to send, including its label, and the key of the attributes to announce it with or WITHDRAWN
+   */
+
+  private static final class PendingRoute
+  {
+    private final NetworkLayerReachabilityInformation nlri;
+    private final TopologicalTreeSortingKey state;
+
+    private PendingRoute(final NetworkLayerReachabilityInformation nlri, final TopologicalTreeSortingKey state)
+    {
+      this.nlri = nlri;
+      this.state = state;
+    }
+  }
+
+  private static final TopologicalTreeSortingKey WITHDRAWN = new TopologicalTreeSortingKey(AddressFamilyKey.IPV4_UNICAST_FORWARDING, null);
+
   private OutboundRoutingUpdateCallback callback;
   private String peerName;
   private Set<AddressFamilyKey> updateMask;
   private boolean active;
-  private final Map<TopologicalTreeSortingKey, List<NetworkLayerReachabilityInformation>> addedRoutes = new TreeMap<TopologicalTreeSortingKey, List<NetworkLayerReachabilityInformation>>();
-  private final Map<AddressFamilyKey, List<NetworkLayerReachabilityInformation>> withdrawnRoutes = new TreeMap<AddressFamilyKey, List<NetworkLayerReachabilityInformation>>();
-  private final Scheduler scheduler;
-  private JobDetail jobDetail;
-  private TriggerKey triggerKey;
-  private JobKey jobKey;
-
-  public OutboundRoutingUpdateQueue(final Scheduler scheduler)
+  // applied to the routes before they are queued, null to announce them unchanged
+  private volatile RoutePolicy exportPolicy;
+  // the latest pending state of each prefix, keyed by route distinguisher and prefix without the label
+  private final Map<AddressFamilyKey, Map<NetworkLayerReachabilityInformation, PendingRoute>> pendingRoutes = new TreeMap<AddressFamilyKey, Map<NetworkLayerReachabilityInformation, PendingRoute>>();
+  // sends the pending updates once per MRAI interval
+  private final FSMTimer batchTimer;
+
+  /**
+   * @param timer
+   *          the timer the MRAI interval is scheduled on
+   * @param executor
+   *          the executor the updates are built and sent on, it must run them one at a time so batches go out in order
+   */
+
+  public OutboundRoutingUpdateQueue(final Timer timer, final Executor executor)
   {
-    this.scheduler = scheduler;
+    this.batchTimer = new FSMTimer(timer, executor, () -> this.callback.sendUpdates(this.buildUpdates()));
   }
 
   RoutingInformationBaseVisitor getImportVisitor()
@@ -140,6 +209,60 @@ public class OutboundRoutingUpdateQueue implements RoutingEventListener
     }
   }
 
+  /**
+   * queue a batch of routes, the routes share their attributes, so the key to announce them with is built once for the whole batch.
+   */
+
+  @Override
+  public void routesAdded(final RoutesAdded event)
+  {
+    if (this.active && (event.getSide() == RIBSide.Local) && StringUtils.equals(event.getPeerName(), this.peerName)
+        && this.updateMask.contains(event.getAddressFamilyKey()))
+    {
+      final RoutePolicy policy = this.exportPolicy;
+
+      if (policy == null)
+      {
+        this.setPendingState(event.getAddressFamilyKey(), event.getRoutes(),
+            this.announceKey(event.getAddressFamilyKey(), event.getPathAttributes(), event.getNextHop()));
+        return;
+      }
+
+      // the policy is evaluated once for the batch, each distinct result is turned into a key once
+      final PolicyEvaluation evaluation = policy.evaluate(event.getPathAttributes(), event.getNextHop());
+      final Map<PolicyResult, List<Route>> groups = new LinkedHashMap<PolicyResult, List<Route>>();
+
+      for (final Route route : event.getRoutes())
+      {
+        final PolicyResult result = evaluation.apply(route.getKey());
+        List<Route> group = groups.get(result);
+
+        if (group == null)
+        {
+          group = new ArrayList<Route>();
+          groups.put(result, group);
+        }
+
+        group.add(route);
+      }
+
+      for (final Entry<PolicyResult, List<Route>> group : groups.entrySet())
+      {
+        this.setPendingState(event.getAddressFamilyKey(), group.getValue(), this.exportKey(event.getAddressFamilyKey(), group.getKey(), event.getPathAttributes(), event.getNextHop()));
+      }
+    }
+  }
+
+  @Override
+  public void routesWithdrawn(final RoutesWithdrawn event)
+  {
+    if (this.active && (event.getSide() == RIBSide.Local) && StringUtils.equals(event.getPeerName(), this.peerName)
+        && this.updateMask.contains(event.getAddressFamilyKey()))
+    {
+      this.setPendingState(event.getAddressFamilyKey(), event.getRoutes(), WITHDRAWN);
+    }
+  }
+
   /**
    * @return the peerName
    */
@@ -182,40 +305,21 @@ public class OutboundRoutingUpdateQueue implements RoutingEventListener
     return this.active;
   }
 
-  void shutdown() throws SchedulerException
+  void shutdown()
   {
     this.active = false;
     this.cancelJob();
-    synchronized (this.addedRoutes)
+    synchronized (this.pendingRoutes)
     {
-      this.addedRoutes.clear();
+      this.pendingRoutes.clear();
     }
   };
 
-  void startSendingUpdates(final int repeatInterval) throws SchedulerException
+  void startSendingUpdates(final int repeatInterval)
   {
     if (repeatInterval > 0)
     {
-
-      if (this.isJobScheduled())
-      {
-        this.cancelJob();
-      }
-
-      final JobDataMap map = new JobDataMap();
-
-      map.put(BatchJob.CALLBACK_KEY, this.callback);
-      map.put(BatchJob.QUEUE_KEY, this);
-
-      this.jobKey = new JobKey(UUID.randomUUID().toString());
-      this.jobDetail = JobBuilder.newJob(BatchJob.class).usingJobData(map).withIdentity(this.jobKey).build();
-      this.triggerKey = TriggerKey.triggerKey(UUID.randomUUID().toString());
-
-      this.scheduler.scheduleJob(this.jobDetail, TriggerBuilder.newTrigger()
-          .withIdentity(this.triggerKey)
-          .withSchedule(SimpleScheduleBuilder.repeatSecondlyForever(repeatInterval))
-          .startAt(new Date(System.currentTimeMillis() + (repeatInterval * 1000L)))
-          .build());
+      this.batchTimer.scheduleRepeatedly(repeatInterval);
     }
     this.active = true;
   }
@@ -229,83 +333,120 @@ public class OutboundRoutingUpdateQueue implements RoutingEventListener
     this.callback = callback;
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * @param exportPolicy
+   *          the policy applied to the routes announced to the peer, <code>null</code> to announce them unchanged. Routes the policy
+   *          rejects are withdrawn from the peer.
+   */
+  void setExportPolicy(final RoutePolicy exportPolicy)
+  {
+    this.exportPolicy = exportPolicy;
+  }
+
   private void addRoute(final String ribName, final RIBSide side, final Route route)
+  {
+    final RoutePolicy policy = this.exportPolicy;
+
+    if (policy == null)
+    {
+      this.setPendingState(route, this.announceKey(route.getAddressFamilyKey(), route.getPathAttributes(), route.getNextHop()));
+    }
+    else
+    {
+      this.setPendingState(route, this.exportKey(route.getAddressFamilyKey(), policy.apply(route), route.getPathAttributes(), route.getNextHop()));
+    }
+  }
+
+  /**
+   * the key routes the export policy had the given result for are queued with
+   */
+
+  private TopologicalTreeSortingKey exportKey(final AddressFamilyKey afk, final PolicyResult result, final PathAttributeSet pathAttributes,
+      final NextHop nextHop)
+  {
+    return result.isAccepted() ? this.announceKey(afk, result.getPathAttributes(pathAttributes), result.getNextHop(nextHop)) : WITHDRAWN;
+  }
+
+  /**
+   * build the key routes with the given attributes and next hop are announced with.
+   */
+
+  @SuppressWarnings("unchecked")
+  private TopologicalTreeSortingKey announceKey(final AddressFamilyKey afk, final Collection<PathAttribute> pathAttributes, final NextHop nextHop)
   {
 
-    TopologicalTreeSortingKey key;
     Collection<PathAttribute> keyAttributes;
 
-    if (route.getAddressFamilyKey().matches(AddressFamily.IPv4, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING))
+    if (afk.matches(AddressFamily.IPv4, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING))
     {
       // handle non-MP IPv4 case
-      keyAttributes = this.filterAttribute(route.getPathAttributes(), Arrays.asList(NextHopPathAttribute.class));
-      keyAttributes.add(new NextHopPathAttribute((InetAddressNextHop<Inet4Address>) route.getNextHop()));
+      keyAttributes = this.filterAttribute(pathAttributes, Arrays.asList(NextHopPathAttribute.class));
+      keyAttributes.add(new NextHopPathAttribute((InetAddressNextHop<Inet4Address>) nextHop));
     }
     else
     {
 
       // handle any other case
-      keyAttributes = this.filterAttribute(route.getPathAttributes(), Arrays.asList(MultiProtocolReachableNLRI.class, MultiProtocolReachableNLRI.class));
+      keyAttributes = this.filterAttribute(pathAttributes, Arrays.asList(MultiProtocolReachableNLRI.class, MultiProtocolUnreachableNLRI.class));
 
       keyAttributes.add(
           new MultiProtocolReachableNLRI(
-              route.getAddressFamilyKey().getAddressFamily(),
-              route.getAddressFamilyKey().getSubsequentAddressFamily(),
-              (BinaryNextHop) route.getNextHop()));
+              afk.getAddressFamily(),
+              afk.getSubsequentAddressFamily(),
+              (BinaryNextHop) nextHop));
 
     }
 
-    key = new TopologicalTreeSortingKey(route.getAddressFamilyKey(), keyAttributes);
+    return new TopologicalTreeSortingKey(afk, keyAttributes);
+
+  }
 
-    synchronized (this.addedRoutes)
+  private void withdrawRoute(final String ribName, final RIBSide side, final Route route)
+  {
+    this.setPendingState(route, WITHDRAWN);
+  }
+
+  /**
+   * record the latest state of the route's prefix, replacing any state still pending for it. A prefix which changes several times
+   * between two runs of {@link #buildUpdates()} is only sent in its final state, a changed label replaces the pending state as well.
+   */
+
+  private void setPendingState(final Route route, final TopologicalTreeSortingKey state)
+  {
+    synchronized (this.pendingRoutes)
     {
+      Map<NetworkLayerReachabilityInformation, PendingRoute> family = this.pendingRoutes.get(route.getAddressFamilyKey());
 
-      if (!this.addedRoutes.containsKey(key))
+      if (family == null)
       {
-        this.addedRoutes.put(key, new LinkedList<NetworkLayerReachabilityInformation>());
+        family = new LinkedHashMap<NetworkLayerReachabilityInformation, PendingRoute>();
+        this.pendingRoutes.put(route.getAddressFamilyKey(), family);
       }
 
-      this.addedRoutes.get(key).add(route.getNlri());
-
+      family.put(route.getKey(), new PendingRoute(route.getNlri(), state));
     }
-
   }
 
-  private void withdrawRoute(final String ribName, final RIBSide side, final Route route)
+  /**
+   * record the same state for a batch of routes of one address family
+   */
+
+  private void setPendingState(final AddressFamilyKey afk, final List<Route> routes, final TopologicalTreeSortingKey state)
   {
-    // remove the NLRI from any scheduled route add updates
-    synchronized (this.addedRoutes)
+    synchronized (this.pendingRoutes)
     {
-      final Set<TopologicalTreeSortingKey> removeableKeys = new HashSet<TopologicalTreeSortingKey>();
-
-      for (final TopologicalTreeSortingKey key : this.addedRoutes.keySet())
-      {
-        if (key.getAddressFamilyKey().equals(route.getAddressFamilyKey()))
-        {
-          this.addedRoutes.get(key).remove(route.getNlri());
-
-          if (this.addedRoutes.get(key).size() == 0)
-          {
-            removeableKeys.add(key);
-          }
-        }
-      }
+      Map<NetworkLayerReachabilityInformation, PendingRoute> family = this.pendingRoutes.get(afk);
 
-      for (final TopologicalTreeSortingKey key : removeableKeys)
+      if (family == null)
       {
-        this.addedRoutes.remove(key);
+        family = new LinkedHashMap<NetworkLayerReachabilityInformation, PendingRoute>();
+        this.pendingRoutes.put(afk, family);
       }
-    }
 
-    synchronized (this.withdrawnRoutes)
-    {
-      if (!this.withdrawnRoutes.containsKey(route.getAddressFamilyKey()))
+      for (final Route route : routes)
       {
-        this.withdrawnRoutes.put(route.getAddressFamilyKey(), new LinkedList<NetworkLayerReachabilityInformation>());
+        family.put(route.getKey(), new PendingRoute(route.getNlri(), state));
       }
-
-      this.withdrawnRoutes.get(route.getAddressFamilyKey()).add(route.getNlri());
     }
   }
 
@@ -327,145 +468,156 @@ public class OutboundRoutingUpdateQueue implements RoutingEventListener
 
   List<UpdatePacket> buildUpdates()
   {
-    final List<UpdatePacket> updates = new LinkedList<UpdatePacket>();
-    UpdatePacket current = null;
+    final Map<AddressFamilyKey, List<NetworkLayerReachabilityInformation>> withdrawnRoutes = new TreeMap<AddressFamilyKey, List<NetworkLayerReachabilityInformation>>();
+    final Map<TopologicalTreeSortingKey, List<NetworkLayerReachabilityInformation>> addedRoutes = new TreeMap<TopologicalTreeSortingKey, List<NetworkLayerReachabilityInformation>>();
 
-    synchronized (this.withdrawnRoutes)
+    synchronized (this.pendingRoutes)
     {
-      for (final Entry<AddressFamilyKey, List<NetworkLayerReachabilityInformation>> withdrawnRouteEntry : this.withdrawnRoutes.entrySet())
+      for (final Entry<AddressFamilyKey, Map<NetworkLayerReachabilityInformation, PendingRoute>> family : this.pendingRoutes.entrySet())
       {
-        for (final NetworkLayerReachabilityInformation nlri : withdrawnRouteEntry.getValue())
+        for (final PendingRoute pending : family.getValue().values())
         {
-          MultiProtocolUnreachableNLRI mpUnreachable = null;
-          final AddressFamilyKey afk = withdrawnRouteEntry.getKey();
-
-          if (((current == null)
-              || ((current.calculatePacketSize() + NLRICodec.calculateEncodedNLRILength(nlri)) > (BGPv4Constants.BGP_PACKET_MAX_LENGTH - BGPv4Constants.BGP_PACKET_HEADER_LENGTH))))
+          if (pending.state == WITHDRAWN)
           {
-            current = new UpdatePacket();
-
-            if (!afk.equals(AddressFamilyKey.IPV4_UNICAST_FORWARDING))
-            {
-              mpUnreachable = new MultiProtocolUnreachableNLRI(afk.getAddressFamily(), afk.getSubsequentAddressFamily());
-              current.getPathAttributes().add(mpUnreachable);
-            }
-            updates.add(current);
+            addToGroup(withdrawnRoutes, family.getKey(), pending.nlri);
           }
+          else
+          {
+            addToGroup(addedRoutes, pending.state, pending.nlri);
+          }
+        }
+      }
+
+      this.pendingRoutes.clear();
+    }
+
+    final List<UpdatePacket> updates = new LinkedList<UpdatePacket>();
+    UpdatePacketBuilder current = null;
+
+    for (final Entry<AddressFamilyKey, List<NetworkLayerReachabilityInformation>> withdrawnRouteEntry : withdrawnRoutes.entrySet())
+    {
+      final AddressFamilyKey afk = withdrawnRouteEntry.getKey();
+
+      for (final NetworkLayerReachabilityInformation nlri : withdrawnRouteEntry.getValue())
+      {
+        if ((current == null) || !current.add(nlri))
+        {
+          final UpdatePacket packet = new UpdatePacket();
 
           if (afk.matches(AddressFamily.IPv4, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING))
           {
-            current.getWithdrawnRoutes().add(nlri);
+            current = new UpdatePacketBuilder(packet, packet.getWithdrawnRoutes(), null);
           }
           else
           {
-            mpUnreachable.getNlris().add(nlri);
+            final MultiProtocolUnreachableNLRI mpUnreachable = new MultiProtocolUnreachableNLRI(afk.getAddressFamily(), afk.getSubsequentAddressFamily());
+
+            packet.getPathAttributes().add(mpUnreachable);
+            current = new UpdatePacketBuilder(packet, mpUnreachable.getNlris(), mpUnreachable);
           }
+
+          updates.add(packet);
+          current.add(nlri);
         }
-        current = null;
       }
-
-      this.withdrawnRoutes.clear();
+      current = null;
     }
 
-    synchronized (this.addedRoutes)
+    for (final Entry<TopologicalTreeSortingKey, List<NetworkLayerReachabilityInformation>> addedRouteEntry : addedRoutes.entrySet())
     {
 
-      for (final Entry<TopologicalTreeSortingKey, List<NetworkLayerReachabilityInformation>> addedRouteEntry : this.addedRoutes.entrySet())
-      {
-
-        final TopologicalTreeSortingKey key = addedRouteEntry.getKey();
-        final List<NetworkLayerReachabilityInformation> nlris = addedRouteEntry.getValue();
-        MultiProtocolReachableNLRI mpNLRI = null;
+      final TopologicalTreeSortingKey key = addedRouteEntry.getKey();
+      final List<NetworkLayerReachabilityInformation> nlris = addedRouteEntry.getValue();
+      MultiProtocolReachableNLRI keyNLRI = null;
 
-        if (!key.getAddressFamilyKey().matches(AddressFamily.IPv4, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING))
+      if (!key.getAddressFamilyKey().matches(AddressFamily.IPv4, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING))
+      {
+        for (final PathAttribute pathAttribute : key.getPathAttributes())
         {
-          for (final PathAttribute pathAttribute : key.getPathAttributes())
+          if (pathAttribute instanceof MultiProtocolReachableNLRI)
           {
-            if (pathAttribute instanceof MultiProtocolReachableNLRI)
-            {
-              mpNLRI = (MultiProtocolReachableNLRI) pathAttribute;
-              break;
-            }
+            keyNLRI = (MultiProtocolReachableNLRI) pathAttribute;
+            break;
           }
         }
+      }
 
-        for (final NetworkLayerReachabilityInformation nlri : nlris)
+      for (final NetworkLayerReachabilityInformation nlri : nlris)
+      {
+        if ((current == null) || !current.add(nlri))
         {
-          if (((current == null)
-              || ((current.calculatePacketSize() + NLRICodec.calculateEncodedNLRILength(nlri)) > (BGPv4Constants.BGP_PACKET_MAX_LENGTH - BGPv4Constants.BGP_PACKET_HEADER_LENGTH))))
+          final UpdatePacket packet = new UpdatePacket();
+          MultiProtocolReachableNLRI mpNLRI = null;
+
+          if (keyNLRI != null)
           {
-            current = new UpdatePacket();
-            current.getPathAttributes().addAll(key.getPathAttributes());
-            updates.add(current);
+            // the key attributes are interned and shared, so each packet carries the NLRIs in its own MP_REACH_NLRI attribute
+            mpNLRI = new MultiProtocolReachableNLRI(keyNLRI.getAddressFamily(), keyNLRI.getSubsequentAddressFamily(), keyNLRI.getNextHop());
+            packet.getPathAttributes().add(mpNLRI);
           }
 
+          // all other attributes are encoded once per attribute set and shared by all packets and peers
+          packet.setEncodedPathAttributes(key.getPathAttributes().getEncoded());
 
-          if (key.getAddressFamilyKey().matches(AddressFamily.IPv4, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING))
-          {
-            current.getNlris().add(nlri);
-          }
-          else
-          {
-            mpNLRI.getNlris().add(nlri);
-          }
-        }
+          current = (mpNLRI == null) ? new UpdatePacketBuilder(packet, packet.getNlris(), null) : new UpdatePacketBuilder(packet, mpNLRI.getNlris(), mpNLRI);
 
-        current = null;
+          updates.add(packet);
+          current.add(nlri);
+        }
       }
 
-      this.addedRoutes.clear();
+      current = null;
     }
 
     return updates;
   }
 
-  int getNumberOfPendingUpdates()
+  private static <K> void addToGroup(final Map<K, List<NetworkLayerReachabilityInformation>> groups, final K key, final NetworkLayerReachabilityInformation nlri)
   {
+    List<NetworkLayerReachabilityInformation> group = groups.get(key);
 
-    int result = 0;
-
-    synchronized (this.addedRoutes)
+    if (group == null)
     {
-      result += this.addedRoutes.size();
+      group = new ArrayList<NetworkLayerReachabilityInformation>();
+      groups.put(key, group);
     }
 
-    synchronized (this.withdrawnRoutes)
-    {
-      result += this.withdrawnRoutes.size();
-    }
-
-    return result;
+    group.add(nlri);
   }
 
-  boolean isJobScheduled() throws SchedulerException
+  /**
+   * @return the number of prefixes with a pending announcement or withdrawal. Each prefix is counted once however often it has changed,
+   *         the number of UPDATE packets these are packed into is only known once {@link #buildUpdates()} runs.
+   */
+  int getNumberOfPendingRoutes()
   {
 
-    if (this.triggerKey == null)
+    int result = 0;
+
+    synchronized (this.pendingRoutes)
     {
-      return false;
+      for (final Map<NetworkLayerReachabilityInformation, PendingRoute> family : this.pendingRoutes.values())
+      {
+        result += family.size();
+      }
     }
 
-    return this.scheduler.checkExists(this.triggerKey);
-
+    return result;
   }
 
-  public Date getNextFireWhen() throws SchedulerException
+  boolean isJobScheduled()
   {
-    if (!this.isJobScheduled())
-    {
-      return null;
-    }
+    return this.batchTimer.isScheduled();
+  }
 
-    return this.scheduler.getTrigger(this.triggerKey).getFireTimeAfter(new Date(System.currentTimeMillis()));
+  public Date getNextFireWhen()
+  {
+    return this.batchTimer.getDueWhen();
   }
 
-  void cancelJob() throws SchedulerException
+  void cancelJob()
   {
-    if (this.triggerKey != null)
-    {
-      this.scheduler.unscheduleJob(this.triggerKey);
-      this.triggerKey = null;
-    }
+    this.batchTimer.cancel();
   }
 
-}
\ No newline at end of file
+}
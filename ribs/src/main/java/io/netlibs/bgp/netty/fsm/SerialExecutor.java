@@ -0,0 +1,69 @@
+package io.netlibs.bgp.netty.fsm;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the tasks of one peer on an executor shared by all peers, one at a time and in the order they have been submitted.
+ *
+ * The timers of a peer fire on the thread of the timer wheel, which only hands their tasks to this executor, so a slow task neither
+ * delays the timers of other peers nor overlaps with another timer of the same peer.
+ */
+
+@Slf4j
+class SerialExecutor implements Executor
+{
+
+  private final Executor executor;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  SerialExecutor(final Executor executor)
+  {
+    this.executor = executor;
+  }
+
+  @Override
+  public void execute(final Runnable task)
+  {
+    this.tasks.add(task);
+    this.schedule();
+  }
+
+  private void schedule()
+  {
+    if (this.scheduled.compareAndSet(false, true))
+    {
+      this.executor.execute(this::drain);
+    }
+  }
+
+  private void drain()
+  {
+    Runnable task;
+
+    while ((task = this.tasks.poll()) != null)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (final RuntimeException ex)
+      {
+        log.error("timer task failed", ex);
+      }
+    }
+
+    this.scheduled.set(false);
+
+    if (!this.tasks.isEmpty())
+    {
+      this.schedule();
+    }
+  }
+
+}
@@ -25,6 +25,7 @@ import io.netlibs.bgp.netty.fsm.FSMRegistry;
 import io.netlibs.bgp.netty.protocol.BGPv4Packet;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -43,6 +44,7 @@ import lombok.extern.slf4j.Slf4j;
  */
 
 @Slf4j
+@Sharable
 @RequiredArgsConstructor
 public class BGPv4ServerEndpoint extends SimpleChannelInboundHandler<Object>
 {
@@ -20,6 +20,7 @@ import io.netlibs.bgp.config.nodes.PeerConfiguration;
 import io.netlibs.bgp.handlers.BGPv4Codec;
 import io.netlibs.bgp.handlers.BGPv4Reframer;
 import io.netlibs.bgp.handlers.InboundOpenCapabilitiesProcessor;
+import io.netlibs.bgp.net.BGPv4Transport;
 import io.netlibs.bgp.netty.codec.BGPv4PacketDecoder;
 import io.netlibs.bgp.netty.fsm.FSMRegistry;
 import io.netlibs.bgp.netty.handlers.BGPv4ClientEndpoint;
@@ -29,10 +30,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 /**
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
@@ -42,22 +40,25 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 public class BGPv4Client
 {
 
-  private static final EventLoopGroup workerGroup = new NioEventLoopGroup(1);
+  private final BGPv4Transport transport;
   private Channel clientChannel;
   private final FSMRegistry registry;
 
   public BGPv4Client(final FSMRegistry registry)
+  {
+    this(registry, BGPv4Transport.getDefault());
+  }
+
+  public BGPv4Client(final FSMRegistry registry, final BGPv4Transport transport)
   {
     this.registry = registry;
+    this.transport = transport;
   }
 
   public ChannelFuture startClient(final PeerConfiguration peerConfiguration)
   {
 
-    final Bootstrap b = new Bootstrap();
-
-    b.group(workerGroup);
-    b.channel(NioSocketChannel.class);
+    final Bootstrap b = this.transport.bootstrap();
 
     b.option(ChannelOption.TCP_NODELAY, true);
     b.option(ChannelOption.SO_KEEPALIVE, true);
@@ -68,7 +69,7 @@ public class BGPv4Client
       public void initChannel(final SocketChannel ch) throws Exception
       {
         ch.pipeline().addLast(BGPv4Reframer.HANDLER_NAME, new BGPv4Reframer());
-        ch.pipeline().addLast(BGPv4Codec.HANDLER_NAME, new BGPv4Codec(BGPv4PacketDecoder.getInstance()));
+        ch.pipeline().addLast(BGPv4Codec.HANDLER_NAME, new BGPv4Codec(BGPv4PacketDecoder.getLazyInstance()));
         ch.pipeline().addLast(InboundOpenCapabilitiesProcessor.HANDLER_NAME, new InboundOpenCapabilitiesProcessor());
         ch.pipeline().addLast(ValidateServerIdentifier.HANDLER_NAME, new ValidateServerIdentifier());
         ch.pipeline().addLast(BGPv4ClientEndpoint.HANDLER_NAME, new BGPv4ClientEndpoint(BGPv4Client.this.registry));
@@ -20,6 +20,7 @@ import io.netlibs.bgp.config.global.ApplicationConfiguration;
 import io.netlibs.bgp.handlers.BGPv4Codec;
 import io.netlibs.bgp.handlers.BGPv4Reframer;
 import io.netlibs.bgp.handlers.InboundOpenCapabilitiesProcessor;
+import io.netlibs.bgp.net.BGPv4Transport;
 import io.netlibs.bgp.netty.codec.BGPv4PacketDecoder;
 import io.netlibs.bgp.netty.fsm.FSMRegistry;
 import io.netlibs.bgp.netty.handlers.BGPv4ServerEndpoint;
@@ -29,9 +30,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -45,36 +44,37 @@ public class BGPv4Server
 
   private final ApplicationConfiguration applicationConfiguration;
   private final BGPv4ServerEndpoint serverEndpoint;
-  private BGPv4Codec codec = new BGPv4Codec(BGPv4PacketDecoder.getInstance());
-  private InboundOpenCapabilitiesProcessor inboundOpenCapProcessor = new InboundOpenCapabilitiesProcessor();
-  private ValidateServerIdentifier validateServer = new ValidateServerIdentifier();
-  private BGPv4Reframer reframer = new BGPv4Reframer();
+  private final BGPv4Transport transport;
   private Channel serverChannel;
 
   public BGPv4Server(ApplicationConfiguration config, FSMRegistry registry)
+  {
+    this(config, registry, BGPv4Transport.getDefault());
+  }
+
+  public BGPv4Server(ApplicationConfiguration config, FSMRegistry registry, BGPv4Transport transport)
   {
     this.serverEndpoint = new BGPv4ServerEndpoint(registry);
     this.applicationConfiguration = config;
+    this.transport = transport;
   }
 
   public void startServer()
   {
 
-    ServerBootstrap bootstrap = new ServerBootstrap();
-
-    bootstrap.group(new NioEventLoopGroup(), new NioEventLoopGroup());
+    ServerBootstrap bootstrap = this.transport.serverBootstrap();
 
+    // the framing and OPEN handlers keep per session state, so every session gets its own
     bootstrap
-        .channel(NioServerSocketChannel.class)
         .childHandler(new ChannelInitializer<SocketChannel>() {
           @Override
           public void initChannel(SocketChannel ch) throws Exception
           {
             ChannelPipeline pipeline = ch.pipeline();
-            pipeline.addLast(BGPv4Reframer.HANDLER_NAME, BGPv4Server.this.reframer);
-            pipeline.addLast(BGPv4Codec.HANDLER_NAME, BGPv4Server.this.codec);
-            pipeline.addLast(InboundOpenCapabilitiesProcessor.HANDLER_NAME, BGPv4Server.this.inboundOpenCapProcessor);
-            pipeline.addLast(ValidateServerIdentifier.HANDLER_NAME, BGPv4Server.this.validateServer);
+            pipeline.addLast(BGPv4Reframer.HANDLER_NAME, new BGPv4Reframer());
+            pipeline.addLast(BGPv4Codec.HANDLER_NAME, new BGPv4Codec(BGPv4PacketDecoder.getLazyInstance()));
+            pipeline.addLast(InboundOpenCapabilitiesProcessor.HANDLER_NAME, new InboundOpenCapabilitiesProcessor());
+            pipeline.addLast(ValidateServerIdentifier.HANDLER_NAME, new ValidateServerIdentifier());
             pipeline.addLast(BGPv4ServerEndpoint.HANDLER_NAME, BGPv4Server.this.serverEndpoint);
           }
         });
@@ -26,10 +26,8 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.quartz.Scheduler;
-import org.quartz.impl.StdSchedulerFactory;
-
 import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import io.netlibs.bgp.config.global.ApplicationConfiguration;
 import io.netlibs.bgp.config.nodes.impl.CapabilitiesImpl;
@@ -73,6 +71,8 @@ import io.netlibs.bgp.rib.RoutingEventListener;
 import io.netlibs.ipaddr.CidrV4Address;
 import io.netlibs.ipaddr.CidrV6Address;
 import io.netlibs.ipaddr.IPv6Address;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -89,7 +89,7 @@ public class BGPv4Service
 
   private final FSMRegistry fsmRegistry;
   private final BGPv4Server serverInstance;
-  private final Scheduler scheduler;
+  private final Timer timer;
 
   /**
    * start the service
@@ -125,18 +125,18 @@ public class BGPv4Service
     }
 
     this.fsmRegistry.destroyRegistry();
+
+    this.timer.stop();
   }
 
   public static void main(final String[] args) throws Exception
   {
 
-    final Scheduler scheduler = new StdSchedulerFactory().getScheduler();
-
-    scheduler.start();
+    final Timer timer = new HashedWheelTimer();
 
     final PeerRoutingInformationBaseManager pribm = new PeerRoutingInformationBaseManager();
 
-    final OutboundRoutingUpdateQueue out = new OutboundRoutingUpdateQueue(scheduler);
+    final OutboundRoutingUpdateQueue out = new OutboundRoutingUpdateQueue(timer, MoreExecutors.directExecutor());
 
     // ----
 
@@ -516,9 +516,9 @@ public class BGPv4Service
     app.addPeer(config);
     app.setPeerRoutingInformationBaseManager(pribm);
 
-    final FSMRegistry reg = new FSMRegistry(app, scheduler);
+    final FSMRegistry reg = new FSMRegistry(app, timer);
 
-    final BGPv4Service service = new BGPv4Service(reg, new BGPv4Server(app, reg), scheduler);
+    final BGPv4Service service = new BGPv4Service(reg, new BGPv4Server(app, reg), timer);
 
     // ----
 
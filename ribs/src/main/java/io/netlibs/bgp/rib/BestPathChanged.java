@@ -0,0 +1,71 @@
+package io.netlibs.bgp.rib;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import lombok.ToString;
+
+/**
+ * Event fired by a {@link LocRoutingInformationBase} when the best path of a prefix has changed.
+ */
+
+@ToString
+public class BestPathChanged
+{
+
+  private final AddressFamilyKey addressFamilyKey;
+  private final NetworkLayerReachabilityInformation nlri;
+  private final Route previousRoute;
+  private final String peerName;
+  private final Route route;
+
+  BestPathChanged(final AddressFamilyKey addressFamilyKey, final NetworkLayerReachabilityInformation nlri, final Route previousRoute,
+      final String peerName, final Route route)
+  {
+    this.addressFamilyKey = addressFamilyKey;
+    this.nlri = nlri;
+    this.previousRoute = previousRoute;
+    this.peerName = peerName;
+    this.route = route;
+  }
+
+  /**
+   * @return the addressFamilyKey
+   */
+  public AddressFamilyKey getAddressFamilyKey()
+  {
+    return this.addressFamilyKey;
+  }
+
+  /**
+   * @return the prefix, without the label for the labelled and VPN families, see {@link Route#getKey()}
+   */
+  public NetworkLayerReachabilityInformation getNlri()
+  {
+    return this.nlri;
+  }
+
+  /**
+   * @return the previous best path, <code>null</code> if the prefix was not reachable before
+   */
+  public Route getPreviousRoute()
+  {
+    return this.previousRoute;
+  }
+
+  /**
+   * @return the peer the best path has been learned from, <code>null</code> if the prefix is not reachable anymore
+   */
+  public String getPeerName()
+  {
+    return this.peerName;
+  }
+
+  /**
+   * @return the best path, <code>null</code> if the prefix is not reachable anymore
+   */
+  public Route getRoute()
+  {
+    return this.route;
+  }
+
+}
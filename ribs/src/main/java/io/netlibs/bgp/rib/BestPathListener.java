@@ -0,0 +1,17 @@
+package io.netlibs.bgp.rib;
+
+/**
+ * Receives the changes of the best paths selected by a {@link LocRoutingInformationBase}.
+ */
+
+public interface BestPathListener
+{
+
+  /**
+   * the best path of a prefix has changed, i.e. it has been selected, replaced or lost
+   *
+   * @param event
+   */
+  public void bestPathChanged(BestPathChanged event);
+
+}
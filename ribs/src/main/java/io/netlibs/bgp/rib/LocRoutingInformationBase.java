@@ -0,0 +1,701 @@
+package io.netlibs.bgp.rib;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.ClusterListPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiExitDiscPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginatorIDPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The Loc-RIB: selects the best path of every prefix among the routes received from all attached peers.
+ *
+ * The Loc-RIB listens to the remote RIBs of the attached peers and keeps the candidate routes of each prefix, one per peer. Whenever the
+ * candidates of a prefix change, the best path of that prefix is selected again following the tie breaking rules of RFC 4271, section
+ * 9.1.2.2, so the cost of an update is bound by the number of candidates of the prefixes it touches and not by the size of the table.
+ * Changes of the best path are passed to the registered {@link BestPathListener}s.
+ *
+ * Prefixes are identified by the {@link Route#getKey() key} of their routes, so labelled routes to the same prefix compete with each
+ * other whatever their labels, and VPN routes only compete with routes carrying the same RD.
+ *
+ * The degree of preference is the LOCAL_PREF attribute, or {@link #DEFAULT_LOCAL_PREF} if a route has none. As there is no IGP to ask,
+ * the cost to the next hop is not taken into account. The address of the peer is not known to the RIBs either, so the last tie breaker is
+ * the peer name.
+ *
+ * Routes whose next hop has been marked unreachable with {@link #nextHopDown(NextHop)} are not eligible. The Loc-RIB keeps an index from
+ * each next hop to the prefixes with a candidate using it, so marking a next hop down or up only selects the best path of those prefixes
+ * again. Next hops are matched by equality, i.e. they must be given as the same {@link NextHop} type the routes carry.
+ *
+ * Listeners are called while the Loc-RIB is locked, they must not block and must not call back into it.
+ */
+
+@Slf4j
+public class LocRoutingInformationBase implements RoutingBatchListener
+{
+
+  public static final int DEFAULT_LOCAL_PREF = 100;
+
+  private static final Candidate[] NO_CANDIDATES = new Candidate[0];
+
+  /**
+   * What the Loc-RIB knows about a peer beyond its name.
+   */
+
+  private static final class Peer
+  {
+    private final boolean external;
+    private final long bgpIdentifier;
+
+    Peer(final boolean external, final long bgpIdentifier)
+    {
+      this.external = external;
+      this.bgpIdentifier = bgpIdentifier;
+    }
+  }
+
+  /**
+   * The values the decision process compares, taken from the path attributes once per batch of routes.
+   */
+
+  private static final class Rank
+  {
+    private final long localPref;
+    private final int asPathLength;
+    private final int origin;
+    private final long med;
+    private final int neighborAs;
+    private final boolean external;
+    private final long bgpIdentifier;
+    private final int clusterListLength;
+
+    Rank(final Collection<PathAttribute> pathAttributes, final Peer peer)
+    {
+      long localPref = DEFAULT_LOCAL_PREF;
+      int asPathLength = 0;
+      int origin = 0;
+      long med = 0;
+      int neighborAs = 0;
+      long bgpIdentifier = peer.bgpIdentifier;
+      int clusterListLength = 0;
+
+      for (final PathAttribute attribute : pathAttributes)
+      {
+        if (attribute instanceof LocalPrefPathAttribute)
+        {
+          localPref = Integer.toUnsignedLong(((LocalPrefPathAttribute) attribute).getLocalPreference());
+        }
+        else if (attribute instanceof ASPathAttribute)
+        {
+          final ASPathAttribute asPath = (ASPathAttribute) attribute;
+
+          for (final PathSegment segment : asPath.getPathSegments())
+          {
+            switch (segment.getPathSegmentType())
+            {
+              case AS_SEQUENCE:
+                asPathLength += segment.getLength();
+                break;
+              case AS_SET:
+                asPathLength++;
+                break;
+              default:
+                // confederation segments do not count
+                break;
+            }
+          }
+
+          // the neighbor AS is the first one in the path
+          if (asPath.getAsNumberCount() > 0)
+          {
+            neighborAs = asPath.getAsNumber(0);
+          }
+        }
+        else if (attribute instanceof OriginPathAttribute)
+        {
+          origin = ((OriginPathAttribute) attribute).getOrigin().ordinal();
+        }
+        else if (attribute instanceof MultiExitDiscPathAttribute)
+        {
+          med = Integer.toUnsignedLong(((MultiExitDiscPathAttribute) attribute).getDiscriminator());
+        }
+        else if (attribute instanceof OriginatorIDPathAttribute)
+        {
+          // RFC 4456: a reflected route is compared by its originator
+          bgpIdentifier = Integer.toUnsignedLong(((OriginatorIDPathAttribute) attribute).getOriginatorID());
+        }
+        else if (attribute instanceof ClusterListPathAttribute)
+        {
+          clusterListLength = ((ClusterListPathAttribute) attribute).getClusterIds().size();
+        }
+      }
+
+      this.localPref = localPref;
+      this.asPathLength = asPathLength;
+      this.origin = origin;
+      this.med = med;
+      this.neighborAs = neighborAs;
+      this.external = peer.external;
+      this.bgpIdentifier = bgpIdentifier;
+      this.clusterListLength = clusterListLength;
+    }
+  }
+
+  /**
+   * A route received from a peer.
+   */
+
+  private static final class Candidate
+  {
+    private final String peerName;
+    private final Route route;
+    private final Rank rank;
+
+    Candidate(final String peerName, final Route route, final Rank rank)
+    {
+      this.peerName = peerName;
+      this.route = route;
+      this.rank = rank;
+    }
+  }
+
+  /**
+   * The candidates of a prefix and the one currently selected.
+   */
+
+  private static final class Destination
+  {
+    private final AddressFamilyKey afk;
+    private final NetworkLayerReachabilityInformation nlri;
+    private Candidate[] candidates = NO_CANDIDATES;
+    private Candidate best;
+
+    Destination(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation nlri)
+    {
+      this.afk = afk;
+      this.nlri = nlri;
+    }
+
+    private int indexOf(final String peerName)
+    {
+      for (int i = 0; i < this.candidates.length; i++)
+      {
+        if (this.candidates[i].peerName.equals(peerName))
+        {
+          return i;
+        }
+      }
+
+      return -1;
+    }
+
+    /**
+     * @return the candidate of the same peer which has been replaced, <code>null</code> if there was none
+     */
+    Candidate put(final Candidate candidate)
+    {
+      final int index = this.indexOf(candidate.peerName);
+
+      if (index >= 0)
+      {
+        final Candidate previous = this.candidates[index];
+
+        this.candidates[index] = candidate;
+
+        return previous;
+      }
+
+      this.candidates = Arrays.copyOf(this.candidates, this.candidates.length + 1);
+      this.candidates[this.candidates.length - 1] = candidate;
+
+      return null;
+    }
+
+    /**
+     * @return the removed candidate, <code>null</code> if the peer had none
+     */
+    Candidate remove(final String peerName)
+    {
+      final int index = this.indexOf(peerName);
+
+      if (index < 0)
+      {
+        return null;
+      }
+
+      final Candidate removed = this.candidates[index];
+      final Candidate[] remaining = new Candidate[this.candidates.length - 1];
+
+      System.arraycopy(this.candidates, 0, remaining, 0, index);
+      System.arraycopy(this.candidates, index + 1, remaining, index, remaining.length - index);
+      this.candidates = remaining;
+
+      return removed;
+    }
+
+    boolean usesNextHop(final NextHop nextHop)
+    {
+      for (final Candidate candidate : this.candidates)
+      {
+        if (nextHop.equals(candidate.route.getNextHop()))
+        {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
+  private final Map<AddressFamilyKey, Map<NetworkLayerReachabilityInformation, Destination>> destinations = new HashMap<AddressFamilyKey, Map<NetworkLayerReachabilityInformation, Destination>>();
+  private final Map<String, Peer> peers = new HashMap<String, Peer>();
+  // the prefixes with at least one candidate using the next hop
+  private final Map<NextHop, Set<Destination>> dependents = new HashMap<NextHop, Set<Destination>>();
+  private final Set<NextHop> unreachableNextHops = new HashSet<NextHop>();
+  private final List<BestPathListener> listeners = Collections.synchronizedList(new LinkedList<BestPathListener>());
+
+  /**
+   * take the routes received from an internal peer into account.
+   */
+
+  public void attach(final PeerRoutingInformationBase prib)
+  {
+    this.attach(prib, false, 0);
+  }
+
+  /**
+   * take the routes received from a peer into account. Only routes added after attaching are seen.
+   *
+   * @param external
+   *          <code>true</code> if the peer is in a different AS
+   * @param bgpIdentifier
+   *          the BGP identifier of the peer, as an unsigned value
+   */
+
+  public void attach(final PeerRoutingInformationBase prib, final boolean external, final long bgpIdentifier)
+  {
+    synchronized (this)
+    {
+      this.peers.put(prib.getPeerName(), new Peer(external, bgpIdentifier));
+    }
+
+    prib.addRoutingListener(this);
+  }
+
+  /**
+   * stop listening to a peer and drop all routes received from it. This walks the whole table.
+   */
+
+  public void detach(final PeerRoutingInformationBase prib)
+  {
+    prib.removeRoutingListener(this);
+
+    synchronized (this)
+    {
+      final String peerName = prib.getPeerName();
+
+      this.peers.remove(peerName);
+
+      for (final Entry<AddressFamilyKey, Map<NetworkLayerReachabilityInformation, Destination>> family : this.destinations.entrySet())
+      {
+        final Iterator<Entry<NetworkLayerReachabilityInformation, Destination>> it = family.getValue().entrySet().iterator();
+
+        while (it.hasNext())
+        {
+          final Entry<NetworkLayerReachabilityInformation, Destination> entry = it.next();
+
+          final Candidate removed = entry.getValue().remove(peerName);
+
+          if (removed != null)
+          {
+            this.track(entry.getValue(), removed, null);
+            this.select(entry.getValue());
+
+            if (entry.getValue().candidates.length == 0)
+            {
+              it.remove();
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * mark a next hop unreachable, the prefixes using it select their best path among the remaining candidates.
+   */
+
+  public synchronized void nextHopDown(final NextHop nextHop)
+  {
+    if (this.unreachableNextHops.add(nextHop))
+    {
+      this.selectDependents(nextHop);
+    }
+  }
+
+  /**
+   * mark a next hop reachable again, the routes using it are eligible again.
+   */
+
+  public synchronized void nextHopUp(final NextHop nextHop)
+  {
+    if (this.unreachableNextHops.remove(nextHop))
+    {
+      this.selectDependents(nextHop);
+    }
+  }
+
+  /**
+   * @return <code>false</code> if the next hop has been marked unreachable
+   */
+
+  public synchronized boolean isNextHopReachable(final NextHop nextHop)
+  {
+    return !this.unreachableNextHops.contains(nextHop);
+  }
+
+  /**
+   * @return the number of prefixes with a candidate using the next hop
+   */
+
+  public synchronized int countDependents(final NextHop nextHop)
+  {
+    final Set<Destination> destinations = this.dependents.get(nextHop);
+
+    return (destinations != null) ? destinations.size() : 0;
+  }
+
+  public void addBestPathListener(final BestPathListener listener)
+  {
+    this.listeners.add(listener);
+  }
+
+  public void removeBestPathListener(final BestPathListener listener)
+  {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * @return the best path of the prefix, <code>null</code> if no peer has a route to it
+   */
+
+  public synchronized Route lookupBestPath(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation nlri)
+  {
+    final Map<NetworkLayerReachabilityInformation, Destination> family = this.destinations.get(afk);
+    final Destination destination = (family != null) ? family.get(NlriComparator.routingKey(afk, nlri)) : null;
+
+    return ((destination != null) && (destination.best != null)) ? destination.best.route : null;
+  }
+
+  /**
+   * @return the number of prefixes with a best path
+   */
+
+  public synchronized int size()
+  {
+    int size = 0;
+
+    for (final Map<NetworkLayerReachabilityInformation, Destination> family : this.destinations.values())
+    {
+      for (final Destination destination : family.values())
+      {
+        size += (destination.best != null) ? 1 : 0;
+      }
+    }
+
+    return size;
+  }
+
+  @Override
+  public synchronized void routesAdded(final RoutesAdded event)
+  {
+    final Peer peer = this.peers.get(event.getPeerName());
+
+    if ((event.getSide() != RIBSide.Remote) || (peer == null))
+    {
+      return;
+    }
+
+    // all routes of the batch share their attributes, so they are ranked once
+    final Rank rank = new Rank(event.getPathAttributes(), peer);
+
+    Map<NetworkLayerReachabilityInformation, Destination> family = this.destinations.get(event.getAddressFamilyKey());
+
+    if (family == null)
+    {
+      family = new HashMap<NetworkLayerReachabilityInformation, Destination>();
+      this.destinations.put(event.getAddressFamilyKey(), family);
+    }
+
+    for (final Route route : event.getRoutes())
+    {
+      Destination destination = family.get(route.getKey());
+
+      if (destination == null)
+      {
+        destination = new Destination(event.getAddressFamilyKey(), route.getKey());
+        family.put(route.getKey(), destination);
+      }
+
+      final Candidate candidate = new Candidate(event.getPeerName(), route, rank);
+
+      this.track(destination, destination.put(candidate), candidate);
+      this.select(destination);
+    }
+  }
+
+  @Override
+  public synchronized void routesWithdrawn(final RoutesWithdrawn event)
+  {
+    final Map<NetworkLayerReachabilityInformation, Destination> family = this.destinations.get(event.getAddressFamilyKey());
+
+    if ((event.getSide() != RIBSide.Remote) || (family == null))
+    {
+      return;
+    }
+
+    for (final Route route : event.getRoutes())
+    {
+      final Destination destination = family.get(route.getKey());
+      final Candidate removed = (destination != null) ? destination.remove(event.getPeerName()) : null;
+
+      if (removed != null)
+      {
+        this.track(destination, removed, null);
+        this.select(destination);
+
+        if (destination.candidates.length == 0)
+        {
+          family.remove(route.getKey());
+        }
+      }
+    }
+  }
+
+  /**
+   * keep the next hop index up to date when a candidate of the destination has been replaced, added or removed
+   */
+
+  private void track(final Destination destination, final Candidate previous, final Candidate current)
+  {
+    final NextHop previousNextHop = (previous != null) ? previous.route.getNextHop() : null;
+    final NextHop nextHop = (current != null) ? current.route.getNextHop() : null;
+
+    if (Objects.equals(previousNextHop, nextHop))
+    {
+      return;
+    }
+
+    if ((previousNextHop != null) && !destination.usesNextHop(previousNextHop))
+    {
+      final Set<Destination> destinations = this.dependents.get(previousNextHop);
+
+      destinations.remove(destination);
+
+      if (destinations.isEmpty())
+      {
+        this.dependents.remove(previousNextHop);
+      }
+    }
+
+    if (nextHop != null)
+    {
+      Set<Destination> destinations = this.dependents.get(nextHop);
+
+      if (destinations == null)
+      {
+        destinations = new HashSet<Destination>();
+        this.dependents.put(nextHop, destinations);
+      }
+
+      destinations.add(destination);
+    }
+  }
+
+  private void selectDependents(final NextHop nextHop)
+  {
+    final Set<Destination> destinations = this.dependents.get(nextHop);
+
+    if (destinations != null)
+    {
+      for (final Destination destination : destinations)
+      {
+        this.select(destination);
+      }
+    }
+  }
+
+  /**
+   * select the best path of a prefix again and tell the listeners if it has changed
+   */
+
+  private void select(final Destination destination)
+  {
+    final Candidate previous = destination.best;
+
+    destination.best = decide(this.eligible(destination.candidates));
+
+    if (destination.best != previous)
+    {
+      final BestPathChanged event = new BestPathChanged(destination.afk, destination.nlri, (previous != null) ? previous.route : null,
+          (destination.best != null) ? destination.best.peerName : null, (destination.best != null) ? destination.best.route : null);
+
+      log.debug("best path changed: {}", event);
+
+      for (final BestPathListener listener : this.listeners)
+      {
+        listener.bestPathChanged(event);
+      }
+    }
+  }
+
+  /**
+   * @return the candidates whose next hop is reachable
+   */
+
+  private Candidate[] eligible(final Candidate[] candidates)
+  {
+    if (this.unreachableNextHops.isEmpty())
+    {
+      return candidates;
+    }
+
+    final Candidate[] eligible = new Candidate[candidates.length];
+    int n = 0;
+
+    for (final Candidate candidate : candidates)
+    {
+      final NextHop nextHop = candidate.route.getNextHop();
+
+      if ((nextHop == null) || !this.unreachableNextHops.contains(nextHop))
+      {
+        eligible[n++] = candidate;
+      }
+    }
+
+    return (n == candidates.length) ? candidates : Arrays.copyOf(eligible, n);
+  }
+
+  /**
+   * The decision process of RFC 4271, section 9.1.2.2. Every step keeps the candidates which are best in one respect, the first
+   * remaining candidate is the best path.
+   *
+   * @return the best path, <code>null</code> if there are no candidates
+   */
+
+  private static Candidate decide(final Candidate[] candidates)
+  {
+    if (candidates.length <= 1)
+    {
+      return (candidates.length == 1) ? candidates[0] : null;
+    }
+
+    final Candidate[] c = candidates.clone();
+    int n = c.length;
+
+    n = retainLowest(c, n, candidate -> -candidate.rank.localPref);
+    n = retainLowest(c, n, candidate -> candidate.rank.asPathLength);
+    n = retainLowest(c, n, candidate -> candidate.rank.origin);
+    n = retainLowestMed(c, n);
+    n = retainLowest(c, n, candidate -> candidate.rank.external ? 0 : 1);
+    n = retainLowest(c, n, candidate -> candidate.rank.bgpIdentifier);
+    n = retainLowest(c, n, candidate -> candidate.rank.clusterListLength);
+
+    Candidate best = c[0];
+
+    for (int i = 1; i < n; i++)
+    {
+      if (c[i].peerName.compareTo(best.peerName) < 0)
+      {
+        best = c[i];
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * keep the first n candidates with the lowest key in front of the array
+   *
+   * @return the number of candidates kept
+   */
+
+  private static int retainLowest(final Candidate[] c, final int n, final ToLongFunction<Candidate> key)
+  {
+    if (n <= 1)
+    {
+      return n;
+    }
+
+    long lowest = Long.MAX_VALUE;
+
+    for (int i = 0; i < n; i++)
+    {
+      lowest = Math.min(lowest, key.applyAsLong(c[i]));
+    }
+
+    int kept = 0;
+
+    for (int i = 0; i < n; i++)
+    {
+      if (key.applyAsLong(c[i]) == lowest)
+      {
+        c[kept++] = c[i];
+      }
+    }
+
+    return kept;
+  }
+
+  /**
+   * drop every candidate for which a candidate from the same neighbor AS with a lower MULTI_EXIT_DISC exists
+   */
+
+  private static int retainLowestMed(final Candidate[] c, final int n)
+  {
+    if (n <= 1)
+    {
+      return n;
+    }
+
+    final Map<Integer, Long> lowest = new HashMap<Integer, Long>();
+
+    for (int i = 0; i < n; i++)
+    {
+      lowest.merge(c[i].rank.neighborAs, c[i].rank.med, Math::min);
+    }
+
+    int kept = 0;
+
+    for (int i = 0; i < n; i++)
+    {
+      if (c[i].rank.med == lowest.get(c[i].rank.neighborAs))
+      {
+        c[kept++] = c[i];
+      }
+    }
+
+    return kept;
+  }
+
+}
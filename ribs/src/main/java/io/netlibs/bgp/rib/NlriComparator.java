@@ -1,16 +1,50 @@
 package io.netlibs.bgp.rib;
 
-import java.util.Arrays;
-
 import io.netlibs.bgp.protocol.AddressFamilyKey;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.SubsequentAddressFamily;
 
 public class NlriComparator
 {
 
+  /**
+   * The label of routes of the families without label.
+   */
+
+  public static final int NO_LABEL = -1;
+
+  // the RD leads the routing key of the VPN families
+  private static final int ROUTE_DISTINGUISHER_LENGTH = 64;
+
+  /**
+   * The number of leading octets of the encoded NLRI which are not part of the routing key. For the labelled families this is the MPLS
+   * label, for the VPN families the route distinguisher stays part of the key, so the routes of each RD form a sub-trie of their own.
+   */
+
+  public static int keyOffset(final AddressFamilyKey afk)
+  {
+    if (afk.equals(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING)
+        || afk.equals(AddressFamilyKey.IPV6_UNICAST_MPLS_FORWARDING)
+        || afk.equals(AddressFamilyKey.IPV4_MPLS_VPN_FORWARDING)
+        || afk.equals(AddressFamilyKey.IPV6_MPLS_VPN_FORWARDING))
+    {
+      return 3;
+    }
+    return 0;
+  }
+
+  /**
+   * The length in bits of the routing key of the given NLRI.
+   */
+
+  public static int keyLength(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation nlri)
+  {
+    return Math.max(0, nlri.getPrefixLength() - (8 * keyOffset(afk)));
+  }
+
   public static boolean equals(final Route left, final Route right)
   {
-    return equals(left.getAddressFamilyKey(), left.getNlri(), right.getNlri());
+    return left.getAddressFamilyKey().equals(right.getAddressFamilyKey()) && left.getKey().equals(right.getKey());
   }
 
   public static boolean isPrefixOf(final Route left, final Route right)
@@ -29,93 +63,113 @@ public class NlriComparator
   }
 
   /**
-   *
+   * For the labelled and VPN families the label is skipped, for the VPN families both NLRIs must carry the same RD. Nothing is allocated.
    */
 
   public static boolean isPrefixOf(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation left, final NetworkLayerReachabilityInformation right)
   {
+    final int offset = keyOffset(afk);
 
-    if (afk.equals(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING))
-    {
-      // RFC3107 -  Encoding is:
-      //  3-byte label
-      //  4-byte IPv4 address
-      return isPrefixOf(AddressFamilyKey.IPV4_UNICAST_FORWARDING, left.remove(3), right.remove(3));
-    }
-    else if (afk.equals(AddressFamilyKey.IPV6_UNICAST_MPLS_FORWARDING))
+    if (offset == 0)
     {
-      // RFC3107 Encoding is:
-      //  3-byte label
-      //  16-byte IPv6 address
-      return isPrefixOf(AddressFamilyKey.IPV6_UNICAST_FORWARDING, left.remove(3), right.remove(3));
-    }
-    else if (afk.equals(AddressFamilyKey.IPV4_MPLS_VPN_FORWARDING) || afk.equals(AddressFamilyKey.IPV6_MPLS_VPN_FORWARDING))
-    {
-      // For IPv4 RFC4364 - Encoding is:    label (3-byte) RD (type (2-byte), value(6-byte)) IPv4 (4-byte)
-      // For IPv6 RFC4659 - Encoding is:    label (3-byte) RD (type (2-byte), value(6-byte)) IPv6 (16-byte)
-         
-      // For both AFs - remove label and then extract the subsequent 8-bytes (RD)
-      // if the RD is not equal (including the same type), then these
-      // are not the same prefix.
-      byte[] leftrd = new byte[8];
-      byte[] rightrd = new byte[8];
-      
-      System.arraycopy(left.getPrefix(), 3, leftrd, 0, 8);
-      System.arraycopy(right.getPrefix(), 3, rightrd, 0, 8);
-      
-      if (!Arrays.equals(leftrd, rightrd))
-        return false;
-  
-      if (afk.equals(AddressFamilyKey.IPV4_MPLS_VPN_FORWARDING))
-        // Remove both the label and the RD and check whether these are the same IPv4 prefix
-        return isPrefixOf(AddressFamilyKey.IPV4_UNICAST_FORWARDING, left.remove(11), right.remove(11));        
-      else
-        // Remaining case is IPv6 comparison
-        return isPrefixOf(AddressFamilyKey.IPV6_UNICAST_FORWARDING, left.remove(11), right.remove(11));
+      return left.isPrefixOf(right);
     }
-    else
+
+    final int leftLength = keyLength(afk, left);
+    final int rightLength = keyLength(afk, right);
+
+    if (isVpn(afk) && (leftLength < ROUTE_DISTINGUISHER_LENGTH))
     {
-      return left.isPrefixOf(right);
+      // a prefix without a complete RD would span several VPNs
+      return false;
     }
 
+    return (leftLength < rightLength) && (firstDifferingBit(left, offset, right, offset, 0, leftLength) == leftLength);
   }
 
   /**
-   *
+   * For the labelled and VPN families the label is skipped, so two NLRIs which only differ in their label are equal. Nothing is allocated.
    */
 
   public static boolean equals(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation left, final NetworkLayerReachabilityInformation right)
   {
-    if (afk.equals(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING))
-    {
-      return equals(AddressFamilyKey.IPV4_UNICAST_FORWARDING, left.remove(3), right.remove(3));
-    }
-    else if (afk.equals(AddressFamilyKey.IPV6_UNICAST_MPLS_FORWARDING))
+    final int offset = keyOffset(afk);
+
+    if (offset == 0)
     {
-      return equals(AddressFamilyKey.IPV6_UNICAST_FORWARDING, left.remove(3), right.remove(3));
+      return left.equals(right);
     }
-    else if (afk.equals(AddressFamilyKey.IPV4_MPLS_VPN_FORWARDING) || afk.equals(AddressFamilyKey.IPV6_MPLS_VPN_FORWARDING))
+
+    final int length = keyLength(afk, left);
+
+    return (length == keyLength(afk, right)) && (firstDifferingBit(left, offset, right, offset, 0, length) == length);
+  }
+
+  /**
+   * Split the routing key off a NLRI: the RD and prefix for the VPN families, the prefix for the labelled families and the NLRI itself
+   * for all others.
+   */
+
+  public static NetworkLayerReachabilityInformation routingKey(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation nlri)
+  {
+    return nlri.withoutLeadingOctets(keyOffset(afk));
+  }
+
+  /**
+   * The 20 bit MPLS label of a labelled or VPN NLRI.
+   *
+   * @return the label or {@link #NO_LABEL} for the families without label
+   */
+
+  public static int label(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation nlri)
+  {
+    if ((keyOffset(afk) == 0) || (nlri.getPrefixLength() < 24))
     {
-      byte[] leftrd = new byte[8];
-      byte[] rightrd = new byte[8];
-      
-      System.arraycopy(left.getPrefix(), 3, leftrd, 0, 8);
-      System.arraycopy(right.getPrefix(), 3, rightrd, 0, 8);
-      
-      if (!Arrays.equals(leftrd, rightrd))
-        return false;
-      
-      // Compare prefix
-      if (afk.equals(AddressFamilyKey.IPV4_MPLS_VPN_FORWARDING))
-        return equals(AddressFamilyKey.IPV4_UNICAST_FORWARDING, left.remove(11), right.remove(11));
-      else
-        return equals(AddressFamilyKey.IPV6_UNICAST_FORWARDING, left.remove(11), right.remove(11));
-      
+      return NO_LABEL;
     }
-    else
+
+    return (nlri.getPrefixOctet(0) << 12) | (nlri.getPrefixOctet(1) << 4) | (nlri.getPrefixOctet(2) >>> 4);
+  }
+
+  private static boolean isVpn(final AddressFamilyKey afk)
+  {
+    return afk.getSubsequentAddressFamily() == SubsequentAddressFamily.NLRI_MPLS_LABELLED_VPN;
+  }
+
+  /**
+   * get the bit at a given position of a key
+   */
+
+  public static int bitAt(final NetworkLayerReachabilityInformation key, final int keyOffset, final int bit)
+  {
+    return (key.getPrefixOctet(keyOffset + (bit >>> 3)) >>> (7 - (bit & 7))) & 1;
+  }
+
+  /**
+   * find the first bit in the range [from, to) in which two keys differ
+   *
+   * @return the index of the first differing bit or <code>to</code> if the keys match in the whole range
+   */
+
+  public static int firstDifferingBit(final NetworkLayerReachabilityInformation left, final int leftOffset, final NetworkLayerReachabilityInformation right, final int rightOffset,
+      final int from, final int to)
+  {
+    int bit = from;
+
+    while (bit < to)
     {
-      return left.equals(right);
+      final int octet = bit >>> 3;
+      final int diff = (left.getPrefixOctet(leftOffset + octet) ^ right.getPrefixOctet(rightOffset + octet)) & (0xff >>> (bit & 7));
+
+      if (diff != 0)
+      {
+        return Math.min((octet << 3) + (Integer.numberOfLeadingZeros(diff) - 24), to);
+      }
+
+      bit = (octet + 1) << 3;
     }
+
+    return to;
   }
 
 }
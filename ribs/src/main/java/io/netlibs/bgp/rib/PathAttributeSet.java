@@ -0,0 +1,268 @@
+package io.netlibs.bgp.rib;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Iterators;
+
+import io.netlibs.bgp.netty.protocol.update.AttributeException;
+import io.netlibs.bgp.netty.protocol.update.EncodedPathAttributes;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolUnreachableNLRI;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+
+/**
+ * An immutable, interned set of path attributes.
+ *
+ * All NLRIs of an UPDATE share the same path attributes and a full table from several peers only carries a small number of distinct
+ * attribute combinations, so routes in all RIBs share their attributes by reference instead of holding a copy each. Instances are only
+ * obtained through {@link #intern(Collection)}, which deduplicates across all peers and address families. Equal sets therefore are the
+ * same instance and comparing them is a reference comparison in the common case.
+ *
+ * The pool holds its entries weakly, so a set is released as soon as no route refers to it anymore.
+ *
+ * As the set is shared, so is its wire encoding: {@link #getEncoded()} encodes the attributes once and every UPDATE packet built from
+ * the set, for whichever peer, copies the encoded block.
+ *
+ * NB: the contained path attributes are shared as well and must not be modified once they are part of a set.
+ *
+ */
+
+public final class PathAttributeSet extends AbstractSet<PathAttribute> implements Comparable<PathAttributeSet>
+{
+
+  /**
+   * the attributes of a received UPDATE packet, partly held in encoded form
+   */
+
+  private static final class ReceivedAttributes
+  {
+    private final PathAttribute[] decoded;
+    private final EncodedPathAttributes encoded;
+    private final int hashCode;
+
+    private ReceivedAttributes(final PathAttribute[] decoded, final EncodedPathAttributes encoded)
+    {
+      this.decoded = decoded;
+      this.encoded = encoded;
+      this.hashCode = (31 * Arrays.hashCode(decoded)) + encoded.hashCode();
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+      if (obj == this)
+      {
+        return true;
+      }
+      else if (!(obj instanceof ReceivedAttributes))
+      {
+        return false;
+      }
+
+      final ReceivedAttributes o = (ReceivedAttributes) obj;
+
+      return (this.hashCode == o.hashCode) && Arrays.equals(this.decoded, o.decoded) && this.encoded.equals(o.encoded);
+    }
+  }
+
+  private static final Interner<PathAttributeSet> pool = Interners.newWeakInterner();
+
+  // the sets built from received attributes by their encoded form, held as long as a route refers to the set
+  private static final Cache<ReceivedAttributes, PathAttributeSet> received = CacheBuilder.newBuilder().weakValues().build();
+
+  public static final PathAttributeSet EMPTY = pool.intern(new PathAttributeSet(new PathAttribute[0]));
+
+  // sorted by the natural order of the path attributes
+  private final PathAttribute[] attributes;
+  private final int hashCode;
+  // built on first use, racing threads produce equal blocks
+  private volatile EncodedPathAttributes encoded;
+
+  private PathAttributeSet(final PathAttribute[] attributes)
+  {
+    this.attributes = attributes;
+
+    int hash = 0;
+
+    for (final PathAttribute attribute : attributes)
+    {
+      hash += attribute.hashCode();
+    }
+
+    this.hashCode = hash;
+  }
+
+  /**
+   * Get the shared instance holding the given path attributes. Duplicates in terms of the natural order of the path attributes are
+   * dropped, as a TreeSet would do.
+   *
+   * @param attributes
+   *          the path attributes, may be <code>null</code>
+   * @return the interned set
+   */
+
+  public static PathAttributeSet intern(final Collection<PathAttribute> attributes)
+  {
+    if (attributes instanceof PathAttributeSet)
+    {
+      return (PathAttributeSet) attributes;
+    }
+    else if ((attributes == null) || attributes.isEmpty())
+    {
+      return EMPTY;
+    }
+
+    final TreeSet<PathAttribute> sorted = new TreeSet<PathAttribute>(attributes);
+
+    return pool.intern(new PathAttributeSet(sorted.toArray(new PathAttribute[sorted.size()])));
+  }
+
+  /**
+   * Get the shared instance holding the path attributes of a received UPDATE packet, some of which are still encoded. A set which has
+   * been built from equal attributes before is returned without decoding the encoded ones again.
+   *
+   * @param decoded
+   *          the path attributes in decoded form
+   * @param encoded
+   *          the path attributes in encoded form, may be <code>null</code>
+   * @return the interned set
+   * @throws AttributeException
+   *           if one of the encoded attributes is malformed
+   */
+
+  public static PathAttributeSet intern(final Collection<PathAttribute> decoded, final EncodedPathAttributes encoded)
+  {
+    if ((encoded == null) || (encoded.size() == 0))
+    {
+      return intern(decoded);
+    }
+
+    final ReceivedAttributes key = new ReceivedAttributes(decoded.toArray(new PathAttribute[decoded.size()]), encoded);
+    PathAttributeSet result = received.getIfPresent(key);
+
+    if (result == null)
+    {
+      final List<PathAttribute> attributes = new ArrayList<PathAttribute>(decoded);
+
+      attributes.addAll(encoded.decodeAll());
+
+      result = intern(attributes);
+      received.put(key, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the wire encoding of the attributes in this set. MP_REACH_NLRI and MP_UNREACH_NLRI are left out as they carry the NLRIs of the
+   * individual packet.
+   *
+   * @return the encoded attributes
+   */
+
+  public EncodedPathAttributes getEncoded()
+  {
+    EncodedPathAttributes result = this.encoded;
+
+    if (result == null)
+    {
+      final List<PathAttribute> shared = new ArrayList<PathAttribute>(this.attributes.length);
+
+      for (final PathAttribute attribute : this.attributes)
+      {
+        if (!(attribute instanceof MultiProtocolReachableNLRI) && !(attribute instanceof MultiProtocolUnreachableNLRI))
+        {
+          shared.add(attribute);
+        }
+      }
+
+      result = EncodedPathAttributes.encode(shared);
+      this.encoded = result;
+    }
+
+    return result;
+  }
+
+  @Override
+  public Iterator<PathAttribute> iterator()
+  {
+    return Iterators.forArray(this.attributes);
+  }
+
+  @Override
+  public int size()
+  {
+    return this.attributes.length;
+  }
+
+  @Override
+  public boolean contains(final Object o)
+  {
+    return (o instanceof PathAttribute) && (Arrays.binarySearch(this.attributes, o) >= 0);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return this.hashCode;
+  }
+
+  @Override
+  public boolean equals(final Object obj)
+  {
+    if (this == obj)
+    {
+      return true;
+    }
+    else if (obj instanceof PathAttributeSet)
+    {
+      final PathAttributeSet o = (PathAttributeSet) obj;
+
+      return (this.hashCode == o.hashCode) && Arrays.equals(this.attributes, o.attributes);
+    }
+
+    return super.equals(obj);
+  }
+
+  @Override
+  public int compareTo(final PathAttributeSet o)
+  {
+    if (this == o)
+    {
+      return 0;
+    }
+    else if (this.attributes.length != o.attributes.length)
+    {
+      return (this.attributes.length < o.attributes.length) ? -1 : 1;
+    }
+
+    for (int i = 0; i < this.attributes.length; i++)
+    {
+      final int result = this.attributes[i].compareTo(o.attributes[i]);
+
+      if (result != 0)
+      {
+        return result;
+      }
+    }
+
+    return 0;
+  }
+
+}
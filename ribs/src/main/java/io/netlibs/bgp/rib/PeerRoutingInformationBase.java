@@ -18,11 +18,11 @@
 package io.netlibs.bgp.rib;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.netlibs.bgp.protocol.AddressFamilyKey;
 import io.netlibs.bgp.protocol.RIBSide;
@@ -30,6 +30,11 @@ import io.netlibs.bgp.protocol.RIBSide;
 import java.util.Set;
 
 /**
+ * The routing information bases of a peer.
+ *
+ * Changes which span several routing bases or depend on their stale state, i.e. applying an UPDATE, marking or sweeping stale routes
+ * and destroying the routing bases, are made while holding the lock of this object, so they do not interleave.
+ *
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
  *
  */
@@ -39,14 +44,15 @@ public class PeerRoutingInformationBase
   private String peerName;
   private boolean extensionRoutingBase;
 
-  private final Map<AddressFamilyKey, RoutingInformationBase> localRIBs = new HashMap<AddressFamilyKey, RoutingInformationBase>();
-  private final Map<AddressFamilyKey, RoutingInformationBase> remoteRIBs = new HashMap<AddressFamilyKey, RoutingInformationBase>();
+  // concurrent, as the RIBs are also listed by snapshots which are written in the background
+  private final Map<AddressFamilyKey, RoutingInformationBase> localRIBs = new ConcurrentHashMap<AddressFamilyKey, RoutingInformationBase>();
+  private final Map<AddressFamilyKey, RoutingInformationBase> remoteRIBs = new ConcurrentHashMap<AddressFamilyKey, RoutingInformationBase>();
 
   // private @Inject Instance<RoutingInformationBase> ribProvider;
   // private @Inject Event<RoutingInformationBaseCreated> created;
   // private @Inject Event<RoutingInformationBaseDestroyed> destroyed;
 
-  private final List<RoutingEventListener> listeners = Collections.synchronizedList(new LinkedList<RoutingEventListener>());
+  private final List<RoutingBatchListener> listeners = Collections.synchronizedList(new LinkedList<RoutingBatchListener>());
 
   public PeerRoutingInformationBase()
   {
@@ -223,12 +229,85 @@ public class PeerRoutingInformationBase
     this.remoteRIBs.clear();
   }
 
-  public void addRoutingListener(final RoutingEventListener listener)
+  /**
+   * destroy the routing information bases of one side, the other side is left untouched
+   */
+
+  public void destroyAllRoutingInformationBases(final RIBSide side)
+  {
+    final Map<AddressFamilyKey, RoutingInformationBase> ribs = this.routingBases(side);
+
+    for (final RoutingInformationBase rib : ribs.values())
+    {
+      rib.destroyRIB();
+    }
+
+    ribs.clear();
+  }
+
+  /**
+   * mark the routes held in all routing information bases of one side as stale
+   *
+   * @see RoutingInformationBase#markStale()
+   */
+
+  public void markStale(final RIBSide side)
+  {
+    for (final RoutingInformationBase rib : this.routingBases(side).values())
+    {
+      rib.markStale();
+    }
+  }
+
+  /**
+   * withdraw the stale routes from all routing information bases of one side
+   *
+   * @return the number of withdrawn routes
+   * @see RoutingInformationBase#sweepStale()
+   */
+
+  public int sweepStale(final RIBSide side)
+  {
+    int swept = 0;
+
+    for (final RoutingInformationBase rib : this.routingBases(side).values())
+    {
+      swept += rib.sweepStale();
+    }
+
+    return swept;
+  }
+
+  /**
+   * withdraw the routes restored from a snapshot which are still stale from the Remote RIBs
+   *
+   * @return the number of withdrawn routes
+   * @see RoutingInformationBase#sweepRestored()
+   */
+
+  int sweepRestored()
+  {
+    int swept = 0;
+
+    for (final RoutingInformationBase rib : this.remoteRIBs.values())
+    {
+      swept += rib.sweepRestored();
+    }
+
+    return swept;
+  }
+
+  Map<AddressFamilyKey, RoutingInformationBase> routingBases(final RIBSide side)
+  {
+    return (side == RIBSide.Local) ? this.localRIBs : this.remoteRIBs;
+  }
+
+  public void addRoutingListener(final RoutingBatchListener listener)
   {
     this.listeners.add(listener);
   }
 
-  public void removeRoutingListener(final RoutingEventListener listener)
+  public void removeRoutingListener(final RoutingBatchListener listener)
   {
     this.listeners.remove(listener);
   }
@@ -17,13 +17,25 @@
  */
 package io.netlibs.bgp.rib;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 
+
+import lombok.extern.slf4j.Slf4j;
+
 /**
  *
  *
@@ -31,6 +43,7 @@ import org.apache.commons.lang3.StringUtils;
  *
  */
 
+@Slf4j
 public class PeerRoutingInformationBaseManager implements ExtensionRoutingBaseManager
 {
 
@@ -151,4 +164,93 @@ public class PeerRoutingInformationBaseManager implements ExtensionRoutingBaseMa
     }
   }
 
+  /**
+   * write the Remote RIBs of all peers into a snapshot file. The Local RIBs are derived from them and are not saved.
+   *
+   * @param file
+   *          the snapshot file, replaced once the new snapshot is complete
+   * @throws IOException
+   */
+  public void saveSnapshot(final Path file) throws IOException
+  {
+    final List<PeerRoutingInformationBase> pribs;
+
+    synchronized (this.peerRibs)
+    {
+      pribs = new ArrayList<PeerRoutingInformationBase>(this.peerRibs.values());
+    }
+
+    RoutingInformationBaseSnapshot.write(pribs, file);
+  }
+
+  /**
+   * restore the Remote RIBs from a snapshot file. The restored routes are marked stale, so they are withdrawn unless the peer sends them
+   * again before its End-of-RIB. The routes of each restored peer which are still stale when the grace period has passed are withdrawn
+   * as well, so the routes of a peer which does not come back or does not send an End-of-RIB do not stay forever. Routing bases which
+   * have been swept or marked stale again since, because the peer has sent its End-of-RIB or restarted, are left to the FSM of the peer.
+   *
+   * @param file
+   *          the snapshot file
+   * @param executor
+   *          the executor to withdraw the stale routes on
+   * @param gracePeriod
+   *          the time the peers have to send their routes again
+   * @param unit
+   *          the unit of the grace period
+   * @return the number of restored routes
+   * @throws IOException
+   */
+  public int loadSnapshot(final Path file, final ScheduledExecutorService executor, final long gracePeriod, final TimeUnit unit) throws IOException
+  {
+    final Set<PeerRoutingInformationBase> restoredPeers = new LinkedHashSet<PeerRoutingInformationBase>();
+    final int restored = RoutingInformationBaseSnapshot.read(this, file, restoredPeers);
+
+    for (final PeerRoutingInformationBase prib : restoredPeers)
+    {
+      executor.schedule(() -> {
+        final int swept;
+
+        // taken by the FSM of the peer as well, once its End-of-RIB has been processed the restored routes are left alone
+        synchronized (prib)
+        {
+          swept = prib.sweepRestored();
+        }
+
+        if (swept > 0)
+        {
+          log.info("grace period of RIB snapshot expired, withdrew {} stale routes of peer {}", swept, prib.getPeerName());
+        }
+      }, gracePeriod, unit);
+    }
+
+    return restored;
+  }
+
+  /**
+   * periodically write a snapshot of the Remote RIBs
+   *
+   * @param executor
+   *          the executor to write the snapshots on
+   * @param file
+   *          the snapshot file
+   * @param period
+   *          the time between two snapshots
+   * @param unit
+   *          the unit of the period
+   * @return the future to cancel the snapshots with
+   */
+  public ScheduledFuture<?> scheduleSnapshots(final ScheduledExecutorService executor, final Path file, final long period, final TimeUnit unit)
+  {
+    return executor.scheduleWithFixedDelay(() -> {
+      try
+      {
+        this.saveSnapshot(file);
+      }
+      catch (final IOException | RuntimeException ex)
+      {
+        log.error("failed to write RIB snapshot " + file, ex);
+      }
+    }, period, period, unit);
+  }
+
 }
@@ -18,9 +18,7 @@
 package io.netlibs.bgp.rib;
 
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.UUID;
 
 import org.apache.commons.lang3.builder.CompareToBuilder;
@@ -46,7 +44,9 @@ public class Route implements Comparable<Route>
 
   private AddressFamilyKey addressFamilyKey;
   private NetworkLayerReachabilityInformation nlri;
-  private Set<PathAttribute> pathAttributes = new TreeSet<PathAttribute>();
+  private NetworkLayerReachabilityInformation key;
+  private int label;
+  private PathAttributeSet pathAttributes;
   private NextHop nextHop;
   private UUID ribID;
 
@@ -55,8 +55,9 @@ public class Route implements Comparable<Route>
   {
     this.addressFamilyKey = addressFamilyKey;
     this.nlri = nlri;
-    if (pathAttributes != null)
-      this.pathAttributes = new TreeSet<PathAttribute>(pathAttributes);
+    this.key = NlriComparator.routingKey(addressFamilyKey, nlri);
+    this.label = NlriComparator.label(addressFamilyKey, nlri);
+    this.pathAttributes = PathAttributeSet.intern(pathAttributes);
     this.nextHop = nextHop;
   }
 
@@ -99,9 +100,26 @@ public class Route implements Comparable<Route>
   }
 
   /**
-   * @return the pathAttributes
+   * @return the key the route is held under in the RIBs, the NLRI without its label for the labelled and VPN families and the NLRI itself
+   *         for all others
    */
-  public Set<PathAttribute> getPathAttributes()
+  public NetworkLayerReachabilityInformation getKey()
+  {
+    return key;
+  }
+
+  /**
+   * @return the MPLS label of the NLRI, {@link NlriComparator#NO_LABEL} for the families without label
+   */
+  public int getLabel()
+  {
+    return label;
+  }
+
+  /**
+   * @return the pathAttributes, shared with all other routes carrying the same attributes
+   */
+  public PathAttributeSet getPathAttributes()
   {
     return pathAttributes;
   }
@@ -118,10 +136,8 @@ public class Route implements Comparable<Route>
         .append(getAddressFamilyKey())
         .append(getNlri())
         .append(getNextHop())
-        .append(getRibID());
-
-    for (PathAttribute pa : getPathAttributes())
-      builder.append(pa);
+        .append(getRibID())
+        .append(getPathAttributes());
 
     return builder.toHashCode();
   }
@@ -154,19 +170,10 @@ public class Route implements Comparable<Route>
     EqualsBuilder builder = (new EqualsBuilder())
         .append(getAddressFamilyKey(), o.getAddressFamilyKey())
         .append(getNlri(), o.getNlri())
-        .append(getPathAttributes().size(), o.getPathAttributes().size())
+        .append(getPathAttributes(), o.getPathAttributes())
         .append(getNextHop(), o.getNextHop())
         .append(getRibID(), o.getRibID());
 
-    if (builder.isEquals())
-    {
-      Iterator<PathAttribute> lit = getPathAttributes().iterator();
-      Iterator<PathAttribute> rit = o.getPathAttributes().iterator();
-
-      while (lit.hasNext())
-        builder.append(lit.next(), rit.next());
-    }
-
     return builder.isEquals();
   }
 
@@ -176,19 +183,10 @@ public class Route implements Comparable<Route>
     CompareToBuilder builder = (new CompareToBuilder())
         .append(getAddressFamilyKey(), o.getAddressFamilyKey())
         .append(getNlri(), o.getNlri())
-        .append(getPathAttributes().size(), o.getPathAttributes().size())
+        .append(getPathAttributes(), o.getPathAttributes())
         .append(getNextHop(), o.getNextHop())
         .append(getRibID(), o.getRibID());
 
-    if (builder.toComparison() == 0)
-    {
-      Iterator<PathAttribute> lit = getPathAttributes().iterator();
-      Iterator<PathAttribute> rit = o.getPathAttributes().iterator();
-
-      while (lit.hasNext())
-        builder.append(lit.next(), rit.next());
-    }
-
     return builder.toComparison();
   }
 
@@ -203,18 +201,9 @@ public class Route implements Comparable<Route>
     CompareToBuilder builder = (new CompareToBuilder())
         .append(getAddressFamilyKey(), o.getAddressFamilyKey())
         .append(getNlri(), o.getNlri())
-        .append(getPathAttributes().size(), o.getPathAttributes().size())
+        .append(getPathAttributes(), o.getPathAttributes())
         .append(getNextHop(), o.getNextHop());
 
-    if (builder.toComparison() == 0)
-    {
-      Iterator<PathAttribute> lit = getPathAttributes().iterator();
-      Iterator<PathAttribute> rit = o.getPathAttributes().iterator();
-
-      while (lit.hasNext())
-        builder.append(lit.next(), rit.next());
-    }
-
     return builder.toComparison();
   }
 
@@ -228,18 +217,9 @@ public class Route implements Comparable<Route>
     EqualsBuilder builder = (new EqualsBuilder())
         .append(getAddressFamilyKey(), o.getAddressFamilyKey())
         .append(getNlri(), o.getNlri())
-        .append(getPathAttributes().size(), o.getPathAttributes().size())
+        .append(getPathAttributes(), o.getPathAttributes())
         .append(getNextHop(), o.getNextHop());
 
-    if (builder.isEquals())
-    {
-      Iterator<PathAttribute> lit = getPathAttributes().iterator();
-      Iterator<PathAttribute> rit = o.getPathAttributes().iterator();
-
-      while (lit.hasNext())
-        builder.append(lit.next(), rit.next());
-    }
-
     return builder.isEquals();
   }
 
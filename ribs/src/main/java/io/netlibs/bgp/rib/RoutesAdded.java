@@ -0,0 +1,87 @@
+package io.netlibs.bgp.rib;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.protocol.RIBSide;
+import lombok.ToString;
+
+/**
+ * Event fired by a RoutingInformationBase instance when a batch of routes has been added to the RIB. All routes of the batch carry the
+ * same path attributes and next hop.
+ */
+
+@ToString
+public class RoutesAdded
+{
+
+  private final String peerName;
+  private final RIBSide side;
+  private final AddressFamilyKey addressFamilyKey;
+  private final PathAttributeSet pathAttributes;
+  private final NextHop nextHop;
+  private final Route[] routes;
+
+  RoutesAdded(final String peerName, final RIBSide side, final AddressFamilyKey addressFamilyKey, final PathAttributeSet pathAttributes,
+      final NextHop nextHop, final Route[] routes)
+  {
+    this.peerName = peerName;
+    this.side = side;
+    this.addressFamilyKey = addressFamilyKey;
+    this.pathAttributes = pathAttributes;
+    this.nextHop = nextHop;
+    this.routes = routes;
+  }
+
+  /**
+   * @return the peerName
+   */
+  public String getPeerName()
+  {
+    return this.peerName;
+  }
+
+  /**
+   * @return the side
+   */
+  public RIBSide getSide()
+  {
+    return this.side;
+  }
+
+  /**
+   * @return the address family of all routes
+   */
+  public AddressFamilyKey getAddressFamilyKey()
+  {
+    return this.addressFamilyKey;
+  }
+
+  /**
+   * @return the path attributes of all routes
+   */
+  public PathAttributeSet getPathAttributes()
+  {
+    return this.pathAttributes;
+  }
+
+  /**
+   * @return the next hop of all routes
+   */
+  public NextHop getNextHop()
+  {
+    return this.nextHop;
+  }
+
+  /**
+   * @return the added routes, in the order they have been added
+   */
+  public List<Route> getRoutes()
+  {
+    return Collections.unmodifiableList(Arrays.asList(this.routes));
+  }
+
+}
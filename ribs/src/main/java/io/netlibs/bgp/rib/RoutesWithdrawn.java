@@ -0,0 +1,64 @@
+package io.netlibs.bgp.rib;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.RIBSide;
+import lombok.ToString;
+
+/**
+ * Event fired by a RoutingInformationBase instance when a batch of routes has been withdrawn from the RIB.
+ */
+
+@ToString
+public class RoutesWithdrawn
+{
+
+  private final String peerName;
+  private final RIBSide side;
+  private final AddressFamilyKey addressFamilyKey;
+  private final Route[] routes;
+
+  RoutesWithdrawn(final String peerName, final RIBSide side, final AddressFamilyKey addressFamilyKey, final Route[] routes)
+  {
+    this.peerName = peerName;
+    this.side = side;
+    this.addressFamilyKey = addressFamilyKey;
+    this.routes = routes;
+  }
+
+  /**
+   * @return the peerName
+   */
+  public String getPeerName()
+  {
+    return this.peerName;
+  }
+
+  /**
+   * @return the side
+   */
+  public RIBSide getSide()
+  {
+    return this.side;
+  }
+
+  /**
+   * @return the address family of all routes
+   */
+  public AddressFamilyKey getAddressFamilyKey()
+  {
+    return this.addressFamilyKey;
+  }
+
+  /**
+   * @return the withdrawn routes, in the order they have been withdrawn
+   */
+  public List<Route> getRoutes()
+  {
+    return Collections.unmodifiableList(Arrays.asList(this.routes));
+  }
+
+}
@@ -0,0 +1,28 @@
+package io.netlibs.bgp.rib;
+
+/**
+ * Receives the changes of a RIB one batch at a time.
+ *
+ * A batch holds all routes one call to the RIB has changed, e.g. all prefixes of an UPDATE packet which share the same path attributes.
+ * Listeners which handle the whole batch at once implement this interface directly, the per route {@link RoutingEventListener} is
+ * adapted to it.
+ */
+
+public interface RoutingBatchListener
+{
+
+  /**
+   * routes sharing a set of path attributes and a next hop were added
+   *
+   * @param event
+   */
+  public void routesAdded(RoutesAdded event);
+
+  /**
+   * routes were withdrawn
+   *
+   * @param event
+   */
+  public void routesWithdrawn(RoutesWithdrawn event);
+
+}
@@ -18,10 +18,15 @@
 package io.netlibs.bgp.rib;
 
 /**
+ * Receives the changes of a RIB one route at a time.
+ *
+ * The batches a RIB fires are split into one event per route, listeners which can handle a batch at once should override
+ * {@link #routesAdded(RoutesAdded)} and {@link #routesWithdrawn(RoutesWithdrawn)} or implement {@link RoutingBatchListener} instead.
+ *
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
  *
  */
-public interface RoutingEventListener {
+public interface RoutingEventListener extends RoutingBatchListener {
 
 	/**
 	 * a route was added
@@ -36,4 +41,18 @@ public interface RoutingEventListener {
 	 * @param event
 	 */
 	public void routeWithdrawn(RouteWithdrawn event);
+
+	@Override
+	public default void routesAdded(RoutesAdded event) {
+		for(Route route : event.getRoutes()) {
+			routeAdded(new RouteAdded(event.getPeerName(), event.getSide(), route));
+		}
+	}
+
+	@Override
+	public default void routesWithdrawn(RoutesWithdrawn event) {
+		for(Route route : event.getRoutes()) {
+			routeWithdrawn(new RouteWithdrawn(event.getPeerName(), event.getSide(), route));
+		}
+	}
 }
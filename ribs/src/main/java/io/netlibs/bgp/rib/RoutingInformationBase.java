@@ -17,6 +17,7 @@
  */
 package io.netlibs.bgp.rib;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -39,14 +40,18 @@ import lombok.extern.slf4j.Slf4j;
 public class RoutingInformationBase
 {
 
+  private static final Route[] NO_ROUTES = new Route[0];
+
   private String peerName;
   private RIBSide side;
   private AddressFamilyKey addressFamilyKey;
   private final RoutingTree routingTree = new RoutingTree();
+  // the routes restored from a snapshot are stale and have neither been swept nor marked stale again since
+  private volatile boolean restoredStale;
   // private @Inject Event<RouteAdded> routeAddedEvent;
   // private @Inject Event<RouteWithdrawn> routeWithdrawnEvent;
-  private Collection<RoutingEventListener> listeners;
-  private final List<RoutingEventListener> perRibListeners = Collections.synchronizedList(new LinkedList<RoutingEventListener>());
+  private Collection<RoutingBatchListener> listeners;
+  private final List<RoutingBatchListener> perRibListeners = Collections.synchronizedList(new LinkedList<RoutingBatchListener>());
   private final UUID ribID = UUID.randomUUID();
 
   RoutingInformationBase()
@@ -104,9 +109,18 @@ public class RoutingInformationBase
     this.addressFamilyKey = addressFamilyKey;
   }
 
+  /**
+   * Delete all routes, the listeners see them withdrawn in a single batch.
+   */
+
   void destroyRIB()
   {
-    this.routingTree.destroy();
+    final List<Route> withdrawn = this.routingTree.destroy();
+
+    if (!withdrawn.isEmpty())
+    {
+      this.fireRoutesWithdrawn(withdrawn.toArray(NO_ROUTES));
+    }
   }
 
   /**
@@ -119,31 +133,54 @@ public class RoutingInformationBase
   public void addRoutes(final Collection<NetworkLayerReachabilityInformation> nlris, final Collection<PathAttribute> pathAttributes, final NextHop nextHop)
   {
 
+    // intern once, all routes share the attribute set
+    final PathAttributeSet attributes = PathAttributeSet.intern(pathAttributes);
+    final List<Route> added = new ArrayList<Route>(nlris.size());
+
     for (final NetworkLayerReachabilityInformation nlri : nlris)
     {
+      added.add(new Route(this.getRibID(), this.getAddressFamilyKey(), nlri, attributes, nextHop));
+    }
 
-      final Route route = new Route(this.getRibID(), this.getAddressFamilyKey(), nlri, pathAttributes, nextHop);
+    // readers see the whole UPDATE at once, repeated routes are not passed on
+    final List<Route> changed = this.routingTree.addRoutes(added);
 
-      if (this.routingTree.addRoute(route))
-      {
-        final RouteAdded event = new RouteAdded(this.getPeerName(), this.getSide(), route);
+    if (!changed.isEmpty())
+    {
+      this.fireRoutesAdded(attributes, nextHop, changed.toArray(NO_ROUTES));
+    }
+  }
 
-        // System.err.println(event);
-        // this.routeAddedEvent.fire(event);
+  /**
+   * Add routes restored from a snapshot in a single write. The routes are passed in runs which share their path attributes and next hop,
+   * one event is fired per run. The restored routes are marked stale, see {@link #sweepRestored()}.
+   *
+   * @param runs
+   *          the routes, built for this RIB
+   */
 
-        if (this.listeners != null)
-        {
-          for (final RoutingEventListener listener : this.listeners)
-          {
-            listener.routeAdded(event);
-          }
-        }
-        for (final RoutingEventListener listener : this.perRibListeners)
-        {
-          listener.routeAdded(event);
-        }
+  void restoreRoutes(final List<List<Route>> runs)
+  {
+    final List<Route> routes = new ArrayList<Route>();
+
+    for (final List<Route> run : runs)
+    {
+      routes.addAll(run);
+    }
+
+    this.routingTree.addRoutes(routes);
+
+    for (final List<Route> run : runs)
+    {
+      if (!run.isEmpty())
+      {
+        this.fireRoutesAdded(run.get(0).getPathAttributes(), run.get(0).getNextHop(), run.toArray(NO_ROUTES));
       }
     }
+
+    // the restored routes stay until the peer has sent them again, its End-of-RIB or the grace period of the snapshot sweeps them
+    this.routingTree.markStale();
+    this.restoredStale = true;
   }
 
   /**
@@ -155,6 +192,8 @@ public class RoutingInformationBase
   public void withdrawRoutes(final Collection<NetworkLayerReachabilityInformation> nlris)
   {
 
+    final List<Route> routes = new ArrayList<Route>(nlris.size());
+
     for (final NetworkLayerReachabilityInformation nlri : nlris)
     {
 
@@ -162,35 +201,79 @@ public class RoutingInformationBase
 
       log.debug("Withdrawing {}", route);
 
-      if (this.routingTree.withdrawRoute(route))
-      {
+      routes.add(route);
 
-        final RouteWithdrawn event = new RouteWithdrawn(this.getPeerName(), this.getSide(), route);
+    }
+
+    final List<Route> withdrawn = this.routingTree.withdrawRoutes(routes);
 
-        // this.routeWithdrawnEvent.fire(event);
+    if (withdrawn.size() < routes.size())
+    {
+      // the withdrawn routes are in the order they have been passed, everything in between was unknown
+      int next = 0;
 
-        if (this.listeners != null)
+      for (final Route route : routes)
+      {
+        if ((next < withdrawn.size()) && (withdrawn.get(next) == route))
         {
-          for (final RoutingEventListener listener : this.listeners)
-          {
-            listener.routeWithdrawn(event);
-          }
+          next++;
         }
-
-        for (final RoutingEventListener listener : this.perRibListeners)
+        else
         {
-          listener.routeWithdrawn(event);
+          log.warn("error: received withdrawn for unknown NLRI: {}", route);
         }
-
-      }
-      else
-      {
-        log.warn("error: received withdrawn for unknown NLRI: {}", route);
       }
+    }
 
+    if (!withdrawn.isEmpty())
+    {
+      this.fireRoutesWithdrawn(withdrawn.toArray(NO_ROUTES));
     }
   }
 
+  /**
+   * Mark all routes held so far as stale. Routes which are added again before the next {@link #sweepStale()} are kept without notifying
+   * the listeners.
+   */
+
+  public void markStale()
+  {
+    this.restoredStale = false;
+    this.routingTree.markStale();
+  }
+
+  /**
+   * Withdraw all routes which have not been added again since {@link #markStale()} was called.
+   *
+   * @return the number of withdrawn routes
+   */
+
+  public int sweepStale()
+  {
+    this.restoredStale = false;
+
+    final List<Route> withdrawn = this.routingTree.sweepStale();
+
+    if (!withdrawn.isEmpty())
+    {
+      this.fireRoutesWithdrawn(withdrawn.toArray(NO_ROUTES));
+    }
+
+    return withdrawn.size();
+  }
+
+  /**
+   * Withdraw the routes restored from a snapshot which have not been added again, unless the stale routes have been swept or marked
+   * stale again since they were restored, e.g. when the End-of-RIB of the peer has been processed.
+   *
+   * @return the number of withdrawn routes
+   */
+
+  int sweepRestored()
+  {
+    return this.restoredStale ? this.sweepStale() : 0;
+  }
+
   /**
    * Lookup a route by a NLRI prefix. The lookup process may result in a specific, less specific route or no route at all
    *
@@ -201,7 +284,7 @@ public class RoutingInformationBase
 
   public LookupResult lookupRoute(final NetworkLayerReachabilityInformation nlri)
   {
-    return this.routingTree.lookupRoute(nlri);
+    return this.routingTree.lookupRoute(this.getAddressFamilyKey(), nlri);
   }
 
   /**
@@ -219,7 +302,7 @@ public class RoutingInformationBase
    *
    */
 
-  public void addPerRibListener(final RoutingEventListener listener)
+  public void addPerRibListener(final RoutingBatchListener listener)
   {
     this.perRibListeners.add(listener);
   }
@@ -228,7 +311,7 @@ public class RoutingInformationBase
    *
    */
 
-  public void removePerRibListener(final RoutingEventListener listener)
+  public void removePerRibListener(final RoutingBatchListener listener)
   {
     this.perRibListeners.remove(listener);
   }
@@ -238,7 +321,7 @@ public class RoutingInformationBase
    *          the listeners to set
    */
 
-  void setListeners(final Collection<RoutingEventListener> listeners)
+  void setListeners(final Collection<RoutingBatchListener> listeners)
   {
     this.listeners = listeners;
   }
@@ -266,24 +349,7 @@ public class RoutingInformationBase
 
     if (this.routingTree.addRoute(route))
     {
-
-      final RouteAdded event = new RouteAdded(this.getPeerName(), this.getSide(), route);
-
-      // this.routeAddedEvent.fire(event);
-
-      if (this.listeners != null)
-      {
-        for (final RoutingEventListener listener : this.listeners)
-        {
-          listener.routeAdded(event);
-        }
-      }
-
-      for (final RoutingEventListener listener : this.perRibListeners)
-      {
-        listener.routeAdded(event);
-      }
-
+      this.fireRoutesAdded(route.getPathAttributes(), route.getNextHop(), new Route[] { route });
     }
   }
 
@@ -301,26 +367,49 @@ public class RoutingInformationBase
 
     if (this.routingTree.withdrawRoute(route))
     {
+      this.fireRoutesWithdrawn(new Route[] { route });
+    }
+
+  }
 
-      final RouteWithdrawn event = new RouteWithdrawn(this.getPeerName(), this.getSide(), route);
+  /**
+   * pass one event for the whole batch to the listeners
+   */
 
-      // this.routeWithdrawnEvent.fire(event);
+  private void fireRoutesAdded(final PathAttributeSet attributes, final NextHop nextHop, final Route[] routes)
+  {
+    final RoutesAdded event = new RoutesAdded(this.getPeerName(), this.getSide(), this.getAddressFamilyKey(), attributes, nextHop, routes);
 
-      if (this.listeners != null)
+    if (this.listeners != null)
+    {
+      for (final RoutingBatchListener listener : this.listeners)
       {
-        for (final RoutingEventListener listener : this.listeners)
-        {
-          listener.routeWithdrawn(event);
-        }
+        listener.routesAdded(event);
       }
+    }
+
+    for (final RoutingBatchListener listener : this.perRibListeners)
+    {
+      listener.routesAdded(event);
+    }
+  }
 
-      for (final RoutingEventListener listener : this.perRibListeners)
+  private void fireRoutesWithdrawn(final Route[] routes)
+  {
+    final RoutesWithdrawn event = new RoutesWithdrawn(this.getPeerName(), this.getSide(), this.getAddressFamilyKey(), routes);
+
+    if (this.listeners != null)
+    {
+      for (final RoutingBatchListener listener : this.listeners)
       {
-        listener.routeWithdrawn(event);
+        listener.routesWithdrawn(event);
       }
-
     }
 
+    for (final RoutingBatchListener listener : this.perRibListeners)
+    {
+      listener.routesWithdrawn(event);
+    }
   }
 
 }
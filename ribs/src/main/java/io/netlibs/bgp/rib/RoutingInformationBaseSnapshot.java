@@ -0,0 +1,433 @@
+package io.netlibs.bgp.rib;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.netlibs.bgp.netty.codec.UpdatePacketDecoder;
+import io.netlibs.bgp.netty.protocol.update.EncodedPathAttributes;
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamily;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.BGPv4Constants;
+import io.netlibs.bgp.protocol.BinaryNextHop;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NLRICodec;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.SubsequentAddressFamily;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Binary snapshot of the Remote RIBs of a {@link PeerRoutingInformationBaseManager}, used to serve routes right after a restart while the
+ * sessions are established again.
+ *
+ * The file holds a section per RIB followed by the tables of attribute sets and next hops, which are stored once and referred to by their
+ * index. Within a section the routes are grouped by attribute set and next hop, each route only takes its packed prefix. The last eight
+ * octets point to the tables, so the sections can be written while the RIBs are walked.
+ *
+ * The file is written through memory-mapped windows into a temporary file which replaces the snapshot once it is complete, and read from a
+ * single mapping. Each RIB is restored with a single write of its routing tree.
+ */
+
+final class RoutingInformationBaseSnapshot
+{
+
+  private static final int MAGIC = 0x4a524942; // "JRIB"
+  private static final int VERSION = 1;
+
+  private static final int NEXT_HOP_IPV4 = 1;
+  private static final int NEXT_HOP_IPV6 = 2;
+  private static final int NEXT_HOP_BINARY = 3;
+  private static final int NO_NEXT_HOP = -1;
+
+  private static final int FLUSH_THRESHOLD = 1 << 20;
+  private static final long WINDOW_SIZE = 64L << 20;
+
+  /**
+   * the routes of a RIB sharing attribute set and next hop
+   */
+
+  private static final class Group
+  {
+    private final PathAttributeSet attributes;
+    private final NextHop nextHop;
+
+    private Group(final PathAttributeSet attributes, final NextHop nextHop)
+    {
+      this.attributes = attributes;
+      this.nextHop = nextHop;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return System.identityHashCode(this.attributes) * 31 + Objects.hashCode(this.nextHop);
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+      return (obj instanceof Group) && (((Group) obj).attributes == this.attributes) && Objects.equals(((Group) obj).nextHop, this.nextHop);
+    }
+  }
+
+  /**
+   * buffers the output and copies it into memory-mapped windows of the file
+   */
+
+  private static final class MappedOutput
+  {
+    private final FileChannel channel;
+    private final ByteBuf buffer = Unpooled.buffer(FLUSH_THRESHOLD * 2);
+    private MappedByteBuffer window;
+    private long position;
+
+    private MappedOutput(final FileChannel channel)
+    {
+      this.channel = channel;
+    }
+
+    private long position()
+    {
+      return this.position + this.buffer.readableBytes();
+    }
+
+    private void flushIfFull() throws IOException
+    {
+      if (this.buffer.readableBytes() >= FLUSH_THRESHOLD)
+      {
+        this.flush();
+      }
+    }
+
+    private void flush() throws IOException
+    {
+      final int length = this.buffer.readableBytes();
+
+      if ((this.window == null) || (this.window.remaining() < length))
+      {
+        this.window = this.channel.map(MapMode.READ_WRITE, this.position, Math.max(WINDOW_SIZE, length));
+      }
+
+      this.window.put(this.buffer.nioBuffer());
+      this.position += length;
+      this.buffer.clear();
+    }
+  }
+
+  private RoutingInformationBaseSnapshot()
+  {
+  }
+
+  /**
+   * write the Remote RIBs of the given peers, replacing the file once the snapshot is complete
+   */
+
+  static void write(final List<PeerRoutingInformationBase> pribs, final Path file) throws IOException
+  {
+    final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    final Map<PathAttributeSet, Integer> attributeSets = new IdentityHashMap<PathAttributeSet, Integer>();
+    final Map<NextHop, Integer> nextHops = new LinkedHashMap<NextHop, Integer>();
+    final List<PeerRoutingInformationBase> owners = new ArrayList<PeerRoutingInformationBase>();
+    final List<RoutingInformationBase> ribs = new ArrayList<RoutingInformationBase>();
+
+    for (final PeerRoutingInformationBase prib : pribs)
+    {
+      for (final RoutingInformationBase rib : prib.routingBases(RIBSide.Remote).values())
+      {
+        owners.add(prib);
+        ribs.add(rib);
+      }
+    }
+
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE))
+    {
+      final MappedOutput out = new MappedOutput(channel);
+
+      out.buffer.writeInt(MAGIC);
+      out.buffer.writeShort(VERSION);
+      out.buffer.writeInt(ribs.size());
+
+      for (int i = 0; i < ribs.size(); i++)
+      {
+        writeRoutingBase(out, owners.get(i), ribs.get(i), attributeSets, nextHops);
+      }
+
+      final long tables = out.position();
+      final PathAttributeSet[] sets = new PathAttributeSet[attributeSets.size()];
+
+      for (final Map.Entry<PathAttributeSet, Integer> entry : attributeSets.entrySet())
+      {
+        sets[entry.getValue()] = entry.getKey();
+      }
+
+      out.buffer.writeInt(sets.length);
+
+      for (final PathAttributeSet set : sets)
+      {
+        writeAttributeSet(out, set);
+        out.flushIfFull();
+      }
+
+      out.buffer.writeInt(nextHops.size());
+
+      for (final NextHop nextHop : nextHops.keySet())
+      {
+        writeNextHop(out, nextHop);
+      }
+
+      out.buffer.writeLong(tables);
+      out.flush();
+      out.window = null;
+      channel.truncate(out.position);
+    }
+
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * restore the RIBs of a snapshot, creating the peers and RIBs which do not exist yet
+   *
+   * @param restoredPeers
+   *          receives the peers which routes have been restored for
+   * @return the number of restored routes
+   */
+
+  static int read(final PeerRoutingInformationBaseManager manager, final Path file, final Collection<PeerRoutingInformationBase> restoredPeers)
+      throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      if (channel.size() > Integer.MAX_VALUE)
+      {
+        throw new IOException("snapshot too large: " + file);
+      }
+
+      final ByteBuf in = Unpooled.wrappedBuffer(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+
+      try
+      {
+        if ((in.readInt() != MAGIC) || (in.readUnsignedShort() != VERSION))
+        {
+          throw new IOException("not a RIB snapshot: " + file);
+        }
+
+        final int ribCount = in.readInt();
+        final int tablesOffset = (int) in.getLong(in.writerIndex() - 8);
+        final ByteBuf tables = in.slice(tablesOffset, in.writerIndex() - 8 - tablesOffset);
+        final PathAttributeSet[] attributeSets = readAttributeSets(tables);
+        final NextHop[] nextHops = readNextHops(tables);
+        int restored = 0;
+
+        for (int i = 0; i < ribCount; i++)
+        {
+          restored += readRoutingBase(manager, in, attributeSets, nextHops, restoredPeers);
+        }
+
+        return restored;
+      }
+      catch (final IndexOutOfBoundsException | IllegalArgumentException ex)
+      {
+        throw new IOException("malformed RIB snapshot: " + file, ex);
+      }
+    }
+  }
+
+  private static void writeRoutingBase(final MappedOutput out, final PeerRoutingInformationBase prib, final RoutingInformationBase rib,
+      final Map<PathAttributeSet, Integer> attributeSets, final Map<NextHop, Integer> nextHops) throws IOException
+  {
+    final Map<Group, List<NetworkLayerReachabilityInformation>> groups = new LinkedHashMap<Group, List<NetworkLayerReachabilityInformation>>();
+
+    rib.visitRoutingNodes((ribName, side, route) -> groups.computeIfAbsent(new Group(route.getPathAttributes(), route.getNextHop()),
+        group -> new ArrayList<NetworkLayerReachabilityInformation>()).add(route.getNlri()));
+
+    final byte[] name = prib.getPeerName().getBytes(StandardCharsets.UTF_8);
+
+    out.buffer.writeShort(name.length);
+    out.buffer.writeBytes(name);
+    out.buffer.writeBoolean(prib.isExtensionRoutingBase());
+    out.buffer.writeShort(rib.getAddressFamilyKey().getAddressFamily().toCode());
+    out.buffer.writeByte(rib.getAddressFamilyKey().getSubsequentAddressFamily().toCode());
+    out.buffer.writeInt(groups.size());
+
+    for (final Map.Entry<Group, List<NetworkLayerReachabilityInformation>> entry : groups.entrySet())
+    {
+      final Group group = entry.getKey();
+
+      out.buffer.writeInt(attributeSets.computeIfAbsent(group.attributes, set -> attributeSets.size()));
+      out.buffer.writeInt((group.nextHop != null) ? nextHops.computeIfAbsent(group.nextHop, nextHop -> nextHops.size()) : NO_NEXT_HOP);
+      out.buffer.writeInt(entry.getValue().size());
+
+      for (final NetworkLayerReachabilityInformation nlri : entry.getValue())
+      {
+        NLRICodec.encodeNLRI(nlri, out.buffer);
+        out.flushIfFull();
+      }
+    }
+  }
+
+  private static int readRoutingBase(final PeerRoutingInformationBaseManager manager, final ByteBuf in, final PathAttributeSet[] attributeSets,
+      final NextHop[] nextHops, final Collection<PeerRoutingInformationBase> restoredPeers)
+  {
+    final String peerName = in.readCharSequence(in.readUnsignedShort(), StandardCharsets.UTF_8).toString();
+    final boolean extension = in.readBoolean();
+    final AddressFamilyKey afk = new AddressFamilyKey(AddressFamily.fromCode(in.readUnsignedShort()), SubsequentAddressFamily.fromCode(in.readUnsignedByte()));
+    final int groupCount = in.readInt();
+
+    final PeerRoutingInformationBase prib = manager.peerRoutingInformationBase(peerName);
+
+    restoredPeers.add(prib);
+
+    if (extension)
+    {
+      prib.setExtensionRoutingBase(true);
+    }
+
+    prib.allocateRoutingInformationBase(RIBSide.Remote, afk);
+
+    final RoutingInformationBase rib = prib.routingBase(RIBSide.Remote, afk);
+    final List<List<Route>> runs = new ArrayList<List<Route>>(groupCount);
+    int restored = 0;
+
+    for (int i = 0; i < groupCount; i++)
+    {
+      final PathAttributeSet attributes = attributeSets[in.readInt()];
+      final int nextHopIndex = in.readInt();
+      final NextHop nextHop = (nextHopIndex != NO_NEXT_HOP) ? nextHops[nextHopIndex] : null;
+      final int count = in.readInt();
+      final List<Route> run = new ArrayList<Route>(count);
+
+      for (int j = 0; j < count; j++)
+      {
+        run.add(new Route(rib.getRibID(), afk, NLRICodec.decodeNLRI(in), attributes, nextHop));
+      }
+
+      runs.add(run);
+      restored += count;
+    }
+
+    rib.restoreRoutes(runs);
+
+    return restored;
+  }
+
+  /**
+   * write an attribute set as its wire encoding, along with the size of the AS numbers in its AS_PATH
+   */
+
+  private static void writeAttributeSet(final MappedOutput out, final PathAttributeSet set)
+  {
+    ASType asPathType = ASType.AS_NUMBER_2OCTETS;
+
+    for (final PathAttribute attribute : set)
+    {
+      if (attribute instanceof ASPathAttribute)
+      {
+        asPathType = ((ASPathAttribute) attribute).getAsType();
+      }
+    }
+
+    final EncodedPathAttributes encoded = set.getEncoded();
+
+    out.buffer.writeBoolean(asPathType == ASType.AS_NUMBER_4OCTETS);
+    out.buffer.writeInt(encoded.getLength());
+    encoded.writeTo(out.buffer);
+  }
+
+  private static PathAttributeSet[] readAttributeSets(final ByteBuf in)
+  {
+    final UpdatePacketDecoder decoder = new UpdatePacketDecoder();
+    final PathAttributeSet[] sets = new PathAttributeSet[in.readInt()];
+
+    for (int i = 0; i < sets.length; i++)
+    {
+      final ASType asPathType = in.readBoolean() ? ASType.AS_NUMBER_4OCTETS : ASType.AS_NUMBER_2OCTETS;
+      final ByteBuf block = in.readSlice(in.readInt());
+      final List<PathAttribute> attributes = new ArrayList<PathAttribute>();
+
+      while (block.isReadable())
+      {
+        final int flagsType = block.readUnsignedShort();
+        final int length = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_EXTENDED_LENGTH_BIT) != 0) ? block.readUnsignedShort() : block.readUnsignedByte();
+
+        attributes.add(decoder.decodePathAttribute(flagsType, block.readSlice(length), asPathType));
+      }
+
+      sets[i] = PathAttributeSet.intern(attributes);
+    }
+
+    return sets;
+  }
+
+  private static void writeNextHop(final MappedOutput out, final NextHop nextHop)
+  {
+    final byte[] address;
+
+    if (nextHop instanceof InetAddressNextHop)
+    {
+      address = ((InetAddressNextHop<?>) nextHop).getAddress().getAddress();
+      out.buffer.writeByte((address.length == 4) ? NEXT_HOP_IPV4 : NEXT_HOP_IPV6);
+    }
+    else
+    {
+      address = ((BinaryNextHop) nextHop).getAddress();
+      out.buffer.writeByte(NEXT_HOP_BINARY);
+    }
+
+    out.buffer.writeByte(address.length);
+    out.buffer.writeBytes(address);
+  }
+
+  private static NextHop[] readNextHops(final ByteBuf in) throws IOException
+  {
+    final NextHop[] nextHops = new NextHop[in.readInt()];
+
+    for (int i = 0; i < nextHops.length; i++)
+    {
+      final int type = in.readUnsignedByte();
+      final byte[] address = new byte[in.readUnsignedByte()];
+
+      in.readBytes(address);
+
+      switch (type)
+      {
+        case NEXT_HOP_IPV4:
+          nextHops[i] = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddress.getByAddress(address));
+          break;
+        case NEXT_HOP_IPV6:
+          nextHops[i] = new InetAddressNextHop<Inet6Address>((Inet6Address) InetAddress.getByAddress(address));
+          break;
+        case NEXT_HOP_BINARY:
+          nextHops[i] = new BinaryNextHop(address);
+          break;
+        default:
+          throw new IOException("unknown next hop type " + type);
+      }
+    }
+
+    return nextHops;
+  }
+
+}
@@ -17,14 +17,34 @@
  */
 package io.netlibs.bgp.rib;
 
-import java.util.NavigableSet;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
+import io.netlibs.bgp.protocol.AddressFamilyKey;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
 
 /**
- * This class builds and manages a tree of (NLRI, Path attributes) tuples. The tree is build top-down whereas the parent node always
- * contains more coarse-grained routing information than the child nodes.
+ * This class builds and manages a tree of (NLRI, Path attributes) tuples. The tree is a path-compressed binary (Patricia) trie keyed on
+ * the prefix bits of the NLRI, whereas a parent node always contains more coarse-grained routing information than the child nodes.
+ *
+ * Insert, withdraw, exact match and longest prefix match are all bounded by the prefix length instead of the number of routes held in the
+ * tree.
+ *
+ * Routes are held under their {@link Route#getKey() key}, so for the labelled families the MPLS label is a value of the route and a new
+ * label replaces the route. The key of the VPN families starts with the RD, every RD therefore has a sub-trie of its own below the node
+ * at which the RDs branch, and a longest prefix match never leaves it. Lookups take the NLRI as received and skip the label, see
+ * {@link NlriComparator#keyOffset(AddressFamilyKey)}.
+ *
+ * The tree is persistent: nodes which are reachable by readers are never modified. A writer copies the nodes on the path to the prefix it
+ * changes and publishes the new tree by swapping the volatile root, so lookups and visits never take a lock and always see the tree as it
+ * was at a single point in time. Writers are serialized among themselves. Nodes created by a write are modified in place until the write
+ * is published, so a batch written with {@link #addRoutes(Collection)} copies every node at most once.
+ *
+ * Every route carries the generation of the tree it has last been written in. {@link #markStale()} starts a new generation without
+ * touching a single node, routes which are written again move along with it, and {@link #sweepStale()} removes all routes which have been
+ * left behind in one pass. This is how the routes of a restarting peer are retained until it has sent them again.
  *
  * @author Rainer Bieniek (Rainer.Bieniek@web.de)
  *
@@ -34,170 +54,260 @@ class RoutingTree
 {
 
   /**
-   * Internal node of the routing tree. The discriminating fact is the NLRI attached to the node. Therefore the ordering of the tree nodes
-   * is based solely on NLRI ordering.
-   *
-   * @author Rainer Bieniek (Rainer.Bieniek@web.de)
+   * Internal node of the routing tree. A node either carries a route or is a glue node which only exists to branch into its two children.
+   * The key of a node are the first {@link #keyLength} bits of {@link #key}.
    *
+   * A node may only be modified by the write which created it, identified by {@link #edit}, and only until that write is published.
+   * {@link #generation} is the generation of the tree in which the route of the node has last been written.
    */
 
-  class RoutingTreeNode implements Comparable<RoutingTreeNode>
+  static final class RoutingTreeNode
   {
-    private final Route route;
-    private final NavigableSet<RoutingTreeNode> childNodes = new TreeSet<RoutingTree.RoutingTreeNode>();
+    private final NetworkLayerReachabilityInformation key;
+    private final int keyLength;
+    private final RoutingTreeNode[] childNodes;
+    private final Object edit;
+    private Route route;
+    private int generation;
+
+    RoutingTreeNode(final NetworkLayerReachabilityInformation key, final int keyLength, final Route route, final Object edit)
+    {
+      this(key, keyLength, route, new RoutingTreeNode[2], edit);
+    }
 
-    public RoutingTreeNode(final Route route)
+    private RoutingTreeNode(final NetworkLayerReachabilityInformation key, final int keyLength, final Route route, final RoutingTreeNode[] childNodes,
+        final Object edit)
     {
+      this.key = key;
+      this.keyLength = keyLength;
       this.route = route;
+      this.childNodes = childNodes;
+      this.edit = edit;
     }
 
-    @Override
-    public int compareTo(final RoutingTreeNode o)
+    /**
+     * @return the route, <code>null</code> for glue nodes
+     */
+    Route getRoute()
     {
-      if (this.route.getNlri() == null)
-      {
-        if (o.getRoute().getNlri() == null)
-        {
-          return 0;
-        }
-        return o.getRoute().getNlri().compareTo(null);
-      }
-      return this.route.getNlri().compareTo(o.getRoute().getNlri());
+      return this.route;
     }
 
-    @Override
-    public int hashCode()
+    int getKeyLength()
     {
-      return this.route.getNlri().hashCode();
+      return this.keyLength;
     }
 
-    @Override
-    public boolean equals(final Object o)
+    RoutingTreeNode getChildNode(final int bit)
     {
-      if (!(o instanceof RoutingTreeNode))
+      return this.childNodes[bit];
+    }
+
+    /**
+     * @return this node if it belongs to the given write, a copy owned by it otherwise
+     */
+    private RoutingTreeNode editable(final Object edit)
+    {
+      if (this.edit == edit)
       {
-        return false;
+        return this;
       }
 
-      return this.route.getNlri().equals(((RoutingTreeNode) o).getRoute().getNlri());
+      final RoutingTreeNode copy = new RoutingTreeNode(this.key, this.keyLength, this.route, this.childNodes.clone(), edit);
+
+      copy.generation = this.generation;
+
+      return copy;
     }
 
-    /**
-     * @return the childNodes
-     */
-    NavigableSet<RoutingTreeNode> getChildNodes()
+    private int numberOfChildNodes()
     {
-      return this.childNodes;
+      return ((this.childNodes[0] != null) ? 1 : 0) + ((this.childNodes[1] != null) ? 1 : 0);
     }
 
-    /**
-     * @return the route
-     */
-    public Route getRoute()
+    private RoutingTreeNode singleChildNode()
     {
-      return this.route;
+      return (this.childNodes[0] != null) ? this.childNodes[0] : this.childNodes[1];
     }
   }
 
-  // the root of all nodes managed by this routing tree. This is the only node w/o a (NLRI prefix, Path attributes) tuple attached to it
-  private final RoutingTreeNode rootNode = new RoutingTreeNode(null);
+  // the root of all nodes managed by this routing tree. It has a zero length key and only carries a route for the default prefix
+  private volatile RoutingTreeNode rootNode = emptyRoot();
+
+  // the generation routes are written in and whether older ones may be left, only touched by writers
+  private int generation;
+  private boolean stale;
+
+  private static RoutingTreeNode emptyRoot()
+  {
+    return new RoutingTreeNode(new NetworkLayerReachabilityInformation(), 0, null, null);
+  }
 
   /**
    * Destroy the routing tree and delete all information held within.
+   *
+   * @return the routes which have been held
    */
-  void destroy()
+  synchronized List<Route> destroy()
   {
-    this.rootNode.getChildNodes().clear();
+    final List<Route> routes = new ArrayList<Route>();
+
+    this.visitTree(this.rootNode, route -> routes.add(route));
+    this.rootNode = emptyRoot();
+
+    return routes.isEmpty() ? Collections.<Route> emptyList() : routes;
   }
 
   /**
-   * Add a (NLRI, Path attributes) tuple to the tree
+   * Add a (NLRI, Path attributes) tuple to the tree. The rules for this process are as follows:
+   * <ol>
+   * <li>Descend as long as the node key is a prefix of the new key</li>
+   * <li>If a node key equals the new key, then the route of the node is replaced</li>
+   * <li>If the new key is a prefix of the node key where the descent stopped, the new node is inserted above it</li>
+   * <li>Otherwise a glue node is created at the first differing bit and both nodes become its children</li>
+   * </ol>
    *
-   * @param nlri
-   *          the NLRI prefix to be added
-   * @param pathAttributes
-   *          the path attributes belonging to this prefix
+   * @param route
+   *          the route to be added
    * @return <code>true<code> if the node was added, <code>false</code> if the node was not added
    */
   synchronized boolean addRoute(final Route route)
   {
-    return this.addRoute(this.rootNode, new RoutingTreeNode(route));
+    this.rootNode = this.addRoute(this.rootNode, route, new Object());
+
+    return true;
   }
 
   /**
-   * Add a new node to a parent routing tree node. The rules for this process are as follows:
-   * <ol>
-   * <li>If a child node NLRI prefix is less specific than the NLRI prefix of the new node, recursively descend with the child node as the
-   * new parent node</li>
-   * <li>If the new node NLRI prefix is less specific than one or more child node NLRI prefixes, add the new node and reparent the child
-   * nodes to the new node</li>
-   * <li>If a child node NLRI prefix equals the new node NLRI prefix, then the path attributes are replaced</li>
-   * <li>If neither of the conditions above holds true then simply add the new node to the parent.</li>
-   * </ol>
+   * Add a batch of routes and publish them at once, readers see either none or all of them.
    *
-   * @param parent
-   * @param newNode
-   * @return
+   * @param routes
+   *          the routes to be added
+   * @return the routes which have been added or changed, in the order they have been passed. Routes equal to the ones already held
+   *         replace them as well but are left out.
    */
-  private boolean addRoute(final RoutingTreeNode parent, final RoutingTreeNode newNode)
+  synchronized List<Route> addRoutes(final Collection<Route> routes)
   {
-    boolean added = false;
-    boolean handled = false;
-    final NavigableSet<RoutingTreeNode> reparentedNodes = new TreeSet<RoutingTree.RoutingTreeNode>();
+    final Object edit = new Object();
+    final List<Route> changed = new ArrayList<Route>(routes.size());
+    RoutingTreeNode root = this.rootNode;
 
-    for (final RoutingTreeNode child : parent.getChildNodes())
+    for (final Route route : routes)
     {
-      if (child.getRoute().getNlri().equals(newNode.getRoute().getNlri()))
-      {
-        // we have an exact match on the NLRI preifxes --> just replace the path attributes but signal as addition
-        child.getRoute().getPathAttributes().clear();
-        child.getRoute().getPathAttributes().addAll(newNode.getRoute().getPathAttributes());
+      final RoutingTreeNode node = this.findNode(root, route);
 
-        handled = true;
-        added = true;
-        break;
-      }
-      else if (NlriComparator.isPrefixOf(child.getRoute(), newNode.getRoute()))
+      if ((node == null) || !route.networkEquals(node.route))
       {
-        // a child node has more coarse-grained routing info attached --> make this child node parent of the new node
-        added = this.addRoute(child, newNode);
-        handled = true;
-        break;
-      }
-      else if (NlriComparator.isPrefixOf(newNode.getRoute(), child.getRoute()))
-      {
-        // the new node has more coarse-grained routing info attached --> the child must be reparented to the new node.
-        reparentedNodes.add(child);
+        changed.add(route);
       }
+
+      root = this.addRoute(root, route, edit);
     }
 
-    if (!handled)
+    this.rootNode = root;
+
+    return changed.isEmpty() ? Collections.<Route> emptyList() : changed;
+  }
+
+  /**
+   * Withdraw the (NLRI, Path attributes) tuple from the tree. The node is turned into a glue node and the tree is compacted again so that
+   * no glue node is left with less than two children.
+   *
+   * @param route
+   *          the route holding the NLRI prefix to withdraw
+   * @return <code>true</code> if the node was removed, <code>false</code> otherwise
+   */
+
+  synchronized boolean withdrawRoute(final Route route)
+  {
+    final RoutingTreeNode root = this.withdrawRoute(this.rootNode, route, new Object());
+
+    if (root == null)
     {
-      parent.getChildNodes().add(newNode);
-      added = true;
+      return false;
+    }
+
+    this.rootNode = root;
 
-      // we have nodes that need to be reparented to the new node
-      if (reparentedNodes.size() > 0)
+    return true;
+  }
+
+  /**
+   * Withdraw a batch of routes and publish the result at once.
+   *
+   * @param routes
+   *          the routes holding the NLRI prefixes to withdraw
+   * @return the routes which have been removed, in the order they have been passed
+   */
+
+  synchronized List<Route> withdrawRoutes(final Collection<Route> routes)
+  {
+    final Object edit = new Object();
+    final List<Route> withdrawn = new ArrayList<Route>(routes.size());
+    RoutingTreeNode root = this.rootNode;
+
+    for (final Route route : routes)
+    {
+      final RoutingTreeNode result = this.withdrawRoute(root, route, edit);
+
+      if (result != null)
       {
-        newNode.getChildNodes().addAll(reparentedNodes);
-        parent.getChildNodes().removeAll(reparentedNodes);
+        root = result;
+        withdrawn.add(route);
       }
     }
 
-    return added;
+    this.rootNode = root;
+
+    return withdrawn.isEmpty() ? Collections.<Route> emptyList() : withdrawn;
   }
 
   /**
-   * Withdraw the (NLRI, Path attributes) tuple from the tree.
+   * Start a new generation, all routes held so far become stale until they are added again.
+   */
+
+  synchronized void markStale()
+  {
+    this.generation++;
+    this.stale = true;
+  }
+
+  /**
+   * Remove all routes which have not been added again since the last call to {@link #markStale()} and publish the result at once. The
+   * tree is only walked once per call to {@link #markStale()}.
    *
-   * @param nlri
-   *          the NLRI prefix to withdraw
-   * @return <code>true</code> if the node was removed, <code>false</code> otherwise
+   * @return the removed routes
    */
 
-  synchronized boolean withdrawRoute(final Route route)
+  synchronized List<Route> sweepStale()
   {
-    return this.withdrawRoute(this.rootNode, route);
+    if (!this.stale)
+    {
+      return Collections.<Route> emptyList();
+    }
+
+    this.stale = false;
+
+    final List<Route> stale = new ArrayList<Route>();
+
+    this.collectStale(this.rootNode, stale);
+
+    if (stale.isEmpty())
+    {
+      return Collections.<Route> emptyList();
+    }
+
+    final Object edit = new Object();
+    RoutingTreeNode root = this.rootNode;
+
+    for (final Route route : stale)
+    {
+      root = this.withdrawRoute(root, route, edit);
+    }
+
+    this.rootNode = root;
+
+    return stale;
   }
 
   /**
@@ -205,128 +315,277 @@ class RoutingTree
    *
    * @param visitor
    */
-  synchronized void visitTree(final RoutingTreeVisitor visitor)
+  void visitTree(final RoutingTreeVisitor visitor)
   {
     this.visitTree(this.rootNode, visitor);
   }
 
-  public NlriComparator comparator(final int type)
+  /**
+   * @return the rootNode of the current version of the tree
+   */
+  RoutingTreeNode getRootNode()
   {
-    return null;
+    return this.rootNode;
   }
 
   /**
-   * Withdraw the (NLRI prefix, Path attributes) tuple from the tree. The rules for this pürocess are as follows:
-   * <ol>
-   * <li>If the NLRI prefix of a child node matches the to be remove NLRI prefix, the child node is removed and all child nodes of the child
-   * node are added to the parent node.</li>
-   * <li>If a child node NLRI is a less specific prefix of the to be removed NLRI prefix, recursively descend into the tree rooted by the
-   * child node</li>
-   * </ol>
+   * Lookup a prefix. The result is the route with the exact prefix or, if none exists, the route with the longest less specific prefix.
    *
-   * @param parent
+   * @param afk
+   *          the address family the NLRI belongs to
    * @param nlri
-   * @return
+   *          the prefix to look up
+   * @return the result or <code>null</code> if no covering route exists
    */
 
-  private boolean withdrawRoute(final RoutingTreeNode parent, final Route route)
+  LookupResult lookupRoute(final AddressFamilyKey afk, final NetworkLayerReachabilityInformation nlri)
   {
+    final int offset = NlriComparator.keyOffset(afk);
+    final int length = NlriComparator.keyLength(afk, nlri);
 
-    boolean withdrawn = false;
-    RoutingTreeNode candidate = null;
+    Route best = null;
+    RoutingTreeNode parent = null;
+    RoutingTreeNode node = this.rootNode;
 
-    for (final RoutingTreeNode child : parent.getChildNodes())
+    while ((node != null) && (node.keyLength <= length))
     {
-      if (NlriComparator.equals(child.getRoute(), route))
+      if ((parent != null) && (NlriComparator.firstDifferingBit(node.key, 0, nlri, offset, parent.keyLength, node.keyLength) < node.keyLength))
       {
-        candidate = child;
         break;
       }
-      else if (NlriComparator.isPrefixOf(child.getRoute(), route))
+
+      if (node.route != null)
+      {
+        best = node.route;
+      }
+
+      if (node.keyLength == length)
       {
-        withdrawn = this.withdrawRoute(child, route);
         break;
       }
 
+      parent = node;
+      node = node.childNodes[NlriComparator.bitAt(nlri, offset, node.keyLength)];
     }
 
-    if (candidate != null)
-    {
-      parent.getChildNodes().addAll(candidate.getChildNodes());
-      parent.getChildNodes().remove(candidate);
-      withdrawn = true;
-    }
-
-    return withdrawn;
+    return (best != null) ? new LookupResult(best) : null;
   }
 
   /**
-   * @return the rootNode
+   * add the route to the tree below the given root
+   *
+   * @return the new root, which belongs to the given write
    */
-  RoutingTreeNode getRootNode()
+  private RoutingTreeNode addRoute(final RoutingTreeNode root, final Route route, final Object edit)
   {
-    return this.rootNode;
+    final NetworkLayerReachabilityInformation key = route.getKey();
+    final int length = key.getPrefixLength();
+
+    final RoutingTreeNode result = root.editable(edit);
+    RoutingTreeNode parent = null;
+    RoutingTreeNode node = result;
+
+    while (true)
+    {
+      if (node.keyLength == length)
+      {
+        // we have an exact match on the NLRI prefixes --> just replace the route but signal as addition
+        node.route = route;
+        node.generation = this.generation;
+        return result;
+      }
+
+      parent = node;
+
+      final int bit = NlriComparator.bitAt(key, 0, node.keyLength);
+
+      node = parent.childNodes[bit];
+
+      if (node == null)
+      {
+        parent.childNodes[bit] = this.routeNode(key, length, route, edit);
+        return result;
+      }
+
+      final int limit = Math.min(length, node.keyLength);
+      final int diff = NlriComparator.firstDifferingBit(node.key, 0, key, 0, parent.keyLength, limit);
+
+      if (diff < limit)
+      {
+        // keys diverge before either ends --> branch with a glue node
+        final RoutingTreeNode glue = new RoutingTreeNode(key, diff, null, edit);
+
+        glue.childNodes[NlriComparator.bitAt(key, 0, diff)] = this.routeNode(key, length, route, edit);
+        glue.childNodes[NlriComparator.bitAt(node.key, 0, diff)] = node;
+        parent.childNodes[bit] = glue;
+
+        return result;
+      }
+      else if (length < node.keyLength)
+      {
+        // the new node has more coarse-grained routing info attached --> the node must be reparented to the new node.
+        final RoutingTreeNode added = this.routeNode(key, length, route, edit);
+
+        added.childNodes[NlriComparator.bitAt(node.key, 0, length)] = node;
+        parent.childNodes[bit] = added;
+
+        return result;
+      }
+
+      // the node key is a prefix of (or equal to) the new key --> descend, copying the node as it is about to change
+      node = node.editable(edit);
+      parent.childNodes[bit] = node;
+    }
   }
 
   /**
+   * withdraw the route from the tree below the given root
    *
-   * @param nlri
-   * @return
+   * @return the new root, which belongs to the given write, or <code>null</code> if the tree holds no route for the prefix
    */
-
-  LookupResult lookupRoute(final NetworkLayerReachabilityInformation nlri)
+  private RoutingTreeNode withdrawRoute(final RoutingTreeNode root, final Route route, final Object edit)
   {
-    return this.lookupRoute(this.rootNode, nlri);
+    final NetworkLayerReachabilityInformation key = route.getKey();
+    final int length = key.getPrefixLength();
+
+    // find the node first, nothing is copied for unknown prefixes
+    if (this.findNode(root, route) == null)
+    {
+      return null;
+    }
+
+    // descend again, copying the path down to the node
+    final RoutingTreeNode result = root.editable(edit);
+    RoutingTreeNode grandParent = null;
+    RoutingTreeNode parent = null;
+    RoutingTreeNode node = result;
+
+    while (node.keyLength < length)
+    {
+      final int bit = NlriComparator.bitAt(key, 0, node.keyLength);
+
+      grandParent = parent;
+      parent = node;
+      node = parent.childNodes[bit].editable(edit);
+      parent.childNodes[bit] = node;
+    }
+
+    node.route = null;
+
+    if (node != result)
+    {
+      switch (node.numberOfChildNodes())
+      {
+        case 0:
+          this.replaceChild(parent, node, null);
+
+          // the parent may now be a glue node with a single child, which is not needed anymore
+          if ((parent != result) && (parent.route == null) && (parent.numberOfChildNodes() == 1))
+          {
+            this.replaceChild(grandParent, parent, parent.singleChildNode());
+          }
+          break;
+        case 1:
+          this.replaceChild(parent, node, node.singleChildNode());
+          break;
+        default:
+          // keep as glue node
+          break;
+      }
+    }
+
+    return result;
   }
 
   /**
+   * find the node carrying a route for the exact prefix of the given route without modifying anything
    *
+   * @return the node or <code>null</code> if the tree below the given root holds no route for the prefix
    */
-
-  private LookupResult lookupRoute(final RoutingTreeNode parent, final NetworkLayerReachabilityInformation nlri)
+  private RoutingTreeNode findNode(final RoutingTreeNode root, final Route route)
   {
+    final NetworkLayerReachabilityInformation key = route.getKey();
+    final int length = key.getPrefixLength();
 
-    LookupResult result = null;
+    RoutingTreeNode parent = null;
+    RoutingTreeNode node = root;
 
-    for (final RoutingTreeNode child : parent.getChildNodes())
+    while ((node != null) && (node.keyLength < length))
     {
+      parent = node;
+      node = node.childNodes[NlriComparator.bitAt(key, 0, node.keyLength)];
 
-      if (NlriComparator.equals(child.getRoute(), nlri))
+      if ((node != null) && (NlriComparator.firstDifferingBit(node.key, 0, key, 0, parent.keyLength, Math.min(length, node.keyLength)) < Math.min(length, node.keyLength)))
       {
-        result = new LookupResult(child.getRoute());
-        break;
+        node = null;
       }
-      else if (NlriComparator.isPrefixOf(child.getRoute(), nlri))
-      {
+    }
 
-        // child node NLRI is less specific match --> descend into child node
-        result = this.lookupRoute(child, nlri);
+    return ((node == null) || (node.keyLength != length) || (node.route == null)) ? null : node;
+  }
 
-        // child node lookup did not yield result --> build result from less specific child node NLRI
-        if (result == null)
-        {
-          result = new LookupResult(child.getRoute());
-        }
+  /**
+   * create a node carrying a route written in the current generation
+   */
+  private RoutingTreeNode routeNode(final NetworkLayerReachabilityInformation key, final int length, final Route route, final Object edit)
+  {
+    final RoutingTreeNode node = new RoutingTreeNode(key, length, route, edit);
 
-      }
+    node.generation = this.generation;
+
+    return node;
+  }
 
+  /**
+   * collect the routes of all nodes below the given one which have not been written in the current generation
+   */
+  private void collectStale(final RoutingTreeNode parent, final List<Route> stale)
+  {
+    if ((parent.route != null) && (parent.generation != this.generation))
+    {
+      stale.add(parent.route);
     }
 
-    return result;
+    for (final RoutingTreeNode child : parent.childNodes)
+    {
+      if (child != null)
+      {
+        this.collectStale(child, stale);
+      }
+    }
   }
 
   /**
-   * recursively descend into the tree
+   * recursively descend into the tree, visiting less specific routes before more specific ones
    *
    * @param visitor
    */
-  synchronized void visitTree(final RoutingTreeNode parent, final RoutingTreeVisitor visitor)
+  private void visitTree(final RoutingTreeNode parent, final RoutingTreeVisitor visitor)
   {
-    for (final RoutingTreeNode child : parent.getChildNodes())
+    if (parent.route != null)
+    {
+      visitor.visitRouteTreeNode(parent.route);
+    }
+
+    for (final RoutingTreeNode child : parent.childNodes)
     {
-      visitor.visitRouteTreeNode(child.getRoute());
+      if (child != null)
+      {
+        this.visitTree(child, visitor);
+      }
+    }
+  }
 
-      this.visitTree(child, visitor);
+  private void replaceChild(final RoutingTreeNode parent, final RoutingTreeNode child, final RoutingTreeNode replacement)
+  {
+    if (parent.childNodes[0] == child)
+    {
+      parent.childNodes[0] = replacement;
+    }
+    else
+    {
+      parent.childNodes[1] = replacement;
     }
   }
+
 }
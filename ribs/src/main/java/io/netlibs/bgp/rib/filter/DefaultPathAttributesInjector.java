@@ -5,11 +5,16 @@ package io.netlibs.bgp.rib.filter;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.netlibs.bgp.config.nodes.PathAttributeConfiguration;
 import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.PathAttributeSet;
 import io.netlibs.bgp.rib.Route;
 
 /**
@@ -20,14 +25,42 @@ public class DefaultPathAttributesInjector {
 
 	private Map<Class<? extends PathAttribute>, PathAttribute> attrs = new HashMap<Class<? extends PathAttribute>, PathAttribute>();
 	
+	// the completed set of each interned attribute set, which routes of the same UPDATE or policy result share. A set which is complete
+	// already maps to empty, so the value never keeps its weak key alive.
+	private final Cache<PathAttributeSet, Optional<PathAttributeSet>> injected = CacheBuilder.newBuilder().weakKeys().maximumSize(1 << 16).build();
+	
 	public void configure(PathAttributeConfiguration configuration) {
 		for(PathAttribute pa : configuration.getAttributes()) {
 			attrs.put(pa.getClass(), pa);
 		}
+		injected.invalidateAll();
 	}
 	
 	public Route injectMissingPathAttribute(Route route) {
-		Set<PathAttribute> result = new TreeSet<PathAttribute>(route.getPathAttributes());
+		return new Route(route, null, injectMissingPathAttributes(route.getPathAttributes()), null);
+	}
+	
+	/**
+	 * add the configured default attributes missing in the given set. The result is memoised per interned set.
+	 * 
+	 * @param pathAttributes the interned attribute set
+	 * @return the interned attribute set with the defaults added
+	 */
+	public PathAttributeSet injectMissingPathAttributes(PathAttributeSet pathAttributes) {
+		Optional<PathAttributeSet> result = injected.getIfPresent(pathAttributes);
+		
+		if(result == null) {
+			PathAttributeSet completed = inject(pathAttributes);
+			
+			result = (completed != pathAttributes) ? Optional.of(completed) : Optional.<PathAttributeSet>empty();
+			injected.put(pathAttributes, result);
+		}
+		
+		return result.orElse(pathAttributes);
+	}
+	
+	private PathAttributeSet inject(PathAttributeSet pathAttributes) {
+		Set<PathAttribute> result = new TreeSet<PathAttribute>(pathAttributes);
 		Map<Class<? extends PathAttribute>, PathAttribute> pathClazz = new HashMap<Class<? extends PathAttribute>, PathAttribute>();
 		
 		for(PathAttribute pa : result) {
@@ -39,6 +72,6 @@ public class DefaultPathAttributesInjector {
 				result.add(attrs.get(clazz));
 		}
 
-		return new Route(route, null, result, null);
+		return PathAttributeSet.intern(result);
 	}
 }
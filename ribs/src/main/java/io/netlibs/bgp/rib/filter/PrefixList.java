@@ -0,0 +1,182 @@
+package io.netlibs.bgp.rib.filter;
+
+import java.util.Collection;
+
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration;
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration.Action;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.rib.NlriComparator;
+
+/**
+ * A compiled prefix list. The entries are held in a path-compressed binary trie keyed on their prefix, so evaluating a prefix is bounded
+ * by its length instead of the number of entries.
+ *
+ * A prefix is matched by an entry if the entry prefix covers it and its length lies within the bounds of the entry. The longest matching
+ * entry prefix decides, among entries with the same prefix the first one in the list. Prefixes are compared as routing keys, see
+ * {@link io.netlibs.bgp.rib.Route#getKey()}.
+ *
+ * A prefix list is immutable once built and may be evaluated concurrently.
+ */
+
+public final class PrefixList
+{
+
+  private static final class Node
+  {
+    private final NetworkLayerReachabilityInformation key;
+    private final int keyLength;
+    private final Node[] childNodes = new Node[2];
+
+    // the entries with exactly this prefix, in list order
+    private PrefixListEntryConfiguration[] entries;
+
+    private Node(final NetworkLayerReachabilityInformation key, final int keyLength)
+    {
+      this.key = key;
+      this.keyLength = keyLength;
+    }
+
+    private void add(final PrefixListEntryConfiguration entry)
+    {
+      if (this.entries == null)
+      {
+        this.entries = new PrefixListEntryConfiguration[] { entry };
+      }
+      else
+      {
+        final PrefixListEntryConfiguration[] grown = new PrefixListEntryConfiguration[this.entries.length + 1];
+
+        System.arraycopy(this.entries, 0, grown, 0, this.entries.length);
+        grown[this.entries.length] = entry;
+        this.entries = grown;
+      }
+    }
+  }
+
+  private final Node rootNode = new Node(new NetworkLayerReachabilityInformation(), 0);
+  private final int size;
+
+  public PrefixList(final Collection<? extends PrefixListEntryConfiguration> entries)
+  {
+    for (final PrefixListEntryConfiguration entry : entries)
+    {
+      this.insert(entry);
+    }
+
+    this.size = entries.size();
+  }
+
+  /**
+   * @return the number of entries
+   */
+
+  public int size()
+  {
+    return this.size;
+  }
+
+  /**
+   * evaluate a prefix against the list
+   *
+   * @param prefix
+   *          the routing key of the route
+   * @return the action of the longest matching entry, <code>null</code> if no entry matches
+   */
+
+  public Action evaluate(final NetworkLayerReachabilityInformation prefix)
+  {
+    final int length = prefix.getPrefixLength();
+
+    Action result = null;
+    Node parent = null;
+    Node node = this.rootNode;
+
+    while ((node != null) && (node.keyLength <= length))
+    {
+      if ((parent != null) && (NlriComparator.firstDifferingBit(node.key, 0, prefix, 0, parent.keyLength, node.keyLength) < node.keyLength))
+      {
+        break;
+      }
+
+      if (node.entries != null)
+      {
+        for (final PrefixListEntryConfiguration entry : node.entries)
+        {
+          if ((length >= entry.getMinLength()) && (length <= entry.getMaxLength()))
+          {
+            result = entry.getAction();
+            break;
+          }
+        }
+      }
+
+      if (node.keyLength == length)
+      {
+        break;
+      }
+
+      parent = node;
+      node = node.childNodes[NlriComparator.bitAt(prefix, 0, node.keyLength)];
+    }
+
+    return result;
+  }
+
+  /**
+   * insert an entry, creating the node for its prefix if needed
+   */
+
+  private void insert(final PrefixListEntryConfiguration entry)
+  {
+    final NetworkLayerReachabilityInformation key = entry.getPrefix();
+    final int length = key.getPrefixLength();
+
+    Node parent = null;
+    Node node = this.rootNode;
+
+    while (node.keyLength != length)
+    {
+      parent = node;
+
+      final int bit = NlriComparator.bitAt(key, 0, parent.keyLength);
+
+      node = parent.childNodes[bit];
+
+      if (node == null)
+      {
+        node = new Node(key, length);
+        parent.childNodes[bit] = node;
+        break;
+      }
+
+      final int limit = Math.min(length, node.keyLength);
+      final int diff = NlriComparator.firstDifferingBit(node.key, 0, key, 0, parent.keyLength, limit);
+
+      if (diff < limit)
+      {
+        // the prefixes diverge before either ends --> branch with a glue node
+        final Node glue = new Node(key, diff);
+        final Node added = new Node(key, length);
+
+        glue.childNodes[NlriComparator.bitAt(key, 0, diff)] = added;
+        glue.childNodes[NlriComparator.bitAt(node.key, 0, diff)] = node;
+        parent.childNodes[bit] = glue;
+        node = added;
+        break;
+      }
+      else if (length < node.keyLength)
+      {
+        // the entry covers the node --> insert it above
+        final Node added = new Node(key, length);
+
+        added.childNodes[NlriComparator.bitAt(node.key, 0, length)] = node;
+        parent.childNodes[bit] = added;
+        node = added;
+        break;
+      }
+    }
+
+    node.add(entry);
+  }
+
+}
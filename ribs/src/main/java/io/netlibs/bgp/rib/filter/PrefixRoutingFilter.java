@@ -3,15 +3,30 @@
  */
 package io.netlibs.bgp.rib.filter;
 
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.naming.ConfigurationException;
+
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration;
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration.Action;
 import io.netlibs.bgp.config.nodes.PrefixRoutingFilterConfiguration;
+import io.netlibs.bgp.config.nodes.impl.PrefixListEntryConfigurationImpl;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
 import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
 import io.netlibs.bgp.rib.NlriComparator;
 import io.netlibs.bgp.rib.Route;
 
 /**
+ * Filters out the routes denied by a prefix list. The filter prefixes of the configuration deny themselves and all more specific
+ * prefixes, the prefix list entries follow them.
+ *
+ * The filter prefixes are NLRIs as the routes carry them, so for the labelled and VPN families they start with a label. Routes are
+ * matched on their {@link Route#getKey() key}, the list is therefore compiled once per address family with the filter prefixes turned
+ * into routing keys of that family.
+ *
  * @author rainer
  *
  */
@@ -19,7 +34,9 @@ import io.netlibs.bgp.rib.Route;
 public class PrefixRoutingFilter implements RoutingFilter
 {
 
-  private final Set<NetworkLayerReachabilityInformation> filterPrefixes = new TreeSet<NetworkLayerReachabilityInformation>();
+  private final List<NetworkLayerReachabilityInformation> filterPrefixes = new ArrayList<NetworkLayerReachabilityInformation>();
+  private final List<PrefixListEntryConfiguration> entries = new ArrayList<PrefixListEntryConfiguration>();
+  private volatile ConcurrentMap<AddressFamilyKey, PrefixList> prefixLists = new ConcurrentHashMap<AddressFamilyKey, PrefixList>();
 
   public void configure(final PrefixRoutingFilterConfiguration configuration)
   {
@@ -27,6 +44,8 @@ public class PrefixRoutingFilter implements RoutingFilter
     if (configuration != null)
     {
       this.filterPrefixes.addAll(configuration.getFilterPrefixes());
+      this.entries.addAll(configuration.getPrefixListEntries());
+      this.prefixLists = new ConcurrentHashMap<AddressFamilyKey, PrefixList>();
     }
 
   }
@@ -34,23 +53,37 @@ public class PrefixRoutingFilter implements RoutingFilter
   @Override
   public boolean matchFilter(final Route route)
   {
+    return this.prefixLists.computeIfAbsent(route.getAddressFamilyKey(), this::compile).evaluate(route.getKey()) == Action.DENY;
+  }
 
-    boolean match = false;
+  /**
+   * compile the list for the routes of an address family
+   */
+
+  private PrefixList compile(final AddressFamilyKey afk)
+  {
+    final List<PrefixListEntryConfiguration> compiled = new ArrayList<PrefixListEntryConfiguration>(this.filterPrefixes.size() + this.entries.size());
 
     for (final NetworkLayerReachabilityInformation filterPrefix : this.filterPrefixes)
     {
-
-      if (NlriComparator.isPrefixOf(route.getAddressFamilyKey(), filterPrefix, route.getNlri())
-          || NlriComparator.equals(route.getAddressFamilyKey(), filterPrefix, route.getNlri()))
-      {
-        match = true;
-        break;
-      }
-
+      compiled.add(denyCovered(NlriComparator.routingKey(afk, filterPrefix)));
     }
 
-    return match;
+    compiled.addAll(this.entries);
 
+    return new PrefixList(compiled);
+  }
+
+  private static PrefixListEntryConfiguration denyCovered(final NetworkLayerReachabilityInformation prefix)
+  {
+    try
+    {
+      return new PrefixListEntryConfigurationImpl(Action.DENY, prefix, prefix.getPrefixLength(), PrefixListEntryConfiguration.MAX_LENGTH);
+    }
+    catch (final ConfigurationException ex)
+    {
+      throw new IllegalArgumentException("illegal filter prefix " + prefix, ex);
+    }
   }
 
 }
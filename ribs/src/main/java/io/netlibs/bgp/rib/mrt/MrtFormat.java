@@ -0,0 +1,111 @@
+package io.netlibs.bgp.rib.mrt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamily;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.SubsequentAddressFamily;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+
+/**
+ * Record types and layout of MRT TABLE_DUMP_V2 files as defined in RFC 6396.
+ */
+
+final class MrtFormat
+{
+
+  // common header: timestamp, type, subtype and length
+  static final int HEADER_LENGTH = 12;
+  static final int LENGTH_OFFSET = 8;
+
+  static final int TYPE_TABLE_DUMP_V2 = 13;
+
+  static final int SUBTYPE_PEER_INDEX_TABLE = 1;
+  static final int SUBTYPE_RIB_IPV4_UNICAST = 2;
+  static final int SUBTYPE_RIB_IPV4_MULTICAST = 3;
+  static final int SUBTYPE_RIB_IPV6_UNICAST = 4;
+  static final int SUBTYPE_RIB_IPV6_MULTICAST = 5;
+  static final int SUBTYPE_RIB_GENERIC = 6;
+
+  // peer type flags of a PEER_INDEX_TABLE entry
+  static final int PEER_TYPE_IPV6 = 0x01;
+  static final int PEER_TYPE_AS4 = 0x02;
+
+  private MrtFormat()
+  {
+  }
+
+  /**
+   * @return the RIB subtype the routes of the address family are dumped in
+   */
+  static int ribSubtype(final AddressFamilyKey afk)
+  {
+    if (afk.getAddressFamily() == AddressFamily.IPv4)
+    {
+      if (afk.getSubsequentAddressFamily() == SubsequentAddressFamily.NLRI_UNICAST_FORWARDING)
+      {
+        return SUBTYPE_RIB_IPV4_UNICAST;
+      }
+      else if (afk.getSubsequentAddressFamily() == SubsequentAddressFamily.NLRI_MULTICAST_FORWARDING)
+      {
+        return SUBTYPE_RIB_IPV4_MULTICAST;
+      }
+    }
+    else if (afk.getAddressFamily() == AddressFamily.IPv6)
+    {
+      if (afk.getSubsequentAddressFamily() == SubsequentAddressFamily.NLRI_UNICAST_FORWARDING)
+      {
+        return SUBTYPE_RIB_IPV6_UNICAST;
+      }
+      else if (afk.getSubsequentAddressFamily() == SubsequentAddressFamily.NLRI_MULTICAST_FORWARDING)
+      {
+        return SUBTYPE_RIB_IPV6_MULTICAST;
+      }
+    }
+
+    return SUBTYPE_RIB_GENERIC;
+  }
+
+  /**
+   * copy an AS_PATH attribute with the AS numbers held in the given size
+   */
+  static ASPathAttribute withAsType(final ASPathAttribute attribute, final ASType asType)
+  {
+    final List<PathSegment> segments = new ArrayList<PathSegment>(attribute.getPathSegments().size());
+
+    for (final PathSegment segment : attribute.getPathSegments())
+    {
+      segments.add(segment.withAsType(asType));
+    }
+
+    final ASPathAttribute copy = new ASPathAttribute(asType, segments);
+
+    copy.setOptional(attribute.isOptional());
+    copy.setTransitive(attribute.isTransitive());
+    copy.setPartial(attribute.isPartial());
+
+    return copy;
+  }
+
+  /**
+   * @return <code>true</code> if all AS numbers of the path fit into two octets
+   */
+  static boolean fitsTwoOctets(final ASPathAttribute attribute)
+  {
+    for (int i = 0; i < attribute.getAsNumberCount(); i++)
+    {
+      final int as = attribute.getAsNumber(i);
+
+      if ((as < 0) || (as > 0xffff))
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+}
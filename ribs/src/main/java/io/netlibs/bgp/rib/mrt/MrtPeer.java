@@ -0,0 +1,19 @@
+package io.netlibs.bgp.rib.mrt;
+
+import java.net.InetAddress;
+
+import lombok.Value;
+
+/**
+ * A peer listed in the PEER_INDEX_TABLE of a table dump. RIB entries refer to their peer by its index in the table.
+ */
+
+@Value
+public class MrtPeer
+{
+
+  private final long bgpIdentifier;
+  private final InetAddress address;
+  private final int autonomousSystem;
+
+}
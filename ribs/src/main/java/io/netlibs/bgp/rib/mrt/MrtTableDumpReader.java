@@ -0,0 +1,426 @@
+package io.netlibs.bgp.rib.mrt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import io.netlibs.bgp.netty.codec.UpdatePacketDecoder;
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamily;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.BGPv4Constants;
+import io.netlibs.bgp.protocol.BinaryNextHop;
+import io.netlibs.bgp.protocol.NLRICodec;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.protocol.SubsequentAddressFamily;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.RoutingInformationBase;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Reads an MRT TABLE_DUMP_V2 file (RFC 6396) and loads its routes into routing information bases.
+ *
+ * The file is memory-mapped in windows which are moved along the records, so dumps of any size are read without loading them into
+ * memory. Routes sharing the same attributes are collected and added to the RIB in batches, the same way as the routes of an UPDATE
+ * packet, and each distinct attribute block is only decoded once per batch.
+ *
+ * AS_PATH is held in four octet AS numbers in the dump. When all AS numbers of a path fit into two octets it is loaded with two octet AS
+ * numbers, as it would have been received on a session.
+ */
+
+public class MrtTableDumpReader implements Closeable
+{
+
+  private static final long WINDOW_SIZE = 64L << 20;
+
+  // routes of one attribute block are added once this many have been collected, all of them once this many are pending in total
+  private static final int BATCH_SIZE = 1024;
+  private static final int MAX_PENDING = 1 << 16;
+
+  /**
+   * routes collected for the same attributes
+   */
+
+  private static final class Batch
+  {
+    private final List<PathAttribute> attributes;
+    private final NextHop nextHop;
+    private final List<NetworkLayerReachabilityInformation> nlris = new ArrayList<NetworkLayerReachabilityInformation>();
+
+    private Batch(final List<PathAttribute> attributes, final NextHop nextHop)
+    {
+      this.attributes = attributes;
+      this.nextHop = nextHop;
+    }
+  }
+
+  /**
+   * called for every record of the file
+   */
+
+  @FunctionalInterface
+  private interface RecordHandler
+  {
+    void handleRecord(int type, int subtype, ByteBuf body) throws IOException;
+  }
+
+  private final FileChannel channel;
+  private final long size;
+  private final UpdatePacketDecoder decoder = new UpdatePacketDecoder();
+
+  private long collectorBgpIdentifier;
+  private String viewName;
+  private List<MrtPeer> peers;
+
+  /**
+   * Open a dump and read its PEER_INDEX_TABLE.
+   *
+   * @param file
+   *          the file to read
+   * @throws IOException
+   *           if the file cannot be read or does not start with a PEER_INDEX_TABLE
+   */
+
+  public MrtTableDumpReader(final Path file) throws IOException
+  {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.size = this.channel.size();
+
+    try
+    {
+      this.forEachRecord((type, subtype, body) -> {
+        if ((this.peers == null) && (type == MrtFormat.TYPE_TABLE_DUMP_V2) && (subtype == MrtFormat.SUBTYPE_PEER_INDEX_TABLE))
+        {
+          this.readPeerIndexTable(body);
+        }
+      }, true);
+
+      if (this.peers == null)
+      {
+        throw new IOException("not a TABLE_DUMP_V2 file: " + file);
+      }
+    }
+    catch (final IOException ex)
+    {
+      this.channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * @return the BGP identifier of the collector which has written the dump
+   */
+  public long getCollectorBgpIdentifier()
+  {
+    return this.collectorBgpIdentifier;
+  }
+
+  /**
+   * @return the name of the view, may be empty
+   */
+  public String getViewName()
+  {
+    return this.viewName;
+  }
+
+  /**
+   * @return the peers of the PEER_INDEX_TABLE, in the order of their index
+   */
+  public List<MrtPeer> getPeers()
+  {
+    return this.peers;
+  }
+
+  /**
+   * Add all routes of a peer in the address family of the RIB to the RIB.
+   *
+   * @param rib
+   *          the RIB to load the routes into
+   * @param peerIndex
+   *          the index of the peer in the PEER_INDEX_TABLE
+   * @return the number of routes loaded
+   */
+
+  public int load(final RoutingInformationBase rib, final int peerIndex) throws IOException
+  {
+    if ((peerIndex < 0) || (peerIndex >= this.peers.size()))
+    {
+      throw new IllegalArgumentException("no peer with index " + peerIndex);
+    }
+
+    final AddressFamilyKey afk = rib.getAddressFamilyKey();
+    final int subtype = MrtFormat.ribSubtype(afk);
+    final Map<ByteBuf, Batch> batches = new HashMap<ByteBuf, Batch>();
+    final int[] counts = new int[2]; // loaded, pending
+
+    this.forEachRecord((recordType, recordSubtype, body) -> {
+      if ((recordType != MrtFormat.TYPE_TABLE_DUMP_V2) || (recordSubtype != subtype))
+      {
+        return;
+      }
+
+      body.skipBytes(4); // sequence number
+
+      if ((subtype == MrtFormat.SUBTYPE_RIB_GENERIC)
+          && !afk.equals(new AddressFamilyKey(AddressFamily.fromCode(body.readUnsignedShort()), SubsequentAddressFamily.fromCode(body.readUnsignedByte()))))
+      {
+        return;
+      }
+
+      final NetworkLayerReachabilityInformation nlri = NLRICodec.decodeNLRI(body);
+      final int entries = body.readUnsignedShort();
+
+      for (int i = 0; i < entries; i++)
+      {
+        final int entryPeerIndex = body.readUnsignedShort();
+
+        body.skipBytes(4); // originated time
+
+        final ByteBuf attributes = body.readSlice(body.readUnsignedShort());
+
+        if (entryPeerIndex != peerIndex)
+        {
+          continue;
+        }
+
+        Batch batch = batches.get(attributes);
+
+        if (batch == null)
+        {
+          // the window the attributes have been read from is moved along, so the key must be a copy
+          batch = this.decodeAttributes(attributes.duplicate());
+          batches.put(Unpooled.copiedBuffer(attributes), batch);
+        }
+
+        batch.nlris.add(nlri);
+        counts[0]++;
+        counts[1]++;
+
+        if (batch.nlris.size() >= BATCH_SIZE)
+        {
+          counts[1] -= flush(rib, batch);
+        }
+
+        if (counts[1] >= MAX_PENDING)
+        {
+          counts[1] -= flush(rib, batches);
+        }
+      }
+    }, false);
+
+    flush(rib, batches);
+
+    return counts[0];
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    this.channel.close();
+  }
+
+  private void readPeerIndexTable(final ByteBuf body)
+  {
+    this.collectorBgpIdentifier = body.readUnsignedInt();
+    this.viewName = body.readCharSequence(body.readUnsignedShort(), StandardCharsets.UTF_8).toString();
+
+    final int count = body.readUnsignedShort();
+    final List<MrtPeer> peers = new ArrayList<MrtPeer>(count);
+
+    for (int i = 0; i < count; i++)
+    {
+      final int type = body.readUnsignedByte();
+      final long bgpIdentifier = body.readUnsignedInt();
+      final byte[] address = new byte[((type & MrtFormat.PEER_TYPE_IPV6) != 0) ? 16 : 4];
+
+      body.readBytes(address);
+
+      final int as = ((type & MrtFormat.PEER_TYPE_AS4) != 0) ? body.readInt() : body.readUnsignedShort();
+
+      try
+      {
+        peers.add(new MrtPeer(bgpIdentifier, InetAddress.getByAddress(address), as));
+      }
+      catch (final UnknownHostException ex)
+      {
+        // cannot happen for addresses of a valid length
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    this.peers = Collections.unmodifiableList(peers);
+  }
+
+  /**
+   * decode the attributes of a RIB entry, the next hop is taken from the NEXT_HOP or the abbreviated MP_REACH_NLRI attribute
+   */
+
+  private Batch decodeAttributes(final ByteBuf buffer) throws IOException
+  {
+    final List<PathAttribute> attributes = new ArrayList<PathAttribute>();
+    NextHop nextHop = null;
+
+    try
+    {
+      while (buffer.isReadable())
+      {
+        final int flagsType = buffer.readUnsignedShort();
+        final int length = ((flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_EXTENDED_LENGTH_BIT) != 0) ? buffer.readUnsignedShort() : buffer.readUnsignedByte();
+        final ByteBuf value = buffer.readSlice(length);
+
+        switch (flagsType & BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MASK)
+        {
+          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_REACH_NLRI:
+          {
+            // some writers put the full attribute instead of the abbreviated one, skip AFI and SAFI then
+            if (value.getUnsignedByte(value.readerIndex()) + 1 != value.readableBytes())
+            {
+              value.skipBytes(3);
+            }
+
+            final byte[] address = new byte[value.readUnsignedByte()];
+
+            value.readBytes(address);
+            nextHop = new BinaryNextHop(address);
+          }
+            break;
+          case BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_NEXT_HOP:
+            nextHop = ((NextHopPathAttribute) this.decoder.decodePathAttribute(flagsType, value, ASType.AS_NUMBER_4OCTETS)).getNextHop();
+            break;
+          default:
+          {
+            PathAttribute attribute = this.decoder.decodePathAttribute(flagsType, value, ASType.AS_NUMBER_4OCTETS);
+
+            if ((attribute instanceof ASPathAttribute) && MrtFormat.fitsTwoOctets((ASPathAttribute) attribute))
+            {
+              attribute = MrtFormat.withAsType((ASPathAttribute) attribute, ASType.AS_NUMBER_2OCTETS);
+            }
+
+            attributes.add(attribute);
+          }
+            break;
+        }
+      }
+    }
+    catch (final RuntimeException ex)
+    {
+      throw new IOException("malformed path attributes in RIB entry", ex);
+    }
+
+    return new Batch(attributes, nextHop);
+  }
+
+  /**
+   * add the routes collected for an attribute block to the RIB
+   *
+   * @return the number of routes added
+   */
+
+  private static int flush(final RoutingInformationBase rib, final Batch batch)
+  {
+    final int count = batch.nlris.size();
+
+    if (count > 0)
+    {
+      rib.addRoutes(batch.nlris, batch.attributes, batch.nextHop);
+      batch.nlris.clear();
+    }
+
+    return count;
+  }
+
+  /**
+   * add all collected routes to the RIB and forget about the attribute blocks seen so far
+   *
+   * @return the number of routes added
+   */
+
+  private static int flush(final RoutingInformationBase rib, final Map<ByteBuf, Batch> batches)
+  {
+    int count = 0;
+
+    for (final Iterator<Batch> it = batches.values().iterator(); it.hasNext();)
+    {
+      count += flush(rib, it.next());
+      it.remove();
+    }
+
+    return count;
+  }
+
+  /**
+   * pass the records of the file to the handler, mapping the file window by window
+   *
+   * @param firstOnly
+   *          stop after the first record
+   */
+
+  private void forEachRecord(final RecordHandler handler, final boolean firstOnly) throws IOException
+  {
+    long position = 0;
+    // the number of octets the window must hold at least, a record which does not fit is mapped again in a window large enough for it
+    long needed = MrtFormat.HEADER_LENGTH;
+
+    while (position < this.size)
+    {
+      if ((position + needed) > this.size)
+      {
+        throw new IOException("truncated MRT record at offset " + position);
+      }
+      else if (needed > Integer.MAX_VALUE)
+      {
+        throw new IOException("MRT record too large at offset " + position);
+      }
+
+      final ByteBuf window = Unpooled.wrappedBuffer(this.channel.map(MapMode.READ_ONLY, position, Math.min(Math.max(WINDOW_SIZE, needed), this.size - position)));
+
+      while (window.readableBytes() >= MrtFormat.HEADER_LENGTH)
+      {
+        final int start = window.readerIndex();
+        final long length = window.getUnsignedInt(start + MrtFormat.LENGTH_OFFSET);
+
+        if ((MrtFormat.HEADER_LENGTH + length) > window.readableBytes())
+        {
+          needed = MrtFormat.HEADER_LENGTH + length;
+          break;
+        }
+
+        try
+        {
+          handler.handleRecord(window.getUnsignedShort(start + 4), window.getUnsignedShort(start + 6), window.slice(start + MrtFormat.HEADER_LENGTH, (int) length));
+        }
+        catch (final IndexOutOfBoundsException | IllegalArgumentException ex)
+        {
+          throw new IOException("malformed MRT record at offset " + (position + start), ex);
+        }
+
+        if (firstOnly)
+        {
+          return;
+        }
+
+        window.readerIndex(start + MrtFormat.HEADER_LENGTH + (int) length);
+        needed = MrtFormat.HEADER_LENGTH;
+      }
+
+      position += window.readerIndex();
+    }
+  }
+
+}
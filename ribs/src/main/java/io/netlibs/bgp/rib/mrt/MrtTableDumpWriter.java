@@ -0,0 +1,278 @@
+package io.netlibs.bgp.rib.mrt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.netlibs.bgp.netty.protocol.update.PathAttributeCodec;
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.BGPv4Constants;
+import io.netlibs.bgp.protocol.BinaryNextHop;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NLRICodec;
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolUnreachableNLRI;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.PathAttributeSet;
+import io.netlibs.bgp.rib.Route;
+import io.netlibs.bgp.rib.RoutingInformationBase;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Writes the contents of routing information bases as an MRT TABLE_DUMP_V2 file (RFC 6396).
+ *
+ * The file starts with the PEER_INDEX_TABLE given when the writer is created, followed by one RIB record per route. The RIB is walked on
+ * a snapshot of its routing tree, so it is neither locked nor copied while it is written and may keep changing meanwhile. Records are
+ * built in a single reused buffer and copied into a memory-mapped window of the file which moves along as the file grows.
+ *
+ * As required by RFC 6396 AS_PATH is written with four octet AS numbers. The next hop is written as NEXT_HOP attribute for IPv4 next hop
+ * addresses and as abbreviated MP_REACH_NLRI attribute, only holding the next hop, otherwise.
+ */
+
+public class MrtTableDumpWriter implements Closeable
+{
+
+  private static final long WINDOW_SIZE = 64L << 20;
+
+  private final FileChannel channel;
+  private final int peerCount;
+  private final int timestamp;
+  private final ByteBuf record = Unpooled.buffer(4096);
+
+  // attribute sets are interned, so the encoding is looked up by identity
+  private final Map<PathAttributeSet, byte[]> encodedAttributes = new IdentityHashMap<PathAttributeSet, byte[]>();
+
+  private MappedByteBuffer window;
+  private long position;
+  private int sequenceNumber;
+
+  /**
+   * Create the file and write the PEER_INDEX_TABLE. An existing file is overwritten.
+   *
+   * @param file
+   *          the file to write
+   * @param collectorBgpIdentifier
+   *          the BGP identifier of the collector writing the dump
+   * @param viewName
+   *          the name of the view, may be empty
+   * @param peers
+   *          the peers the RIBs to be written belong to
+   */
+
+  public MrtTableDumpWriter(final Path file, final long collectorBgpIdentifier, final String viewName, final List<MrtPeer> peers) throws IOException
+  {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    this.peerCount = peers.size();
+    this.timestamp = (int) (System.currentTimeMillis() / 1000);
+
+    final byte[] name = viewName.getBytes(StandardCharsets.UTF_8);
+
+    this.beginRecord(MrtFormat.SUBTYPE_PEER_INDEX_TABLE);
+    this.record.writeInt((int) collectorBgpIdentifier);
+    this.record.writeShort(name.length);
+    this.record.writeBytes(name);
+    this.record.writeShort(peers.size());
+
+    for (final MrtPeer peer : peers)
+    {
+      // the AS numbers are always written in four octets
+      this.record.writeByte(((peer.getAddress() instanceof Inet6Address) ? MrtFormat.PEER_TYPE_IPV6 : 0) | MrtFormat.PEER_TYPE_AS4);
+      this.record.writeInt((int) peer.getBgpIdentifier());
+      this.record.writeBytes(peer.getAddress().getAddress());
+      this.record.writeInt(peer.getAutonomousSystem());
+    }
+
+    this.finishRecord();
+  }
+
+  /**
+   * Write all routes held in a RIB.
+   *
+   * @param rib
+   *          the RIB to write
+   * @param peerIndex
+   *          the index of the peer the RIB belongs to in the PEER_INDEX_TABLE
+   * @return the number of routes written
+   */
+
+  public int write(final RoutingInformationBase rib, final int peerIndex) throws IOException
+  {
+    if ((peerIndex < 0) || (peerIndex >= this.peerCount))
+    {
+      throw new IllegalArgumentException("no peer with index " + peerIndex);
+    }
+
+    final AddressFamilyKey afk = rib.getAddressFamilyKey();
+    final int subtype = MrtFormat.ribSubtype(afk);
+    final int[] written = new int[1];
+
+    try
+    {
+      rib.visitRoutingNodes((ribName, side, route) -> {
+        try
+        {
+          this.writeRoute(subtype, afk, route, peerIndex);
+          written[0]++;
+        }
+        catch (final IOException ex)
+        {
+          throw new UncheckedIOException(ex);
+        }
+      });
+    }
+    catch (final UncheckedIOException ex)
+    {
+      throw ex.getCause();
+    }
+
+    return written[0];
+  }
+
+  /**
+   * Cut the file to the records written and close it.
+   */
+
+  @Override
+  public void close() throws IOException
+  {
+    this.window = null;
+
+    try
+    {
+      this.channel.truncate(this.position);
+    }
+    finally
+    {
+      this.channel.close();
+    }
+  }
+
+  private void writeRoute(final int subtype, final AddressFamilyKey afk, final Route route, final int peerIndex) throws IOException
+  {
+    this.beginRecord(subtype);
+    this.record.writeInt(this.sequenceNumber++);
+
+    if (subtype == MrtFormat.SUBTYPE_RIB_GENERIC)
+    {
+      this.record.writeShort(afk.getAddressFamily().toCode());
+      this.record.writeByte(afk.getSubsequentAddressFamily().toCode());
+    }
+
+    NLRICodec.encodeNLRI(route.getNlri(), this.record);
+
+    // one entry, for the peer of the RIB
+    this.record.writeShort(1);
+    this.record.writeShort(peerIndex);
+    this.record.writeInt(this.timestamp);
+
+    final int lengthIndex = this.record.writerIndex();
+
+    this.record.writeShort(0);
+    this.record.writeBytes(this.encodeAttributes(route.getPathAttributes()));
+    this.writeNextHop(route.getNextHop());
+    this.record.setShort(lengthIndex, this.record.writerIndex() - lengthIndex - 2);
+
+    this.finishRecord();
+  }
+
+  private byte[] encodeAttributes(final PathAttributeSet attributes)
+  {
+    byte[] encoded = this.encodedAttributes.get(attributes);
+
+    if (encoded == null)
+    {
+      final ByteBuf buffer = Unpooled.buffer();
+
+      for (PathAttribute attribute : attributes)
+      {
+        if ((attribute instanceof MultiProtocolReachableNLRI) || (attribute instanceof MultiProtocolUnreachableNLRI) || (attribute instanceof NextHopPathAttribute))
+        {
+          // the next hop is held by the route
+          continue;
+        }
+        else if ((attribute instanceof ASPathAttribute) && !((ASPathAttribute) attribute).isFourByteASNumber())
+        {
+          attribute = MrtFormat.withAsType((ASPathAttribute) attribute, ASType.AS_NUMBER_4OCTETS);
+        }
+
+        PathAttributeCodec.encodePathAttribute(attribute, buffer);
+      }
+
+      encoded = new byte[buffer.readableBytes()];
+      buffer.readBytes(encoded);
+      this.encodedAttributes.put(attributes, encoded);
+    }
+
+    return encoded;
+  }
+
+  private void writeNextHop(final NextHop nextHop)
+  {
+    if (nextHop == null)
+    {
+      return;
+    }
+
+    if ((nextHop instanceof InetAddressNextHop) && (((InetAddressNextHop<?>) nextHop).getAddress() instanceof Inet4Address))
+    {
+      PathAttributeCodec.encodePathAttribute(new NextHopPathAttribute((Inet4Address) ((InetAddressNextHop<?>) nextHop).getAddress()), this.record);
+      return;
+    }
+
+    final byte[] address = (nextHop instanceof BinaryNextHop)
+        ? ((BinaryNextHop) nextHop).getAddress()
+        : ((InetAddressNextHop<?>) nextHop).toBinaryNextHop().getAddress();
+
+    // abbreviated MP_REACH_NLRI: next hop length and address only
+    this.record.writeShort(BGPv4Constants.BGP_PATH_ATTRIBUTE_OPTIONAL_BIT | BGPv4Constants.BGP_PATH_ATTRIBUTE_TYPE_MP_REACH_NLRI);
+    this.record.writeByte(address.length + 1);
+    this.record.writeByte(address.length);
+    this.record.writeBytes(address);
+  }
+
+  private void beginRecord(final int subtype)
+  {
+    this.record.clear();
+    this.record.writeInt(this.timestamp);
+    this.record.writeShort(MrtFormat.TYPE_TABLE_DUMP_V2);
+    this.record.writeShort(subtype);
+    this.record.writeInt(0);
+  }
+
+  /**
+   * fill in the record length and copy the record into the file
+   */
+
+  private void finishRecord() throws IOException
+  {
+    final int length = this.record.readableBytes();
+
+    this.record.setInt(MrtFormat.LENGTH_OFFSET, length - MrtFormat.HEADER_LENGTH);
+
+    if ((this.window == null) || (this.window.remaining() < length))
+    {
+      this.window = this.channel.map(MapMode.READ_WRITE, this.position, Math.max(WINDOW_SIZE, length));
+    }
+
+    this.window.put(this.record.nioBuffer());
+    this.position += length;
+  }
+
+}
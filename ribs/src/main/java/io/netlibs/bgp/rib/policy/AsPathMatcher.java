@@ -0,0 +1,65 @@
+package io.netlibs.bgp.rib.policy;
+
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+
+/**
+ * Matches the AS_PATH of a route. The path is passed as the sequence of its AS numbers, the members of AS_SETs included in the order they
+ * have been received, the neighbor AS first. Routes without AS_PATH pass an empty path.
+ */
+
+@FunctionalInterface
+public interface AsPathMatcher
+{
+
+  boolean matches(int[] path);
+
+  /**
+   * match the AS_PATH attribute of a route, matchers which cache their results per interned path override this. The path is passed as a
+   * copy of the AS numbers of the attribute.
+   *
+   * @param attribute
+   *          the attribute, <code>null</code> for routes without AS_PATH
+   */
+
+  default boolean matches(final ASPathAttribute attribute)
+  {
+    return this.matches((attribute != null) ? attribute.getAsNumbers() : new int[0]);
+  }
+
+  /**
+   * @return a matcher for paths which contain the given AS
+   */
+
+  static AsPathMatcher passesThrough(final int as)
+  {
+    return path -> {
+      for (final int hop : path)
+      {
+        if (hop == as)
+        {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  /**
+   * @return a matcher for paths which have been originated by the given AS
+   */
+
+  static AsPathMatcher originatedBy(final int as)
+  {
+    return path -> (path.length > 0) && (path[path.length - 1] == as);
+  }
+
+  /**
+   * @return a matcher for paths which have been received from the given neighbor AS
+   */
+
+  static AsPathMatcher neighbor(final int as)
+  {
+    return path -> (path.length > 0) && (path[0] == as);
+  }
+
+}
@@ -0,0 +1,959 @@
+package io.netlibs.bgp.rib.policy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.PatternSyntaxException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+
+/**
+ * A regular expression over the AS numbers of an AS_PATH, in the style of the AS path access lists of common router implementations.
+ * The expression is matched against the sequence of AS numbers, not against its text form, so an AS number always matches as a whole:
+ *
+ * <ul>
+ * <li><code>65000</code> matches the AS 65000, <code>64512-65534</code> or <code>[64512-65534]</code> any AS in the range and
+ * <code>[65000 65001]</code> any AS of the list, <code>[^65000]</code> any other AS, <code>.</code> any AS at all</li>
+ * <li><code>*</code>, <code>+</code>, <code>?</code>, <code>{m}</code>, <code>{m,}</code> and <code>{m,n}</code> repeat the preceding
+ * atom, <code>(...)</code> groups and <code>|</code> separates alternatives</li>
+ * <li><code>^</code> anchors an alternative at the neighbor AS and <code>$</code> at the originating AS, alternatives which are not
+ * anchored may match anywhere within the path</li>
+ * <li><code>_</code> and white space separate AS numbers and are ignored otherwise</li>
+ * </ul>
+ *
+ * So <code>_65000$</code> matches the routes originated by AS 65000, <code>^65001_</code> the ones received from AS 65001 and
+ * <code>^$</code> the ones originated locally.
+ *
+ * The expression is compiled into a DFA whose input symbols are the ranges of AS numbers the expression tells apart, matching a path
+ * therefore is a single pass over its packed AS numbers without allocation, which stops as soon as the outcome is known. The results for
+ * AS_PATH attributes are cached per interned path, so each distinct path is matched once. Compiled expressions are cached, too.
+ */
+
+public final class AsPathRegex implements AsPathMatcher
+{
+
+  private static final long MAX_AS = 0xffffffffL;
+  private static final int MAX_REPEAT = 255;
+  private static final int MAX_NFA_STATES = 1 << 16;
+  private static final int MAX_DFA_STATES = 1 << 12;
+  private static final int[] EMPTY_PATH = new int[0];
+
+  private static final Cache<String, AsPathRegex> compiled = CacheBuilder.newBuilder().maximumSize(1024).build();
+
+  private final String expression;
+  // the lowest AS number of each input symbol in ascending unsigned order, the first one is always 0
+  private final int[] symbols;
+  private final int[] transitions;
+  private final boolean[] accepting;
+  // states from which the outcome does not depend on the rest of the path
+  private final boolean[] decided;
+
+  // keyed by the identity of the interned paths
+  private final Cache<Object, Boolean> results = CacheBuilder.newBuilder().weakKeys().maximumSize(1 << 16).build();
+
+  private AsPathRegex(final String expression)
+  {
+    final Parser parser = new Parser(expression);
+    final Node root = parser.parse();
+
+    this.expression = expression;
+    this.symbols = parser.symbols();
+
+    final Nfa nfa = new Nfa(expression, this.symbols);
+    final int end = root.build(nfa, nfa.newState());
+    final Dfa dfa = new Dfa(expression, nfa, end, this.symbols.length);
+
+    this.transitions = dfa.transitions();
+    this.accepting = dfa.accepting();
+    this.decided = dfa.decidedStates();
+  }
+
+  /**
+   * compile an expression, or get the one compiled before
+   *
+   * @throws PatternSyntaxException
+   *           if the expression is invalid or too complex
+   */
+
+  public static AsPathRegex compile(final String expression)
+  {
+    AsPathRegex regex = compiled.getIfPresent(expression);
+
+    if (regex == null)
+    {
+      regex = new AsPathRegex(expression);
+      compiled.put(expression, regex);
+    }
+
+    return regex;
+  }
+
+  @Override
+  public boolean matches(final int[] path)
+  {
+    final int symbolCount = this.symbols.length;
+    int state = 0;
+
+    for (int i = 0; (i < path.length) && !this.decided[state]; i++)
+    {
+      state = this.transitions[(state * symbolCount) + this.symbolOf(path[i])];
+    }
+
+    return this.accepting[state];
+  }
+
+  @Override
+  public boolean matches(final ASPathAttribute attribute)
+  {
+    if (attribute == null)
+    {
+      return this.matches(EMPTY_PATH);
+    }
+
+    final Object path = attribute.getPathIdentity();
+    Boolean result = this.results.getIfPresent(path);
+
+    if (result == null)
+    {
+      result = this.matchesAttribute(attribute);
+      this.results.put(path, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * run the DFA over the AS numbers of the attribute without copying them
+   */
+
+  private boolean matchesAttribute(final ASPathAttribute attribute)
+  {
+    final int symbolCount = this.symbols.length;
+    final int length = attribute.getAsNumberCount();
+    int state = 0;
+
+    for (int i = 0; (i < length) && !this.decided[state]; i++)
+    {
+      state = this.transitions[(state * symbolCount) + this.symbolOf(attribute.getAsNumber(i))];
+    }
+
+    return this.accepting[state];
+  }
+
+  private int symbolOf(final int as)
+  {
+    int low = 0;
+    int high = this.symbols.length - 1;
+
+    while (low < high)
+    {
+      final int mid = (low + high + 1) >>> 1;
+
+      if (Integer.compareUnsigned(this.symbols[mid], as) <= 0)
+      {
+        low = mid;
+      }
+      else
+      {
+        high = mid - 1;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * @return the number of states of the compiled DFA
+   */
+
+  int getStateCount()
+  {
+    return this.accepting.length;
+  }
+
+  @Override
+  public String toString()
+  {
+    return this.expression;
+  }
+
+  /**
+   * a node of the parsed expression, building its part of the NFA
+   */
+
+  private static abstract class Node
+  {
+    /**
+     * @return the state the part ends in
+     */
+    abstract int build(Nfa nfa, int from);
+  }
+
+  private static final class Symbol extends Node
+  {
+    // pairs of the lowest and highest AS number, ascending and disjoint
+    private final long[] ranges;
+
+    Symbol(final long[] ranges)
+    {
+      this.ranges = ranges;
+    }
+
+    @Override
+    int build(final Nfa nfa, final int from)
+    {
+      final int to = nfa.newState();
+
+      nfa.addSymbols(from, nfa.symbolsOf(this.ranges), to);
+      return to;
+    }
+  }
+
+  private static final class Sequence extends Node
+  {
+    private final List<Node> nodes;
+
+    Sequence(final List<Node> nodes)
+    {
+      this.nodes = nodes;
+    }
+
+    @Override
+    int build(final Nfa nfa, final int from)
+    {
+      int state = from;
+
+      for (final Node node : this.nodes)
+      {
+        state = node.build(nfa, state);
+      }
+
+      return state;
+    }
+  }
+
+  private static final class Choice extends Node
+  {
+    private final List<Node> alternatives;
+
+    Choice(final List<Node> alternatives)
+    {
+      this.alternatives = alternatives;
+    }
+
+    @Override
+    int build(final Nfa nfa, final int from)
+    {
+      final int to = nfa.newState();
+
+      for (final Node alternative : this.alternatives)
+      {
+        final int start = nfa.newState();
+
+        nfa.addEpsilon(from, start);
+        nfa.addEpsilon(alternative.build(nfa, start), to);
+      }
+
+      return to;
+    }
+  }
+
+  private static final class Repeat extends Node
+  {
+    private final Node node;
+    private final int min;
+    // -1 for no upper bound
+    private final int max;
+
+    Repeat(final Node node, final int min, final int max)
+    {
+      this.node = node;
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    int build(final Nfa nfa, final int from)
+    {
+      int state = from;
+
+      for (int i = 0; i < this.min; i++)
+      {
+        state = this.node.build(nfa, state);
+      }
+
+      if (this.max < 0)
+      {
+        final int loop = nfa.newState();
+
+        nfa.addEpsilon(state, loop);
+        nfa.addEpsilon(this.node.build(nfa, loop), loop);
+
+        return loop;
+      }
+
+      final int to = nfa.newState();
+
+      nfa.addEpsilon(state, to);
+
+      for (int i = this.min; i < this.max; i++)
+      {
+        state = this.node.build(nfa, state);
+        nfa.addEpsilon(state, to);
+      }
+
+      return to;
+    }
+  }
+
+  private static final class Parser
+  {
+    private final String expression;
+    private final TreeSet<Long> bounds = new TreeSet<Long>();
+    private int position;
+
+    Parser(final String expression)
+    {
+      this.expression = expression;
+      this.bounds.add(0L);
+    }
+
+    Node parse()
+    {
+      final List<Node> alternatives = new ArrayList<Node>();
+
+      do
+      {
+        final List<Node> nodes = new ArrayList<Node>();
+        final boolean anchoredStart = this.accept('^');
+        final Node sequence = this.sequence();
+        final boolean anchoredEnd = this.accept('$');
+
+        if (!anchoredStart)
+        {
+          nodes.add(new Repeat(this.symbol(0, MAX_AS), 0, -1));
+        }
+
+        nodes.add(sequence);
+
+        if (!anchoredEnd)
+        {
+          nodes.add(new Repeat(this.symbol(0, MAX_AS), 0, -1));
+        }
+
+        alternatives.add(new Sequence(nodes));
+      } while (this.accept('|'));
+
+      if (this.peek() >= 0)
+      {
+        throw this.error("Unexpected character");
+      }
+
+      return (alternatives.size() == 1) ? alternatives.get(0) : new Choice(alternatives);
+    }
+
+    /**
+     * @return the lowest AS number of each range of AS numbers the expression does not tell apart
+     */
+
+    int[] symbols()
+    {
+      final int[] symbols = new int[this.bounds.size()];
+      int i = 0;
+
+      for (final Long bound : this.bounds)
+      {
+        symbols[i++] = (int) bound.longValue();
+      }
+
+      return symbols;
+    }
+
+    private Node sequence()
+    {
+      final List<Node> nodes = new ArrayList<Node>();
+
+      for (int c = this.peek(); (c >= 0) && (c != '|') && (c != ')') && (c != '$'); c = this.peek())
+      {
+        nodes.add(this.quantified(this.atom()));
+      }
+
+      return (nodes.size() == 1) ? nodes.get(0) : new Sequence(nodes);
+    }
+
+    private Node atom()
+    {
+      final int c = this.peek();
+
+      if (c == '.')
+      {
+        this.position++;
+        return this.symbol(0, MAX_AS);
+      }
+      else if (c == '(')
+      {
+        this.position++;
+
+        final List<Node> alternatives = new ArrayList<Node>();
+
+        do
+        {
+          alternatives.add(this.sequence());
+        } while (this.accept('|'));
+
+        if (!this.accept(')'))
+        {
+          throw this.error("Expected ')'");
+        }
+
+        return (alternatives.size() == 1) ? alternatives.get(0) : new Choice(alternatives);
+      }
+      else if (c == '[')
+      {
+        this.position++;
+        return this.bracket();
+      }
+      else if ((c >= '0') && (c <= '9'))
+      {
+        final long low = this.number();
+
+        return this.accept('-') ? this.symbol(low, this.range(low)) : this.symbol(low, low);
+      }
+
+      throw this.error("Unexpected character");
+    }
+
+    private Node bracket()
+    {
+      final boolean negated = this.accept('^');
+      final List<long[]> ranges = new ArrayList<long[]>();
+
+      while (!this.accept(']'))
+      {
+        final int c = this.peek();
+
+        if (c == ',')
+        {
+          this.position++;
+        }
+        else if ((c >= '0') && (c <= '9'))
+        {
+          final long low = this.number();
+
+          ranges.add(new long[] { low, this.accept('-') ? this.range(low) : low });
+        }
+        else
+        {
+          throw this.error((c < 0) ? "Unclosed bracket" : "Unexpected character");
+        }
+      }
+
+      if (ranges.isEmpty())
+      {
+        throw this.error("Empty bracket");
+      }
+
+      ranges.sort((left, right) -> Long.compare(left[0], right[0]));
+
+      // merge overlapping ranges, then take the gaps if negated
+      final List<long[]> merged = new ArrayList<long[]>();
+
+      for (final long[] range : ranges)
+      {
+        final long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+
+        if ((last != null) && (range[0] <= (last[1] + 1)))
+        {
+          last[1] = Math.max(last[1], range[1]);
+        }
+        else
+        {
+          merged.add(range.clone());
+        }
+      }
+
+      final List<long[]> result;
+
+      if (negated)
+      {
+        result = new ArrayList<long[]>();
+
+        long next = 0;
+
+        for (final long[] range : merged)
+        {
+          if (range[0] > next)
+          {
+            result.add(new long[] { next, range[0] - 1 });
+          }
+          next = range[1] + 1;
+        }
+
+        if (next <= MAX_AS)
+        {
+          result.add(new long[] { next, MAX_AS });
+        }
+
+        if (result.isEmpty())
+        {
+          throw this.error("Bracket matches no AS");
+        }
+      }
+      else
+      {
+        result = merged;
+      }
+
+      final long[] flat = new long[result.size() * 2];
+
+      for (int i = 0; i < result.size(); i++)
+      {
+        flat[2 * i] = result.get(i)[0];
+        flat[(2 * i) + 1] = result.get(i)[1];
+        this.bound(result.get(i)[0], result.get(i)[1]);
+      }
+
+      return new Symbol(flat);
+    }
+
+    private Node quantified(final Node atom)
+    {
+      Node node = atom;
+
+      for (int c = this.peek(); (c == '*') || (c == '+') || (c == '?') || (c == '{'); c = this.peek())
+      {
+        this.position++;
+
+        if (c == '*')
+        {
+          node = new Repeat(node, 0, -1);
+        }
+        else if (c == '+')
+        {
+          node = new Repeat(node, 1, -1);
+        }
+        else if (c == '?')
+        {
+          node = new Repeat(node, 0, 1);
+        }
+        else
+        {
+          final long min = this.number();
+          long max = min;
+
+          if (this.accept(','))
+          {
+            max = (this.peek() == '}') ? -1 : this.number();
+          }
+
+          if (!this.accept('}'))
+          {
+            throw this.error("Expected '}'");
+          }
+          else if ((min > MAX_REPEAT) || (max > MAX_REPEAT) || ((max >= 0) && (max < min)))
+          {
+            throw this.error("Invalid repetition");
+          }
+
+          node = new Repeat(node, (int) min, (int) max);
+        }
+      }
+
+      return node;
+    }
+
+    private long range(final long low)
+    {
+      final long high = this.number();
+
+      if (high < low)
+      {
+        throw this.error("Invalid range");
+      }
+
+      return high;
+    }
+
+    private long number()
+    {
+      if ((this.peek() < '0') || (this.peek() > '9'))
+      {
+        throw this.error("Expected a number");
+      }
+
+      long value = 0;
+
+      while ((this.position < this.expression.length()) && Character.isDigit(this.expression.charAt(this.position)))
+      {
+        value = (value * 10) + (this.expression.charAt(this.position++) - '0');
+
+        if (value > MAX_AS)
+        {
+          throw this.error("AS number out of range");
+        }
+      }
+
+      return value;
+    }
+
+    private Symbol symbol(final long low, final long high)
+    {
+      this.bound(low, high);
+      return new Symbol(new long[] { low, high });
+    }
+
+    private void bound(final long low, final long high)
+    {
+      this.bounds.add(low);
+
+      if (high < MAX_AS)
+      {
+        this.bounds.add(high + 1);
+      }
+    }
+
+    private boolean accept(final char c)
+    {
+      if (this.peek() == c)
+      {
+        this.position++;
+        return true;
+      }
+
+      return false;
+    }
+
+    /**
+     * @return the next character which is not a separator, -1 at the end of the expression
+     */
+
+    private int peek()
+    {
+      while ((this.position < this.expression.length())
+          && ((this.expression.charAt(this.position) == '_') || Character.isWhitespace(this.expression.charAt(this.position))))
+      {
+        this.position++;
+      }
+
+      return (this.position < this.expression.length()) ? this.expression.charAt(this.position) : -1;
+    }
+
+    private PatternSyntaxException error(final String description)
+    {
+      return new PatternSyntaxException(description, this.expression, this.position);
+    }
+  }
+
+  private static final class Nfa
+  {
+    private final String expression;
+    private final int[] symbols;
+    // per state the epsilon targets, and the symbol sets and targets of its symbol edges
+    private final List<List<Integer>> epsilons = new ArrayList<List<Integer>>();
+    private final List<List<BitSet>> edgeSymbols = new ArrayList<List<BitSet>>();
+    private final List<List<Integer>> edgeTargets = new ArrayList<List<Integer>>();
+
+    Nfa(final String expression, final int[] symbols)
+    {
+      this.expression = expression;
+      this.symbols = symbols;
+    }
+
+    int newState()
+    {
+      if (this.epsilons.size() >= MAX_NFA_STATES)
+      {
+        throw new PatternSyntaxException("Expression too complex", this.expression, -1);
+      }
+
+      this.epsilons.add(new ArrayList<Integer>(2));
+      this.edgeSymbols.add(new ArrayList<BitSet>(1));
+      this.edgeTargets.add(new ArrayList<Integer>(1));
+
+      return this.epsilons.size() - 1;
+    }
+
+    int size()
+    {
+      return this.epsilons.size();
+    }
+
+    void addEpsilon(final int from, final int to)
+    {
+      this.epsilons.get(from).add(to);
+    }
+
+    void addSymbols(final int from, final BitSet symbols, final int to)
+    {
+      this.edgeSymbols.get(from).add(symbols);
+      this.edgeTargets.get(from).add(to);
+    }
+
+    /**
+     * @return the input symbols covered by the ranges, the ranges always consist of whole symbols
+     */
+
+    BitSet symbolsOf(final long[] ranges)
+    {
+      final BitSet result = new BitSet(this.symbols.length);
+
+      for (int symbol = 0; symbol < this.symbols.length; symbol++)
+      {
+        final long low = Integer.toUnsignedLong(this.symbols[symbol]);
+
+        for (int i = 0; i < ranges.length; i += 2)
+        {
+          if ((ranges[i] <= low) && (low <= ranges[i + 1]))
+          {
+            result.set(symbol);
+            break;
+          }
+        }
+      }
+
+      return result;
+    }
+
+    void closure(final BitSet states)
+    {
+      final Deque<Integer> pending = new ArrayDeque<Integer>();
+
+      for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1))
+      {
+        pending.push(state);
+      }
+
+      while (!pending.isEmpty())
+      {
+        for (final int target : this.epsilons.get(pending.pop()))
+        {
+          if (!states.get(target))
+          {
+            states.set(target);
+            pending.push(target);
+          }
+        }
+      }
+    }
+
+    BitSet move(final BitSet states, final int symbol)
+    {
+      final BitSet result = new BitSet(this.size());
+
+      for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1))
+      {
+        final List<BitSet> edges = this.edgeSymbols.get(state);
+
+        for (int i = 0; i < edges.size(); i++)
+        {
+          if (edges.get(i).get(symbol))
+          {
+            result.set(this.edgeTargets.get(state).get(i));
+          }
+        }
+      }
+
+      this.closure(result);
+      return result;
+    }
+  }
+
+  /**
+   * the subset construction of the NFA, minimised by partition refinement. The start state is state 0.
+   */
+
+  private static final class Dfa
+  {
+    private final int symbolCount;
+    private int[] transitions;
+    private boolean[] accepting;
+
+    Dfa(final String expression, final Nfa nfa, final int end, final int symbolCount)
+    {
+      final Map<BitSet, Integer> ids = new HashMap<BitSet, Integer>();
+      final List<BitSet> states = new ArrayList<BitSet>();
+      final List<int[]> rows = new ArrayList<int[]>();
+      final BitSet initial = new BitSet(nfa.size());
+
+      this.symbolCount = symbolCount;
+
+      initial.set(0);
+      nfa.closure(initial);
+      ids.put(initial, 0);
+      states.add(initial);
+
+      for (int i = 0; i < states.size(); i++)
+      {
+        final int[] row = new int[symbolCount];
+
+        for (int symbol = 0; symbol < symbolCount; symbol++)
+        {
+          final BitSet next = nfa.move(states.get(i), symbol);
+          Integer id = ids.get(next);
+
+          if (id == null)
+          {
+            if (states.size() >= MAX_DFA_STATES)
+            {
+              throw new PatternSyntaxException("Expression too complex", expression, -1);
+            }
+
+            id = states.size();
+            ids.put(next, id);
+            states.add(next);
+          }
+
+          row[symbol] = id;
+        }
+
+        rows.add(row);
+      }
+
+      this.transitions = new int[rows.size() * symbolCount];
+      this.accepting = new boolean[rows.size()];
+
+      for (int i = 0; i < rows.size(); i++)
+      {
+        System.arraycopy(rows.get(i), 0, this.transitions, i * symbolCount, symbolCount);
+        this.accepting[i] = states.get(i).get(end);
+      }
+
+      this.minimise();
+    }
+
+    /**
+     * merge the states which cannot be told apart, starting from accepting and other states and splitting the blocks until all states of
+     * a block move to the same blocks
+     */
+
+    private void minimise()
+    {
+      final int count = this.accepting.length;
+      int[] blocks = new int[count];
+      int blockCount = 0;
+
+      for (int state = 0; state < count; state++)
+      {
+        blocks[state] = this.accepting[state] ? 1 : 0;
+      }
+
+      while (true)
+      {
+        final Map<List<Integer>, Integer> signatures = new HashMap<List<Integer>, Integer>();
+        final int[] refined = new int[count];
+
+        // state 0 is numbered first, so it stays the start state
+        for (int state = 0; state < count; state++)
+        {
+          final List<Integer> signature = new ArrayList<Integer>(this.symbolCount + 1);
+
+          signature.add(blocks[state]);
+
+          for (int symbol = 0; symbol < this.symbolCount; symbol++)
+          {
+            signature.add(blocks[this.transitions[(state * this.symbolCount) + symbol]]);
+          }
+
+          Integer block = signatures.get(signature);
+
+          if (block == null)
+          {
+            block = signatures.size();
+            signatures.put(signature, block);
+          }
+
+          refined[state] = block;
+        }
+
+        blocks = refined;
+
+        if (signatures.size() == blockCount)
+        {
+          break;
+        }
+
+        blockCount = signatures.size();
+      }
+
+      final int[] transitions = new int[blockCount * this.symbolCount];
+      final boolean[] accepting = new boolean[blockCount];
+
+      for (int state = 0; state < count; state++)
+      {
+        for (int symbol = 0; symbol < this.symbolCount; symbol++)
+        {
+          transitions[(blocks[state] * this.symbolCount) + symbol] = blocks[this.transitions[(state * this.symbolCount) + symbol]];
+        }
+
+        accepting[blocks[state]] = this.accepting[state];
+      }
+
+      this.transitions = transitions;
+      this.accepting = accepting;
+    }
+
+    int[] transitions()
+    {
+      return this.transitions;
+    }
+
+    boolean[] accepting()
+    {
+      return this.accepting;
+    }
+
+    /**
+     * @return the states which either accept whatever follows or can never reach an accepting state
+     */
+
+    boolean[] decidedStates()
+    {
+      final int count = this.accepting.length;
+      final boolean[] live = this.accepting.clone();
+      final boolean[] acceptsAll = this.accepting.clone();
+      boolean changed = true;
+
+      while (changed)
+      {
+        changed = false;
+
+        for (int state = 0; state < count; state++)
+        {
+          for (int symbol = 0; symbol < this.symbolCount; symbol++)
+          {
+            final int next = this.transitions[(state * this.symbolCount) + symbol];
+
+            if (!live[state] && live[next])
+            {
+              live[state] = changed = true;
+            }
+
+            if (acceptsAll[state] && !acceptsAll[next])
+            {
+              acceptsAll[state] = false;
+              changed = true;
+            }
+          }
+        }
+      }
+
+      final boolean[] result = new boolean[count];
+
+      for (int state = 0; state < count; state++)
+      {
+        result[state] = !live[state] || acceptsAll[state];
+      }
+
+      return result;
+    }
+  }
+
+}
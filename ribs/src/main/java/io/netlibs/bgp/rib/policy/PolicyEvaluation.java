@@ -0,0 +1,55 @@
+package io.netlibs.bgp.rib.policy;
+
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration.Action;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.rib.filter.PrefixList;
+
+/**
+ * A {@link RoutePolicy} evaluated for one set of path attributes and next hop. It holds the terms whose attribute matches have passed, up
+ * to the first one without prefix match, along with their results, so applying it to the prefixes of an UPDATE only evaluates prefix
+ * lists.
+ */
+
+public final class PolicyEvaluation
+{
+
+  private final PrefixList[] prefixLists;
+  private final PolicyResult[] results;
+  private final PolicyResult defaultResult;
+
+  PolicyEvaluation(final PrefixList[] prefixLists, final PolicyResult[] results, final PolicyResult defaultResult)
+  {
+    this.prefixLists = prefixLists;
+    this.results = results;
+    this.defaultResult = defaultResult;
+  }
+
+  /**
+   * @return <code>true</code> if the result depends on the prefix of the route
+   */
+
+  public boolean dependsOnPrefix()
+  {
+    return (this.prefixLists.length > 0) && (this.prefixLists[0] != null);
+  }
+
+  /**
+   * @param key
+   *          the routing key of the route, see {@link io.netlibs.bgp.rib.Route#getKey()}
+   * @return the result of the first term matching the route
+   */
+
+  public PolicyResult apply(final NetworkLayerReachabilityInformation key)
+  {
+    for (int i = 0; i < this.prefixLists.length; i++)
+    {
+      if ((this.prefixLists[i] == null) || (this.prefixLists[i].evaluate(key) == Action.PERMIT))
+      {
+        return this.results[i];
+      }
+    }
+
+    return this.defaultResult;
+  }
+
+}
@@ -0,0 +1,71 @@
+package io.netlibs.bgp.rib.policy;
+
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.rib.PathAttributeSet;
+
+/**
+ * The outcome of a {@link RoutePolicy} for a route: whether it is accepted and, if so, the attributes and next hop it carries from now
+ * on. Results are shared by all routes which the same term of the policy has been applied to with the same input attributes, so they may
+ * be told apart by identity.
+ *
+ * A result never refers to the attributes or the next hop the policy has been applied to, as it is memoised by the input attributes.
+ * Whatever the policy leaves unchanged is resolved from the route when the result is used.
+ */
+
+public final class PolicyResult
+{
+
+  public static final PolicyResult REJECTED = new PolicyResult(false, null, null);
+
+  public static final PolicyResult ACCEPTED = new PolicyResult(true, null, null);
+
+  private final boolean accepted;
+  // null if left unchanged
+  private final PathAttributeSet pathAttributes;
+  private final NextHop nextHop;
+
+  PolicyResult(final boolean accepted, final PathAttributeSet pathAttributes, final NextHop nextHop)
+  {
+    this.accepted = accepted;
+    this.pathAttributes = pathAttributes;
+    this.nextHop = nextHop;
+  }
+
+  public boolean isAccepted()
+  {
+    return this.accepted;
+  }
+
+  /**
+   * @param input
+   *          the attributes the policy has been applied to
+   * @return the attributes of an accepted route
+   */
+  public PathAttributeSet getPathAttributes(final PathAttributeSet input)
+  {
+    return (this.pathAttributes != null) ? this.pathAttributes : input;
+  }
+
+  /**
+   * @param input
+   *          the next hop the policy has been applied to
+   * @return the next hop of an accepted route
+   */
+  public NextHop getNextHop(final NextHop input)
+  {
+    return (this.nextHop != null) ? this.nextHop : input;
+  }
+
+  @Override
+  public String toString()
+  {
+    if (!this.accepted)
+    {
+      return "reject";
+    }
+
+    return "accept " + ((this.pathAttributes != null) ? this.pathAttributes : "unchanged") + " via "
+        + ((this.nextHop != null) ? this.nextHop : "unchanged");
+  }
+
+}
@@ -0,0 +1,495 @@
+package io.netlibs.bgp.rib.policy;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.CommunityMember;
+import io.netlibs.bgp.protocol.attributes.CommunityPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiExitDiscPathAttribute;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.PathAttributeSet;
+import io.netlibs.bgp.rib.Route;
+import io.netlibs.bgp.rib.filter.PrefixList;
+
+/**
+ * A route policy: an ordered list of terms, each matching on the prefix, communities, AS_PATH and next hop of a route, and either
+ * rejecting it or accepting it with its LOCAL_PREF, MED, communities or next hop set. The first matching term decides, routes no term
+ * matches are accepted or rejected as a whole.
+ *
+ * Policies are built with {@link #builder()} and compiled into flat arrays of matches and actions. As all routes of an UPDATE share their
+ * attributes, a policy is {@link #evaluate(PathAttributeSet, NextHop) evaluated} once per interned attribute set and next hop and the
+ * evaluation is memoised: the attribute matches and set actions run once, only the prefix lists are looked at per route, and the
+ * resulting attribute sets are shared by all routes of the set.
+ *
+ * A policy is immutable and may be evaluated concurrently.
+ */
+
+public final class RoutePolicy
+{
+
+  /**
+   * a compiled match on the attributes and next hop of a route
+   */
+
+  @FunctionalInterface
+  interface Match
+  {
+    boolean matches(Input input);
+  }
+
+  /**
+   * a compiled set action, modifying the working copy of the attributes of a route
+   */
+
+  @FunctionalInterface
+  interface SetAction
+  {
+    void apply(List<PathAttribute> pathAttributes);
+  }
+
+  /**
+   * the attributes a policy is evaluated for, the AS_PATH is looked up once on first use
+   */
+
+  static final class Input
+  {
+    private final PathAttributeSet pathAttributes;
+    private final NextHop nextHop;
+    private boolean asPathFound;
+    private ASPathAttribute asPath;
+
+    Input(final PathAttributeSet pathAttributes, final NextHop nextHop)
+    {
+      this.pathAttributes = pathAttributes;
+      this.nextHop = nextHop;
+    }
+
+    PathAttributeSet getPathAttributes()
+    {
+      return this.pathAttributes;
+    }
+
+    NextHop getNextHop()
+    {
+      return this.nextHop;
+    }
+
+    ASPathAttribute getAsPath()
+    {
+      if (!this.asPathFound)
+      {
+        this.asPath = find(this.pathAttributes, ASPathAttribute.class);
+        this.asPathFound = true;
+      }
+
+      return this.asPath;
+    }
+  }
+
+  private static final class Term
+  {
+    private final Match[] matches;
+    private final PrefixList prefixList;
+    private final SetAction[] actions;
+    private final NextHop nextHop;
+    private final boolean accept;
+
+    private Term(final Match[] matches, final PrefixList prefixList, final SetAction[] actions, final NextHop nextHop, final boolean accept)
+    {
+      this.matches = matches;
+      this.prefixList = prefixList;
+      this.actions = actions;
+      this.nextHop = nextHop;
+      this.accept = accept;
+    }
+  }
+
+  /**
+   * builds a policy term by term
+   */
+
+  public static final class Builder
+  {
+    private final List<Term> terms = new ArrayList<Term>();
+    private boolean acceptByDefault = true;
+
+    private Builder()
+    {
+    }
+
+    /**
+     * start a new term, it is added to the policy once it is closed with {@link TermBuilder#accept()} or {@link TermBuilder#reject()}
+     */
+
+    public TermBuilder term()
+    {
+      return new TermBuilder(this);
+    }
+
+    /**
+     * set whether routes which no term matches are accepted, which is the default
+     */
+
+    public Builder acceptByDefault(final boolean acceptByDefault)
+    {
+      this.acceptByDefault = acceptByDefault;
+      return this;
+    }
+
+    public RoutePolicy build()
+    {
+      return new RoutePolicy(this.terms.toArray(new Term[this.terms.size()]), this.acceptByDefault);
+    }
+  }
+
+  /**
+   * builds a single term, all matches of a term must hold for it to match
+   */
+
+  public static final class TermBuilder
+  {
+    private final Builder builder;
+    private final List<Match> matches = new ArrayList<Match>();
+    private final List<SetAction> actions = new ArrayList<SetAction>();
+    private PrefixList prefixList;
+    private NextHop nextHop;
+
+    private TermBuilder(final Builder builder)
+    {
+      this.builder = builder;
+    }
+
+    /**
+     * match routes whose prefix the prefix list permits
+     */
+
+    public TermBuilder matchPrefixList(final PrefixList prefixList)
+    {
+      this.prefixList = prefixList;
+      return this;
+    }
+
+    /**
+     * match routes carrying any of the given communities
+     */
+
+    public TermBuilder matchCommunity(final CommunityMember... communities)
+    {
+      final List<CommunityMember> wanted = Arrays.asList(communities);
+
+      this.matches.add(input -> {
+        final CommunityPathAttribute attribute = find(input.getPathAttributes(), CommunityPathAttribute.class);
+
+        if (attribute != null)
+        {
+          for (final CommunityMember member : attribute.getMembers())
+          {
+            if (wanted.contains(member))
+            {
+              return true;
+            }
+          }
+        }
+        return false;
+      });
+      return this;
+    }
+
+    /**
+     * match routes whose AS_PATH the matcher accepts
+     */
+
+    public TermBuilder matchAsPath(final AsPathMatcher matcher)
+    {
+      this.matches.add(input -> matcher.matches(input.getAsPath()));
+      return this;
+    }
+
+    /**
+     * match routes using any of the given next hops
+     */
+
+    public TermBuilder matchNextHop(final NextHop... nextHops)
+    {
+      final List<NextHop> wanted = Arrays.asList(nextHops);
+
+      this.matches.add(input -> wanted.contains(input.getNextHop()));
+      return this;
+    }
+
+    public TermBuilder setLocalPref(final int localPreference)
+    {
+      this.actions.add(pathAttributes -> replace(pathAttributes, LocalPrefPathAttribute.class, new LocalPrefPathAttribute(localPreference)));
+      return this;
+    }
+
+    public TermBuilder setMed(final int discriminator)
+    {
+      this.actions.add(pathAttributes -> replace(pathAttributes, MultiExitDiscPathAttribute.class, new MultiExitDiscPathAttribute(discriminator)));
+      return this;
+    }
+
+    /**
+     * add the given communities to the ones the route carries
+     */
+
+    public TermBuilder addCommunities(final CommunityMember... communities)
+    {
+      this.actions.add(pathAttributes -> {
+        final CommunityPathAttribute current = find(pathAttributes, CommunityPathAttribute.class);
+        final List<CommunityMember> members = new ArrayList<CommunityMember>();
+
+        if ((current != null) && (current.getMembers() != null))
+        {
+          members.addAll(current.getMembers());
+        }
+
+        for (final CommunityMember community : communities)
+        {
+          if (!members.contains(community))
+          {
+            members.add(community);
+          }
+        }
+
+        replace(pathAttributes, CommunityPathAttribute.class, new CommunityPathAttribute(members));
+      });
+      return this;
+    }
+
+    /**
+     * replace the communities of the route, no communities remove the attribute
+     */
+
+    public TermBuilder setCommunities(final CommunityMember... communities)
+    {
+      this.actions.add(pathAttributes -> replace(pathAttributes, CommunityPathAttribute.class,
+          (communities.length > 0) ? new CommunityPathAttribute(new ArrayList<CommunityMember>(Arrays.asList(communities))) : null));
+      return this;
+    }
+
+    /**
+     * set the next hop, for IPv4 next hops the NEXT_HOP attribute as well if the route carries one
+     */
+
+    public TermBuilder setNextHop(final NextHop nextHop)
+    {
+      this.nextHop = nextHop;
+      return this;
+    }
+
+    public Builder accept()
+    {
+      return this.close(true);
+    }
+
+    public Builder reject()
+    {
+      return this.close(false);
+    }
+
+    private Builder close(final boolean accept)
+    {
+      this.builder.terms.add(new Term(this.matches.toArray(new Match[this.matches.size()]), this.prefixList,
+          this.actions.toArray(new SetAction[this.actions.size()]), this.nextHop, accept));
+
+      return this.builder;
+    }
+  }
+
+  private static final int CACHE_SIZE = 1 << 16;
+
+  // the key for routes without next hop
+  private static final Object NO_NEXT_HOP = new Object();
+
+  private final Term[] terms;
+  private final boolean acceptByDefault;
+
+  // interned attribute sets are compared by identity
+  private final Cache<PathAttributeSet, ConcurrentMap<Object, PolicyEvaluation>> evaluations = CacheBuilder.newBuilder().weakKeys()
+      .maximumSize(CACHE_SIZE).build();
+
+  private RoutePolicy(final Term[] terms, final boolean acceptByDefault)
+  {
+    this.terms = terms;
+    this.acceptByDefault = acceptByDefault;
+  }
+
+  public static Builder builder()
+  {
+    return new Builder();
+  }
+
+  /**
+   * evaluate the policy for the routes sharing the given attributes and next hop
+   *
+   * @return the memoised evaluation
+   */
+
+  public PolicyEvaluation evaluate(final PathAttributeSet pathAttributes, final NextHop nextHop)
+  {
+    ConcurrentMap<Object, PolicyEvaluation> byNextHop = this.evaluations.getIfPresent(pathAttributes);
+
+    if (byNextHop == null)
+    {
+      final ConcurrentMap<Object, PolicyEvaluation> created = new ConcurrentHashMap<Object, PolicyEvaluation>(4);
+
+      byNextHop = this.evaluations.asMap().putIfAbsent(pathAttributes, created);
+
+      if (byNextHop == null)
+      {
+        byNextHop = created;
+      }
+    }
+
+    final Object key = (nextHop != null) ? nextHop : NO_NEXT_HOP;
+    PolicyEvaluation evaluation = byNextHop.get(key);
+
+    if (evaluation == null)
+    {
+      evaluation = this.compute(new Input(pathAttributes, nextHop));
+
+      final PolicyEvaluation raced = byNextHop.putIfAbsent(key, evaluation);
+
+      if (raced != null)
+      {
+        evaluation = raced;
+      }
+    }
+
+    return evaluation;
+  }
+
+  /**
+   * apply the policy to a single route
+   */
+
+  public PolicyResult apply(final Route route)
+  {
+    return this.evaluate(route.getPathAttributes(), route.getNextHop()).apply(route.getKey());
+  }
+
+  private PolicyEvaluation compute(final Input input)
+  {
+    final List<PrefixList> prefixLists = new ArrayList<PrefixList>();
+    final List<PolicyResult> results = new ArrayList<PolicyResult>();
+
+    for (final Term term : this.terms)
+    {
+      if (matches(term, input))
+      {
+        prefixLists.add(term.prefixList);
+        results.add(result(term, input));
+
+        // later terms are never reached
+        if (term.prefixList == null)
+        {
+          break;
+        }
+      }
+    }
+
+    final PolicyResult defaultResult = this.acceptByDefault ? PolicyResult.ACCEPTED : PolicyResult.REJECTED;
+
+    return new PolicyEvaluation(prefixLists.toArray(new PrefixList[prefixLists.size()]), results.toArray(new PolicyResult[results.size()]),
+        defaultResult);
+  }
+
+  private static boolean matches(final Term term, final Input input)
+  {
+    for (final Match match : term.matches)
+    {
+      if (!match.matches(input))
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static PolicyResult result(final Term term, final Input input)
+  {
+    if (!term.accept)
+    {
+      return PolicyResult.REJECTED;
+    }
+    else if ((term.actions.length == 0) && (term.nextHop == null))
+    {
+      return PolicyResult.ACCEPTED;
+    }
+
+    final List<PathAttribute> pathAttributes = new ArrayList<PathAttribute>(input.getPathAttributes());
+
+    for (final SetAction action : term.actions)
+    {
+      action.apply(pathAttributes);
+    }
+
+    if ((term.nextHop instanceof InetAddressNextHop) && (((InetAddressNextHop<?>) term.nextHop).getAddress() instanceof Inet4Address)
+        && (find(pathAttributes, NextHopPathAttribute.class) != null))
+    {
+      replace(pathAttributes, NextHopPathAttribute.class, new NextHopPathAttribute((InetAddressNextHop<Inet4Address>) term.nextHop));
+    }
+
+    // the memoised result must not keep the input alive, so attributes the actions left as they were are resolved from the route
+    final PathAttributeSet modified = PathAttributeSet.intern(pathAttributes);
+
+    if ((modified == input.getPathAttributes()) && (term.nextHop == null))
+    {
+      return PolicyResult.ACCEPTED;
+    }
+
+    return new PolicyResult(true, (modified != input.getPathAttributes()) ? modified : null, term.nextHop);
+  }
+
+  private static <T extends PathAttribute> T find(final Iterable<PathAttribute> pathAttributes, final Class<T> type)
+  {
+    for (final PathAttribute attribute : pathAttributes)
+    {
+      if (type.isInstance(attribute))
+      {
+        return type.cast(attribute);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * replace the attribute of the given type, the attributes are shared and are never modified in place
+   */
+
+  private static void replace(final List<PathAttribute> pathAttributes, final Class<? extends PathAttribute> type, final PathAttribute replacement)
+  {
+    final Iterator<PathAttribute> it = pathAttributes.iterator();
+
+    while (it.hasNext())
+    {
+      if (type.isInstance(it.next()))
+      {
+        it.remove();
+      }
+    }
+
+    if (replacement != null)
+    {
+      pathAttributes.add(replacement);
+    }
+  }
+
+}
@@ -3,20 +3,30 @@
  */
 package io.netlibs.bgp.rib.processor;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import io.netlibs.bgp.config.nodes.PathAttributeConfiguration;
 import io.netlibs.bgp.config.nodes.PrefixRoutingFilterConfiguration;
 import io.netlibs.bgp.config.nodes.RoutingFilterConfiguration;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.rib.Route;
 import io.netlibs.bgp.rib.RouteAdded;
 import io.netlibs.bgp.rib.RouteWithdrawn;
+import io.netlibs.bgp.rib.RoutesAdded;
+import io.netlibs.bgp.rib.RoutesWithdrawn;
 import io.netlibs.bgp.rib.RoutingEventListener;
 import io.netlibs.bgp.rib.RoutingInformationBase;
 import io.netlibs.bgp.rib.filter.DefaultPathAttributesInjector;
 import io.netlibs.bgp.rib.filter.PrefixRoutingFilter;
 import io.netlibs.bgp.rib.filter.RoutingFilter;
+import io.netlibs.bgp.rib.policy.PolicyEvaluation;
+import io.netlibs.bgp.rib.policy.PolicyResult;
+import io.netlibs.bgp.rib.policy.RoutePolicy;
 import lombok.RequiredArgsConstructor;
 
 /**
@@ -33,6 +43,7 @@ public class RouteTransportListener implements RoutingEventListener
   private final DefaultPathAttributesInjector injector;
   private final PrefixRoutingFilter prefixFilterProvider;
   private List<RoutingFilter> filters = new LinkedList<RoutingFilter>();
+  private RoutePolicy policy;
 
   /*
    * (non-Javadoc)
@@ -42,18 +53,25 @@ public class RouteTransportListener implements RoutingEventListener
   @Override
   public void routeAdded(RouteAdded event)
   {
-    boolean match = false;
+    Route route = event.getRoute();
 
-    for (RoutingFilter filter : filters)
-    {
-      match |= filter.matchFilter(event.getRoute());
+    if (filtered(route))
+      return;
 
-      if (match)
-        break;
+    if (policy == null)
+    {
+      target.addRoute(injector.injectMissingPathAttribute(route));
+      return;
     }
 
-    if (!match)
-      target.addRoute(injector.injectMissingPathAttribute(event.getRoute()));
+    PolicyResult result = policy.apply(route);
+
+    // a rejected route replaces a previously accepted one for the prefix
+    if (result.isAccepted())
+      target.addRoute(new Route(route, null, injector.injectMissingPathAttributes(result.getPathAttributes(route.getPathAttributes())),
+          result.getNextHop(route.getNextHop())));
+    else
+      target.withdrawRoute(route);
   }
 
   /*
@@ -64,18 +82,113 @@ public class RouteTransportListener implements RoutingEventListener
   @Override
   public void routeWithdrawn(RouteWithdrawn event)
   {
-    boolean match = false;
+    if (!filtered(event.getRoute()))
+      target.withdrawRoute(event.getRoute());
+  }
 
-    for (RoutingFilter filter : filters)
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.bgp4j.rib.RoutingBatchListener#routesAdded(org.bgp4j.rib.RoutesAdded)
+   */
+  @Override
+  public void routesAdded(RoutesAdded event)
+  {
+    if (policy == null)
     {
-      match |= filter.matchFilter(event.getRoute());
+      List<NetworkLayerReachabilityInformation> nlris = unfiltered(event.getRoutes());
+
+      // the routes share their attributes, so the defaults are injected once and the whole batch goes into the target in one go
+      if (!nlris.isEmpty())
+        target.addRoutes(nlris, injector.injectMissingPathAttributes(event.getPathAttributes()), event.getNextHop());
 
-      if (match)
-        break;
+      return;
     }
 
-    if (!match)
-      target.withdrawRoute(event.getRoute());
+    // the policy is evaluated once for the shared attributes, the routes are grouped by the result their prefix gets
+    PolicyEvaluation evaluation = policy.evaluate(event.getPathAttributes(), event.getNextHop());
+    Map<PolicyResult, List<NetworkLayerReachabilityInformation>> groups = new LinkedHashMap<PolicyResult, List<NetworkLayerReachabilityInformation>>();
+
+    for (Route route : event.getRoutes())
+    {
+      if (filtered(route))
+        continue;
+
+      PolicyResult result = evaluation.apply(route.getKey());
+      List<NetworkLayerReachabilityInformation> group = groups.get(result);
+
+      if (group == null)
+      {
+        group = new ArrayList<NetworkLayerReachabilityInformation>();
+        groups.put(result, group);
+      }
+
+      group.add(route.getNlri());
+    }
+
+    for (Map.Entry<PolicyResult, List<NetworkLayerReachabilityInformation>> group : groups.entrySet())
+    {
+      PolicyResult result = group.getKey();
+
+      if (result.isAccepted())
+        target.addRoutes(group.getValue(), injector.injectMissingPathAttributes(result.getPathAttributes(event.getPathAttributes())),
+            result.getNextHop(event.getNextHop()));
+      else
+        target.withdrawRoutes(group.getValue());
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.bgp4j.rib.RoutingBatchListener#routesWithdrawn(org.bgp4j.rib.RoutesWithdrawn)
+   */
+  @Override
+  public void routesWithdrawn(RoutesWithdrawn event)
+  {
+    List<NetworkLayerReachabilityInformation> nlris = unfiltered(event.getRoutes());
+
+    if (!nlris.isEmpty())
+      target.withdrawRoutes(nlris);
+  }
+
+  /**
+   * @return the prefixes of the routes no filter matches
+   */
+  private List<NetworkLayerReachabilityInformation> unfiltered(List<Route> routes)
+  {
+    List<NetworkLayerReachabilityInformation> nlris = new ArrayList<NetworkLayerReachabilityInformation>(routes.size());
+
+    for (Route route : routes)
+    {
+      if (!filtered(route))
+        nlris.add(route.getNlri());
+    }
+
+    return nlris;
+  }
+
+  /**
+   * @return <code>true</code> if any filter matches the route
+   */
+  private boolean filtered(Route route)
+  {
+    for (RoutingFilter filter : filters)
+    {
+      if (filter.matchFilter(route))
+        return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * @param policy
+   *          the policy applied to the routes transported into the target, <code>null</code> to transport them unchanged
+   */
+  public void setPolicy(RoutePolicy policy)
+  {
+    this.policy = policy;
   }
 
   /**
@@ -0,0 +1,62 @@
+package io.netlibs.bgp.netty.fsm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import io.netty.util.HashedWheelTimer;
+
+public class FSMTimerTest
+{
+
+  @Test
+  public void testRescheduleReplacesPendingTimeout() throws Exception
+  {
+    final HashedWheelTimer wheel = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    final AtomicInteger fired = new AtomicInteger();
+    final CountDownLatch latch = new CountDownLatch(1);
+    final FSMTimer timer = new FSMTimer(wheel, MoreExecutors.directExecutor(), () -> {
+      fired.incrementAndGet();
+      latch.countDown();
+    });
+
+    try
+    {
+      timer.schedule(1);
+      timer.schedule(1);
+
+      assertTrue(timer.isScheduled());
+      assertNotNull(timer.getDueWhen());
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+      // give a stale timeout the chance to fire as well
+      Thread.sleep(200);
+
+      assertEquals(1, fired.get());
+      assertFalse(timer.isScheduled());
+      assertNull(timer.getDueWhen());
+
+      timer.schedule(1);
+      timer.cancel();
+
+      Thread.sleep(1200);
+
+      assertEquals(1, fired.get());
+    }
+    finally
+    {
+      wheel.stop();
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+package io.netlibs.bgp.netty.fsm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class InboundUpdateStageTest
+{
+
+  @Test
+  public void testTasksRunInSubmitOrder()
+  {
+    final Queue<Runnable> executor = new LinkedList<Runnable>();
+    final InboundUpdateStage stage = new InboundUpdateStage(executor::add, 100);
+    final EmbeddedChannel channel = new EmbeddedChannel();
+    final List<Integer> applied = new ArrayList<Integer>();
+
+    for (int i = 0; i < 10; i++)
+    {
+      final int n = i;
+      stage.submit(channel, () -> applied.add(n));
+    }
+
+    // one drain is scheduled for the whole backlog
+    assertEquals(1, executor.size());
+    assertEquals(10, stage.getQueuedTasks());
+
+    executor.poll().run();
+
+    assertEquals(10, applied.size());
+
+    for (int i = 0; i < 10; i++)
+    {
+      assertEquals(i, applied.get(i).intValue());
+    }
+
+    assertEquals(0, stage.getQueuedTasks());
+  }
+
+  @Test
+  public void testReadsSuspendedUntilCreditsReturned()
+  {
+    final Queue<Runnable> executor = new LinkedList<Runnable>();
+    final InboundUpdateStage stage = new InboundUpdateStage(executor::add, 4);
+    final EmbeddedChannel channel = new EmbeddedChannel();
+
+    for (int i = 0; i < 3; i++)
+    {
+      stage.submit(channel, () -> {
+      });
+    }
+
+    assertTrue(channel.config().isAutoRead());
+
+    stage.submit(channel, () -> {
+    });
+
+    assertFalse(channel.config().isAutoRead());
+
+    executor.poll().run();
+    channel.runPendingTasks();
+
+    assertTrue(channel.config().isAutoRead());
+    assertEquals(0, stage.getQueuedTasks());
+  }
+
+}
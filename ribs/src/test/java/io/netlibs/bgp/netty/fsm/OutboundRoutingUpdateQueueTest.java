@@ -0,0 +1,188 @@
+package io.netlibs.bgp.netty.fsm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Inet4Address;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.netty.protocol.update.UpdatePacket;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.BGPv4Constants;
+import io.netlibs.bgp.protocol.BinaryNextHop;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.CommunityMember;
+import io.netlibs.bgp.protocol.attributes.CommunityPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.PeerRoutingInformationBase;
+import io.netlibs.bgp.rib.PeerRoutingInformationBaseManager;
+import io.netlibs.bgp.rib.Route;
+import io.netlibs.bgp.rib.RoutingInformationBase;
+import io.netlibs.bgp.rib.RoutingInformationBaseVisitor;
+import io.netlibs.bgp.rib.policy.RoutePolicy;
+
+public class OutboundRoutingUpdateQueueTest
+{
+
+  @Test
+  public void testPacketsArePackedUpToMaximumSize()
+  {
+    final OutboundRoutingUpdateQueue queue = new OutboundRoutingUpdateQueue(null, null);
+    final RoutingInformationBaseVisitor visitor = queue.getImportVisitor();
+    final List<PathAttribute> attributes = Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100));
+    final InetAddressNextHop<Inet4Address> v4NextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final BinaryNextHop v6NextHop = new BinaryNextHop(InetAddresses.forString("2001:db8::1").getAddress());
+
+    for (int i = 0; i < 3000; i++)
+    {
+      visitor.visitRouteNode("peer", RIBSide.Local, new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING,
+          new NetworkLayerReachabilityInformation(24, new byte[] { 10, (byte) (i >> 8), (byte) i }), attributes, v4NextHop));
+    }
+
+    for (int i = 0; i < 1000; i++)
+    {
+      visitor.visitRouteNode("peer", RIBSide.Local, new Route(AddressFamilyKey.IPV6_UNICAST_FORWARDING,
+          new NetworkLayerReachabilityInformation(48, new byte[] { 0x20, 0x01, 0x0d, (byte) 0xb8, (byte) (i >> 8), (byte) i }), attributes, v6NextHop));
+    }
+
+    final List<UpdatePacket> updates = queue.buildUpdates();
+    int v4Routes = 0;
+    int v6Routes = 0;
+
+    for (final UpdatePacket update : updates)
+    {
+      final int size = update.encodePacket().readableBytes();
+
+      assertEquals(update.calculatePacketSize(), size);
+      assertTrue(size <= (BGPv4Constants.BGP_PACKET_MAX_LENGTH - BGPv4Constants.BGP_PACKET_HEADER_LENGTH));
+
+      v4Routes += update.getNlris().size();
+
+      for (final MultiProtocolReachableNLRI mpNLRI : update.lookupPathAttributes(MultiProtocolReachableNLRI.class))
+      {
+        v6Routes += mpNLRI.getNlris().size();
+      }
+    }
+
+    assertEquals(3000, v4Routes);
+    assertEquals(1000, v6Routes);
+    // 1009 /24 fit into an IPv4 packet, 574 /48 into an IPv6 one
+    assertEquals(5, updates.size());
+  }
+
+  @Test
+  public void testOnlyFinalStateOfFlappingRouteIsSent() throws Exception
+  {
+    final OutboundRoutingUpdateQueue queue = new OutboundRoutingUpdateQueue(null, null);
+    final PeerRoutingInformationBase prib = new PeerRoutingInformationBaseManager().peerRoutingInformationBase("peer");
+    final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final NetworkLayerReachabilityInformation flapping = new NetworkLayerReachabilityInformation(8, new byte[] { 10 });
+    final NetworkLayerReachabilityInformation gone = new NetworkLayerReachabilityInformation(8, new byte[] { 11 });
+
+    prib.allocateRoutingInformationBase(RIBSide.Local, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    final RoutingInformationBase rib = prib.routingBase(RIBSide.Local, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    rib.addPerRibListener(queue);
+    queue.setPeerName("peer");
+    queue.setUpdateMask(Collections.singleton(AddressFamilyKey.IPV4_UNICAST_FORWARDING));
+    queue.startSendingUpdates(0);
+
+    for (int i = 0; i < 3; i++)
+    {
+      final Route route = new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, flapping,
+          Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100 + i)), nextHop);
+
+      rib.addRoute(route);
+      rib.withdrawRoute(route);
+    }
+
+    rib.addRoute(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, flapping, Arrays.<PathAttribute> asList(new OriginPathAttribute(),
+        new LocalPrefPathAttribute(200)), nextHop));
+    rib.addRoute(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, gone, Arrays.<PathAttribute> asList(new OriginPathAttribute()), nextHop));
+    rib.withdrawRoute(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, gone, null, nextHop));
+
+    assertEquals(2, queue.getNumberOfPendingRoutes());
+
+    final List<UpdatePacket> updates = queue.buildUpdates();
+
+    assertEquals(2, updates.size());
+    assertEquals(Arrays.asList(gone), updates.get(0).getWithdrawnRoutes());
+    assertTrue(updates.get(0).getNlris().isEmpty());
+    assertTrue(updates.get(1).getWithdrawnRoutes().isEmpty());
+    assertEquals(Arrays.asList(flapping), updates.get(1).getNlris());
+    assertEquals(200, updates.get(1).lookupPathAttributes(LocalPrefPathAttribute.class).iterator().next().getLocalPreference());
+    assertEquals(0, queue.getNumberOfPendingRoutes());
+  }
+
+  @Test
+  public void testNewLabelReplacesPendingRoute()
+  {
+    final OutboundRoutingUpdateQueue queue = new OutboundRoutingUpdateQueue(null, null);
+    final RoutingInformationBaseVisitor visitor = queue.getImportVisitor();
+    final List<PathAttribute> attributes = Arrays.<PathAttribute> asList(new OriginPathAttribute());
+    final BinaryNextHop nextHop = new BinaryNextHop(InetAddresses.forString("192.0.2.1").getAddress());
+    // label 100 and 200 with the bottom of stack bit, then 10.0.1.0/24
+    final NetworkLayerReachabilityInformation label100 = new NetworkLayerReachabilityInformation(48, new byte[] { 0, 6, 65, 10, 0, 1 });
+    final NetworkLayerReachabilityInformation label200 = new NetworkLayerReachabilityInformation(48, new byte[] { 0, 12, (byte) 129, 10, 0, 1 });
+
+    visitor.visitRouteNode("peer", RIBSide.Local, new Route(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING, label100, attributes, nextHop));
+    visitor.visitRouteNode("peer", RIBSide.Local, new Route(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING, label200, attributes, nextHop));
+
+    assertEquals(1, queue.getNumberOfPendingRoutes());
+
+    final List<UpdatePacket> updates = queue.buildUpdates();
+
+    assertEquals(1, updates.size());
+    assertEquals(Arrays.asList(label200), updates.get(0).lookupPathAttributes(MultiProtocolReachableNLRI.class).iterator().next().getNlris());
+  }
+
+  @Test
+  public void testRouteRejectedByExportPolicyIsWithdrawn()
+  {
+    final OutboundRoutingUpdateQueue queue = new OutboundRoutingUpdateQueue(null, null);
+    final PeerRoutingInformationBase prib = new PeerRoutingInformationBaseManager().peerRoutingInformationBase("peer");
+    final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final NetworkLayerReachabilityInformation nlri = new NetworkLayerReachabilityInformation(8, new byte[] { 10 });
+    final CommunityMember noExport = new CommunityMember(0xffff, 0xff01);
+
+    prib.allocateRoutingInformationBase(RIBSide.Local, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    final RoutingInformationBase rib = prib.routingBase(RIBSide.Local, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    rib.addPerRibListener(queue);
+    queue.setPeerName("peer");
+    queue.setUpdateMask(Collections.singleton(AddressFamilyKey.IPV4_UNICAST_FORWARDING));
+    queue.setExportPolicy(RoutePolicy.builder().term().matchCommunity(noExport).reject().build());
+    queue.startSendingUpdates(0);
+
+    rib.addRoute(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri, Arrays.<PathAttribute> asList(new OriginPathAttribute()), nextHop));
+
+    List<UpdatePacket> updates = queue.buildUpdates();
+
+    assertEquals(1, updates.size());
+    assertEquals(Arrays.asList(nlri), updates.get(0).getNlris());
+
+    // the route changes to one the policy rejects, so the peer has to drop the one announced before
+    rib.addRoute(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri, Arrays.<PathAttribute> asList(new OriginPathAttribute(),
+        new CommunityPathAttribute(Collections.singletonList(noExport))), nextHop));
+
+    updates = queue.buildUpdates();
+
+    assertEquals(1, updates.size());
+    assertEquals(Arrays.asList(nlri), updates.get(0).getWithdrawnRoutes());
+    assertTrue(updates.get(0).getNlris().isEmpty());
+  }
+
+}
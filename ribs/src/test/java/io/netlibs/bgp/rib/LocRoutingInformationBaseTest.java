@@ -0,0 +1,203 @@
+package io.netlibs.bgp.rib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.Inet4Address;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiExitDiscPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+
+public class LocRoutingInformationBaseTest
+{
+
+  private static final AddressFamilyKey AFK = AddressFamilyKey.IPV4_UNICAST_FORWARDING;
+  private static final NetworkLayerReachabilityInformation PREFIX = new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 1 });
+
+  private static PeerRoutingInformationBase peer(final String name)
+  {
+    final PeerRoutingInformationBase prib = new PeerRoutingInformationBase();
+
+    prib.setPeerName(name);
+    prib.allocateRoutingInformationBase(RIBSide.Remote, AFK);
+
+    return prib;
+  }
+
+  private static List<PathAttribute> attributes(final int localPref, final int med, final int... path)
+  {
+    return Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(localPref), new MultiExitDiscPathAttribute(med),
+        new ASPathAttribute(ASType.AS_NUMBER_2OCTETS, new PathSegment[] { new PathSegment(ASType.AS_NUMBER_2OCTETS, PathSegmentType.AS_SEQUENCE, path) }));
+  }
+
+  private static void announce(final PeerRoutingInformationBase prib, final List<PathAttribute> attributes)
+  {
+    prib.routingBase(RIBSide.Remote, AFK).addRoutes(Collections.singletonList(PREFIX), attributes, null);
+  }
+
+  @Test
+  public void testSelectionFollowsCandidates()
+  {
+    final LocRoutingInformationBase loc = new LocRoutingInformationBase();
+    final PeerRoutingInformationBase a = peer("a");
+    final PeerRoutingInformationBase b = peer("b");
+    final List<BestPathChanged> events = new ArrayList<BestPathChanged>();
+
+    loc.attach(a);
+    loc.attach(b);
+    loc.addBestPathListener(events::add);
+
+    announce(a, attributes(100, 0, 65001, 65002));
+    assertEquals("a", events.get(0).getPeerName());
+
+    // higher LOCAL_PREF wins over the longer path
+    announce(b, attributes(200, 0, 65001, 65002, 65003));
+    assertEquals(2, events.size());
+    assertEquals("b", events.get(1).getPeerName());
+    assertSame(events.get(0).getRoute(), events.get(1).getPreviousRoute());
+
+    // b loses its preference, the shorter path of a is selected again
+    announce(b, attributes(100, 0, 65001, 65002, 65003));
+    assertEquals(3, events.size());
+    assertEquals("a", events.get(2).getPeerName());
+
+    // a change which does not touch the best path is silent
+    announce(b, attributes(100, 0, 65001, 65002, 65004));
+    assertEquals(3, events.size());
+
+    a.routingBase(RIBSide.Remote, AFK).withdrawRoutes(Collections.singletonList(PREFIX));
+    assertEquals(4, events.size());
+    assertEquals("b", events.get(3).getPeerName());
+
+    loc.detach(b);
+    assertEquals(5, events.size());
+    assertNull(events.get(4).getRoute());
+    assertNull(loc.lookupBestPath(AFK, PREFIX));
+    assertEquals(0, loc.size());
+  }
+
+  @Test
+  public void testMedOnlyComparedWithinNeighborAs()
+  {
+    final LocRoutingInformationBase loc = new LocRoutingInformationBase();
+    final PeerRoutingInformationBase a = peer("a");
+    final PeerRoutingInformationBase b = peer("b");
+    final PeerRoutingInformationBase c = peer("c");
+
+    loc.attach(c, false, 3);
+    loc.attach(b, false, 2);
+    loc.attach(a, false, 1);
+
+    // b beats c on MED within AS 65002, a is from a different AS, so its higher MED does not count against it and it wins on the identifier
+    announce(c, attributes(100, 20, 65002, 65100));
+    announce(b, attributes(100, 10, 65002, 65100));
+    announce(a, attributes(100, 50, 65001, 65100));
+
+    assertSame(a.routingBase(RIBSide.Remote, AFK).lookupRoute(PREFIX).getRoute(), loc.lookupBestPath(AFK, PREFIX));
+
+    a.routingBase(RIBSide.Remote, AFK).withdrawRoutes(Collections.singletonList(PREFIX));
+
+    assertSame(b.routingBase(RIBSide.Remote, AFK).lookupRoute(PREFIX).getRoute(), loc.lookupBestPath(AFK, PREFIX));
+  }
+
+  @Test
+  public void testSessionDownDropsCandidates()
+  {
+    final LocRoutingInformationBase loc = new LocRoutingInformationBase();
+    final PeerRoutingInformationBase a = peer("a");
+    final PeerRoutingInformationBase b = peer("b");
+    final InetAddressNextHop<Inet4Address> viaA = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final List<BestPathChanged> events = new ArrayList<BestPathChanged>();
+
+    loc.attach(a);
+    loc.attach(b);
+    loc.addBestPathListener(events::add);
+
+    a.routingBase(RIBSide.Remote, AFK).addRoutes(Collections.singletonList(PREFIX), attributes(200, 0, 65001), viaA);
+    announce(b, attributes(100, 0, 65001));
+    assertEquals("a", events.get(events.size() - 1).getPeerName());
+
+    // the session of a goes down, its RIBs are destroyed and b takes over
+    a.destroyAllRoutingInformationBases();
+    assertEquals("b", events.get(events.size() - 1).getPeerName());
+    assertSame(b.routingBase(RIBSide.Remote, AFK).lookupRoute(PREFIX).getRoute(), loc.lookupBestPath(AFK, PREFIX));
+    assertEquals(0, loc.countDependents(viaA));
+
+    b.destroyAllRoutingInformationBases(RIBSide.Remote);
+    assertNull(events.get(events.size() - 1).getRoute());
+    assertNull(loc.lookupBestPath(AFK, PREFIX));
+    assertEquals(0, loc.size());
+
+    // the peer comes back with fresh RIBs
+    a.allocateRoutingInformationBase(RIBSide.Remote, AFK);
+    announce(a, attributes(100, 0, 65001));
+    assertSame(a.routingBase(RIBSide.Remote, AFK).lookupRoute(PREFIX).getRoute(), loc.lookupBestPath(AFK, PREFIX));
+  }
+
+  @Test
+  public void testNextHopDownSelectsOnlyDependents()
+  {
+    final LocRoutingInformationBase loc = new LocRoutingInformationBase();
+    final PeerRoutingInformationBase a = peer("a");
+    final PeerRoutingInformationBase b = peer("b");
+    final InetAddressNextHop<Inet4Address> viaA = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final InetAddressNextHop<Inet4Address> viaB = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.2"));
+    final NetworkLayerReachabilityInformation other = new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 2 });
+    final List<BestPathChanged> events = new ArrayList<BestPathChanged>();
+
+    loc.attach(a);
+    loc.attach(b);
+    loc.addBestPathListener(events::add);
+
+    a.routingBase(RIBSide.Remote, AFK).addRoutes(Arrays.asList(PREFIX, other), attributes(200, 0, 65001), viaA);
+    b.routingBase(RIBSide.Remote, AFK).addRoutes(Collections.singletonList(PREFIX), attributes(100, 0, 65001), viaB);
+
+    assertEquals(2, loc.countDependents(viaA));
+    assertEquals(1, loc.countDependents(viaB));
+    assertEquals(2, events.size());
+
+    loc.nextHopDown(viaA);
+
+    assertFalse(loc.isNextHopReachable(viaA));
+    assertEquals(4, events.size());
+    assertEquals(viaB, loc.lookupBestPath(AFK, PREFIX).getNextHop());
+    assertNull(loc.lookupBestPath(AFK, other));
+    assertEquals(1, loc.size());
+
+    // marking it down again changes nothing
+    loc.nextHopDown(viaA);
+    assertEquals(4, events.size());
+
+    loc.nextHopUp(viaA);
+
+    assertEquals(6, events.size());
+    assertEquals(viaA, loc.lookupBestPath(AFK, PREFIX).getNextHop());
+    assertEquals(2, loc.size());
+
+    a.routingBase(RIBSide.Remote, AFK).withdrawRoutes(Arrays.asList(PREFIX, other));
+
+    assertEquals(0, loc.countDependents(viaA));
+    assertEquals(1, loc.countDependents(viaB));
+  }
+
+}
@@ -0,0 +1,135 @@
+package io.netlibs.bgp.rib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.netlibs.bgp.netty.codec.UpdatePacketDecoder;
+import io.netlibs.bgp.netty.protocol.update.UpdatePacket;
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamily;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.SubsequentAddressFamily;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiExitDiscPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiProtocolReachableNLRI;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netty.buffer.ByteBuf;
+
+public class PathAttributeSetTest
+{
+
+  @Test
+  public void testInternedAcrossRoutes()
+  {
+    final PathAttributeSet first = PathAttributeSet.intern(Arrays.<PathAttribute> asList(new LocalPrefPathAttribute(100), new OriginPathAttribute()));
+    final PathAttributeSet second = PathAttributeSet.intern(new HashSet<PathAttribute>(Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100))));
+    final PathAttributeSet other = PathAttributeSet.intern(Arrays.<PathAttribute> asList(new LocalPrefPathAttribute(200), new OriginPathAttribute()));
+
+    assertSame(first, second);
+    assertNotSame(first, other);
+    assertTrue(first.compareTo(other) != 0);
+    assertEquals(2, first.size());
+    assertTrue(first.contains(new LocalPrefPathAttribute(100)));
+    assertEquals(new HashSet<PathAttribute>(first), first);
+
+    final Route left = new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, new NetworkLayerReachabilityInformation(8, new byte[] { 10 }), first, null);
+    final Route right = new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, new NetworkLayerReachabilityInformation(8, new byte[] { 11 }),
+        Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100)), null);
+
+    assertSame(left.getPathAttributes(), right.getPathAttributes());
+    assertSame(PathAttributeSet.EMPTY, new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, left.getNlri(), null, null).getPathAttributes());
+  }
+
+  @Test
+  public void testEncodedOncePerSet()
+  {
+    final PathAttributeSet set = PathAttributeSet.intern(Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100),
+        new MultiProtocolReachableNLRI(AddressFamily.IPv6, SubsequentAddressFamily.NLRI_UNICAST_FORWARDING)));
+
+    assertSame(set.getEncoded(), set.getEncoded());
+    assertEquals(2, set.getEncoded().size());
+
+    final UpdatePacket shared = new UpdatePacket();
+    final UpdatePacket plain = new UpdatePacket();
+
+    shared.setEncodedPathAttributes(set.getEncoded());
+
+    for (final PathAttribute attribute : set)
+    {
+      if (!(attribute instanceof MultiProtocolReachableNLRI))
+      {
+        plain.getPathAttributes().add(attribute);
+      }
+    }
+
+    assertEquals(plain.calculatePacketSize(), shared.calculatePacketSize());
+    assertEquals(plain.encodePacket(), shared.encodePacket());
+    assertEquals(1, shared.lookupPathAttributes(LocalPrefPathAttribute.class).size());
+
+    // reading the attributes keeps the encoded block
+    assertEquals(2, shared.getPathAttributes().size());
+    assertEquals(plain.encodePacket(), shared.encodePacket());
+  }
+
+  @Test
+  public void testInternReceivedAttributes() throws Exception
+  {
+    final UpdatePacket sent = new UpdatePacket();
+
+    sent.getPathAttributes().add(new OriginPathAttribute());
+    sent.getPathAttributes().add(new ASPathAttribute(ASType.AS_NUMBER_2OCTETS));
+    sent.getPathAttributes().add(new NextHopPathAttribute((Inet4Address) InetAddress.getByName("192.0.2.1")));
+    sent.getPathAttributes().add(new LocalPrefPathAttribute(100));
+    sent.getNlris().add(new NetworkLayerReachabilityInformation(8, new byte[] { 10 }));
+
+    final UpdatePacket first = receive(sent);
+    final UpdatePacket second = receive(sent);
+    final PathAttributeSet set = PathAttributeSet.intern(routeAttributes(first), first.getEncodedPathAttributes());
+
+    assertEquals(2, first.getEncodedPathAttributes().size());
+    assertSame(set, PathAttributeSet.intern(routeAttributes(second), second.getEncodedPathAttributes()));
+    assertSame(set, PathAttributeSet.intern(Arrays.<PathAttribute> asList(new OriginPathAttribute(), new ASPathAttribute(ASType.AS_NUMBER_2OCTETS),
+        new LocalPrefPathAttribute(100))));
+  }
+
+  private static UpdatePacket receive(final UpdatePacket packet)
+  {
+    final ByteBuf buffer = packet.encodePacket();
+
+    // skip the header
+    buffer.skipBytes(19);
+
+    return (UpdatePacket) new UpdatePacketDecoder(true).decodeUpdatePacket(buffer);
+  }
+
+  private static List<PathAttribute> routeAttributes(final UpdatePacket packet)
+  {
+    final List<PathAttribute> attributes = new ArrayList<PathAttribute>(packet.getDecodedPathAttributes());
+
+    attributes.removeAll(packet.lookupPathAttributes(NextHopPathAttribute.class));
+
+    return attributes;
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutable()
+  {
+    PathAttributeSet.intern(Arrays.<PathAttribute> asList(new MultiExitDiscPathAttribute(10))).add(new OriginPathAttribute());
+  }
+
+}
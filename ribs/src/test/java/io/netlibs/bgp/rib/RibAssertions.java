@@ -0,0 +1,31 @@
+package io.netlibs.bgp.rib;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * assertions shared by the tests which write RIBs to a file and read them back
+ */
+
+public final class RibAssertions
+{
+
+  private RibAssertions()
+  {
+  }
+
+  /**
+   * assert that every route of the expected RIB is held by the actual RIB with the same attributes and next hop
+   */
+
+  public static void assertSameRoutes(final RoutingInformationBase expected, final RoutingInformationBase actual)
+  {
+    expected.visitRoutingNodes((ribName, side, route) -> {
+      final LookupResult found = actual.lookupRoute(route.getNlri());
+
+      assertNotNull(route.getNlri().toString(), found);
+      assertTrue(route.getNlri().toString(), route.networkEquals(found.getRoute()));
+    });
+  }
+
+}
@@ -0,0 +1,172 @@
+package io.netlibs.bgp.rib;
+
+import static io.netlibs.bgp.rib.RibAssertions.assertSameRoutes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Inet4Address;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.BinaryNextHop;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+
+public class RoutingInformationBaseSnapshotTest
+{
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<PathAttribute> attributes(final ASType asType, final int localPref, final int... path)
+  {
+    return Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(localPref),
+        new ASPathAttribute(asType, new PathSegment[] { new PathSegment(asType, PathSegmentType.AS_SEQUENCE, path) }));
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception
+  {
+    final PeerRoutingInformationBaseManager saved = new PeerRoutingInformationBaseManager();
+    final PeerRoutingInformationBase a = saved.peerRoutingInformationBase("a");
+    final PeerRoutingInformationBase b = saved.extensionRoutingInformationBase("ext", "b");
+    final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final NetworkLayerReachabilityInformation v4 = new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 1 });
+    final NetworkLayerReachabilityInformation other = new NetworkLayerReachabilityInformation(16, new byte[] { 10, 1 });
+    final NetworkLayerReachabilityInformation v6 = new NetworkLayerReachabilityInformation(32, new byte[] { 0x20, 0x01, 0x0d, (byte) 0xb8 });
+
+    a.allocateRoutingInformationBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+    a.allocateRoutingInformationBase(RIBSide.Local, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+    a.routingBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING).addRoutes(Arrays.asList(v4, other), attributes(ASType.AS_NUMBER_2OCTETS, 100, 65001), nextHop);
+    a.routingBase(RIBSide.Local, AddressFamilyKey.IPV4_UNICAST_FORWARDING).addRoutes(Collections.singletonList(v4), attributes(ASType.AS_NUMBER_2OCTETS, 100), nextHop);
+
+    b.allocateRoutingInformationBase(RIBSide.Remote, AddressFamilyKey.IPV6_UNICAST_FORWARDING);
+    b.routingBase(RIBSide.Remote, AddressFamilyKey.IPV6_UNICAST_FORWARDING).addRoutes(Collections.singletonList(v6),
+        attributes(ASType.AS_NUMBER_4OCTETS, 200, 65536), new BinaryNextHop(new byte[16]));
+
+    final Path file = this.folder.getRoot().toPath().resolve("ribs.snapshot");
+
+    saved.saveSnapshot(file);
+
+    final PeerRoutingInformationBaseManager loaded = new PeerRoutingInformationBaseManager();
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    try
+    {
+      assertEquals(3, loaded.loadSnapshot(file, executor, 1, TimeUnit.HOURS));
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    final RoutingInformationBase ribA = loaded.peerRoutingInformationBase("a").routingBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+    final RoutingInformationBase ribB = loaded.peerRoutingInformationBase("ext_b").routingBase(RIBSide.Remote, AddressFamilyKey.IPV6_UNICAST_FORWARDING);
+
+    assertTrue(loaded.peerRoutingInformationBase("ext_b").isExtensionRoutingBase());
+    assertNull(loaded.peerRoutingInformationBase("a").routingBase(RIBSide.Local, AddressFamilyKey.IPV4_UNICAST_FORWARDING));
+
+    assertSameRoutes(a.routingBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING), ribA);
+    assertSameRoutes(b.routingBase(RIBSide.Remote, AddressFamilyKey.IPV6_UNICAST_FORWARDING), ribB);
+
+    // routes which shared their attributes still share the interned set
+    assertSame(ribA.lookupRoute(v4).getRoute().getPathAttributes(), ribA.lookupRoute(other).getRoute().getPathAttributes());
+
+    // the restored routes are stale until the peer sends them again
+    ribA.addRoutes(Collections.singletonList(v4), attributes(ASType.AS_NUMBER_2OCTETS, 100, 65001), nextHop);
+
+    assertEquals(1, ribA.sweepStale());
+    assertNull(ribA.lookupRoute(other));
+  }
+
+  @Test
+  public void testStaleRoutesAreSweptAfterGracePeriod() throws Exception
+  {
+    final PeerRoutingInformationBaseManager saved = new PeerRoutingInformationBaseManager();
+    final PeerRoutingInformationBase a = saved.peerRoutingInformationBase("a");
+    final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final NetworkLayerReachabilityInformation kept = new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 1 });
+    final NetworkLayerReachabilityInformation gone = new NetworkLayerReachabilityInformation(16, new byte[] { 10, 1 });
+
+    a.allocateRoutingInformationBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+    a.routingBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING).addRoutes(Arrays.asList(kept, gone), attributes(ASType.AS_NUMBER_2OCTETS, 100, 65001), nextHop);
+
+    final Path file = this.folder.getRoot().toPath().resolve("ribs.snapshot");
+
+    saved.saveSnapshot(file);
+
+    final PeerRoutingInformationBaseManager loaded = new PeerRoutingInformationBaseManager();
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    assertEquals(2, loaded.loadSnapshot(file, executor, 200, TimeUnit.MILLISECONDS));
+
+    final RoutingInformationBase rib = loaded.peerRoutingInformationBase("a").routingBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    // the peer sends one route again within the grace period
+    rib.addRoutes(Collections.singletonList(kept), attributes(ASType.AS_NUMBER_2OCTETS, 100, 65001), nextHop);
+
+    // the delayed sweep still runs after the shutdown
+    executor.shutdown();
+
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    assertNotNull(rib.lookupRoute(kept));
+    assertNull(rib.lookupRoute(gone));
+  }
+
+  @Test
+  public void testGracePeriodSkipsPeerAfterEndOfRib() throws Exception
+  {
+    final PeerRoutingInformationBaseManager saved = new PeerRoutingInformationBaseManager();
+    final PeerRoutingInformationBase a = saved.peerRoutingInformationBase("a");
+    final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+    final NetworkLayerReachabilityInformation kept = new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 1 });
+
+    a.allocateRoutingInformationBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+    a.routingBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING).addRoutes(Arrays.asList(kept), attributes(ASType.AS_NUMBER_2OCTETS, 100, 65001), nextHop);
+
+    final Path file = this.folder.getRoot().toPath().resolve("ribs.snapshot");
+
+    saved.saveSnapshot(file);
+
+    final PeerRoutingInformationBaseManager loaded = new PeerRoutingInformationBaseManager();
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    assertEquals(1, loaded.loadSnapshot(file, executor, 200, TimeUnit.MILLISECONDS));
+
+    final RoutingInformationBase rib = loaded.peerRoutingInformationBase("a").routingBase(RIBSide.Remote, AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    // the peer sends its routes and End-of-RIB, then restarts, its routes are retained until its own restart timer expires
+    rib.addRoutes(Collections.singletonList(kept), attributes(ASType.AS_NUMBER_2OCTETS, 100, 65001), nextHop);
+    assertEquals(0, rib.sweepStale());
+    rib.markStale();
+
+    executor.shutdown();
+
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    assertNotNull(rib.lookupRoute(kept));
+  }
+
+}
@@ -0,0 +1,233 @@
+package io.netlibs.bgp.rib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+
+public class RoutingInformationBaseTest
+{
+
+  private static final List<NetworkLayerReachabilityInformation> NLRIS = Arrays.asList(
+      new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 1 }),
+      new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 2 }),
+      new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 3 }));
+
+  private static final List<PathAttribute> ATTRIBUTES = Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100));
+
+  private static RoutingInformationBase rib()
+  {
+    final RoutingInformationBase rib = new RoutingInformationBase();
+
+    rib.setPeerName("peer");
+    rib.setSide(RIBSide.Remote);
+    rib.setAddressFamilyKey(AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+
+    return rib;
+  }
+
+  @Test
+  public void testOneEventPerBatch()
+  {
+    final RoutingInformationBase rib = rib();
+    final List<RoutesAdded> added = new ArrayList<RoutesAdded>();
+    final List<RoutesWithdrawn> withdrawn = new ArrayList<RoutesWithdrawn>();
+
+    rib.addPerRibListener(new RoutingBatchListener() {
+
+      @Override
+      public void routesAdded(final RoutesAdded event)
+      {
+        added.add(event);
+      }
+
+      @Override
+      public void routesWithdrawn(final RoutesWithdrawn event)
+      {
+        withdrawn.add(event);
+      }
+
+    });
+
+    rib.addRoutes(NLRIS, ATTRIBUTES, null);
+    rib.withdrawRoutes(NLRIS.subList(0, 2));
+
+    assertEquals(1, added.size());
+    assertEquals(3, added.get(0).getRoutes().size());
+    assertSame(PathAttributeSet.intern(ATTRIBUTES), added.get(0).getPathAttributes());
+    assertEquals(AddressFamilyKey.IPV4_UNICAST_FORWARDING, added.get(0).getAddressFamilyKey());
+
+    assertEquals(1, withdrawn.size());
+    assertEquals(2, withdrawn.get(0).getRoutes().size());
+    assertEquals(NLRIS.get(1), withdrawn.get(0).getRoutes().get(1).getNlri());
+  }
+
+  @Test
+  public void testPerRouteListenerAdapted()
+  {
+    final RoutingInformationBase rib = rib();
+    final List<RouteAdded> added = new ArrayList<RouteAdded>();
+    final List<RouteWithdrawn> withdrawn = new ArrayList<RouteWithdrawn>();
+
+    rib.addPerRibListener(new RoutingEventListener() {
+
+      @Override
+      public void routeAdded(final RouteAdded event)
+      {
+        added.add(event);
+      }
+
+      @Override
+      public void routeWithdrawn(final RouteWithdrawn event)
+      {
+        withdrawn.add(event);
+      }
+
+    });
+
+    rib.addRoutes(NLRIS, ATTRIBUTES, null);
+    rib.withdrawRoutes(NLRIS);
+
+    assertEquals(3, added.size());
+    assertEquals(3, withdrawn.size());
+
+    for (int i = 0; i < NLRIS.size(); i++)
+    {
+      assertEquals("peer", added.get(i).getPeerName());
+      assertEquals(NLRIS.get(i), added.get(i).getRoute().getNlri());
+      assertEquals(NLRIS.get(i), withdrawn.get(i).getRoute().getNlri());
+    }
+  }
+
+  @Test
+  public void testStaleRoutesSweptAfterRestart()
+  {
+    final RoutingInformationBase rib = rib();
+    final List<RoutesAdded> added = new ArrayList<RoutesAdded>();
+    final List<RoutesWithdrawn> withdrawn = new ArrayList<RoutesWithdrawn>();
+
+    rib.addPerRibListener(new RoutingBatchListener() {
+
+      @Override
+      public void routesAdded(final RoutesAdded event)
+      {
+        added.add(event);
+      }
+
+      @Override
+      public void routesWithdrawn(final RoutesWithdrawn event)
+      {
+        withdrawn.add(event);
+      }
+
+    });
+
+    rib.addRoutes(NLRIS, ATTRIBUTES, null);
+    rib.markStale();
+
+    // the first prefix is sent again unchanged, the second one with other attributes, the third one not at all
+    rib.addRoutes(NLRIS.subList(0, 1), ATTRIBUTES, null);
+    rib.addRoutes(NLRIS.subList(1, 2), Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(200)), null);
+
+    assertEquals(2, added.size());
+    assertEquals(NLRIS.get(1), added.get(1).getRoutes().get(0).getNlri());
+
+    assertEquals(1, rib.sweepStale());
+    assertEquals(1, withdrawn.size());
+    assertEquals(NLRIS.get(2), withdrawn.get(0).getRoutes().get(0).getNlri());
+    assertNotNull(rib.lookupRoute(NLRIS.get(0)));
+    assertNull(rib.lookupRoute(NLRIS.get(2)));
+
+    // nothing has been marked stale since
+    assertEquals(0, rib.sweepStale());
+  }
+
+  /**
+   * a labelled IPv4 NLRI: label, then prefix
+   */
+  private static NetworkLayerReachabilityInformation labelled(final int label, final int prefixLength, final int... prefix)
+  {
+    final byte[] data = new byte[3 + prefix.length];
+
+    data[0] = (byte) (label >>> 12);
+    data[1] = (byte) (label >>> 4);
+    data[2] = (byte) ((label << 4) | 1);
+
+    for (int i = 0; i < prefix.length; i++)
+    {
+      data[3 + i] = (byte) prefix[i];
+    }
+
+    return new NetworkLayerReachabilityInformation(24 + prefixLength, data);
+  }
+
+  @Test
+  public void testLabelIsNotPartOfTheKey()
+  {
+    final RoutingInformationBase rib = rib();
+    final NetworkLayerReachabilityInformation prefix = new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 1 });
+
+    rib.setAddressFamilyKey(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING);
+
+    rib.addRoutes(Arrays.asList(labelled(100, 24, 10, 0, 1)), ATTRIBUTES, null);
+    rib.addRoutes(Arrays.asList(labelled(200, 24, 10, 0, 1)), ATTRIBUTES, null);
+
+    // a new label replaces the route
+    final Route route = rib.lookupRoute(labelled(0, 32, 10, 0, 1, 7)).getRoute();
+
+    assertEquals(200, route.getLabel());
+    assertEquals(prefix, route.getKey());
+    assertTrue(NlriComparator.equals(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING, labelled(100, 24, 10, 0, 1), labelled(200, 24, 10, 0, 1)));
+    assertTrue(NlriComparator.isPrefixOf(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING, labelled(100, 16, 10, 0), labelled(200, 24, 10, 0, 1)));
+
+    // withdrawals carry the compatibility label
+    rib.withdrawRoutes(Arrays.asList(labelled(0x80000, 24, 10, 0, 1)));
+
+    assertNull(rib.lookupRoute(labelled(100, 24, 10, 0, 1)));
+  }
+
+  @Test
+  public void testRouteDistinguisherIsPartOfTheKey()
+  {
+    final RoutingInformationBase rib = rib();
+    final int[] rd1 = { 0, 0, 0xfd, 0xe8, 0, 0, 0, 1 };
+    final int[] rd2 = { 0, 0, 0xfd, 0xe8, 0, 0, 0, 2 };
+
+    rib.setAddressFamilyKey(AddressFamilyKey.IPV4_MPLS_VPN_FORWARDING);
+
+    rib.addRoutes(Arrays.asList(labelled(100, 88, concat(rd1, 10, 0, 1))), ATTRIBUTES, null);
+    rib.addRoutes(Arrays.asList(labelled(200, 80, concat(rd2, 10, 0))), ATTRIBUTES, null);
+
+    assertEquals(100, rib.lookupRoute(labelled(0, 96, concat(rd1, 10, 0, 1, 7))).getRoute().getLabel());
+    assertEquals(200, rib.lookupRoute(labelled(0, 96, concat(rd2, 10, 0, 1, 7))).getRoute().getLabel());
+
+    // the less specific route of the other RD does not cover it
+    assertNull(rib.lookupRoute(labelled(0, 96, concat(rd1, 10, 0, 2, 7))));
+    assertFalse(NlriComparator.isPrefixOf(AddressFamilyKey.IPV4_MPLS_VPN_FORWARDING, labelled(200, 80, concat(rd2, 10, 0)), labelled(100, 88, concat(rd1, 10, 0, 1))));
+  }
+
+  private static int[] concat(final int[] rd, final int... prefix)
+  {
+    final int[] result = Arrays.copyOf(rd, rd.length + prefix.length);
+
+    System.arraycopy(prefix, 0, result, rd.length, prefix.length);
+
+    return result;
+  }
+
+}
@@ -0,0 +1,222 @@
+package io.netlibs.bgp.rib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+
+public class RoutingTreeTest
+{
+
+  private static NetworkLayerReachabilityInformation nlri(final int prefixLength, final int... octets)
+  {
+    final byte[] prefix = new byte[NetworkLayerReachabilityInformation.calculateOctetsForPrefixLength(prefixLength)];
+
+    for (int i = 0; i < prefix.length; i++)
+    {
+      prefix[i] = (byte) octets[i];
+    }
+
+    return new NetworkLayerReachabilityInformation(prefixLength, prefix);
+  }
+
+  private static Route route(final NetworkLayerReachabilityInformation nlri)
+  {
+    return new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri, null, null);
+  }
+
+  @Test
+  public void testLongestPrefixMatch()
+  {
+    final RoutingTree tree = new RoutingTree();
+
+    final Route slash8 = route(nlri(8, 10));
+    final Route slash16 = route(nlri(16, 10, 1));
+    final Route slash24 = route(nlri(24, 10, 1, 2));
+
+    assertTrue(tree.addRoute(slash24));
+    assertTrue(tree.addRoute(slash8));
+    assertTrue(tree.addRoute(slash16));
+
+    assertSame(slash24, tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(24, 10, 1, 2)).getRoute());
+    assertSame(slash24, tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(32, 10, 1, 2, 3)).getRoute());
+    assertSame(slash16, tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(24, 10, 1, 3)).getRoute());
+    assertSame(slash8, tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(12, 10, 16)).getRoute());
+    assertNull(tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(8, 11)));
+    assertNull(tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(7, 10)));
+
+    final Route defaultRoute = route(nlri(0));
+
+    assertTrue(tree.addRoute(defaultRoute));
+    assertSame(defaultRoute, tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(8, 11)).getRoute());
+  }
+
+  @Test
+  public void testReplaceAndWithdraw()
+  {
+    final RoutingTree tree = new RoutingTree();
+
+    final Route first = route(nlri(24, 192, 168, 1));
+    final Route second = route(nlri(24, 192, 168, 1));
+
+    assertTrue(tree.addRoute(first));
+    assertTrue(tree.addRoute(second));
+    assertSame(second, tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(24, 192, 168, 1)).getRoute());
+
+    assertTrue(tree.withdrawRoute(route(nlri(24, 192, 168, 1))));
+    assertFalse(tree.withdrawRoute(route(nlri(24, 192, 168, 1))));
+    assertFalse(tree.withdrawRoute(route(nlri(16, 192, 168))));
+    assertNull(tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, nlri(24, 192, 168, 1)));
+  }
+
+  @Test
+  public void testVisitOrdersLessSpecificFirst()
+  {
+    final RoutingTree tree = new RoutingTree();
+
+    tree.addRoute(route(nlri(24, 10, 1, 2)));
+    tree.addRoute(route(nlri(16, 10, 1)));
+    tree.addRoute(route(nlri(24, 10, 2, 0)));
+    tree.addRoute(route(nlri(8, 10)));
+
+    final List<NetworkLayerReachabilityInformation> visited = new ArrayList<NetworkLayerReachabilityInformation>();
+
+    tree.visitTree(route -> visited.add(route.getNlri()));
+
+    assertEquals(4, visited.size());
+    assertEquals(nlri(8, 10), visited.get(0));
+    assertEquals(nlri(16, 10, 1), visited.get(1));
+    assertEquals(nlri(24, 10, 1, 2), visited.get(2));
+    assertEquals(nlri(24, 10, 2, 0), visited.get(3));
+  }
+
+  @Test
+  public void testRandomAgainstLinearScan()
+  {
+    final Random random = new Random(4271);
+    final RoutingTree tree = new RoutingTree();
+    final Map<NetworkLayerReachabilityInformation, Route> routes = new HashMap<NetworkLayerReachabilityInformation, Route>();
+
+    for (int i = 0; i < 5000; i++)
+    {
+      final NetworkLayerReachabilityInformation nlri = nlri(random.nextInt(9) + 8, random.nextInt(4), random.nextInt(256));
+
+      if (random.nextInt(4) == 0)
+      {
+        assertEquals(routes.remove(nlri) != null, tree.withdrawRoute(route(nlri)));
+      }
+      else
+      {
+        final Route route = route(nlri);
+
+        tree.addRoute(route);
+        routes.put(nlri, route);
+      }
+    }
+
+    for (int i = 0; i < 5000; i++)
+    {
+      final NetworkLayerReachabilityInformation probe = nlri(random.nextInt(17) + 8, random.nextInt(4), random.nextInt(256), random.nextInt(256));
+      Route expected = null;
+
+      for (final Route route : routes.values())
+      {
+        if ((route.getNlri().equals(probe) || route.getNlri().isPrefixOf(probe))
+            && ((expected == null) || (expected.getNlri().getPrefixLength() < route.getNlri().getPrefixLength())))
+        {
+          expected = route;
+        }
+      }
+
+      final LookupResult result = tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, probe);
+
+      assertSame(expected, (result != null) ? result.getRoute() : null);
+    }
+
+    final List<Route> visited = new ArrayList<Route>();
+
+    tree.visitTree(route -> visited.add(route));
+
+    assertEquals(routes.size(), visited.size());
+  }
+
+  private static int countRoutes(final RoutingTree.RoutingTreeNode node)
+  {
+    if (node == null)
+    {
+      return 0;
+    }
+
+    return ((node.getRoute() != null) ? 1 : 0) + countRoutes(node.getChildNode(0)) + countRoutes(node.getChildNode(1));
+  }
+
+  @Test
+  public void testBatchesLeaveSnapshotsUntouched()
+  {
+    final Random random = new Random(4724);
+    final RoutingTree tree = new RoutingTree();
+    final Map<NetworkLayerReachabilityInformation, Route> routes = new HashMap<NetworkLayerReachabilityInformation, Route>();
+    final List<RoutingTree.RoutingTreeNode> snapshots = new ArrayList<RoutingTree.RoutingTreeNode>();
+    final List<Integer> sizes = new ArrayList<Integer>();
+
+    for (int i = 0; i < 200; i++)
+    {
+      final List<Route> batch = new ArrayList<Route>();
+
+      for (int j = 0; j < 20; j++)
+      {
+        batch.add(route(nlri(random.nextInt(9) + 8, random.nextInt(4), random.nextInt(256))));
+      }
+
+      snapshots.add(tree.getRootNode());
+      sizes.add(routes.size());
+
+      if (random.nextInt(3) == 0)
+      {
+        final List<Route> withdrawn = tree.withdrawRoutes(batch);
+        int expected = 0;
+
+        for (final Route route : batch)
+        {
+          expected += (routes.remove(route.getNlri()) != null) ? 1 : 0;
+        }
+
+        assertEquals(expected, withdrawn.size());
+      }
+      else
+      {
+        tree.addRoutes(batch);
+
+        for (final Route route : batch)
+        {
+          routes.put(route.getNlri(), route);
+        }
+      }
+
+      assertEquals(routes.size(), countRoutes(tree.getRootNode()));
+    }
+
+    for (int i = 0; i < snapshots.size(); i++)
+    {
+      assertEquals(sizes.get(i).intValue(), countRoutes(snapshots.get(i)));
+    }
+
+    for (final Route route : routes.values())
+    {
+      assertSame(route, tree.lookupRoute(AddressFamilyKey.IPV4_UNICAST_FORWARDING, route.getNlri()).getRoute());
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+package io.netlibs.bgp.rib.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration;
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration.Action;
+import io.netlibs.bgp.config.nodes.impl.PrefixListEntryConfigurationImpl;
+import io.netlibs.bgp.config.nodes.impl.PrefixRoutingFilterConfigurationImpl;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.rib.Route;
+
+public class PrefixListTest
+{
+
+  private static NetworkLayerReachabilityInformation prefix(final int prefixLength, final int... octets)
+  {
+    final byte[] data = new byte[NetworkLayerReachabilityInformation.calculateOctetsForPrefixLength(prefixLength)];
+
+    for (int i = 0; i < data.length; i++)
+    {
+      data[i] = (byte) octets[i];
+    }
+
+    return new NetworkLayerReachabilityInformation(prefixLength, data);
+  }
+
+  @Test
+  public void testLongestMatchWithLengthBounds() throws Exception
+  {
+    final PrefixList list = new PrefixList(Arrays.<PrefixListEntryConfiguration> asList(
+        new PrefixListEntryConfigurationImpl(Action.DENY, prefix(8, 10), 8, 32),
+        new PrefixListEntryConfigurationImpl(Action.PERMIT, prefix(16, 10, 1), 24, 24),
+        new PrefixListEntryConfigurationImpl(Action.DENY, prefix(16, 10, 1), 16, 32),
+        new PrefixListEntryConfigurationImpl(Action.PERMIT, prefix(0), 0, 32),
+        new PrefixListEntryConfigurationImpl(Action.DENY, prefix(24, 192, 0, 2))));
+
+    assertEquals(5, list.size());
+
+    assertEquals(Action.DENY, list.evaluate(prefix(8, 10)));
+    assertEquals(Action.DENY, list.evaluate(prefix(24, 10, 2, 3)));
+
+    // the entries of 10.1/16 are more specific than the ones of 10/8, the first one matching the length decides
+    assertEquals(Action.PERMIT, list.evaluate(prefix(24, 10, 1, 3)));
+    assertEquals(Action.DENY, list.evaluate(prefix(25, 10, 1, 3, 128)));
+
+    // an exact entry does not match more specific prefixes
+    assertEquals(Action.DENY, list.evaluate(prefix(24, 192, 0, 2)));
+    assertEquals(Action.PERMIT, list.evaluate(prefix(25, 192, 0, 2, 0)));
+
+    assertEquals(Action.PERMIT, list.evaluate(prefix(16, 172, 16)));
+
+    assertNull(new PrefixList(Collections.<PrefixListEntryConfiguration> emptyList()).evaluate(prefix(8, 10)));
+  }
+
+  @Test
+  public void testFilterPrefixesDenyCoveredRoutes() throws Exception
+  {
+    final PrefixRoutingFilter filter = new PrefixRoutingFilter();
+
+    filter.configure(new PrefixRoutingFilterConfigurationImpl("bogons", Arrays.asList(prefix(8, 10)),
+        Arrays.<PrefixListEntryConfiguration> asList(new PrefixListEntryConfigurationImpl(Action.DENY, prefix(16, 172, 16), 16, 24))));
+
+    assertTrue(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, prefix(8, 10), null, null)));
+    assertTrue(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, prefix(24, 10, 1, 2), null, null)));
+    assertTrue(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, prefix(24, 172, 16, 2), null, null)));
+    assertFalse(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, prefix(25, 172, 16, 2, 0), null, null)));
+    assertFalse(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, prefix(7, 10), null, null)));
+  }
+
+  @Test
+  public void testLabelledFilterPrefixesIgnoreLabel() throws Exception
+  {
+    final PrefixRoutingFilter filter = new PrefixRoutingFilter();
+
+    // 192.0.2/24 with label 16
+    filter.configure(new PrefixRoutingFilterConfigurationImpl("lu", Arrays.asList(prefix(48, 0, 1, 1, 192, 0, 2)),
+        Collections.<PrefixListEntryConfiguration> emptyList()));
+
+    // the route carries another label, its key is covered all the same
+    assertTrue(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING, prefix(48, 0, 2, 1, 192, 0, 2), null, null)));
+    assertTrue(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING, prefix(49, 0, 2, 1, 192, 0, 2, 128), null, null)));
+    assertFalse(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_MPLS_FORWARDING, prefix(48, 0, 1, 1, 192, 0, 3), null, null)));
+
+    // the unlabelled family compares the NLRI as it is
+    assertFalse(filter.matchFilter(new Route(AddressFamilyKey.IPV4_UNICAST_FORWARDING, prefix(24, 192, 0, 2), null, null)));
+  }
+
+}
@@ -0,0 +1,96 @@
+package io.netlibs.bgp.rib.mrt;
+
+import static io.netlibs.bgp.rib.RibAssertions.assertSameRoutes;
+import static org.junit.Assert.assertEquals;
+
+import java.net.Inet4Address;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.AddressFamilyKey;
+import io.netlibs.bgp.protocol.BinaryNextHop;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.RIBSide;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.MultiExitDiscPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.PeerRoutingInformationBase;
+import io.netlibs.bgp.rib.RoutingInformationBase;
+
+public class MrtTableDumpTest
+{
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static RoutingInformationBase rib(final AddressFamilyKey afk)
+  {
+    final PeerRoutingInformationBase prib = new PeerRoutingInformationBase();
+
+    prib.allocateRoutingInformationBase(RIBSide.Remote, afk);
+
+    return prib.routingBase(RIBSide.Remote, afk);
+  }
+
+  private static ASPathAttribute path(final ASType asType, final int... ases)
+  {
+    return new ASPathAttribute(asType, new PathSegment[] { new PathSegment(asType, PathSegmentType.AS_SEQUENCE, ases) });
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception
+  {
+    final RoutingInformationBase v4 = rib(AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+    final RoutingInformationBase v6 = rib(AddressFamilyKey.IPV6_UNICAST_FORWARDING);
+    final InetAddressNextHop<Inet4Address> nextHop = new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString("192.0.2.1"));
+
+    v4.addRoutes(Arrays.asList(new NetworkLayerReachabilityInformation(24, new byte[] { 10, 0, 1 }), new NetworkLayerReachabilityInformation(16, new byte[] { 10, 1 })),
+        Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100), path(ASType.AS_NUMBER_2OCTETS, 65001, 65002)), nextHop);
+    v4.addRoutes(Arrays.asList(new NetworkLayerReachabilityInformation(8, new byte[] { 11 })),
+        Arrays.<PathAttribute> asList(new OriginPathAttribute(), new MultiExitDiscPathAttribute(5), path(ASType.AS_NUMBER_4OCTETS, (int) 4200000000L)), nextHop);
+    v6.addRoutes(Arrays.asList(new NetworkLayerReachabilityInformation(InetAddresses.forString("2001:db8::"))),
+        Arrays.<PathAttribute> asList(new OriginPathAttribute(), path(ASType.AS_NUMBER_2OCTETS, 65003)),
+        new BinaryNextHop(InetAddresses.forString("2001:db8::1").getAddress()));
+
+    final List<MrtPeer> peers = Arrays.asList(new MrtPeer(1, InetAddresses.forString("192.0.2.1"), 65001),
+        new MrtPeer(2, InetAddresses.forString("2001:db8::1"), (int) 4200000000L));
+    final Path file = this.folder.newFile("rib.mrt").toPath();
+
+    try (MrtTableDumpWriter writer = new MrtTableDumpWriter(file, 0x0a000001L, "test", peers))
+    {
+      assertEquals(3, writer.write(v4, 0));
+      assertEquals(1, writer.write(v6, 1));
+    }
+
+    try (MrtTableDumpReader reader = new MrtTableDumpReader(file))
+    {
+      assertEquals(0x0a000001L, reader.getCollectorBgpIdentifier());
+      assertEquals("test", reader.getViewName());
+      assertEquals(peers, reader.getPeers());
+
+      final RoutingInformationBase loadedV4 = rib(AddressFamilyKey.IPV4_UNICAST_FORWARDING);
+      final RoutingInformationBase loadedV6 = rib(AddressFamilyKey.IPV6_UNICAST_FORWARDING);
+
+      assertEquals(3, reader.load(loadedV4, 0));
+      assertEquals(1, reader.load(loadedV6, 1));
+      assertEquals(0, reader.load(rib(AddressFamilyKey.IPV4_UNICAST_FORWARDING), 1));
+
+      assertSameRoutes(v4, loadedV4);
+      assertSameRoutes(v6, loadedV6);
+    }
+  }
+
+}
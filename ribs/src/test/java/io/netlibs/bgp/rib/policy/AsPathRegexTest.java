@@ -0,0 +1,120 @@
+package io.netlibs.bgp.rib.policy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+
+public class AsPathRegexTest
+{
+
+  private static int[] path(final int... ases)
+  {
+    return ases;
+  }
+
+  @Test
+  public void testAnchors()
+  {
+    final AsPathRegex originated = AsPathRegex.compile("_65000$");
+
+    assertTrue(originated.matches(path(65001, 65000)));
+    assertTrue(originated.matches(path(65000)));
+    assertFalse(originated.matches(path(65000, 65001)));
+    assertFalse(originated.matches(path(165000)));
+
+    final AsPathRegex neighbor = AsPathRegex.compile("^65001_");
+
+    assertTrue(neighbor.matches(path(65001, 65000)));
+    assertFalse(neighbor.matches(path(65000, 65001)));
+    assertFalse(neighbor.matches(path()));
+
+    final AsPathRegex transit = AsPathRegex.compile("_65002_");
+
+    assertTrue(transit.matches(path(65001, 65002, 65000)));
+    assertFalse(transit.matches(path(65001, 65000)));
+
+    final AsPathRegex local = AsPathRegex.compile("^$");
+
+    assertTrue(local.matches(path()));
+    assertFalse(local.matches(path(65000)));
+  }
+
+  @Test
+  public void testOperators()
+  {
+    final AsPathRegex regex = AsPathRegex.compile("^65001 (65002|65003)+ .? 65010-65020$");
+
+    assertTrue(regex.matches(path(65001, 65002, 65015)));
+    assertTrue(regex.matches(path(65001, 65003, 65002, 7, 65010)));
+    assertFalse(regex.matches(path(65001, 65015)));
+    assertFalse(regex.matches(path(65001, 65002, 65021)));
+    assertFalse(regex.matches(path(65001, 65002, 7, 8, 65020)));
+
+    final AsPathRegex prepended = AsPathRegex.compile("^(65001_){2,3}$");
+
+    assertFalse(prepended.matches(path(65001)));
+    assertTrue(prepended.matches(path(65001, 65001)));
+    assertTrue(prepended.matches(path(65001, 65001, 65001)));
+    assertFalse(prepended.matches(path(65001, 65001, 65001, 65001)));
+
+    final AsPathRegex notPrivate = AsPathRegex.compile("^[^64512-65534, 4200000000-4294967294]*$");
+
+    assertTrue(notPrivate.matches(path(3320, 174)));
+    assertFalse(notPrivate.matches(path(3320, 64600, 174)));
+    assertFalse(notPrivate.matches(path(3320, (int) 4200000001L)));
+    assertTrue(notPrivate.matches(path(3320, (int) 4294967295L)));
+  }
+
+  @Test
+  public void testAttributesAndCompileCache()
+  {
+    final AsPathRegex regex = AsPathRegex.compile("_65000$");
+    final ASPathAttribute attribute = new ASPathAttribute(ASType.AS_NUMBER_4OCTETS, new PathSegment[] {
+        new PathSegment(ASType.AS_NUMBER_4OCTETS, PathSegmentType.AS_SEQUENCE, new int[] { 65001 }),
+        new PathSegment(ASType.AS_NUMBER_4OCTETS, PathSegmentType.AS_SET, new int[] { 65002, 65000 }) });
+
+    assertTrue(regex.matches(attribute));
+    assertTrue(regex.matches(attribute));
+    assertFalse(regex.matches((ASPathAttribute) null));
+    assertTrue(AsPathRegex.compile("^$").matches((ASPathAttribute) null));
+
+    assertSame(regex, AsPathRegex.compile("_65000$"));
+  }
+
+  @Test
+  public void testDfaSize()
+  {
+    // before and after the AS
+    assertEquals(2, AsPathRegex.compile("_65000_").getStateCount());
+  }
+
+  @Test
+  public void testInvalidExpressions()
+  {
+    for (final String expression : new String[] { "65000)", "(65000", "65000^", "[65000", "[]", "65001-65000", "4294967296", "65000{3,2}",
+        "a" })
+    {
+      try
+      {
+        AsPathRegex.compile(expression);
+        fail(expression);
+      }
+      catch (final PatternSyntaxException e)
+      {
+        // expected
+      }
+    }
+  }
+
+}
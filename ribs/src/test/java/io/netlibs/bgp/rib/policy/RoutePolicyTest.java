@@ -0,0 +1,158 @@
+package io.netlibs.bgp.rib.policy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Inet4Address;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.google.common.net.InetAddresses;
+
+import io.netlibs.bgp.config.nodes.PrefixListEntryConfiguration.Action;
+import io.netlibs.bgp.config.nodes.impl.PrefixListEntryConfigurationImpl;
+import io.netlibs.bgp.protocol.ASType;
+import io.netlibs.bgp.protocol.InetAddressNextHop;
+import io.netlibs.bgp.protocol.NetworkLayerReachabilityInformation;
+import io.netlibs.bgp.protocol.NextHop;
+import io.netlibs.bgp.protocol.PathSegment;
+import io.netlibs.bgp.protocol.PathSegmentType;
+import io.netlibs.bgp.protocol.attributes.ASPathAttribute;
+import io.netlibs.bgp.protocol.attributes.CommunityMember;
+import io.netlibs.bgp.protocol.attributes.CommunityPathAttribute;
+import io.netlibs.bgp.protocol.attributes.LocalPrefPathAttribute;
+import io.netlibs.bgp.protocol.attributes.NextHopPathAttribute;
+import io.netlibs.bgp.protocol.attributes.OriginPathAttribute;
+import io.netlibs.bgp.protocol.attributes.PathAttribute;
+import io.netlibs.bgp.rib.PathAttributeSet;
+import io.netlibs.bgp.rib.filter.PrefixList;
+
+public class RoutePolicyTest
+{
+
+  private static final CommunityMember NO_EXPORT = new CommunityMember(0xffff, 0xff01);
+  private static final CommunityMember CUSTOMER = new CommunityMember(65000, 100);
+
+  private static final NetworkLayerReachabilityInformation CUSTOMER_PREFIX = new NetworkLayerReachabilityInformation(24, new byte[] { 10, 1, 1 });
+  private static final NetworkLayerReachabilityInformation OTHER_PREFIX = new NetworkLayerReachabilityInformation(24, new byte[] { (byte) 192, (byte) 168, 1 });
+
+  private static NextHop nextHop(final String address)
+  {
+    return new InetAddressNextHop<Inet4Address>((Inet4Address) InetAddresses.forString(address));
+  }
+
+  private static PathAttributeSet attributes(final CommunityMember community, final int... path)
+  {
+    return PathAttributeSet.intern(Arrays.<PathAttribute> asList(new OriginPathAttribute(), new LocalPrefPathAttribute(100),
+        new CommunityPathAttribute(Collections.singletonList(community)),
+        new ASPathAttribute(ASType.AS_NUMBER_2OCTETS, new PathSegment[] { new PathSegment(ASType.AS_NUMBER_2OCTETS, PathSegmentType.AS_SEQUENCE, path) })));
+  }
+
+  private static <T extends PathAttribute> T find(final PathAttributeSet pathAttributes, final Class<T> type)
+  {
+    for (final PathAttribute attribute : pathAttributes)
+    {
+      if (type.isInstance(attribute))
+      {
+        return type.cast(attribute);
+      }
+    }
+
+    return null;
+  }
+
+  @Test
+  public void testFirstMatchingTermDecides()
+  {
+    final RoutePolicy policy = RoutePolicy.builder()
+        .term().matchCommunity(NO_EXPORT).reject()
+        .term().matchAsPath(AsPathMatcher.originatedBy(65001)).setLocalPref(200).accept()
+        .term().matchAsPath(AsPathMatcher.passesThrough(65001)).setLocalPref(50).accept()
+        .acceptByDefault(false)
+        .build();
+
+    assertFalse(policy.evaluate(attributes(NO_EXPORT, 65002, 65001), null).apply(OTHER_PREFIX).isAccepted());
+
+    final PathAttributeSet originatedInput = attributes(CUSTOMER, 65002, 65001);
+    final PolicyResult originated = policy.evaluate(originatedInput, null).apply(OTHER_PREFIX);
+
+    assertTrue(originated.isAccepted());
+    assertEquals(200, find(originated.getPathAttributes(originatedInput), LocalPrefPathAttribute.class).getLocalPreference());
+
+    final PathAttributeSet transitInput = attributes(CUSTOMER, 65001, 65002);
+    final PolicyResult transit = policy.evaluate(transitInput, null).apply(OTHER_PREFIX);
+
+    assertTrue(transit.isAccepted());
+    assertEquals(50, find(transit.getPathAttributes(transitInput), LocalPrefPathAttribute.class).getLocalPreference());
+
+    assertSame(PolicyResult.REJECTED, policy.evaluate(attributes(CUSTOMER, 65002, 65003), null).apply(OTHER_PREFIX));
+  }
+
+  @Test
+  public void testSetActionsLeaveTheInputUntouched()
+  {
+    final NextHop nextHop = nextHop("192.0.2.1");
+    final RoutePolicy policy = RoutePolicy.builder()
+        .term().addCommunities(NO_EXPORT).setMed(10).setNextHop(nextHop).accept()
+        .build();
+
+    final PathAttributeSet input = PathAttributeSet.intern(Arrays.<PathAttribute> asList(new OriginPathAttribute(),
+        new CommunityPathAttribute(Collections.singletonList(CUSTOMER)), new NextHopPathAttribute((Inet4Address) InetAddresses.forString("10.0.0.1"))));
+    final PolicyResult result = policy.evaluate(input, nextHop("10.0.0.1")).apply(OTHER_PREFIX);
+
+    assertEquals(Arrays.asList(CUSTOMER, NO_EXPORT), find(result.getPathAttributes(input), CommunityPathAttribute.class).getMembers());
+    assertEquals(nextHop, result.getNextHop(nextHop("10.0.0.1")));
+    assertEquals(InetAddresses.forString("192.0.2.1"), find(result.getPathAttributes(input), NextHopPathAttribute.class).getNextHop().getAddress());
+
+    assertEquals(Collections.singletonList(CUSTOMER), find(input, CommunityPathAttribute.class).getMembers());
+  }
+
+  @Test
+  public void testEvaluationIsMemoisedPerAttributeSetAndNextHop()
+  {
+    final RoutePolicy policy = RoutePolicy.builder()
+        .term().matchCommunity(CUSTOMER).setLocalPref(200).accept()
+        .build();
+
+    final PolicyEvaluation evaluation = policy.evaluate(attributes(CUSTOMER, 65001), nextHop("10.0.0.1"));
+
+    assertSame(evaluation, policy.evaluate(attributes(CUSTOMER, 65001), nextHop("10.0.0.1")));
+    assertNotSame(evaluation, policy.evaluate(attributes(CUSTOMER, 65001), nextHop("10.0.0.2")));
+    assertNotSame(evaluation, policy.evaluate(attributes(CUSTOMER, 65002), nextHop("10.0.0.1")));
+
+    // all routes sharing the attributes share the result and its attribute set
+    assertFalse(evaluation.dependsOnPrefix());
+    assertSame(evaluation.apply(CUSTOMER_PREFIX), evaluation.apply(OTHER_PREFIX));
+  }
+
+  @Test
+  public void testPrefixListIsEvaluatedPerRoute() throws Exception
+  {
+    final PrefixList customers = new PrefixList(Collections.singletonList(new PrefixListEntryConfigurationImpl(Action.PERMIT,
+        new NetworkLayerReachabilityInformation(16, new byte[] { 10, 1 }), 16, 24)));
+
+    final RoutePolicy policy = RoutePolicy.builder()
+        .term().matchPrefixList(customers).setLocalPref(300).accept()
+        .term().matchCommunity(CUSTOMER).reject()
+        .build();
+
+    final PathAttributeSet input = attributes(CUSTOMER, 65001);
+    final PolicyEvaluation evaluation = policy.evaluate(input, null);
+
+    assertTrue(evaluation.dependsOnPrefix());
+    assertEquals(300, find(evaluation.apply(CUSTOMER_PREFIX).getPathAttributes(input), LocalPrefPathAttribute.class).getLocalPreference());
+    assertSame(PolicyResult.REJECTED, evaluation.apply(OTHER_PREFIX));
+
+    // without the community the second term does not match, the default accepts the route unchanged
+    final PathAttributeSet other = attributes(NO_EXPORT, 65001);
+
+    assertSame(PolicyResult.ACCEPTED, policy.evaluate(other, null).apply(OTHER_PREFIX));
+    assertSame(other, PolicyResult.ACCEPTED.getPathAttributes(other));
+  }
+
+}